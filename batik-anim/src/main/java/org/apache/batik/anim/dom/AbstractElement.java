@@ -44,10 +44,10 @@ public abstract class AbstractElement
         implements NodeEventTarget, CSSNavigableNode, SVGConstants {
 
     /**
-     * The live attribute values.
+     * The live attribute values.  Most elements only have a few.
      */
     protected transient DoublyIndexedTable liveAttributeValues =
-        new DoublyIndexedTable();
+        new DoublyIndexedTable(7);
 
     /**
      * Creates a new Element object.
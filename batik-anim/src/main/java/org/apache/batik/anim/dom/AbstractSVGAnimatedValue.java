@@ -53,9 +53,15 @@ public abstract class AbstractSVGAnimatedValue
     protected boolean hasAnimVal;
 
     /**
-     * Listener list.
+     * The first listener.  Most values have a single listener, so the
+     * list is only created for the next ones.
      */
-    protected LinkedList listeners = new LinkedList();
+    protected AnimatedAttributeListener listener;
+
+    /**
+     * Listener list, after {@link #listener}, or null.
+     */
+    protected LinkedList listeners;
 
     /**
      * Creates a new AbstractSVGAnimatedValue.
@@ -98,8 +104,15 @@ public abstract class AbstractSVGAnimatedValue
      * Adds a listener for changes to the animated value.
      */
     public void addAnimatedAttributeListener(AnimatedAttributeListener aal) {
-        if (!listeners.contains(aal)) {
-            listeners.add(aal);
+        if (listener == null) {
+            listener = aal;
+        } else if (listener != aal) {
+            if (listeners == null) {
+                listeners = new LinkedList();
+            }
+            if (!listeners.contains(aal)) {
+                listeners.add(aal);
+            }
         }
     }
 
@@ -107,7 +120,14 @@ public abstract class AbstractSVGAnimatedValue
      * Removes a listener for changes to the animated value.
      */
     public void removeAnimatedAttributeListener(AnimatedAttributeListener aal) {
-        listeners.remove(aal);
+        if (listener == aal) {
+            listener = null;
+            if (listeners != null && !listeners.isEmpty()) {
+                listener = (AnimatedAttributeListener) listeners.removeFirst();
+            }
+        } else if (listeners != null) {
+            listeners.remove(aal);
+        }
     }
 
     /**
@@ -124,10 +144,15 @@ public abstract class AbstractSVGAnimatedValue
      * Fires the listeners for the animated value.
      */
     protected void fireAnimatedAttributeListeners() {
-        for (Object listener1 : listeners) {
-            AnimatedAttributeListener listener =
-                    (AnimatedAttributeListener) listener1;
+        if (listener != null) {
             listener.animatedAttributeChanged(element, this);
         }
+        if (listeners != null) {
+            for (Object listener1 : listeners) {
+                AnimatedAttributeListener l =
+                        (AnimatedAttributeListener) listener1;
+                l.animatedAttributeChanged(element, this);
+            }
+        }
     }
 }
@@ -192,6 +192,25 @@ public class SVGOMAnimatedPathData
         }
     }
 
+    /**
+     * Returns the path data string the value is currently built from:
+     * the value of the attribute, or the default value if the attribute
+     * is not specified.  Returns null if the value is being animated or
+     * if there is neither an attribute nor a default value.  Callers that
+     * only need the geometry can parse this string directly instead of
+     * building the path segment list.
+     */
+    public String getStaticValueAsString() {
+        if (hasAnimVal) {
+            return null;
+        }
+        Attr attr = element.getAttributeNodeNS(namespaceURI, localName);
+        if (attr == null) {
+            return defaultValue;
+        }
+        return attr.getValue();
+    }
+
     /**
      * Returns the base value of the attribute as an {@link AnimatableValue}.
      */
@@ -126,6 +126,22 @@ public class SVGOMAnimatedPoints
         }
     }
 
+    /**
+     * Returns the points string the value is currently built from,
+     * or null if the value is being animated or if there is neither an
+     * attribute nor a default value.
+     */
+    public String getStaticValueAsString() {
+        if (hasAnimVal) {
+            return null;
+        }
+        Attr attr = element.getAttributeNodeNS(namespaceURI, localName);
+        if (attr == null) {
+            return defaultValue;
+        }
+        return attr.getValue();
+    }
+
     /**
      * Returns the base value of the attribute as an {@link AnimatableValue}.
      */
@@ -34,6 +34,9 @@ import java.awt.image.Raster;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 
@@ -123,12 +126,13 @@ abstract class MultipleGradientPaintContext implements PaintContext {
     /**
      * Array which contains the interpolated color values for each interval,
      * used by calculateSingleArrayGradient().  It is protected for possible
-     * direct access by subclasses.
+     * direct access by subclasses.  It is shared by the contexts of
+     * paints with the same stops and must not be modified.
      */
     protected int[] gradient;
 
     /** Array of gradient arrays, one array for each interval.  Used by
-     *  calculateMultipleArrayGradient().
+     *  calculateMultipleArrayGradient().  Shared like {@link #gradient}.
      */
     protected int[][] gradients;
 
@@ -183,6 +187,24 @@ abstract class MultipleGradientPaintContext implements PaintContext {
      */
     private static final int MAX_GRADIENT_ARRAY_SIZE = 5000;
 
+    /**
+     * The maximum number of gradient tables kept in {@link #tables}.
+     */
+    private static final int MAX_TABLES = 64;
+
+    /**
+     * The gradient tables computed last, by {@link TableKey}.  The
+     * tables only depend on the stops, the cycle method and the color
+     * spaces, and are never modified once computed, so they are shared
+     * by all the contexts of paints with the same stops.
+     */
+    private static final Map tables =
+        new LinkedHashMap(MAX_TABLES, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > MAX_TABLES;
+            }
+        };
+
    /** Constructor for superclass. Does some initialization, but leaves most
     * of the heavy-duty math for calculateGradient(), so the subclass may do
     * some other manipulation beforehand if necessary.  This is not possible
@@ -294,7 +316,21 @@ abstract class MultipleGradientPaintContext implements PaintContext {
             throw new IllegalArgumentException
                 ("Unsupported ColorSpace for interpolation");
 
-        calculateGradientFractions(loColors, hiColors);
+        TableKey key = new TableKey(fractions, colors, cycleMethod,
+                                    colorSpace, dataModel);
+        Tables tbl;
+        synchronized (tables) {
+            tbl = (Tables)tables.get(key);
+        }
+        if (tbl != null) {
+            tbl.restore(this);
+        } else {
+            calculateGradientFractions(loColors, hiColors);
+            tbl = new Tables(this);
+            synchronized (tables) {
+                tables.put(key, tbl);
+            }
+        }
 
         model = GraphicsUtil.coerceColorModel(dataModel,
                                               cm.isAlphaPremultiplied());
@@ -1471,5 +1507,91 @@ abstract class MultipleGradientPaintContext implements PaintContext {
     public final ColorModel getColorModel() {
         return model;
     }
-}
 
+    /**
+     * The key of the gradient tables of a paint.
+     */
+    private static final class TableKey {
+
+        private final float[] fractions;
+        private final int[] colors;
+        private final Object cycleMethod;
+        private final Object colorSpace;
+        private final ColorModel dataModel;
+        private final int hash;
+
+        TableKey(float[] fractions, Color[] colors, Object cycleMethod,
+                 Object colorSpace, ColorModel dataModel) {
+            this.fractions   = fractions.clone();
+            this.colors      = new int[colors.length];
+            for (int i = 0; i < colors.length; i++) {
+                this.colors[i] = colors[i].getRGB();
+            }
+            this.cycleMethod = cycleMethod;
+            this.colorSpace  = colorSpace;
+            this.dataModel   = dataModel;
+
+            int h = Arrays.hashCode(this.fractions);
+            h = h * 31 + Arrays.hashCode(this.colors);
+            h = h * 31 + cycleMethod.hashCode();
+            h = h * 31 + colorSpace.hashCode();
+            hash = h * 31 + System.identityHashCode(dataModel);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof TableKey)) {
+                return false;
+            }
+            TableKey k = (TableKey)o;
+            return hash == k.hash
+                && cycleMethod == k.cycleMethod
+                && colorSpace == k.colorSpace
+                && dataModel == k.dataModel
+                && Arrays.equals(fractions, k.fractions)
+                && Arrays.equals(colors, k.colors);
+        }
+    }
+
+    /**
+     * The gradient tables of a paint, and the values computed with
+     * them.
+     */
+    private static final class Tables {
+
+        private final ColorModel dataModel;
+        private final boolean isSimpleLookup;
+        private final boolean hasDiscontinuity;
+        private final int fastGradientArraySize;
+        private final int[] gradient;
+        private final int[][] gradients;
+        private final int gradientAverage;
+        private final int transparencyTest;
+
+        Tables(MultipleGradientPaintContext ctx) {
+            dataModel             = ctx.dataModel;
+            isSimpleLookup        = ctx.isSimpleLookup;
+            hasDiscontinuity      = ctx.hasDiscontinuity;
+            fastGradientArraySize = ctx.fastGradientArraySize;
+            gradient              = ctx.gradient;
+            gradients             = ctx.gradients;
+            gradientAverage       = ctx.gradientAverage;
+            transparencyTest      = ctx.transparencyTest;
+        }
+
+        void restore(MultipleGradientPaintContext ctx) {
+            ctx.dataModel             = dataModel;
+            ctx.isSimpleLookup        = isSimpleLookup;
+            ctx.hasDiscontinuity      = hasDiscontinuity;
+            ctx.fastGradientArraySize = fastGradientArraySize;
+            ctx.gradient              = gradient;
+            ctx.gradients             = gradients;
+            ctx.gradientsLength       = gradients.length;
+            ctx.gradientAverage       = gradientAverage;
+            ctx.transparencyTest      = transparencyTest;
+        }
+    }
+}
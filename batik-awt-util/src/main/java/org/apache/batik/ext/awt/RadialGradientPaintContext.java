@@ -26,6 +26,8 @@ import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.ColorModel;
 
+import org.apache.batik.ext.awt.image.rendered.SpanTask;
+
 /**
  * Provides the actual implementation for the RadialGradientPaint.
  * This is where the pixel processing is done.  A RadialGradienPaint
@@ -349,7 +351,7 @@ final class RadialGradientPaintContext extends MultipleGradientPaintContext {
     private static final int MAX_PRECISION = 256;
 
     /** Square root lookup table */
-    private int[] sqrtLutFixed = new int[MAX_PRECISION];
+    private int[] sqrtLutFixed;
 
     /**
      * Build square root lookup table
@@ -362,7 +364,8 @@ final class RadialGradientPaintContext extends MultipleGradientPaintContext {
         // The last two values are the same so that linear square root
         // interpolation can happen on the maximum reachable element in the
         // lookup table (precision-2)
-        int[] workTbl = sqrtLutFixed;      // local is cheaper
+        int[] workTbl = new int[MAX_PRECISION];
+        sqrtLutFixed = workTbl;
         int i;
         for (i = 0; i < MAX_PRECISION - 1; i++) {
             workTbl[i] = (int)Math.sqrt(i*sqStepFloat);
@@ -371,136 +374,89 @@ final class RadialGradientPaintContext extends MultipleGradientPaintContext {
         invSqStepFloat = 1.0f/sqStepFloat;
     }
 
+    /**
+     * The number of pixels below which the rows of a raster are not
+     * filled by several tasks.
+     */
+    static final int MIN_TASK_PIXELS = 1 << 14;
+
     /** Fill the raster, cycling the gradient colors when a point falls outside
      *  of the perimeter of the 100% stop circle.
      *
-     *  This calculation first computes the intersection point of the line
-     *  from the focus through the current point in the raster, and the
-     *  perimeter of the gradient circle.
+     *  The position g of a point P along the line from the focus F
+     *  through P to the perimeter of the circle of center C and radius
+     *  r is given by, with d = P - F and e = F - C:
      *
-     *  Then it determines the percentage distance of the current point along
-     *  that line (focus is 0%, perimeter is 100%).
-     *
-     *  Equation of a circle centered at (a,b) with radius r:
-     *  (x-a)^2 + (y-b)^2 = r^2
-     *  Equation of a line with slope m and y-intercept b
-     *  y = mx + b
-     *  replacing y in the cirlce equation and solving using the quadratic
-     *  formula produces the following set of equations.  Constant factors have
-     *  been extracted out of the inner loop.
+     *  g = (e.d + sqrt((e.d)^2 + |d|^2 (r^2 - |e|^2))) / (r^2 - |e|^2)
      *
+     *  Along a row, e.d is linear and the discriminant quadratic in the
+     *  column, so both are computed incrementally by forward
+     *  differencing, which leaves a single square root per pixel.
+     *  Large rasters are filled by bands of rows in parallel.
      */
-    private void cyclicCircularGradientFillRaster(int[] pixels, int off,
+    private void cyclicCircularGradientFillRaster(final int[] pixels,
+                                                  final int off,
                                                   int adjust,
-                                                  int x, int y,
-                                                  int w, int h) {
-        // Constant part of the C factor of the quadratic equation
-        final double constC =
-            -(radiusSq) + (centerX * centerX) + (centerY * centerY);
-        double A; //coefficient of the quadratic equation (Ax^2 + Bx + C = 0)
-        double B; //coefficient of the quadratic equation
-        double C; //coefficient of the quadratic equation
-        double slope; //slope of the focus-perimeter line
-        double yintcpt; //y-intercept of the focus-perimeter line
-        double solutionX;//intersection with circle X coordinate
-        double solutionY;//intersection with circle Y coordinate
-               final float constX = (a00*x) + (a01*y) + a02;//const part of X coord
-        final float constY = (a10*x) + (a11*y) + a12; //const part of Y coord
-               final float precalc2 = 2 * centerY;//const in inner loop quad. formula
-        final float precalc3 =-2 * centerX;//const in inner loop quad. formula
-        float X; // User space point X coordinate
-        float Y; // User space point Y coordinate
-        float g;//value between 0 and 1 specifying position in the gradient
-        float det; //determinant of quadratic formula (should always be >0)
-        float currentToFocusSq;//sq distance from the current pt. to focus
-        float intersectToFocusSq;//sq distance from the intersect pt. to focus
-        float deltaXSq; //temp variable for a change in X squared.
-        float deltaYSq; //temp variable for a change in Y squared.
-        int indexer = off; //index variable for pixels array
-        int i, j; //indexing variables for FOR loops
-        int pixInc = w+adjust;//incremental index change for pixels array
-
-        for (j = 0; j < h; j++) { //for every row
-
-            X = (a01*j) + constX; //constants from column to column
-            Y = (a11*j) + constY;
-
-            //for every column (inner loop begins here)
-            for (i = 0; i < w; i++) {
-
-                // special case to avoid divide by zero or very near zero
-                if (((X-focusX)>-0.000001f) &&
-                    ((X-focusX)< 0.000001f)) {
-                    solutionX = focusX;
-
-                    solutionY = centerY;
-
-                    solutionY += (Y > focusY)?trivial:-trivial;
+                                                  final int x, final int y,
+                                                  final int w, int h) {
+        final int scan = w+adjust;
+        SpanTask.run(new SpanTask.Body() {
+                public void compute(int start, int end) {
+                    cyclicCircularGradientFillRows(pixels, off, scan,
+                                                   x, y, w, start, end);
                 }
+            }, 0, h, SpanTask.minSpan(MIN_TASK_PIXELS, w));
+    }
 
-                else {
-
-                    //slope of the focus-current line
-                    slope =   (Y - focusY) / (X - focusX);
-
-                    yintcpt = Y - (slope * X); //y-intercept of that same line
-
-                    //use the quadratic formula to calculate the intersection
-                    //point
-                    A = (slope * slope) + 1;
-
-                    B =  precalc3 + (-2 * slope * (centerY - yintcpt));
-
-                    C =  constC + (yintcpt* (yintcpt - precalc2));
-
-                    det = (float)Math.sqrt((B * B) - ( 4 * A * C));
-
-                    solutionX = -B;
-
-                    //choose the positive or negative root depending
-                    //on where the X coord lies with respect to the focus.
-                    solutionX += (X < focusX)?-det:det;
-
-                    solutionX = solutionX / (2 * A);//divisor
-
-                    solutionY = (slope * solutionX) + yintcpt;
-                }
-
-                //calculate the square of the distance from the current point
-                //to the focus and the square of the distance from the
-                //intersection point to the focus. Want the squares so we can
-                //do 1 square root after division instead of 2 before.
-
-                deltaXSq = (float)solutionX - focusX;
-                deltaXSq = deltaXSq * deltaXSq;
-
-                deltaYSq = (float)solutionY - focusY;
-                deltaYSq = deltaYSq * deltaYSq;
-
-                intersectToFocusSq = deltaXSq + deltaYSq;
-
-                deltaXSq = X - focusX;
-                deltaXSq = deltaXSq * deltaXSq;
-
-                deltaYSq = Y - focusY;
-                deltaYSq = deltaYSq * deltaYSq;
-
-                currentToFocusSq = deltaXSq + deltaYSq;
-
-                //want the percentage (0-1) of the current point along the
-                //focus-circumference line
-                g = (float)Math.sqrt(currentToFocusSq / intersectToFocusSq);
-
-                //Get the color at this point
-                pixels[indexer + i] = indexIntoGradientsArrays(g);
-
-                X += a00; //incremental change in X, Y
-                Y += a10;
-            } //end inner loop
-            indexer += pixInc;
-        } //end outer loop
+    /**
+     * Fills rows <code>start</code> to <code>end</code> (excluded) of
+     * the raster.
+     */
+    private void cyclicCircularGradientFillRows(int[] pixels, int off,
+                                                int scan,
+                                                int x, int y, int w,
+                                                int start, int end) {
+        final double ex = focusX - centerX;
+        final double ey = focusY - centerY;
+        final double k  = radiusSq - (ex * ex + ey * ey);
+        final double invK = 1 / k;
+
+        // Changes of d and e.d from column to column.
+        final double ddx = a00;
+        final double ddy = a10;
+        final double edStep = ex * ddx + ey * ddy;
+        final double stepSq = ddx * ddx + ddy * ddy;
+        final double discDD = 2 * (edStep * edStep + k * stepSq);
+
+        for (int j = start; j < end; j++) {
+            int indexer = off + j * scan;
+
+            // d for the first pixel of the row
+            double dx = ((double)a00 * x + (double)a01 * (y + j) + a02)
+                - focusX;
+            double dy = ((double)a10 * x + (double)a11 * (y + j) + a12)
+                - focusY;
+
+            double ed   = ex * dx + ey * dy;
+            double disc = ed * ed + k * (dx * dx + dy * dy);
+            double discD = 2 * ed * edStep + edStep * edStep
+                + k * (2 * (dx * ddx + dy * ddy) + stepSq);
+
+            for (int end1 = indexer + w; indexer < end1; indexer++) {
+                // Rounding errors may make it slightly negative near
+                // the focus.
+                double g = (disc > 0) ? ed + Math.sqrt(disc) : ed;
+                pixels[indexer] = indexIntoGradientsArrays((float)(g * invK));
+
+                ed    += edStep;
+                disc  += discD;
+                discD += discDD;
+            }
+        }
     }
 
+    /** Gradient values of the previous row, kept between calls */
+    private double[] prevGs;
 
     /** Fill the raster, cycling the gradient colors when a point
      *  falls outside of the perimeter of the 100% stop circle. Use
@@ -540,7 +496,11 @@ final class RadialGradientPaintContext extends MultipleGradientPaintContext {
         int i, j; //indexing variables for FOR loops
         int indexer = off-1; //index variable for pixels array
 
-        double [] prevGs = new double[w+1];
+        double [] prevGs = this.prevGs;
+        if (prevGs == null || prevGs.length < w+1) {
+            prevGs = new double[w+1];
+            this.prevGs = prevGs;
+        }
         double deltaXSq, deltaYSq;
         double solutionX, solutionY;
         double slope, yintcpt, A, B, C, det;
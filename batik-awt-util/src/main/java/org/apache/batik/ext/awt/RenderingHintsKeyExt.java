@@ -77,9 +77,19 @@ public final class RenderingHintsKeyExt {
     public static final Object VALUE_AVOID_TILE_PAINTING_OFF = new Object();
     public static final Object VALUE_AVOID_TILE_PAINTING_DEFAULT = new Object();
 
+    /**
+     * Hint giving the number of threads a renderer may use to compute
+     * independent tiles of its rendering in parallel.  The value is an
+     * Integer, values less than two mean tiles are computed on the
+     * calling thread.  The GVT tree must not be modified while such a
+     * rendering is in progress.
+     */
+    public static final RenderingHints.Key KEY_TILE_PARALLELISM;
+
     static {
         int base = 10100;
         RenderingHints.Key trans=null, aoi=null, bi=null, cs=null, atp=null;
+        RenderingHints.Key tp=null;
         while (true) {
             int val = base;
 
@@ -89,6 +99,7 @@ public final class RenderingHintsKeyExt {
                 bi    = new BufferedImageHintKey (val++);
                 cs    = new ColorSpaceHintKey    (val++);
                 atp   = new AvoidTilingHintKey   (val++);
+                tp    = new TileParallelismHintKey(val++);
             } catch (Exception e) {
                 System.err.println
                     ("You have loaded the Batik jar files more than once\n" +
@@ -106,6 +117,7 @@ public final class RenderingHintsKeyExt {
         KEY_BUFFERED_IMAGE      = bi;
         KEY_COLORSPACE          = cs;
         KEY_AVOID_TILE_PAINTING = atp;
+        KEY_TILE_PARALLELISM    = tp;
     }
 
     /**
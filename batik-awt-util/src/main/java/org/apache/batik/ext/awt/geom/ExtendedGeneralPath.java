@@ -462,6 +462,68 @@ public class ExtendedGeneralPath implements ExtendedShape, Cloneable {
         }
     }
 
+    /**
+     * Appends segments held in arrays, in the form returned by an
+     * {@link ExtendedPathIterator}: one type per segment, followed in
+     * <code>segValues</code> by the two, four, six or seven values of
+     * each SEG_MOVETO or SEG_LINETO, SEG_QUADTO, SEG_CUBICTO and SEG_ARCTO
+     * segment.  The flags of an arc are stored as 0 or 1.  This is the
+     * same as calling the corresponding methods in turn, but locks the
+     * path only once.
+     *
+     * @param segTypes the segment types.
+     * @param numSegs the number of segments to append.
+     * @param segValues the segment values.
+     */
+    public synchronized void append(int[] segTypes, int numSegs,
+                                    float[] segValues) {
+        int n = 0;
+        for (int i = 0; i < numSegs; i++) {
+            switch (segTypes[i]) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:     n += 2; break;
+            case PathIterator.SEG_QUADTO:     n += 4; break;
+            case PathIterator.SEG_CUBICTO:    n += 6; break;
+            case ExtendedPathIterator.SEG_ARCTO: n += 7; break;
+            }
+        }
+        ensureCapacity(numSegs, n);
+
+        int v = 0;
+        for (int i = 0; i < numSegs; i++) {
+            switch (segTypes[i]) {
+            case PathIterator.SEG_CLOSE:
+                closePath();
+                break;
+            case PathIterator.SEG_MOVETO:
+                moveTo(segValues[v], segValues[v + 1]);
+                v += 2;
+                break;
+            case PathIterator.SEG_LINETO:
+                lineTo(segValues[v], segValues[v + 1]);
+                v += 2;
+                break;
+            case PathIterator.SEG_QUADTO:
+                quadTo(segValues[v],     segValues[v + 1],
+                       segValues[v + 2], segValues[v + 3]);
+                v += 4;
+                break;
+            case PathIterator.SEG_CUBICTO:
+                curveTo(segValues[v],     segValues[v + 1],
+                        segValues[v + 2], segValues[v + 3],
+                        segValues[v + 4], segValues[v + 5]);
+                v += 6;
+                break;
+            case ExtendedPathIterator.SEG_ARCTO:
+                arcTo(segValues[v],     segValues[v + 1], segValues[v + 2],
+                      segValues[v + 3] != 0, segValues[v + 4] != 0,
+                      segValues[v + 5], segValues[v + 6]);
+                v += 7;
+                break;
+            }
+        }
+    }
+
     /**
      * Delegates to the enclosed <code>GeneralPath</code>.
      */
@@ -702,6 +764,24 @@ public class ExtendedGeneralPath implements ExtendedShape, Cloneable {
         return null;
     }
 
+    /**
+     * Makes room for the given number of additional segments and values,
+     * so that appending them does not grow the arrays again.
+     */
+    private void ensureCapacity(int numSegs, int numValues) {
+        makeRoom(0);
+        if (numVals + numValues > values.length) {
+            float[] nvals = new float[numVals + numValues];
+            System.arraycopy(values, 0, nvals, 0, numVals);
+            values = nvals;
+        }
+        if (numSeg + numSegs > types.length) {
+            int[] ntypes = new int[numSeg + numSegs];
+            System.arraycopy(types, 0, ntypes, 0, numSeg);
+            types = ntypes;
+        }
+    }
+
     /**
      * Make sure, that the requested number of slots in vales[] are available.
      * Must be called even for numValues = 0, because it is also
@@ -47,6 +47,7 @@ import java.awt.image.renderable.RenderContext;
 import java.awt.image.renderable.RenderableImage;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.batik.ext.awt.RenderingHintsKeyExt;
 import org.apache.batik.ext.awt.image.renderable.PaintRable;
@@ -72,6 +73,55 @@ public class GraphicsUtil {
 
     public static AffineTransform IDENTITY = new AffineTransform();
 
+    /**
+     * Whether the copy methods count the bytes they copy.  This is a
+     * debugging aid, off by default.
+     */
+    private static volatile boolean countCopies;
+
+    /**
+     * The number of bytes of pixel data copied by the copy methods.  A
+     * LongAdder, so that threads rendering at once do not all update
+     * the same location on every copy.
+     */
+    private static final LongAdder copiedBytes = new LongAdder();
+
+    /**
+     * Turns the counting of the bytes copied by the copy methods on or
+     * off.
+     */
+    public static void setCountCopies(boolean count) {
+        countCopies = count;
+    }
+
+    /**
+     * Returns the number of bytes of pixel data copied between rasters
+     * by <code>copyData</code> and <code>copyRaster</code> since the
+     * last call to {@link #resetCopiedBytes}, while counting was on.
+     * Comparing it before and after a rendering shows the pixel traffic
+     * the rendering caused.
+     */
+    public static long getCopiedBytes() {
+        return copiedBytes.sum();
+    }
+
+    /**
+     * Resets the number of bytes returned by {@link #getCopiedBytes}.
+     */
+    public static void resetCopiedBytes() {
+        copiedBytes.reset();
+    }
+
+    /**
+     * Counts the copy of a w x h region of data with the given sample
+     * model.
+     */
+    private static void countCopy(SampleModel sm, int w, int h) {
+        if (!countCopies || (w <= 0) || (h <= 0)) return;
+        long sz = DataBuffer.getDataTypeSize(sm.getDataType())/8;
+        copiedBytes.add((long)w*h*sm.getNumDataElements()*sz);
+    }
+
     /**
      * Draws <code>ri</code> into <code>g2d</code>.  It does this be
      * requesting tiles from <code>ri</code> and drawing them individually
@@ -755,6 +805,7 @@ public class GraphicsUtil {
 
         int width  = x1-x0+1;
         int height = y1-y0+1;
+        countCopy(dst.getSampleModel(), width, height);
 
         SinglePixelPackedSampleModel srcSPPSM;
         srcSPPSM = (SinglePixelPackedSampleModel)src.getSampleModel();
@@ -822,6 +873,7 @@ public class GraphicsUtil {
 
         int width  = x1-x0+1;
         int [] data = null;
+        countCopy(dst.getSampleModel(), width, y1-y0+1);
 
         for (int y = y0; y <= y1 ; y++)  {
             data = src.getPixels(x0,y,width,1,data);
@@ -903,6 +955,11 @@ public class GraphicsUtil {
         int len   = srcDB.getSize();
         int banks = srcDB.getNumBanks();
         int [] offsets = srcDB.getOffsets();
+        if (countCopies) {
+            copiedBytes.add
+                ((long)len*banks*
+                 (DataBuffer.getDataTypeSize(srcDB.getDataType())/8));
+        }
         for (int b=0; b< banks; b++) {
             switch (srcDB.getDataType()) {
             case DataBuffer.TYPE_BYTE: {
@@ -1161,6 +1218,7 @@ public class GraphicsUtil {
             }
 
         // System.out.println("Using Slow CopyData");
+        countCopy(dst.getSampleModel(), srcRect.width, srcRect.height);
 
         int [] pixel = null;
         Raster         srcR  = src.getRaster();
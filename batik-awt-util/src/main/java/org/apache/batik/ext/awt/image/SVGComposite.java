@@ -30,6 +30,8 @@ import java.awt.image.Raster;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 
+import org.apache.batik.ext.awt.image.rendered.SpanTask;
+
 /**
  * This provides an implementation of all the composite rules in SVG.
  *
@@ -67,6 +69,12 @@ public class SVGComposite
         = new SVGComposite(CompositeRule.LIGHTEN);
 
 
+    /**
+     * The number of pixels below which the rows of a raster are not
+     * composited by several tasks.
+     */
+    static final int MIN_TASK_PIXELS = 1 << 12;
+
     CompositeRule rule;
 
     public CompositeRule getRule() { return rule; }
@@ -275,7 +283,7 @@ public class SVGComposite
                                            WritableRaster dstOut) {
 
             int x0=dstOut.getMinX();
-            int w =dstOut.getWidth();
+            final int w =dstOut.getWidth();
 
             int y0=dstOut.getMinY();
             int h =dstOut.getHeight();
@@ -314,14 +322,81 @@ public class SVGComposite
                  dstOutSPPSM.getOffset(x0-dstOut.getSampleModelTranslateX(),
                                        y0-dstOut.getSampleModelTranslateY()));
 
-            final int   srcAdjust  =    srcScanStride - w;
-            final int  dstInAdjust =  dstInScanStride - w;
-            final int dstOutAdjust = dstOutScanStride - w;
+            SpanTask.run(new SpanTask.Body() {
+                    public void compute(int start, int end) {
+                        precomposeRows(w, start, end,
+                                       srcPixels,    srcScanStride,
+                                       srcBase,
+                                       dstInPixels,  dstInScanStride,
+                                       dstInBase,
+                                       dstOutPixels, dstOutScanStride,
+                                       dstOutBase);
+                    }
+                }, 0, h, SpanTask.minSpan(MIN_TASK_PIXELS, w));
+        }
+
+        /**
+         * Tells whether a fully transparent source pixel leaves the
+         * destination pixel unchanged, in which case the spans of such
+         * pixels at the ends of the rows are copied from the destination
+         * instead of being composited.
+         */
+        protected boolean isClearSourceNoOp() {
+            return false;
+        }
+
+        /**
+         * Composites rows <code>start</code> to <code>end</code>
+         * (excluded).
+         */
+        protected void precomposeRows
+            (final int width, final int start, final int end,
+             final int [] srcPixels,    final int srcScanStride,
+             final int srcBase,
+             final int [] dstInPixels,  final int dstInScanStride,
+             final int dstInBase,
+             final int [] dstOutPixels, final int dstOutScanStride,
+             final int dstOutBase) {
+
+            if (!isClearSourceNoOp()) {
+                precompose_INT_PACK
+                    (width, end-start,
+                     srcPixels,    srcScanStride-width,
+                     srcBase   +start*srcScanStride,
+                     dstInPixels,  dstInScanStride-width,
+                     dstInBase +start*dstInScanStride,
+                     dstOutPixels, dstOutScanStride-width,
+                     dstOutBase+start*dstOutScanStride);
+                return;
+            }
 
-            precompose_INT_PACK(w, h,
-                                srcPixels,    srcAdjust,    srcBase,
-                                dstInPixels,  dstInAdjust,  dstInBase,
-                                dstOutPixels, dstOutAdjust, dstOutBase);
+            for (int y=start; y<end; y++) {
+                final int srcSp    = srcBase    + y*srcScanStride;
+                final int dstInSp  = dstInBase  + y*dstInScanStride;
+                final int dstOutSp = dstOutBase + y*dstOutScanStride;
+                final boolean inPlace = ((dstInPixels == dstOutPixels) &&
+                                         (dstInSp     == dstOutSp));
+                // Skip the clear spans at both ends of the row, which
+                // is where the clear pixels of most sources are.
+                int x0 = 0;
+                while ((x0 < width) && (srcPixels[srcSp+x0] == 0))
+                    x0++;
+                int x1 = width;
+                while ((x1 > x0) && (srcPixels[srcSp+x1-1] == 0))
+                    x1--;
+
+                if (x1 > x0)
+                    precompose_INT_PACK(x1-x0, 1,
+                                        srcPixels,    0, srcSp   +x0,
+                                        dstInPixels,  0, dstInSp +x0,
+                                        dstOutPixels, 0, dstOutSp+x0);
+                if (!inPlace) {
+                    System.arraycopy(dstInPixels,  dstInSp,
+                                     dstOutPixels, dstOutSp, x0);
+                    System.arraycopy(dstInPixels,  dstInSp +x1,
+                                     dstOutPixels, dstOutSp+x1, width-x1);
+                }
+            }
         }
     }
 
@@ -428,6 +503,10 @@ public class SVGComposite
             super(srcCM, dstCM);
         }
 
+        protected boolean isClearSourceNoOp() {
+            return true;
+        }
+
         public void precompose_INT_PACK
             (final int width,           final int height,
              final int [] srcPixels,    final int srcAdjust,    int srcSp,
@@ -445,6 +524,12 @@ public class SVGComposite
                     srcP   = srcPixels  [srcSp++];
                     dstInP = dstInPixels[dstInSp++];
 
+                    if ((srcP>>>24) == 255) {
+                        // Opaque source replaces the destination.
+                        dstOutPixels[dstOutSp++] = srcP;
+                        continue;
+                    }
+
                     dstM = (255-(srcP>>>24))*norm;
                     dstOutPixels[dstOutSp++] =
                         (((     srcP & 0xFF000000) +
@@ -770,6 +855,10 @@ public class SVGComposite
             super(srcCM, dstCM);
         }
 
+        protected boolean isClearSourceNoOp() {
+            return true;
+        }
+
         public void precompose_INT_PACK
             (final int width,           final int height,
              final int [] srcPixels,    final int srcAdjust,    int srcSp,
@@ -857,6 +946,10 @@ public class SVGComposite
             super(srcCM, dstCM);
         }
 
+        protected boolean isClearSourceNoOp() {
+            return true;
+        }
+
         public void precompose_INT_PACK
             (final int width,           final int height,
              final int [] srcPixels,    final int srcAdjust,    int srcSp,
@@ -1136,6 +1229,10 @@ public class SVGComposite
             super(srcCM, dstCM);
         }
 
+        protected boolean isClearSourceNoOp() {
+            return true;
+        }
+
         public void precompose_INT_PACK
             (final int width,           final int height,
              final int [] srcPixels,    final int srcAdjust,    int srcSp,
@@ -1243,6 +1340,10 @@ public class SVGComposite
             super(srcCM, dstCM);
         }
 
+        protected boolean isClearSourceNoOp() {
+            return true;
+        }
+
         public void precompose_INT_PACK
             (final int width,           final int height,
              final int [] srcPixels,    final int srcAdjust,    int srcSp,
@@ -1348,6 +1449,10 @@ public class SVGComposite
             super(srcCM, dstCM);
         }
 
+        protected boolean isClearSourceNoOp() {
+            return true;
+        }
+
         public void precompose_INT_PACK
             (final int width,           final int height,
              final int [] srcPixels,    final int srcAdjust,    int srcSp,
@@ -1473,6 +1578,10 @@ public class SVGComposite
             super(srcCM, dstCM);
         }
 
+        protected boolean isClearSourceNoOp() {
+            return true;
+        }
+
         public void precompose_INT_PACK
             (final int width,           final int height,
              final int [] srcPixels,    final int srcAdjust,    int srcSp,
@@ -0,0 +1,260 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.renderable;
+
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.color.ColorSpace;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderContext;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.ext.awt.image.SVGComposite;
+import org.apache.batik.ext.awt.image.rendered.BufferedImageCachableRed;
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+
+/**
+ * A filter whose paintings are looked up in a {@link FilterResultCache}
+ * before being computed.  The key of a painting is made of:
+ * <ul>
+ *  <li>a key given by the creator of this filter, which must identify
+ *      the operations of the filter and all their parameters;</li>
+ *  <li>the device transform, without its integer translation, and the
+ *      rendering hints;</li>
+ *  <li>a digest of the pixels of the input of the filter over the
+ *      filter bounds.</li>
+ * </ul>
+ * so a filter applied to identical content at another integer device
+ * position reuses the result, translated.  On a miss, the whole filter
+ * is painted, whatever the clip, into an image which is kept; only
+ * filters smaller than {@link FilterResultCache#getMaxResultPixels}
+ * are cached.  Renderings, and paintings which cannot be cached, are
+ * left to the filter.
+ *
+ * <p>The result of the filter must only depend on the key and on the
+ * given input, and not on the position of the input on the device: this
+ * is the case of the filters which only use the source graphic, but
+ * not of those which use the background.  The input must not change:
+ * the digest of its pixels is only computed again when the transform,
+ * the rendering hints or the device bounds of a painting change.</p>
+ *
+ * @version $Id$
+ */
+public class CachedFilterRable8Bit extends AbstractRable
+    implements PaintRable {
+
+    /**
+     * The input of the filter.
+     */
+    protected Filter input;
+
+    /**
+     * The key of the filter operations.
+     */
+    protected Object key;
+
+    protected FilterResultCache cache;
+
+    /**
+     * The transform, rendering hints and device bounds of the last
+     * digest of the input.
+     */
+    protected Object digestKey;
+
+    /**
+     * The last digest of the input.
+     */
+    protected Object digest;
+
+    /**
+     * Creates a new filter.
+     * @param filter The filter whose paintings are cached.
+     * @param input The input of <code>filter</code>, whose content is
+     *        part of the key of a painting.
+     * @param key The key of the operations of <code>filter</code>.
+     * @param cache The cache of the paintings.
+     */
+    public CachedFilterRable8Bit(Filter filter, Filter input,
+                                 Object key, FilterResultCache cache) {
+        super(filter);
+        this.input = input;
+        this.key = key;
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the filter whose paintings are cached.
+     */
+    public Filter getSource() {
+        return (Filter)srcs.get(0);
+    }
+
+    public Rectangle2D getBounds2D() {
+        return getSource().getBounds2D();
+    }
+
+    public RenderedImage createRendering(RenderContext rc) {
+        return getSource().createRendering(rc);
+    }
+
+    /**
+     * Draws the cached painting of the filter, painting it first if
+     * needed.  Returns false if the painting cannot be cached.
+     */
+    public boolean paintRable(Graphics2D g2d) {
+        // The cached image is drawn over the destination, like the
+        // filter would be painted.
+        Composite c = g2d.getComposite();
+        if (!SVGComposite.OVER.equals(c)) {
+            return false;
+        }
+        ColorSpace g2dCS = GraphicsUtil.getDestinationColorSpace(g2d);
+        if (g2dCS != ColorSpace.getInstance(ColorSpace.CS_sRGB)) {
+            return false;
+        }
+
+        // Paint in a space which only differs from the device space by
+        // an integer translation.
+        AffineTransform at = g2d.getTransform();
+        int tx = (int)Math.floor(at.getTranslateX());
+        int ty = (int)Math.floor(at.getTranslateY());
+        AffineTransform nat = AffineTransform.getTranslateInstance(-tx, -ty);
+        nat.concatenate(at);
+
+        Filter filter = getSource();
+        Rectangle2D bounds = filter.getBounds2D();
+        Rectangle devBounds = nat.createTransformedShape(bounds).getBounds();
+        if (devBounds.isEmpty() ||
+            (long)devBounds.width * devBounds.height >
+            cache.getMaxResultPixels()) {
+            return false;
+        }
+
+        RenderingHints rh = g2d.getRenderingHints();
+        // These change with every painting.
+        rh.remove(RenderingHintsKeyExt.KEY_AREA_OF_INTEREST);
+        rh.remove(RenderingHintsKeyExt.KEY_BUFFERED_IMAGE);
+
+        Object k = createKey(nat, rh, bounds, devBounds);
+        CachableRed cr = cache.get(k);
+        if (cr == null) {
+            BufferedImage bi = new BufferedImage
+                (devBounds.width, devBounds.height,
+                 BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = GraphicsUtil.createGraphics(bi, rh);
+            g.translate(-devBounds.x, -devBounds.y);
+            g.transform(nat);
+            g.clip(bounds);
+            GraphicsUtil.drawImage(g, filter);
+            g.dispose();
+            cr = new BufferedImageCachableRed(bi, devBounds.x, devBounds.y);
+            cache.put(k, cr);
+        }
+
+        g2d.setTransform(AffineTransform.getTranslateInstance(tx, ty));
+        GraphicsUtil.drawImage(g2d, cr);
+        g2d.setTransform(at);
+        return true;
+    }
+
+    /**
+     * Returns the key of a painting of the filter.
+     * @param at The transform of the painting.
+     * @param rh The rendering hints of the painting.
+     * @param bounds The bounds of the filter.
+     * @param devBounds The bounds of the filter in device space.
+     */
+    protected Object createKey(AffineTransform at, RenderingHints rh,
+                               Rectangle2D bounds, Rectangle devBounds) {
+        List k = new ArrayList(4);
+        k.add(key);
+
+        double[] m = new double[6];
+        at.getMatrix(m);
+        List matrix = new ArrayList(6);
+        for (double d : m) {
+            matrix.add(d);
+        }
+        k.add(matrix);
+        HashMap hints = new HashMap(rh);
+        k.add(hints);
+
+        // Repeated paintings, such as the scrolling of a canvas, only
+        // render the input again when the painting changes.
+        Object dk = Arrays.asList(new Object[] {
+            matrix, hints, new Rectangle(devBounds)
+        });
+        Object d;
+        synchronized (this) {
+            d = dk.equals(digestKey) ? digest : null;
+        }
+        if (d == null) {
+            d = getDigest(new RenderContext(at, bounds, rh), devBounds);
+            synchronized (this) {
+                digestKey = dk;
+                digest = d;
+            }
+        }
+        k.add(d);
+        return k;
+    }
+
+    /**
+     * Returns a digest of the pixels of the input over the bounds of
+     * the filter.
+     */
+    protected Object getDigest(RenderContext rc, Rectangle devBounds) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        RenderedImage ri = input.createRendering(rc);
+        if (ri != null) {
+            Rectangle r = devBounds.intersection
+                (new Rectangle(ri.getMinX(), ri.getMinY(),
+                               ri.getWidth(), ri.getHeight()));
+            if (!r.isEmpty()) {
+                Raster ras = ri.getData(r);
+                int[] px = ras.getPixels(r.x, r.y, r.width, r.height,
+                                         (int[])null);
+                ByteBuffer bb = ByteBuffer.allocate(16 + px.length * 4);
+                bb.putInt(r.x).putInt(r.y).putInt(r.width).putInt(r.height);
+                bb.asIntBuffer().put(px);
+                md.update(bb.array());
+            }
+        }
+        return ByteBuffer.wrap(md.digest());
+    }
+}
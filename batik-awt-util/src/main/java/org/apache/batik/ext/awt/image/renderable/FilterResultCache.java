@@ -0,0 +1,154 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.renderable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+
+/**
+ * A cache of computed filter results, shared by the
+ * {@link CachedFilterRable8Bit}s of one or more documents.  Results are
+ * found by content: their key describes the filter, the device
+ * transform and the pixels of the filter input, so that identical
+ * filters applied to identical content are only computed once.
+ *
+ * <p>The total size of the results is bounded; the least recently used
+ * results are dropped first.  Results larger than a quarter of that
+ * size are not kept.</p>
+ *
+ * @version $Id$
+ */
+public class FilterResultCache {
+
+    /**
+     * The default maximum number of pixels of the cached results.
+     */
+    public static final int DEFAULT_MAX_PIXELS = 4 * 1024 * 1024;
+
+    /**
+     * The results, from the least to the most recently used.
+     */
+    protected Map results = new LinkedHashMap(16, 0.75f, true);
+
+    protected long maxPixels;
+    protected long pixels;
+
+    protected int hitCount;
+    protected int missCount;
+
+    /**
+     * Creates a cache of the default size.
+     */
+    public FilterResultCache() {
+        this(DEFAULT_MAX_PIXELS);
+    }
+
+    /**
+     * Creates a cache.
+     * @param maxPixels The maximum number of pixels of the cached results.
+     */
+    public FilterResultCache(long maxPixels) {
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Returns the maximum number of pixels of the cached results.
+     */
+    public long getMaxPixels() {
+        return maxPixels;
+    }
+
+    /**
+     * Returns the maximum number of pixels of a result worth caching.
+     */
+    public long getMaxResultPixels() {
+        return maxPixels / 4;
+    }
+
+    /**
+     * Returns the result with the given key, or null.
+     */
+    public synchronized CachableRed get(Object key) {
+        CachableRed cr = (CachableRed)results.get(key);
+        if (cr == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return cr;
+    }
+
+    /**
+     * Adds a result, whose pixels must all be computed already, and
+     * drops the least recently used results if needed.
+     */
+    public synchronized void put(Object key, CachableRed result) {
+        long size = getSize(result);
+        if (size > getMaxResultPixels()) {
+            return;
+        }
+        CachableRed old = (CachableRed)results.put(key, result);
+        if (old != null) {
+            pixels -= getSize(old);
+        }
+        pixels += size;
+
+        Iterator i = results.values().iterator();
+        while (pixels > maxPixels && i.hasNext()) {
+            pixels -= getSize((CachableRed)i.next());
+            i.remove();
+        }
+    }
+
+    /**
+     * Drops all the results.
+     */
+    public synchronized void clear() {
+        results.clear();
+        pixels = 0;
+    }
+
+    /**
+     * Returns the number of cached results.
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * Returns the number of lookups which found a result.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups which found no result.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    private static long getSize(CachableRed cr) {
+        return (long)cr.getWidth() * cr.getHeight();
+    }
+}
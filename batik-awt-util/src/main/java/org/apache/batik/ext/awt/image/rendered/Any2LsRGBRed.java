@@ -97,6 +97,13 @@ public class Any2LsRGBRed extends AbstractRed {
         // System.out.println("");
     }
 
+    /**
+     * Lookup table for premultiplied sRGB to linear lookups, as built by
+     * {@link Any2sRGBRed#makeUnpremultLut}.
+     */
+    private static final byte[] sRGBToLsRGBUnpremultLut =
+        Any2sRGBRed.makeUnpremultLut(sRGBToLsRGBLut);
+
     public WritableRaster copyData(WritableRaster wr) {
         // Get my source.
         CachableRed src   = (CachableRed)getSources().get(0);
@@ -107,6 +114,12 @@ public class Any2LsRGBRed extends AbstractRed {
         if (srcIssRGB &&
             Any2sRGBRed.is_INT_PACK_COMP(wr.getSampleModel())) {
             src.copyData(wr);
+            if (srcCM.hasAlpha() && srcCM.isAlphaPremultiplied() &&
+                (wr.getNumBands() == 4)) {
+                Any2sRGBRed.applyUnpremultLut_INT
+                    (wr, sRGBToLsRGBUnpremultLut);
+                return wr;
+            }
             if (srcCM.hasAlpha())
                 GraphicsUtil.coerceData(wr, srcCM, false);
             Any2sRGBRed.applyLut_INT(wr, sRGBToLsRGBLut);
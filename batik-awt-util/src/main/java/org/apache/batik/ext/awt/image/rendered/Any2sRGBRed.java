@@ -152,6 +152,78 @@ public class Any2sRGBRed extends AbstractRed {
         return wr;
     }
 
+    /**
+     * Lookup table for premultiplied linear to sRGB lookups, as built by
+     * {@link #makeUnpremultLut}.
+     */
+    private static final byte[] linearToSRGBUnpremultLut =
+        makeUnpremultLut(linearToSRGBLut);
+
+    /**
+     * Builds a table which divides a color component by alpha and then
+     * applies <code>lut</code> to it, in a single lookup.  It is indexed
+     * by (alpha&lt;&lt;8 | component), and rounds like
+     * {@link GraphicsUtil#divideAlpha}.
+     */
+    public static byte[] makeUnpremultLut(int[] lut) {
+        byte[] ret = new byte[256*256];
+        for (int a=0; a<256; a++) {
+            int aFP = (a == 0) ? 0 : (0x00FF0000/a);
+            for (int c=0; c<256; c++) {
+                int v;
+                if      (a == 0)   v = 255;
+                else if (a == 255) v = c;
+                else               v = ((c*aFP)&0xFF0000)>>16;
+                ret[(a<<8)|c] = (byte)lut[v];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Divides the colors of an INT packed ARGB premultiplied raster by
+     * alpha and applies a table to them, in place, using a table from
+     * {@link #makeUnpremultLut}.  This gives the result of
+     * {@link GraphicsUtil#divideAlpha} followed by
+     * {@link #applyLut_INT} in a single pass.
+     */
+    public static WritableRaster applyUnpremultLut_INT(WritableRaster wr,
+                                                       final byte []lut) {
+        SinglePixelPackedSampleModel sm =
+            (SinglePixelPackedSampleModel)wr.getSampleModel();
+        DataBufferInt db = (DataBufferInt)wr.getDataBuffer();
+
+        final int     srcBase
+            = (db.getOffset() +
+               sm.getOffset(wr.getMinX()-wr.getSampleModelTranslateX(),
+                            wr.getMinY()-wr.getSampleModelTranslateY()));
+        // Access the pixel data array
+        final int[] pixels   = db.getBankData()[0];
+        final int width      = wr.getWidth();
+        final int height     = wr.getHeight();
+        final int scanStride = sm.getScanlineStride();
+
+        int end, pix, a;
+
+        for (int y=0; y<height; y++) {
+            int sp  = srcBase + y*scanStride;
+            end = sp + width;
+
+            while (sp<end) {
+                pix = pixels[sp];
+                a   = (pix>>>16)&0xFF00;
+                pixels[sp] =
+                    ((     pix                        &0xFF000000)|
+                     ((lut[a|((pix>>>16)&0xFF)]&0xFF)<<16) |
+                     ((lut[a|((pix>>> 8)&0xFF)]&0xFF)<< 8) |
+                     ((lut[a|((pix     )&0xFF)]&0xFF)    ));
+                sp++;
+            }
+        }
+
+        return wr;
+    }
+
     public WritableRaster copyData(WritableRaster wr) {
 
         // Get my source.
@@ -164,6 +236,11 @@ public class Any2sRGBRed extends AbstractRed {
         if (srcIsLsRGB &&
             is_INT_PACK_COMP(wr.getSampleModel())) {
             src.copyData(wr);
+            if (srcCM.hasAlpha() && srcCM.isAlphaPremultiplied() &&
+                (wr.getNumBands() == 4)) {
+                applyUnpremultLut_INT(wr, linearToSRGBUnpremultLut);
+                return wr;
+            }
             if (srcCM.hasAlpha())
                 GraphicsUtil.coerceData(wr, srcCM, false);
             applyLut_INT(wr, linearToSRGBLut);
@@ -65,6 +65,11 @@ public class DiffuseLightingRed extends AbstractRed{
      */
     private boolean linear;
 
+    /**
+     * The number of pixels below which the rows of a region are not
+     * computed by several tasks.
+     */
+    static final int MIN_TASK_PIXELS = 1 << 13;
 
     public DiffuseLightingRed(double kd,
                               Light light,
@@ -95,8 +100,6 @@ public class DiffuseLightingRed extends AbstractRed{
     }
 
     public WritableRaster copyData(WritableRaster wr){
-        final double[] lightColor = light.getColor(linear);
-        
         final int w = wr.getWidth();
         final int h = wr.getHeight();
         final int minX = wr.getMinX();
@@ -114,8 +117,33 @@ public class DiffuseLightingRed extends AbstractRed{
                              minY-wr.getSampleModelTranslateY()));
 
         final int scanStride = sppsm.getScanlineStride();
+
+        // System.out.println("Getting diffuse red : " + minX + "/" + minY + "/" + w + "/" + h);
+        final double[][][] NA = bumpMap.getNormalArray(minX, minY, w, h);
+
+        SpanTask.run(new SpanTask.Body() {
+                public void compute(int start, int end) {
+                    genRows(pixels, offset, scanStride, minX, minY, w, NA,
+                            start, end);
+                }
+            }, 0, h, SpanTask.minSpan(MIN_TASK_PIXELS, w));
+        
+        return wr;
+    }
+
+    /**
+     * Computes rows <code>start</code> to <code>end</code> (excluded)
+     * of a region.
+     */
+    private void genRows(final int[] pixels, final int offset,
+                         final int scanStride, final int minX,
+                         final int minY, final int w,
+                         final double[][][] NA,
+                         final int start, final int end) {
+        final double[] lightColor = light.getColor(linear);
+
         final int adjust = scanStride - w;
-        int p = offset;
+        int p = offset + start*scanStride;
         int r=0, g=0, b=0;
         int i=0, j=0;
 
@@ -125,11 +153,10 @@ public class DiffuseLightingRed extends AbstractRed{
         double NL = 0;
 
         // final double[] L = new double[3];
-        final double[][][] NA = bumpMap.getNormalArray(minX, minY, w, h);
         if(!light.isConstant()){
             final double[][] LA = new double[w][3];
 
-            for(i=0; i<h; i++){
+            for(i=start; i<end; i++){
                 final double [][] NR = NA[i];
                 light.getLightRow(x, y+i*scaleY, scaleX, w, NR, LA);
                 for(j=0; j<w; j++){
@@ -173,7 +200,7 @@ public class DiffuseLightingRed extends AbstractRed{
             final double[] L = new double[3];
             light.getLight(0, 0, 0, L);
 
-            for(i=0; i<h; i++){
+            for(i=start; i<end; i++){
                 final double [][] NR = NA[i];
                 for(j=0; j<w; j++){
                     // Get Normal 
@@ -206,8 +233,6 @@ public class DiffuseLightingRed extends AbstractRed{
                 p += adjust;
             }
         }
-        
-        return wr;
     }
 
 }
@@ -27,6 +27,7 @@ import java.awt.image.ColorModel;
 import java.awt.image.ComponentColorModel;
 import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
 import java.awt.image.DirectColorModel;
 import java.awt.image.Raster;
 import java.awt.image.SampleModel;
@@ -108,6 +109,18 @@ public class FormatRed extends AbstractRed {
         CachableRed cr    = getSource();
         ColorModel  srcCM = cr.getColorModel();
         SampleModel srcSM = cr.getSampleModel();
+
+        if (srcCM.hasAlpha() && cm.hasAlpha() &&
+            GraphicsUtil.is_INT_PACK_Data(srcSM, true) &&
+            GraphicsUtil.is_INT_PACK_Data(wr.getSampleModel(), true)) {
+            // Same layout: let the source write straight into wr and
+            // fix the alpha premultiplication there.
+            cr.copyData(wr);
+            if (srcCM.isAlphaPremultiplied() != cm.isAlphaPremultiplied())
+                coerceData_INT_PACK(wr, cm.isAlphaPremultiplied());
+            return wr;
+        }
+
         srcSM = srcSM.createCompatibleSampleModel(wr.getWidth(),
                                                   wr.getHeight());
         WritableRaster srcWR;
@@ -127,6 +140,59 @@ public class FormatRed extends AbstractRed {
         return wr;
     }
 
+    /**
+     * Multiplies or divides the colors of an INT packed ARGB raster by
+     * their alpha, in place, rounding like
+     * {@link GraphicsUtil#copyData(BufferedImage,BufferedImage)}.
+     */
+    protected static void coerceData_INT_PACK(WritableRaster wr,
+                                              boolean newAlphaPreMult) {
+        SinglePixelPackedSampleModel sppsm;
+        sppsm = (SinglePixelPackedSampleModel)wr.getSampleModel();
+
+        final int width  = wr.getWidth();
+        final int height = wr.getHeight();
+        final int scanStride = sppsm.getScanlineStride();
+        DataBufferInt db = (DataBufferInt)wr.getDataBuffer();
+        final int base
+            = (db.getOffset() +
+               sppsm.getOffset(wr.getMinX()-wr.getSampleModelTranslateX(),
+                               wr.getMinY()-wr.getSampleModelTranslateY()));
+        final int[] pixels = db.getBankData()[0];
+
+        for (int y=0; y<height; y++) {
+            int sp = base + y*scanStride;
+            final int end = sp + width;
+            if (newAlphaPreMult) {
+                final int fpNorm = (1<<24)/255, pt5 = 1<<23;
+                for (; sp < end; sp++) {
+                    int pixel = pixels[sp];
+                    int a = pixel>>>24;
+                    if (a == 255) continue;
+                    int alpha = fpNorm*a;
+                    pixels[sp] =
+                        ((a << 24) |
+                         ((((pixel>>16)&0xFF)*alpha+pt5)>>>24) << 16 |
+                         ((((pixel>> 8)&0xFF)*alpha+pt5)>>>24) <<  8 |
+                         ((((pixel    )&0xFF)*alpha+pt5)>>>24));
+                }
+            } else {
+                final int fpNorm = 0x00FF0000, pt5 = 1<<15;
+                for (; sp < end; sp++) {
+                    int pixel = pixels[sp];
+                    int a = pixel>>>24;
+                    if ((a == 0) || (a == 255)) continue;
+                    int ialpha = fpNorm/a;
+                    pixels[sp] =
+                        ((a << 24) |
+                         (((((pixel>>16)&0xFF)*ialpha+pt5)>>>16)&0xFF) << 16 |
+                         (((((pixel>> 8)&0xFF)*ialpha+pt5)>>>16)&0xFF) <<  8 |
+                         (((((pixel    )&0xFF)*ialpha+pt5)>>>16)&0xFF));
+                }
+            }
+        }
+    }
+
     public static SampleModel makeSampleModel(CachableRed cr, ColorModel cm) {
         SampleModel srcSM = cr.getSampleModel();
         return cm.createCompatibleSampleModel(srcSM.getWidth(),
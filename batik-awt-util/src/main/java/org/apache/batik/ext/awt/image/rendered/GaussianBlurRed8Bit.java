@@ -304,6 +304,18 @@ public class GaussianBlurRed8Bit extends AbstractRed {
         return wr;
     }
 
+    /**
+     * The number of pixels below which a box filter pass is not split
+     * into several tasks.
+     */
+    static final int MIN_TASK_PIXELS = 1 << 15;
+
+    /**
+     * The minimum number of columns of a task of the vertical pass, so
+     * that each row is read in long enough runs.
+     */
+    static final int MIN_TASK_COLUMNS = 64;
+
     private WritableRaster boxFilterH(Raster src, WritableRaster dest,
                                       int skipX, int skipY,
                                       int boxSz, int loc) {
@@ -315,110 +327,9 @@ public class GaussianBlurRed8Bit extends AbstractRed {
         if (w < (2*skipX)+boxSz) return dest;
         if (h < (2*skipY))       return dest;
 
-        final SinglePixelPackedSampleModel srcSPPSM =
-            (SinglePixelPackedSampleModel)src.getSampleModel();
-
-        final SinglePixelPackedSampleModel dstSPPSM =
-            (SinglePixelPackedSampleModel)dest.getSampleModel();
-
-        // Stride is the distance between two consecutive column elements,
-        // in the one-dimention dataBuffer
-        final int srcScanStride = srcSPPSM.getScanlineStride();
-        final int dstScanStride = dstSPPSM.getScanlineStride();
-
-        // Access the integer buffer for each image.
-        DataBufferInt srcDB = (DataBufferInt)src.getDataBuffer();
-        DataBufferInt dstDB = (DataBufferInt)dest.getDataBuffer();
-
-        // Offset defines where in the stack the real data begin
-        final int srcOff
-            = (srcDB.getOffset() +
-               srcSPPSM.getOffset
-               (src.getMinX()-src.getSampleModelTranslateX(),
-                src.getMinY()-src.getSampleModelTranslateY()));
-        final int dstOff
-            = (dstDB.getOffset() +
-               dstSPPSM.getOffset
-               (dest.getMinX()-dest.getSampleModelTranslateX(),
-                dest.getMinY()-dest.getSampleModelTranslateY()));
-
-        // Access the pixel value array
-        final int[] srcPixels  = srcDB.getBankData()[0];
-        final int[] destPixels = dstDB.getBankData()[0];
-
-        final int [] buffer = new int [boxSz];
-        int curr, prev;
-
-          // Fixed point normalization factor (8.24)
-        int scale = (1<<24)/boxSz;
-
-        /*
-         * System.out.println("Info: srcOff: " + srcOff +
-         *                    " x: " + skipX +
-         *                    " y: " + skipY +
-         *                    " w: " + w +
-         *                    " h: " + h +
-         *                    " boxSz " + boxSz +
-         *                    " srcStride: " + srcScanStride);
-         */
-
-        for (int y=skipY; y<(h-skipY); y++) {
-            int sp     = srcOff + y*srcScanStride;
-            int dp     = dstOff + y*dstScanStride;
-            int rowEnd = sp + (w-skipX);
-
-            int k    = 0;
-            int sumA = 0;
-            int sumR = 0;
-            int sumG = 0;
-            int sumB = 0;
-
-            sp += skipX;
-            int end  = sp+boxSz;
-
-            while (sp < end) {
-                curr = buffer[k] = srcPixels[sp];
-                sumA += (curr>>> 24);
-                sumR += (curr >> 16)&0xFF;
-                sumG += (curr >>  8)&0xFF;
-                sumB += (curr      )&0xFF;
-                k++;
-                sp++;
-            }
-
-            dp += skipX + loc;
-            prev = destPixels[dp] = (( (sumA*scale)&0xFF000000)       |
-                                     (((sumR*scale)&0xFF000000)>>>8)  |
-                                     (((sumG*scale)&0xFF000000)>>>16) |
-                                     (((sumB*scale)&0xFF000000)>>>24));
-            dp++;
-            k=0;
-            while (sp < rowEnd) {
-                curr = buffer[k];
-                if (curr == srcPixels[sp]) {
-                    destPixels[dp] = prev;
-                } else {
-                    sumA -= (curr>>> 24);
-                    sumR -= (curr >> 16)&0xFF;
-                    sumG -= (curr >>  8)&0xFF;
-                    sumB -= (curr      )&0xFF;
-
-                    curr = buffer[k] = srcPixels[sp];
-
-                    sumA += (curr>>> 24);
-                    sumR += (curr >> 16)&0xFF;
-                    sumG += (curr >>  8)&0xFF;
-                    sumB += (curr      )&0xFF;
-                    prev = destPixels[dp] = (( (sumA*scale)&0xFF000000)       |
-                                             (((sumR*scale)&0xFF000000)>>>8)  |
-                                             (((sumG*scale)&0xFF000000)>>>16) |
-                                             (((sumB*scale)&0xFF000000)>>>24));
-                }
-                k = (k+1)%boxSz;
-                sp++;
-                dp++;
-            }
-        }
+        SpanTask.run(new BoxFilter(src, dest, false, skipX, skipY,
+                                   boxSz, loc),
+                     skipY, h-skipY, SpanTask.minSpan(MIN_TASK_PIXELS, w));
         return dest;
     }
 
@@ -433,113 +344,204 @@ public class GaussianBlurRed8Bit extends AbstractRed {
         if (w < (2*skipX))       return dest;
         if (h < (2*skipY)+boxSz) return dest;
 
-        final SinglePixelPackedSampleModel srcSPPSM =
-            (SinglePixelPackedSampleModel)src.getSampleModel();
-
-        final SinglePixelPackedSampleModel dstSPPSM =
-            (SinglePixelPackedSampleModel)dest.getSampleModel();
-
-        // Stride is the distance between two consecutive column elements,
-        // in the one-dimention dataBuffer
-        final int srcScanStride = srcSPPSM.getScanlineStride();
-        final int dstScanStride = dstSPPSM.getScanlineStride();
-
-        // Access the integer buffer for each image.
-        DataBufferInt srcDB = (DataBufferInt)src.getDataBuffer();
-        DataBufferInt dstDB = (DataBufferInt)dest.getDataBuffer();
-
-        // Offset defines where in the stack the real data begin
-        final int srcOff
-            = (srcDB.getOffset() +
-               srcSPPSM.getOffset
-               (src.getMinX()-src.getSampleModelTranslateX(),
-                src.getMinY()-src.getSampleModelTranslateY()));
-        final int dstOff
-            = (dstDB.getOffset() +
-               dstSPPSM.getOffset
-               (dest.getMinX()-dest.getSampleModelTranslateX(),
-                dest.getMinY()-dest.getSampleModelTranslateY()));
-
-
-        // Access the pixel value array
-        final int[] srcPixels  = srcDB.getBankData()[0];
-        final int[] destPixels = dstDB.getBankData()[0];
-
-        final int [] buffer = new int [boxSz];
-        int curr, prev;
-
-          // Fixed point normalization factor (8.24)
-        final int scale = (1<<24)/boxSz;
-
-        /*
-         * System.out.println("Info: srcOff: " + srcOff +
-         *                    " x: " + skipX +
-         *                    " y: " + skipY +
-         *                    " w: " + w +
-         *                    " h: " + h +
-         *                    " boxSz " + boxSz +
-         *                    " srcStride: " + srcScanStride);
-         */
+        SpanTask.run(new BoxFilter(src, dest, true, skipX, skipY,
+                                   boxSz, loc),
+                     skipX, w-skipX,
+                     Math.max(MIN_TASK_COLUMNS,
+                              SpanTask.minSpan(MIN_TASK_PIXELS, h)));
+        return dest;
+    }
 
-        for (int x=skipX; x<(w-skipX); x++) {
-            int sp = srcOff + x;
-            int dp = dstOff + x;
-            int colEnd = sp + (h-skipY)*srcScanStride;
-
-            int k=0;
-            int sumA = 0;
-            int sumR = 0;
-            int sumG = 0;
-            int sumB = 0;
-
-            sp += skipY*srcScanStride;
-            int end  = sp+(boxSz*srcScanStride);
-
-            while (sp < end) {
-                curr = buffer[k] = srcPixels[sp];
-                sumA += (curr>>> 24);
-                sumR += (curr >> 16)&0xFF;
-                sumG += (curr >>  8)&0xFF;
-                sumB += (curr      )&0xFF;
-                k++;
-                sp+=srcScanStride;
+    /**
+     * One pass of a box filter over a range of rows (horizontal pass)
+     * or of columns (vertical pass) of a packed int raster, run by a
+     * {@link SpanTask}.  The source and destination may be the same
+     * raster.
+     *
+     * <p>The channels are accumulated in separate arrays, one element
+     * per pixel, so that the inner loops are simple loops over arrays
+     * the JIT can vectorize.  The vertical pass sweeps the rows of its
+     * columns in order, keeping the running sums of all its columns,
+     * instead of walking down one column at a time.  The sums are the
+     * same whatever the order, so the result does not depend on the
+     * split.</p>
+     */
+    private static class BoxFilter implements SpanTask.Body {
+
+        final boolean vertical;
+        final int[] srcPixels, destPixels;
+        final int srcOff, dstOff;
+        final int srcScanStride, dstScanStride;
+        final int w, h;
+        final int skipX, skipY;
+        final int boxSz, loc;
+
+        BoxFilter(Raster src, WritableRaster dest, boolean vertical,
+                  int skipX, int skipY, int boxSz, int loc) {
+            final SinglePixelPackedSampleModel srcSPPSM =
+                (SinglePixelPackedSampleModel)src.getSampleModel();
+
+            final SinglePixelPackedSampleModel dstSPPSM =
+                (SinglePixelPackedSampleModel)dest.getSampleModel();
+
+            // Stride is the distance between two consecutive column
+            // elements, in the one-dimention dataBuffer
+            this.srcScanStride = srcSPPSM.getScanlineStride();
+            this.dstScanStride = dstSPPSM.getScanlineStride();
+
+            // Access the integer buffer for each image.
+            DataBufferInt srcDB = (DataBufferInt)src.getDataBuffer();
+            DataBufferInt dstDB = (DataBufferInt)dest.getDataBuffer();
+
+            // Offset defines where in the stack the real data begin
+            this.srcOff
+                = (srcDB.getOffset() +
+                   srcSPPSM.getOffset
+                   (src.getMinX()-src.getSampleModelTranslateX(),
+                    src.getMinY()-src.getSampleModelTranslateY()));
+            this.dstOff
+                = (dstDB.getOffset() +
+                   dstSPPSM.getOffset
+                   (dest.getMinX()-dest.getSampleModelTranslateX(),
+                    dest.getMinY()-dest.getSampleModelTranslateY()));
+
+            // Access the pixel value array
+            this.srcPixels  = srcDB.getBankData()[0];
+            this.destPixels = dstDB.getBankData()[0];
+
+            this.vertical = vertical;
+            this.w        = src.getWidth();
+            this.h        = src.getHeight();
+            this.skipX    = skipX;
+            this.skipY    = skipY;
+            this.boxSz    = boxSz;
+            this.loc      = loc;
+        }
+
+        /**
+         * Filters the rows (horizontal pass) or the columns (vertical
+         * pass) <code>start</code> to <code>end</code> (excluded).
+         */
+        public void compute(int start, int end) {
+            if (vertical) {
+                filterColumns(start, end);
+            } else {
+                filterRows(start, end);
             }
+        }
+
+        /**
+         * Returns the packed pixel for the given channel sums.
+         */
+        private static int pack(int sumA, int sumR, int sumG, int sumB,
+                                int scale) {
+            return (( (sumA*scale)&0xFF000000)       |
+                    (((sumR*scale)&0xFF000000)>>>8)  |
+                    (((sumG*scale)&0xFF000000)>>>16) |
+                    (((sumB*scale)&0xFF000000)>>>24));
+        }
+
+        private void filterRows(int start, int end) {
+            final int len = w-2*skipX;
+            final int [] a = new int[len];
+            final int [] r = new int[len];
+            final int [] g = new int[len];
+            final int [] b = new int[len];
+            final int [] out = new int[len-boxSz+1];
+
+              // Fixed point normalization factor (8.24)
+            final int scale = (1<<24)/boxSz;
+
+            for (int y=start; y<end; y++) {
+                int sp = srcOff + y*srcScanStride + skipX;
+                for (int i=0; i<len; i++) {
+                    int p = srcPixels[sp+i];
+                    a[i] = (p>>> 24);
+                    r[i] = (p >> 16)&0xFF;
+                    g[i] = (p >>  8)&0xFF;
+                    b[i] = (p      )&0xFF;
+                }
+
+                int sumA = 0, sumR = 0, sumG = 0, sumB = 0;
+                for (int i=0; i<boxSz; i++) {
+                    sumA += a[i];
+                    sumR += r[i];
+                    sumG += g[i];
+                    sumB += b[i];
+                }
+                out[0] = pack(sumA, sumR, sumG, sumB, scale);
+                for (int i=boxSz; i<len; i++) {
+                    int j = i-boxSz;
+                    sumA += a[i]-a[j];
+                    sumR += r[i]-r[j];
+                    sumG += g[i]-g[j];
+                    sumB += b[i]-b[j];
+                    out[j+1] = pack(sumA, sumR, sumG, sumB, scale);
+                }
 
+                System.arraycopy(out, 0, destPixels,
+                                 dstOff + y*dstScanStride + skipX + loc,
+                                 out.length);
+            }
+        }
 
-            dp += (skipY + loc)*dstScanStride;
-            prev = destPixels[dp] = (( (sumA*scale)&0xFF000000)       |
-                                     (((sumR*scale)&0xFF000000)>>>8)  |
-                                     (((sumG*scale)&0xFF000000)>>>16) |
-                                     (((sumB*scale)&0xFF000000)>>>24));
-            dp+=dstScanStride;
-            k=0;
-            while (sp < colEnd) {
-                curr = buffer[k];
-                if (curr == srcPixels[sp]) {
-                    destPixels[dp] = prev;
-                } else {
-                    sumA -= (curr>>> 24);
-                    sumR -= (curr >> 16)&0xFF;
-                    sumG -= (curr >>  8)&0xFF;
-                    sumB -= (curr      )&0xFF;
-
-                    curr = buffer[k] = srcPixels[sp];
-
-                    sumA += (curr>>> 24);
-                    sumR += (curr >> 16)&0xFF;
-                    sumG += (curr >>  8)&0xFF;
-                    sumB += (curr      )&0xFF;
-                    prev = destPixels[dp] = (( (sumA*scale)&0xFF000000)       |
-                                             (((sumR*scale)&0xFF000000)>>>8)  |
-                                             (((sumG*scale)&0xFF000000)>>>16) |
-                                             (((sumB*scale)&0xFF000000)>>>24));
+        private void filterColumns(int start, int end) {
+            final int len = end-start;
+            final int [] sumA = new int[len];
+            final int [] sumR = new int[len];
+            final int [] sumG = new int[len];
+            final int [] sumB = new int[len];
+            final int [] out = new int[len];
+
+            // The source rows in the box, which may have been
+            // overwritten in the destination already.
+            final int [] box = new int[boxSz*len];
+
+              // Fixed point normalization factor (8.24)
+            final int scale = (1<<24)/boxSz;
+
+            for (int k=0; k<boxSz; k++) {
+                int sp = srcOff + (skipY+k)*srcScanStride + start;
+                int bp = k*len;
+                System.arraycopy(srcPixels, sp, box, bp, len);
+                for (int i=0; i<len; i++) {
+                    int p = box[bp+i];
+                    sumA[i] += (p>>> 24);
+                    sumR[i] += (p >> 16)&0xFF;
+                    sumG[i] += (p >>  8)&0xFF;
+                    sumB[i] += (p      )&0xFF;
+                }
+            }
+            int dy = skipY+loc;
+            writeRow(sumA, sumR, sumG, sumB, out, scale, start, dy++);
+
+            int k = 0;
+            for (int y=skipY+boxSz; y<h-skipY; y++) {
+                int sp = srcOff + y*srcScanStride + start;
+                int bp = k*len;
+                for (int i=0; i<len; i++) {
+                    int p = srcPixels[sp+i];
+                    int q = box[bp+i];
+                    box[bp+i] = p;
+                    sumA[i] += (p>>> 24)       - (q>>> 24);
+                    sumR[i] += ((p >> 16)&0xFF) - ((q >> 16)&0xFF);
+                    sumG[i] += ((p >>  8)&0xFF) - ((q >>  8)&0xFF);
+                    sumB[i] += ((p      )&0xFF) - ((q      )&0xFF);
                 }
+                writeRow(sumA, sumR, sumG, sumB, out, scale, start, dy++);
                 k = (k+1)%boxSz;
-                sp+=srcScanStride;
-                dp+=dstScanStride;
             }
         }
-        return dest;
+
+        private void writeRow(int[] sumA, int[] sumR, int[] sumG,
+                              int[] sumB, int[] out, int scale,
+                              int x, int y) {
+            for (int i=0; i<out.length; i++) {
+                out[i] = pack(sumA[i], sumR[i], sumG[i], sumB[i], scale);
+            }
+            System.arraycopy(out, 0, destPixels,
+                             dstOff + y*dstScanStride + x, out.length);
+        }
     }
 
     protected static ColorModel fixColorModel(CachableRed src) {
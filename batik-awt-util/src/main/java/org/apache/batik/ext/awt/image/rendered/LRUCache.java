@@ -18,6 +18,8 @@
  */
 package org.apache.batik.ext.awt.image.rendered;
 
+import java.util.concurrent.atomic.LongAdder;
+
 import org.apache.batik.util.DoublyLinkedList;
 
 /**
@@ -56,6 +58,7 @@ public class LRUCache {
      */
         public static class LRUNode extends DoublyLinkedList.Node {
                 private   LRUObj  obj  = null;
+                long              size = 0;
                 public    LRUObj  getObj ()               { return obj; }
                 protected void    setObj (LRUObj  newObj) {
                         if (obj != null) obj.lruRemove();
@@ -65,49 +68,137 @@ public class LRUCache {
                 }
         }
 
+        /**
+         * Optional interface for objects that know how many bytes they
+         * hold on to while they are in the cache.  When an object
+         * implements this the cache can enforce a byte budget in
+         * addition to its entry count.
+         */
+        public interface LRUSizedObj extends LRUObj {
+        /**
+         * Returns the number of bytes held while the object is
+         * in the cache.
+         */
+        long    lruSize();
+        }
+
         private DoublyLinkedList free    = null;
         private DoublyLinkedList used    = null;
-        private int     maxSize = 0;
+        private int     maxSize  = 0;
+        private long    maxBytes = 0;
+        private long    usedBytes = 0;
 
+        private final LongAdder hits      = new LongAdder();
+        private final LongAdder misses    = new LongAdder();
+        private long            evictions = 0;
+
+        /**
+         * Creates a cache holding at most <code>size</code> entries.
+         * Nodes are allocated as they are needed.
+         */
         public LRUCache(int size) {
+                this(size, 0);
+        }
+
+        /**
+         * Creates a cache holding at most <code>size</code> entries
+         * and at most <code>maxBytes</code> bytes (as reported by
+         * {@link LRUSizedObj#lruSize}).  A byte budget of zero or less
+         * means the cache is only limited by its entry count.
+         */
+        public LRUCache(int size, long maxBytes) {
                 if (size <= 0) size=1;
                 maxSize = size;
+                this.maxBytes = maxBytes;
 
                 free = new DoublyLinkedList();
                 used = new DoublyLinkedList();
-
-                while (size > 0) {
-                        free.add(new LRUNode());
-                        size--;
-                }
         }
 
         public int getUsed() {
                 return used.getSize();
         }
 
+        public synchronized int getSize() {
+                return maxSize;
+        }
+
         public synchronized void setSize(int newSz) {
+                if (newSz <= 0) newSz = 1;
 
-                if (maxSize < newSz) {  // list grew...
+                if (maxSize > newSz) {
+                        for (int i=used.getSize(); i>newSz; i--)
+                                evict();
+                }
 
-                        for (int i=maxSize; i<newSz; i++)
-                                free.add(new LRUNode());
+                maxSize = newSz;
+        }
 
-                } else if (maxSize > newSz) {
+        /**
+         * Returns the byte budget of this cache, zero or less if the
+         * cache is only limited by its entry count.
+         */
+        public synchronized long getMaxBytes() {
+                return maxBytes;
+        }
 
-                        for (int i=used.getSize(); i>newSz; i--) {
-                                LRUNode nde = (LRUNode)used.getTail();
-                                used.remove(nde);
-                                nde.setObj(null);
-                        }
-                }
+        /**
+         * Sets the byte budget of this cache.  Entries are evicted
+         * from the least recently used end until the cache fits.
+         */
+        public synchronized void setMaxBytes(long maxBytes) {
+                this.maxBytes = maxBytes;
+                trimToBudget(null);
+        }
 
-                maxSize = newSz;
+        /**
+         * Returns the number of bytes currently held by this cache.
+         */
+        public synchronized long getUsedBytes() {
+                return usedBytes;
+        }
+
+        /**
+         * Records a lookup that was satisfied by the cache.
+         */
+        public void recordHit() {
+                hits.increment();
+        }
+
+        /**
+         * Records a lookup that had to regenerate its data.
+         */
+        public void recordMiss() {
+                misses.increment();
+        }
+
+        public long getHitCount() {
+                return hits.sum();
+        }
+
+        public long getMissCount() {
+                return misses.sum();
+        }
+
+        /**
+         * Returns the number of entries dropped to make room for
+         * others, either because of the entry count or the byte budget.
+         */
+        public synchronized long getEvictionCount() {
+                return evictions;
+        }
+
+        public synchronized void resetStatistics() {
+                hits.reset();
+                misses.reset();
+                evictions = 0;
         }
 
         public synchronized void flush() {
                 while (used.getSize() > 0) {
                         LRUNode nde = (LRUNode)used.pop();
+                        usedBytes -= nde.size;
+                        nde.size = 0;
                         nde.setObj(null);
                         free.add(nde);
                 }
@@ -117,6 +208,8 @@ public class LRUCache {
                 LRUNode nde = obj.lruGet();
                 if (nde == null) return;
                 used.remove(nde);
+                usedBytes -= nde.size;
+                nde.size = 0;
                 nde.setObj(null);
                 free.add(nde);
         }
@@ -133,20 +226,61 @@ public class LRUCache {
                 // already linked in...
                 if (nde != null) {
                         used.touch(nde);
+                        // The object's contents may have changed size.
+                        updateSize(nde, obj);
+                        trimToBudget(nde);
                         return;
                 }
 
                 if (free.getSize() > 0) {
                         nde = (LRUNode)free.pop();
-                        nde.setObj(obj);
-                        used.add(nde);
+                } else if (used.getSize() < maxSize) {
+                        nde = new LRUNode();
                 } else {
-                        nde = (LRUNode)used.getTail();
-                        nde.setObj(obj);
-                        used.touch(nde);
+                        evict();
+                        nde = (LRUNode)free.pop();
+                }
+                nde.setObj(obj);
+                used.add(nde);
+                updateSize(nde, obj);
+                trimToBudget(nde);
+        }
+
+        private void updateSize(LRUNode nde, LRUObj obj) {
+                long sz = 0;
+                if (obj instanceof LRUSizedObj)
+                        sz = ((LRUSizedObj)obj).lruSize();
+                usedBytes += sz - nde.size;
+                nde.size   = sz;
+        }
+
+        /**
+         * Drops least recently used entries until the byte budget is
+         * met.  <code>keep</code> (the entry just added) is never
+         * dropped, so a single oversized entry can still be cached.
+         */
+        private void trimToBudget(LRUNode keep) {
+                if (maxBytes <= 0) return;
+                while ((usedBytes > maxBytes) && (used.getSize() > 0)) {
+                        if (used.getTail() == keep) break;
+                        evict();
                 }
         }
 
+        /**
+         * Unlinks the least recently used entry and returns its node
+         * to the free list.
+         */
+        private void evict() {
+                LRUNode nde = (LRUNode)used.getTail();
+                used.remove(nde);
+                usedBytes -= nde.size;
+                nde.size = 0;
+                nde.setObj(null);
+                free.add(nde);
+                evictions++;
+        }
+
         protected synchronized void print() {
                 System.out.println("In Use: " + used.getSize() +
                                                    " Free: " + free.getSize());
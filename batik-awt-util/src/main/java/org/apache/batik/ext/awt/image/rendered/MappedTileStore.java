@@ -0,0 +1,324 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.apache.batik.util.HaltingThread;
+
+/**
+ * A TileStore which keeps every tile, once computed, in a memory
+ * mapped scratch file instead of on the Java heap.  Unlike the stores
+ * of the global tile cache, tiles are never dropped, so an image far
+ * larger than the heap can be computed once and then read back in any
+ * order, for example row by row by an image encoder.
+ *
+ * <p>Only the tile being read or written is copied to the heap.  The
+ * sample model of the image must hold its samples in byte, short or int
+ * data elements.  The scratch file is deleted by {@link #dispose}.</p>
+ *
+ * @version $Id$
+ */
+public class MappedTileStore implements TileStore {
+
+    /**
+     * The maximum size of a mapped region of the scratch file.
+     */
+    protected static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private TileGenerator source;
+
+    private int minTileX, minTileY;
+    private int xSz, ySz;
+    private int tileWidth, tileHeight;
+    private int tileGridXOff, tileGridYOff;
+    private SampleModel sm;
+
+    /**
+     * The number of data elements in a tile and their size in bytes.
+     */
+    private int tileElements;
+    private int elementSize;
+
+    private int tilesPerSegment;
+    private MappedByteBuffer [] segments;
+
+    private File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    /**
+     * The tiles which have been written to the scratch file.
+     */
+    private BitSet stored = new BitSet();
+
+    /**
+     * Creates a store for the tiles of <code>img</code>, computed by
+     * <code>source</code>.
+     * @param img The image whose tile grid and sample model are used.
+     * @param source The generator of the missing tiles.
+     * @param dir The directory of the scratch file, or null for the
+     *            default temporary directory.
+     */
+    public MappedTileStore(RenderedImage img, TileGenerator source, File dir)
+        throws IOException {
+        this.source       = source;
+        this.minTileX     = img.getMinTileX();
+        this.minTileY     = img.getMinTileY();
+        this.xSz          = img.getNumXTiles();
+        this.ySz          = img.getNumYTiles();
+        this.tileWidth    = img.getTileWidth();
+        this.tileHeight   = img.getTileHeight();
+        this.tileGridXOff = img.getTileGridXOffset();
+        this.tileGridYOff = img.getTileGridYOffset();
+        this.sm           = img.getSampleModel()
+            .createCompatibleSampleModel(tileWidth, tileHeight);
+
+        switch (sm.getTransferType()) {
+        case DataBuffer.TYPE_BYTE:
+            elementSize = 1;
+            break;
+        case DataBuffer.TYPE_USHORT:
+        case DataBuffer.TYPE_SHORT:
+            elementSize = 2;
+            break;
+        case DataBuffer.TYPE_INT:
+            elementSize = 4;
+            break;
+        default:
+            throw new IllegalArgumentException
+                ("Unsupported transfer type: " + sm.getTransferType());
+        }
+        tileElements = tileWidth*tileHeight*sm.getNumDataElements();
+
+        long tileBytes = (long)tileElements*elementSize;
+        tilesPerSegment = (int)Math.max(1, MAX_SEGMENT_SIZE/tileBytes);
+        int numTiles = xSz*ySz;
+        segments = new MappedByteBuffer
+            [(numTiles+tilesPerSegment-1)/tilesPerSegment];
+
+        file = File.createTempFile("batik", ".tiles", dir);
+        file.deleteOnExit();
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+    }
+
+    /**
+     * Returns the size of the scratch file in bytes.
+     */
+    public long getScratchSize() throws IOException {
+        return channel == null ? 0 : channel.size();
+    }
+
+    public void setTile(int x, int y, Raster ras) {
+        int idx = getIndex(x, y);
+        if (idx == -1) return;
+
+        if (ras == null) {
+            synchronized (this) {
+                stored.clear(idx);
+            }
+            return;
+        }
+        write(x, y, idx, ras);
+    }
+
+    public Raster getTileNoCompute(int x, int y) {
+        int idx = getIndex(x, y);
+        if (idx == -1) return null;
+        synchronized (this) {
+            if (!stored.get(idx)) return null;
+        }
+        return read(x, y, idx);
+    }
+
+    public Raster getTile(int x, int y) {
+        int idx = getIndex(x, y);
+        if (idx == -1) return null;
+
+        Raster ras = getTileNoCompute(x, y);
+        if (ras != null) return ras;
+
+        ras = source.genTile(x, y);
+        // The contents of a tile computed by a halted thread are junk.
+        if (!HaltingThread.hasBeenHalted())
+            write(x, y, idx, ras);
+        return ras;
+    }
+
+    /**
+     * Closes and deletes the scratch file.  The store must not be used
+     * afterwards.
+     *
+     * <p>A mapped region is only released once its buffer has been
+     * garbage collected.  On platforms which refuse to delete a file
+     * while it is mapped, such as Windows, the scratch file may
+     * therefore remain until the virtual machine exits.</p>
+     */
+    public synchronized void dispose() {
+        if (segments != null) {
+            // Let the mapped regions be collected before the delete.
+            Arrays.fill(segments, null);
+            segments = null;
+        }
+        stored.clear();
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException ioe) {
+                // Nothing to do, the file is deleted anyway.
+            }
+            raf = null;
+            channel = null;
+        }
+        if (file != null) {
+            file.delete();
+            file = null;
+        }
+    }
+
+    /**
+     * Returns the index of tile (x, y) in the grid, or -1 if it lies
+     * outside the grid.
+     */
+    private int getIndex(int x, int y) {
+        x -= minTileX;
+        y -= minTileY;
+        if ((x<0) || (x>=xSz)) return -1;
+        if ((y<0) || (y>=ySz)) return -1;
+        return y*xSz+x;
+    }
+
+    /**
+     * Returns the bounds of tile (x, y).
+     */
+    private Rectangle getTileRect(int x, int y) {
+        return new Rectangle(tileGridXOff+x*tileWidth,
+                             tileGridYOff+y*tileHeight,
+                             tileWidth, tileHeight);
+    }
+
+    /**
+     * Returns a buffer positioned at the start of the given tile.
+     */
+    private ByteBuffer getBuffer(int idx) {
+        int seg = idx/tilesPerSegment;
+        MappedByteBuffer mbb;
+        synchronized (this) {
+            if (segments == null)
+                throw new IllegalStateException("Tile store disposed");
+            mbb = segments[seg];
+            if (mbb == null) {
+                long tileBytes = (long)tileElements*elementSize;
+                int  tiles = Math.min(tilesPerSegment,
+                                      xSz*ySz-seg*tilesPerSegment);
+                try {
+                    mbb = channel.map(FileChannel.MapMode.READ_WRITE,
+                                      seg*tilesPerSegment*tileBytes,
+                                      tiles*tileBytes);
+                } catch (IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+                segments[seg] = mbb;
+            }
+        }
+        // Each caller gets its own position; byte order is not kept
+        // by duplicate().
+        ByteBuffer bb = mbb.duplicate();
+        bb.order(ByteOrder.nativeOrder());
+        // Through Buffer, so that a build on a later JDK still links to
+        // a method which exists on Java 8.
+        ((Buffer)bb).position((idx%tilesPerSegment)*tileElements*elementSize);
+        return bb;
+    }
+
+    private void write(int x, int y, int idx, Raster ras) {
+        Rectangle r = getTileRect(x, y);
+        Object data;
+        if (ras.getBounds().contains(r)) {
+            data = ras.getDataElements(r.x, r.y, r.width, r.height, null);
+        } else {
+            WritableRaster wr = Raster.createWritableRaster
+                (sm, new Point(r.x, r.y));
+            Rectangle ir = r.intersection(ras.getBounds());
+            if (!ir.isEmpty())
+                wr.setDataElements
+                    (ir.x, ir.y, ir.width, ir.height,
+                     ras.getDataElements(ir.x, ir.y, ir.width, ir.height,
+                                         null));
+            data = wr.getDataElements(r.x, r.y, r.width, r.height, null);
+        }
+
+        ByteBuffer bb = getBuffer(idx);
+        switch (elementSize) {
+        case 1: bb.put((byte [])data);                  break;
+        case 2: bb.asShortBuffer().put((short [])data); break;
+        case 4: bb.asIntBuffer().put((int [])data);     break;
+        }
+        synchronized (this) {
+            stored.set(idx);
+        }
+    }
+
+    private Raster read(int x, int y, int idx) {
+        Object data;
+        ByteBuffer bb = getBuffer(idx);
+        switch (elementSize) {
+        case 1: {
+            byte [] b = new byte[tileElements];
+            bb.get(b);
+            data = b;
+            break;
+        }
+        case 2: {
+            short [] s = new short[tileElements];
+            bb.asShortBuffer().get(s);
+            data = s;
+            break;
+        }
+        default: {
+            int [] i = new int[tileElements];
+            bb.asIntBuffer().get(i);
+            data = i;
+        }
+        }
+
+        Rectangle r = getTileRect(x, y);
+        WritableRaster wr = Raster.createWritableRaster
+            (sm, new Point(r.x, r.y));
+        wr.setDataElements(r.x, r.y, r.width, r.height, data);
+        return wr;
+    }
+}
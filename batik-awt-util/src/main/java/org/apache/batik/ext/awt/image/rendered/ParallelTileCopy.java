@@ -0,0 +1,149 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Rectangle;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.batik.util.HaltingThread;
+
+/**
+ * Copies the data of a CachableRed into a WritableRaster using a
+ * fork/join pool.  The destination is split along the source's tile
+ * grid and every tile is copied by a separate task, so no two tasks
+ * ever compute the same tile or write the same pixels.  Since the
+ * split does not depend on the number of threads, the result is the
+ * same whatever the size of the pool.  It may differ slightly from a
+ * sequential copyData, which renders larger blocks at once, for
+ * effects that are sensitive to the rendered region.  Intermediate
+ * images in the chain still group whatever tiles they miss into
+ * blocks, so such effects may also depend on what those images had
+ * already cached.
+ *
+ * <p>The source chain must be safe to pull from several threads at
+ * once for disjoint regions.  The tile stores handed out by
+ * {@link TileCache} are.
+ *
+ * <p>The workers of the pool are not {@link HaltingThread}s, so a
+ * halted rendering is not interrupted inside a tile.  Instead, the
+ * tasks check whether the thread which started the copy has been
+ * halted and, if so, leave the remaining tiles alone.
+ *
+ * @version $Id$
+ */
+public class ParallelTileCopy extends RecursiveAction {
+
+    private final CachableRed    src;
+    private final WritableRaster dst;
+    private final Thread         caller;
+    private final int tx0, ty0, tx1, ty1;
+
+    /**
+     * @param src  The image to copy data from.
+     * @param dst  The raster to copy data into.
+     * @param caller The thread whose halted state stops the copy.
+     * @param tx0  First tile column to copy (inclusive).
+     * @param ty0  First tile row to copy (inclusive).
+     * @param tx1  Last tile column to copy (inclusive).
+     * @param ty1  Last tile row to copy (inclusive).
+     */
+    protected ParallelTileCopy(CachableRed src, WritableRaster dst,
+                               Thread caller,
+                               int tx0, int ty0, int tx1, int ty1) {
+        this.src    = src;
+        this.dst    = dst;
+        this.caller = caller;
+        this.tx0   = tx0;
+        this.ty0   = ty0;
+        this.tx1   = tx1;
+        this.ty1   = ty1;
+    }
+
+    protected void compute() {
+        if (HaltingThread.hasBeenHalted(caller))
+            return;
+
+        int w = tx1-tx0+1;
+        int h = ty1-ty0+1;
+        if ((w == 1) && (h == 1)) {
+            copyTile();
+            return;
+        }
+
+        // Split along the longer side, keeping whole tiles.
+        if (w >= h) {
+            int mid = tx0 + w/2;
+            invokeAll(new ParallelTileCopy
+                      (src, dst, caller, tx0, ty0, mid-1, ty1),
+                      new ParallelTileCopy
+                      (src, dst, caller, mid, ty0, tx1, ty1));
+        } else {
+            int mid = ty0 + h/2;
+            invokeAll(new ParallelTileCopy
+                      (src, dst, caller, tx0, ty0, tx1, mid-1),
+                      new ParallelTileCopy
+                      (src, dst, caller, tx0, mid, tx1, ty1));
+        }
+    }
+
+    protected void copyTile() {
+        int tw = src.getTileWidth();
+        int th = src.getTileHeight();
+        int x  = tx0*tw + src.getTileGridXOffset();
+        int y  = ty0*th + src.getTileGridYOffset();
+        Rectangle r = new Rectangle(x, y, tw, th);
+        r = r.intersection(dst.getBounds());
+        if (r.isEmpty())
+            return;
+
+        WritableRaster child = dst.createWritableChild
+            (r.x, r.y, r.width, r.height, r.x, r.y, null);
+        src.copyData(child);
+    }
+
+    /**
+     * Copies the data of <code>src</code> that falls inside
+     * <code>dst</code> into <code>dst</code>, computing independent
+     * tiles in parallel on <code>pool</code>.  The copy stops early
+     * if the calling thread is halted.
+     * @return <code>dst</code>
+     */
+    public static WritableRaster copyData(CachableRed src,
+                                          WritableRaster dst,
+                                          ForkJoinPool pool) {
+        Rectangle r = dst.getBounds();
+        if (r.isEmpty())
+            return dst;
+
+        int tw = src.getTileWidth();
+        int th = src.getTileHeight();
+        int gx = src.getTileGridXOffset();
+        int gy = src.getTileGridYOffset();
+        int tx0 = Math.floorDiv(r.x-gx, tw);
+        int ty0 = Math.floorDiv(r.y-gy, th);
+        int tx1 = Math.floorDiv(r.x+r.width -1-gx, tw);
+        int ty1 = Math.floorDiv(r.y+r.height-1-gy, th);
+
+        pool.invoke(new ParallelTileCopy(src, dst, Thread.currentThread(),
+                                         tx0, ty0, tx1, ty1));
+        return dst;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes a range of spans of a raster, such as its rows or its
+ * columns, splitting large ranges into fork/join tasks.
+ *
+ * <p>The range is only split when {@link #run} is called from a
+ * worker of a fork/join pool, as when tiles are computed with
+ * <code>KEY_TILE_PARALLELISM</code>.  The tasks then run in the pool
+ * of that worker, which may be the common pool if the caller itself
+ * runs there.  Called from any other thread, the whole range is
+ * computed in that thread, so a filter never starts tasks on its own.
+ *
+ * <p>The range is halved until the halves would be shorter than the
+ * minimum span given to {@link #run}, so the split depends on the
+ * size of the range, not on the number of threads.
+ *
+ * @version $Id$
+ */
+public final class SpanTask extends RecursiveAction {
+
+    /**
+     * The computation applied to the spans.
+     */
+    public interface Body {
+
+        /**
+         * Computes spans <code>start</code> to <code>end</code>
+         * (excluded).  This may be called concurrently for disjoint
+         * ranges.
+         */
+        void compute(int start, int end);
+    }
+
+    private final Body body;
+    private final int  start, end;
+    private final int  minSpan;
+
+    private SpanTask(Body body, int start, int end, int minSpan) {
+        this.body    = body;
+        this.start   = start;
+        this.end     = end;
+        this.minSpan = minSpan;
+    }
+
+    /**
+     * Computes spans <code>start</code> to <code>end</code> (excluded)
+     * with <code>body</code>, and returns once they are all computed.
+     * @param minSpan The smallest number of spans given to a task.
+     */
+    public static void run(Body body, int start, int end, int minSpan) {
+        minSpan = Math.max(1, minSpan);
+        if (end-start >= 2*minSpan && inForkJoinPool()) {
+            new SpanTask(body, start, end, minSpan).invoke();
+        } else {
+            body.compute(start, end);
+        }
+    }
+
+    /**
+     * Returns the smallest number of spans of <code>spanLength</code>
+     * pixels that holds at least <code>minPixels</code> pixels.
+     */
+    public static int minSpan(int minPixels, int spanLength) {
+        if (spanLength <= 0)
+            return 1;
+        return Math.max(1, (minPixels+spanLength-1)/spanLength);
+    }
+
+    protected void compute() {
+        int n = end-start;
+        if (n >= 2*minSpan) {
+            int mid = start + n/2;
+            invokeAll(new SpanTask(body, start, mid, minSpan),
+                      new SpanTask(body, mid,   end, minSpan));
+        } else {
+            body.compute(start, end);
+        }
+    }
+}
@@ -45,6 +45,12 @@ public class SpecularLightingRed extends AbstractTiledRed{
      */
     private double specularExponent;
 
+    /**
+     * The specular exponent if it is an integer, which is then applied
+     * by multiplications instead of Math.pow, or 0.
+     */
+    private int intExponent;
+
     /**
      * Light used for specular lighting
      */
@@ -70,6 +76,17 @@ public class SpecularLightingRed extends AbstractTiledRed{
      * true if calculations should be performed in linear sRGB
      */
     private boolean linear;
+
+    /**
+     * The largest exponent applied by multiplications.
+     */
+    static final int MAX_INT_EXPONENT = 128;
+
+    /**
+     * The number of pixels below which the rows of a tile are not
+     * computed by several tasks.
+     */
+    static final int MIN_TASK_PIXELS = 1 << 12;
      
 
     public SpecularLightingRed(double ks,
@@ -88,6 +105,10 @@ public class SpecularLightingRed extends AbstractTiledRed{
         this.scaleY = scaleY;
         this.linear = linear;
 
+        if (specularExponent >= 1 && specularExponent <= MAX_INT_EXPONENT &&
+            specularExponent == Math.rint(specularExponent))
+            intExponent = (int)specularExponent;
+
         ColorModel cm;
         if (linear)
             cm = GraphicsUtil.Linear_sRGB_Unpre;
@@ -111,12 +132,6 @@ public class SpecularLightingRed extends AbstractTiledRed{
     }
 
     public void genRect(WritableRaster wr) {
-        // Copy variable on stack for faster access in tight loop
-        final double scaleX = this.scaleX;
-        final double scaleY = this.scaleY;
-
-        final double[] lightColor = light.getColor(linear);
-
         final int w = wr.getWidth();
         final int h = wr.getHeight();
         final int minX = wr.getMinX();
@@ -134,8 +149,56 @@ public class SpecularLightingRed extends AbstractTiledRed{
                              minY-wr.getSampleModelTranslateY()));
         // int offset = db.getOffset();
         final int scanStride = sppsm.getScanlineStride();
+
+        final double[][][] NA = bumpMap.getNormalArray(minX, minY, w, h);
+
+        SpanTask.run(new SpanTask.Body() {
+                public void compute(int start, int end) {
+                    genRows(pixels, offset, scanStride, minX, minY, w, NA,
+                            start, end);
+                }
+            }, 0, h, SpanTask.minSpan(MIN_TASK_PIXELS, w));
+    }
+
+    /**
+     * Returns <code>v</code> to the power of the specular exponent.
+     * Integer exponents are applied by repeated squaring, whose rounding
+     * differs from Math.pow: once scaled to 8 bits, a component may be
+     * one unit away from the value Math.pow would give.
+     */
+    private double pow(double v) {
+        int n = intExponent;
+        if (n == 0)
+            return Math.pow(v, specularExponent);
+
+        double r = 1;
+        for (;;) {
+            if ((n & 1) != 0)
+                r *= v;
+            n >>= 1;
+            if (n == 0)
+                return r;
+            v *= v;
+        }
+    }
+
+    /**
+     * Computes rows <code>start</code> to <code>end</code> (excluded)
+     * of a tile.
+     */
+    private void genRows(final int[] pixels, final int offset,
+                         final int scanStride, final int minX,
+                         final int minY, final int w,
+                         final double[][][] NA,
+                         final int start, final int end) {
+        // Copy variable on stack for faster access in tight loop
+        final double scaleX = this.scaleX;
+        final double scaleY = this.scaleY;
+
+        final double[] lightColor = light.getColor(linear);
+
         final int adjust = scanStride - w;
-        int p = offset;
+        int p = offset + start*scanStride;
         int a=0, i=0, j=0;
 
         // x and y are in user space
@@ -159,13 +222,11 @@ public class SpecularLightingRed extends AbstractTiledRed{
 
         // System.out.println("Pixel: 0x" + Integer.toHexString(pixel));
 
-        final double[][][] NA = bumpMap.getNormalArray(minX, minY, w, h);
-
         // System.out.println("Entering Specular Lighting");
         if (light instanceof SpotLight) {
             SpotLight slight = (SpotLight)light;
             final double[][] LA = new double[w][4];
-            for(i=0; i<h; i++){
+            for(i=start; i<end; i++){
                 // System.out.println("Row: " + i);
                 final double [][] NR = NA[i];
                 slight.getLightRow4(x, y+i*scaleY, scaleX, w, NR, LA);
@@ -183,7 +244,7 @@ public class SpecularLightingRed extends AbstractTiledRed{
                         norm = L[0]*L[0] + L[1]*L[1] + L[2]*L[2];
                         norm = Math.sqrt(norm);
                         double dot = N[0]*L[0] + N[1]*L[1] + N[2]*L[2];
-                        vs = vs*Math.pow(dot/norm, specularExponent);
+                        vs = vs*pow(dot/norm);
                         a = (int)(mult*vs + 0.5);
                         if ((a & 0xFFFFFF00) != 0)
                             a = ((a & 0x80000000) != 0)?0:255;
@@ -194,7 +255,7 @@ public class SpecularLightingRed extends AbstractTiledRed{
             }
         } else if(!light.isConstant()){
             final double[][] LA = new double[w][4];
-            for(i=0; i<h; i++){
+            for(i=start; i<end; i++){
                 // System.out.println("Row: " + i);
                 final double [][] NR = NA[i];
                 light.getLightRow(x, y+i*scaleY, scaleX, w, NR, LA);
@@ -209,7 +270,7 @@ public class SpecularLightingRed extends AbstractTiledRed{
                     norm = Math.sqrt(norm);
                     double dot = N[0]*L[0] + N[1]*L[1] + N[2]*L[2];
                     // vs = vs/norm;
-                    norm = Math.pow(dot/norm, specularExponent);
+                    norm = pow(dot/norm);
                     a = (int)(mult*norm + 0.5);
                     if ((a & 0xFFFFFF00) != 0)
                         a = ((a & 0x80000000) != 0)?0:255;
@@ -232,14 +293,14 @@ public class SpecularLightingRed extends AbstractTiledRed{
                 L[2] /= norm;
             }
 
-            for(i=0; i<h; i++){
+            for(i=start; i<end; i++){
                 final double [][] NR = NA[i];
                 for(j=0; j<w; j++){
                     // Get Normal 
                     final double [] N = NR[j];
                     
-                    a = (int)(mult*Math.pow(N[0]*L[0] + N[1]*L[1] + N[2]*L[2], 
-                                            specularExponent) + 0.5);
+                    a = (int)(mult*pow(N[0]*L[0] + N[1]*L[1] + N[2]*L[2])
+                              + 0.5);
                     
                     if ((a & 0xFFFFFF00) != 0)
                         a = ((a & 0x80000000) != 0)?0:255;
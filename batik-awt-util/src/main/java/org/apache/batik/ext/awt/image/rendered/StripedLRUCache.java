@@ -0,0 +1,153 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+/**
+ * An LRUCache that splits its entries over a number of independent
+ * stripes, each with its own lock.  An object always lives in the
+ * same stripe (chosen from its identity hash code) so threads working
+ * on different tiles rarely contend for the same monitor.  The entry
+ * count and byte budget are divided evenly between the stripes, so
+ * the eviction order is only approximately LRU across the whole
+ * cache.
+ *
+ * @version $Id$
+ */
+public class StripedLRUCache extends LRUCache {
+
+    private final LRUCache [] stripes;
+    private final int         mask;
+
+    private int  totalSize;
+    private long totalBytes;
+
+    /**
+     * Creates a striped cache.
+     * @param size     The maximum number of entries over all stripes.
+     * @param maxBytes The byte budget over all stripes, zero or less
+     *                 for no byte budget.
+     * @param nStripes The number of stripes, rounded up to a power
+     *                 of two.
+     */
+    public StripedLRUCache(int size, long maxBytes, int nStripes) {
+        super(size, maxBytes);
+        int n = 1;
+        while (n < nStripes) n <<= 1;
+        mask    = n-1;
+        stripes = new LRUCache[n];
+        if (size <= 0) size = 1;
+        totalSize  = size;
+        totalBytes = maxBytes;
+        for (int i=0; i<n; i++)
+            stripes[i] = new LRUCache(stripeSize(size, n),
+                                      stripeBytes(maxBytes, n));
+    }
+
+    /**
+     * Returns a stripe count suited to the number of processors
+     * available to the JVM.
+     */
+    public static int getDefaultStripeCount() {
+        int n = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(n, 16));
+    }
+
+    private static int stripeSize(int size, int n) {
+        return Math.max(1, (size + n - 1) / n);
+    }
+
+    private static long stripeBytes(long maxBytes, int n) {
+        if (maxBytes <= 0) return 0;
+        return Math.max(1, maxBytes / n);
+    }
+
+    private LRUCache stripeFor(LRUObj obj) {
+        int h = System.identityHashCode(obj);
+        h ^= (h >>> 16);
+        return stripes[h & mask];
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public int getUsed() {
+        int ret = 0;
+        for (LRUCache stripe : stripes) ret += stripe.getUsed();
+        return ret;
+    }
+
+    public synchronized int getSize() {
+        return totalSize;
+    }
+
+    public synchronized void setSize(int newSz) {
+        if (newSz <= 0) newSz = 1;
+        totalSize = newSz;
+        for (LRUCache stripe : stripes)
+            stripe.setSize(stripeSize(newSz, stripes.length));
+    }
+
+    public synchronized long getMaxBytes() {
+        return totalBytes;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        totalBytes = maxBytes;
+        for (LRUCache stripe : stripes)
+            stripe.setMaxBytes(stripeBytes(maxBytes, stripes.length));
+    }
+
+    public long getUsedBytes() {
+        long ret = 0;
+        for (LRUCache stripe : stripes) ret += stripe.getUsedBytes();
+        return ret;
+    }
+
+    public long getEvictionCount() {
+        long ret = 0;
+        for (LRUCache stripe : stripes) ret += stripe.getEvictionCount();
+        return ret;
+    }
+
+    public void resetStatistics() {
+        super.resetStatistics();
+        for (LRUCache stripe : stripes) stripe.resetStatistics();
+    }
+
+    public void flush() {
+        for (LRUCache stripe : stripes) stripe.flush();
+    }
+
+    public void remove(LRUObj obj) {
+        stripeFor(obj).remove(obj);
+    }
+
+    public void touch(LRUObj obj) {
+        stripeFor(obj).touch(obj);
+    }
+
+    public void add(LRUObj obj) {
+        stripeFor(obj).add(obj);
+    }
+
+    protected void print() {
+        for (LRUCache stripe : stripes) stripe.print();
+    }
+}
@@ -21,26 +21,98 @@ package org.apache.batik.ext.awt.image.rendered;
 import java.awt.image.RenderedImage;
 
 /**
+ * Hands out the TileStores used by tiled images.  By default every
+ * store shares one JVM wide {@link StripedLRUCache}.  The shared cache
+ * can be replaced, and a thread can bind a private partition so the
+ * tiles of the images it creates are only evicted by each other (one
+ * huge drawing can then no longer flush every other request's tiles).
  *
  * @version $Id$
  */
 public class TileCache {
-        private static LRUCache cache = new LRUCache(50);
+        /**
+         * The number of tiles the shared cache holds by default.
+         */
+        public static final int DEFAULT_SIZE = 50;
+
+        private static volatile LRUCache cache =
+            new StripedLRUCache(DEFAULT_SIZE, 0,
+                                StripedLRUCache.getDefaultStripeCount());
+
+        private static final ThreadLocal<LRUCache> partition =
+            new InheritableThreadLocal<LRUCache>();
 
         public static void setSize(int sz) { cache.setSize(sz); }
 
+        /**
+         * Sets the byte budget of the shared cache, zero or less to
+         * limit it by tile count only.
+         */
+        public static void setMaxBytes(long maxBytes) {
+                cache.setMaxBytes(maxBytes);
+        }
+
+        /**
+         * Returns the cache shared by every thread that has no
+         * partition bound.
+         */
+        public static LRUCache getSharedCache() { return cache; }
+
+        /**
+         * Replaces the shared cache.  Stores created before this call
+         * keep using the cache they were created with.
+         */
+        public static void setSharedCache(LRUCache c) {
+                if (c == null)
+                        throw new IllegalArgumentException("cache is null");
+                cache = c;
+        }
+
+        /**
+         * Creates a new cache suitable for use as a partition.
+         * @param size The maximum number of tiles in the partition.
+         * @param maxBytes The byte budget of the partition, zero or less
+         *        to limit it by tile count only.
+         */
+        public static LRUCache createPartition(int size, long maxBytes) {
+                return new StripedLRUCache
+                    (size, maxBytes, StripedLRUCache.getDefaultStripeCount());
+        }
+
+        /**
+         * Binds <code>p</code> to the current thread (and the threads
+         * it starts).  TileStores created on this thread will use it
+         * instead of the shared cache.  Pass null to go back to the
+         * shared cache.
+         */
+        public static void setPartition(LRUCache p) {
+                if (p == null) partition.remove();
+                else           partition.set(p);
+        }
+
+        /**
+         * Returns the cache new TileStores are created with on the
+         * current thread.
+         */
+        public static LRUCache getCache() {
+                LRUCache ret = partition.get();
+                if (ret != null) return ret;
+                return cache;
+        }
+
         public static TileStore getTileGrid(int minTileX, int minTileY,
                                        int xSz, int ySz, TileGenerator src) {
-                return new TileGrid(minTileX, minTileY, xSz, ySz, src, cache);
+                return new TileGrid(minTileX, minTileY, xSz, ySz, src,
+                                    getCache());
         }
 
         public static TileStore getTileGrid(RenderedImage img,
                                             TileGenerator src) {
                 return new TileGrid(img.getMinTileX(),  img.getMinTileY(),
                             img.getNumXTiles(), img.getNumYTiles(),
-                            src, cache);
+                            src, getCache());
         }
         public static TileStore getTileMap(TileGenerator src) {
-                return new TileMap(src, cache);
+                return new TileMap(src, getCache());
         }
 }
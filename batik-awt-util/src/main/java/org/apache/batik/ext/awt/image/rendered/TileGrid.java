@@ -72,17 +72,12 @@ public class TileGrid implements TileStore {
             return;
         }
 
-        if (row != null) {
-            item = row[x];
-            if (item == null) {
-                item = new TileLRUMember();
-                row[x] = item;
-            }
-        } else {
-            row = new TileLRUMember[xSz];
+        if (row == null)
+            row = getRow(y);
+        item = row[x];
+        if (item == null) {
             item = new TileLRUMember();
             row[x] = item;
-            rasters[y] = row;
         }
         item.setRaster(ras);
 
@@ -124,23 +119,18 @@ public class TileGrid implements TileStore {
 
         Raster       ras  = null;
         TileLRUMember [] row  = rasters[y];
-        TileLRUMember    item = null;
-        if (row != null) {
-            item = row[x];
-            if (item != null)
-                ras = item.retrieveRaster();
-            else {
-                item = new TileLRUMember();
-                row[x] = item;
-            }
-        } else {
-            row = new TileLRUMember[xSz];
-            rasters[y] = row;
+        if (row == null)
+            row = getRow(y);
+        TileLRUMember    item = row[x];
+        if (item != null)
+            ras = item.retrieveRaster();
+        else {
             item = new TileLRUMember();
             row[x] = item;
         }
 
         if (ras == null) {
+            cache.recordMiss();
             if (DEBUG) System.out.println("Generating: ("+(x+minTileX)+", "+
                                           (y+minTileY) + ")");
             if (COUNT) synchronized (TileGrid.class) { misses++; }
@@ -153,6 +143,8 @@ public class TileGrid implements TileStore {
                 return ras;
 
             item.setRaster(ras);
+        } else {
+            cache.recordHit();
         }
 
         // Update the item's position in the cache..
@@ -161,6 +153,22 @@ public class TileGrid implements TileStore {
         return ras;
     }
 
+    /**
+     * Returns row <code>y</code> of the grid, creating it if needed.
+     * Rows are only created under a lock so threads filling different
+     * tiles of the same row don't lose each other's entries.
+     */
+    private TileLRUMember [] getRow(int y) {
+        synchronized (rasters) {
+            TileLRUMember [] row = rasters[y];
+            if (row == null) {
+                row = new TileLRUMember[xSz];
+                rasters[y] = row;
+            }
+            return row;
+        }
+    }
+
     static int requests;
     static int misses;
 }
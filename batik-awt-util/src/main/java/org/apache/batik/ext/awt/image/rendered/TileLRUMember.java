@@ -18,6 +18,7 @@
  */
 package org.apache.batik.ext.awt.image.rendered;
 
+import  java.awt.image.DataBuffer;
 import  java.awt.image.Raster;
 import  java.lang.ref.Reference;
 import  java.lang.ref.SoftReference;
@@ -31,7 +32,7 @@ import  java.lang.ref.SoftReference;
  *
  * @version $Id$
  */
-public class TileLRUMember implements LRUCache.LRUObj {
+public class TileLRUMember implements LRUCache.LRUSizedObj {
     private static final boolean DEBUG = false;
 
         protected LRUCache.LRUNode myNode  = null;
@@ -70,6 +71,25 @@ public class TileLRUMember implements LRUCache.LRUObj {
             return hRaster;
         }
 
+        /**
+         * Returns the number of bytes held by the hard reference to
+         * the raster, this is what counts against the cache's budget.
+         */
+        public long lruSize() {
+            return getRasterSize(hRaster);
+        }
+
+        /**
+         * Returns the size in bytes of the data buffer backing
+         * <code>ras</code>, or zero if <code>ras</code> is null.
+         */
+        public static long getRasterSize(Raster ras) {
+            if (ras == null) return 0;
+            DataBuffer db = ras.getDataBuffer();
+            long bits = DataBuffer.getDataTypeSize(db.getDataType());
+            return (((long)db.getSize()) * db.getNumBanks() * bits) / 8;
+        }
+
         public LRUCache.LRUNode lruGet()         { return myNode; }
         public void lruSet(LRUCache.LRUNode nde) { myNode = nde; }
         public void lruRemove()                  {
@@ -21,7 +21,8 @@ package org.apache.batik.ext.awt.image.rendered;
 import java.awt.Point;
 import java.awt.image.Raster;
 import java.lang.ref.SoftReference;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.batik.util.CleanerThread;
 import org.apache.batik.util.HaltingThread;
@@ -34,7 +35,9 @@ public class TileMap implements TileStore {
     private static final boolean DEBUG = false;
     private static final boolean COUNT = false;
 
-    private HashMap rasters=new HashMap();
+    // Concurrent so that disjoint tiles can be computed by several
+    // threads at once (and cleared by the CleanerThread).
+    private Map rasters=new ConcurrentHashMap();
 
     static class TileMapLRUMember extends TileLRUMember {
         public Point   pt;
@@ -46,7 +49,7 @@ public class TileMap implements TileStore {
                 if (DEBUG) System.err.println("Cleaned: " + this);
                 TileMap tm = (TileMap)parent.get();
                 if (tm != null)
-                    tm.rasters.remove(pt);
+                    tm.rasters.remove(pt, TileMapLRUMember.this);
             }
         }
 
@@ -126,6 +129,7 @@ public class TileMap implements TileStore {
         }
 
         if (ras == null) {
+            cache.recordMiss();
             if (DEBUG) System.out.println("Generating: ("+(x)+", "+
                                           (y) + ")");
             if (COUNT) synchronized (TileMap.class) { misses++; }
@@ -143,6 +147,8 @@ public class TileMap implements TileStore {
                 item = new TileMapLRUMember(this, pt, ras);
                 rasters.put(pt, item);
             }
+        } else {
+            cache.recordHit();
         }
 
         // Update the item's position in the cache..
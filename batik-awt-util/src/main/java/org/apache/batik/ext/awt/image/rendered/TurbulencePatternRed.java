@@ -29,6 +29,9 @@ import java.awt.image.DataBufferInt;
 import java.awt.image.DirectColorModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * This class creates a RenderedImage in conformance to the one
  * defined for the feTurbulence filter of the SVG specification.  What
@@ -210,8 +213,32 @@ public final class TurbulencePatternRed extends AbstractRed {
     private static final int BSize = 0x100;
     private static final int BM = 0xff;
     private static final double PerlinN = 0x1000;
-    private final int[] latticeSelector = new int[BSize + 1];
-    private final double[] gradient = new double[(BSize+1)*8];
+    private int[] latticeSelector;
+    private double[] gradient;
+
+    /**
+     * The maximum number of lattices kept in {@link #lattices}.
+     */
+    private static final int MAX_LATTICES = 16;
+
+    /**
+     * The lattices of the seeds used last, as {latticeSelector,
+     * gradient} pairs.  A lattice only depends on the seed, and is
+     * never modified once built, so it is shared by all the patterns
+     * using that seed.
+     */
+    private static final Map lattices =
+        new LinkedHashMap(MAX_LATTICES, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > MAX_LATTICES;
+            }
+        };
+
+    /**
+     * The number of pixels below which the rows of a raster are not
+     * generated by several tasks.
+     */
+    static final int MIN_TASK_PIXELS = 1 << 14;
 
     public double getBaseFrequencyX(){
         return baseFrequencyX;
@@ -256,11 +283,35 @@ public final class TurbulencePatternRed extends AbstractRed {
         return result;
     }
 
+    /**
+     * Sets the lattice for the given seed, reusing the one built for a
+     * previous pattern if any.
+     */
+    private void setLattice(int seed) {
+        Integer key = seed;
+        Object[] lattice;
+        synchronized (lattices) {
+            lattice = (Object[])lattices.get(key);
+        }
+        if (lattice != null) {
+            latticeSelector = (int[])lattice[0];
+            gradient = (double[])lattice[1];
+            return;
+        }
+        initLattice(seed);
+        synchronized (lattices) {
+            lattices.put(key, new Object[] { latticeSelector, gradient });
+        }
+    }
+
     private void initLattice(int seed) {
         double u, v, s;
         int i, j, k, s1, s2;
         seed = setupSeed(seed);
 
+        latticeSelector = new int[BSize + 1];
+        gradient = new double[(BSize+1)*8];
+
         for(k = 0; k < 4; k++){
             for(i = 0; i < BSize; i++){
                 u = (((seed = random(seed)) % (BSize + BSize)) - BSize);
@@ -1051,7 +1102,7 @@ public final class TurbulencePatternRed extends AbstractRed {
                 ("Cannot generate a noise pattern into a null raster");
 
 
-        int w = dest.getWidth();
+        final int w = dest.getWidth();
         int h = dest.getHeight();
 
         // Access the integer buffer for the destination Raster
@@ -1060,18 +1111,12 @@ public final class TurbulencePatternRed extends AbstractRed {
         int minX = dest.getMinX();
         int minY = dest.getMinY();
         sppsm = (SinglePixelPackedSampleModel)dest.getSampleModel();
-        int dstOff = dstDB.getOffset() +
+        final int dstOff = dstDB.getOffset() +
             sppsm.getOffset(minX - dest.getSampleModelTranslateX(),
                             minY - dest.getSampleModelTranslateY());
 
         final int[] destPixels = dstDB.getBankData()[0];
-        int dstAdjust = sppsm.getScanlineStride() - w;
-
-        // Generate pixel pattern now
-        int i, end, dp=dstOff;
-        final int[] rgb = new int[4];
-        final double[] fSum = {0, 0, 0, 0};
-        final double[] noise = {0, 0, 0, 0};
+        final int scanStride = sppsm.getScanlineStride();
 
         final double tx0, tx1, ty0, ty1;
         tx0 = tx[0];
@@ -1086,23 +1131,79 @@ public final class TurbulencePatternRed extends AbstractRed {
         double point_0 = p[0];
         double point_1 = p[1];
 
+        // The point of the first pixel of each row, as accumulated
+        // when the rows are generated in order, so that they give the
+        // same result in any order.
+        final double[] rowX = new double[h];
+        final double[] rowY = new double[h];
+        for (int i=0; i<h; i++) {
+            rowX[i] = point_0;
+            rowY[i] = point_1;
+            for (int j=0; j<w; j++) {
+                point_0 += tx0;
+                point_1 += tx1;
+            }
+            point_0 += ty0;
+            point_1 += ty1;
+        }
+
+        SpanTask.run(new SpanTask.Body() {
+                public void compute(int start, int end) {
+                    generateRows(destPixels, dstOff, scanStride, w,
+                                 rowX, rowY, start, end);
+                }
+            }, 0, h, SpanTask.minSpan(MIN_TASK_PIXELS, w));
+
+        return dest;
+    }
+
+    /**
+     * Generates the pattern into rows of a raster.
+     * @param destPixels The pixels of the raster.
+     * @param dstOff The offset of the first pixel of the raster.
+     * @param scanStride The scanline stride of the raster.
+     * @param w The width of the raster.
+     * @param rowX The x coordinate of the first pixel of each row in
+     *        filter space.
+     * @param rowY The y coordinate of the first pixel of each row in
+     *        filter space.
+     * @param start The first row to generate.
+     * @param end The row after the last row to generate.
+     */
+    private void generateRows(int[] destPixels, int dstOff, int scanStride,
+                              int w, double[] rowX, double[] rowY,
+                              int start, int end) {
+        // Generate pixel pattern now
+        int i, dp;
+        final int[] rgb = new int[4];
+        final double[] fSum = {0, 0, 0, 0};
+        final double[] noise = {0, 0, 0, 0};
+
+        final double tx0, tx1;
+        tx0 = tx[0];
+        tx1 = tx[1];
+
+        double point_0, point_1;
         if(isFractalNoise){
             if(stitchInfo == null){
                 if (channels.length == 4) {
-                    for(i=0; i<h; i++){
-                        for(end=dp+w; dp<end; dp++) {
+                    for(i=start; i<end; i++){
+                        dp = dstOff + i*scanStride;
+                        point_0 = rowX[i];
+                        point_1 = rowY[i];
+                        for(int e=dp+w; dp<e; dp++) {
                             destPixels[dp] = turbulenceFractal_4
                                 (point_0, point_1, fSum);
                             point_0 += tx0;
                             point_1 += tx1;
                         }
-                        point_0 += ty0;
-                        point_1 += ty1;
-                        dp += dstAdjust;
                     }
                 } else {
-                    for(i=0; i<h; i++){
-                        for(end=dp+w; dp<end; dp++){
+                    for(i=start; i<end; i++){
+                        dp = dstOff + i*scanStride;
+                        point_0 = rowX[i];
+                        point_1 = rowY[i];
+                        for(int e=dp+w; dp<e; dp++){
                             turbulenceFractal(rgb, point_0, point_1, fSum, noise);
 
                             // Write RGB value.
@@ -1113,16 +1214,16 @@ public final class TurbulencePatternRed extends AbstractRed {
                             point_0 += tx0;
                             point_1 += tx1;
                         }
-                        point_0 += ty0;
-                        point_1 += ty1;
-                        dp += dstAdjust;
                     }
                 }
             }
             else{
                 StitchInfo si = new StitchInfo();
-                for(i=0; i<h; i++){
-                    for(end=dp+w; dp<end; dp++){
+                for(i=start; i<end; i++){
+                    dp = dstOff + i*scanStride;
+                    point_0 = rowX[i];
+                    point_1 = rowY[i];
+                    for(int e=dp+w; dp<e; dp++){
                         si.assign(this.stitchInfo);
                         turbulenceFractalStitch(rgb, point_0, point_1,
                                                 fSum, noise, si);
@@ -1135,30 +1236,30 @@ public final class TurbulencePatternRed extends AbstractRed {
                         point_0 += tx0;
                         point_1 += tx1;
                     }
-                    point_0 += ty0;
-                    point_1 += ty1;
-                    dp += dstAdjust;
                 }
             }
         }
         else{ // Loop for turbulence noise
             if(stitchInfo == null){
                 if (channels.length == 4) {
-                    for(i=0; i<h; i++){
-                        for(end=dp+w; dp<end; dp++){
+                    for(i=start; i<end; i++){
+                        dp = dstOff + i*scanStride;
+                        point_0 = rowX[i];
+                        point_1 = rowY[i];
+                        for(int e=dp+w; dp<e; dp++){
                             destPixels[dp] = turbulence_4
                                 (point_0, point_1, fSum);
 
                             point_0 += tx0;
                             point_1 += tx1;
                         }
-                        point_0 += ty0;
-                        point_1 += ty1;
-                        dp += dstAdjust;
                     }
                 } else {
-                    for(i=0; i<h; i++){
-                        for(end=dp+w; dp<end; dp++){
+                    for(i=start; i<end; i++){
+                        dp = dstOff + i*scanStride;
+                        point_0 = rowX[i];
+                        point_1 = rowY[i];
+                        for(int e=dp+w; dp<e; dp++){
                             turbulence(rgb, point_0, point_1, fSum, noise);
 
                             // Write RGB value.
@@ -1169,16 +1270,16 @@ public final class TurbulencePatternRed extends AbstractRed {
                             point_0 += tx0;
                             point_1 += tx1;
                         }
-                        point_0 += ty0;
-                        point_1 += ty1;
-                        dp += dstAdjust;
                     }
                 }
             }
             else{
                 StitchInfo si = new StitchInfo();
-                for(i=0; i<h; i++){
-                    for(end=dp+w; dp<end; dp++){
+                for(i=start; i<end; i++){
+                    dp = dstOff + i*scanStride;
+                    point_0 = rowX[i];
+                    point_1 = rowY[i];
+                    for(int e=dp+w; dp<e; dp++){
                         si.assign(this.stitchInfo);
                         turbulenceStitch(rgb, point_0, point_1,
                                          fSum, noise, si);
@@ -1191,14 +1292,9 @@ public final class TurbulencePatternRed extends AbstractRed {
                         point_0 += tx0;
                         point_1 += tx1;
                     }
-                    point_0 += ty0;
-                    point_1 += ty1;
-                    dp += dstAdjust;
                 }
             }
         }
-
-        return dest;
     }
 
     /**
@@ -1326,7 +1422,7 @@ public final class TurbulencePatternRed extends AbstractRed {
             //                     " maxLatticeY = " + maxLatticeY);
         }
 
-        initLattice(seed);
+        setLattice(seed);
 
         ColorModel cm;
         if (alpha)
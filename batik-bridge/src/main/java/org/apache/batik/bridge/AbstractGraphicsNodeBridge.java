@@ -37,6 +37,7 @@ import org.apache.batik.ext.awt.geom.SegmentList;
 import org.apache.batik.gvt.CanvasGraphicsNode;
 import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.parser.ParseCache;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -171,10 +172,19 @@ public abstract class AbstractGraphicsNodeBridge extends AnimatableSVGBridge
             SVGOMAnimatedTransformList atl =
                 (SVGOMAnimatedTransformList) te.getTransform();
             if (atl.isSpecified()) {
-                atl.check();
-                AbstractSVGTransformList tl =
-                    (AbstractSVGTransformList) te.getTransform().getAnimVal();
-                at.concatenate(tl.getAffineTransform());
+                // A static value is looked up in the parse cache; animated
+                // or malformed values go through the transform list.
+                String s = atl.getStaticValueAsString();
+                AffineTransform t = (s == null)
+                    ? null
+                    : ParseCache.getDefaultCache().getTransform(s);
+                if (t == null) {
+                    atl.check();
+                    AbstractSVGTransformList tl =
+                        (AbstractSVGTransformList) te.getTransform().getAnimVal();
+                    t = tl.getAffineTransform();
+                }
+                at.concatenate(t);
             }
 
             // motion animation
@@ -55,6 +55,7 @@ import org.apache.batik.dom.AbstractNode;
 import org.apache.batik.dom.events.NodeEventTarget;
 import org.apache.batik.dom.svg.SVGContext;
 import org.apache.batik.dom.xbl.XBLManager;
+import org.apache.batik.ext.awt.image.renderable.FilterResultCache;
 import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.script.Interpreter;
@@ -207,6 +208,12 @@ public class BridgeContext implements ErrorConstants, CSSContext {
      */
     protected TextPainter textPainter;
 
+    /**
+     * The cache of filter results, or null if filter results are not
+     * cached.
+     */
+    protected FilterResultCache filterResultCache;
+
     /**
      * Indicates that no DOM listeners should be registered.  In this
      * case the generated GVT tree should be totally independent of
@@ -380,6 +387,14 @@ public class BridgeContext implements ErrorConstants, CSSContext {
             impl = (SVGDOMImplementation)doc.getImplementation();
             eng = impl.createCSSEngine(doc, this);
             eng.setCSSEngineUserAgent(new CSSEngineUserAgentWrapper(userAgent));
+            if (documentLoader != null) {
+                ResourceCache rc = documentLoader.getResourceCache();
+                if (rc != null) {
+                    eng.setStyleSheetCache(rc.getStyleSheetCache());
+                    eng.setStyleDeclarationCache
+                        (rc.getStyleDeclarationCache());
+                }
+            }
             doc.setCSSEngine(eng);
             eng.setMedia(userAgent.getMedia());
             String uri = userAgent.getUserStyleSheetURI();
@@ -424,6 +439,22 @@ public class BridgeContext implements ErrorConstants, CSSContext {
         return textPainter;
     }
 
+    /**
+     * Sets the cache of the results of the filters of static documents,
+     * so that a filter applied to identical content several times is
+     * only computed once.  Null, the default, disables the cache.
+     */
+    public void setFilterResultCache(FilterResultCache filterResultCache) {
+        this.filterResultCache = filterResultCache;
+    }
+
+    /**
+     * Returns the cache of filter results, or null.
+     */
+    public FilterResultCache getFilterResultCache() {
+        return filterResultCache;
+    }
+
     /**
      * Returns the document this bridge context is dedicated to.
      */
@@ -59,6 +59,11 @@ public class DocumentLoader {
      */
     protected UserAgent userAgent;
 
+    /**
+     * The cache shared with other document loaders, or null.
+     */
+    protected ResourceCache resourceCache;
+
     /**
      * Constructs a new <code>DocumentLoader</code>.
      */
@@ -87,9 +92,25 @@ public class DocumentLoader {
         synchronized (cacheMap) {
             state = (DocumentState)cacheMap.get(uri);
         }
-        if (state != null)
-            return state.getDocument();
-        return null;
+        if (state != null) {
+            Document ret = state.getDocument();
+            if (ret != null)
+                return ret;
+        }
+
+        ResourceCache rc = resourceCache;
+        if (rc == null)
+            return null;
+        Document document = rc.getDocument(uri);
+        if (document == null)
+            return null;
+
+        // The copy has no descriptor, so line numbers are unknown.
+        state = new DocumentState(uri, document, null);
+        synchronized (cacheMap) {
+            cacheMap.put(uri, state);
+        }
+        return document;
     }
 
     /**
@@ -104,6 +125,8 @@ public class DocumentLoader {
             return ret;
 
         SVGDocument document = documentFactory.createSVGDocument(uri);
+        if (resourceCache != null)
+            resourceCache.putDocument(uri, document);
 
         DocumentDescriptor desc = documentFactory.getDocumentDescriptor();
         DocumentState state = new DocumentState(uri, document, desc);
@@ -127,6 +150,8 @@ public class DocumentLoader {
             return ret;
 
         SVGDocument document = documentFactory.createSVGDocument(uri, is);
+        if (resourceCache != null)
+            resourceCache.putDocument(uri, document);
 
         DocumentDescriptor desc = documentFactory.getDocumentDescriptor();
         DocumentState state = new DocumentState(uri, document, desc);
@@ -144,6 +169,21 @@ public class DocumentLoader {
         return userAgent;
     }
 
+    /**
+     * Returns the cache shared with other document loaders, or null.
+     */
+    public ResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    /**
+     * Sets the cache shared with other document loaders.  Documents
+     * found in it are copied rather than parsed again.
+     */
+    public void setResourceCache(ResourceCache resourceCache) {
+        this.resourceCache = resourceCache;
+    }
+
     /**
      * Disposes and releases all resources allocated by this document loader.
      */
@@ -168,7 +208,7 @@ public class DocumentLoader {
         synchronized (cacheMap) {
             state = (DocumentState)cacheMap.get(uri);
         }
-        if (state == null) {
+        if ((state == null) || (state.desc == null)) {
             return -1;
         } else {
             return state.desc.getLocationLine(e);
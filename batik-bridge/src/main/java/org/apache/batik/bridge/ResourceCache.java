@@ -0,0 +1,186 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.css.engine.StyleDeclarationCache;
+import org.apache.batik.css.engine.StyleSheetCache;
+import org.apache.batik.dom.util.DOMUtilities;
+
+import org.w3c.dom.Document;
+
+/**
+ * A bounded cache of parsed external resources that may be shared by
+ * the document loaders of several bridge contexts, possibly running in
+ * different threads.
+ *
+ * <p>The bridge attaches its own state to the documents it works on,
+ * so the parsed documents are kept as private masters and each loader
+ * is handed its own copy.  The rules of external style-sheets are kept
+ * in a {@link StyleSheetCache}, and the declarations of style attributes
+ * in a {@link StyleDeclarationCache}, given to the CSS engines of the
+ * loaded documents.  Decoded raster images are already shared by the
+ * {@link org.apache.batik.ext.awt.image.spi.ImageTagRegistry}.</p>
+ *
+ * @version $Id$
+ */
+public class ResourceCache {
+
+    /**
+     * The default maximum number of documents kept in a cache.
+     */
+    public static final int DEFAULT_SIZE = 64;
+
+    /**
+     * The maximum number of documents kept.
+     */
+    protected final int size;
+
+    /**
+     * The master documents, indexed by URI in least recently used
+     * order.
+     */
+    protected final Map documents = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > size;
+            }
+        };
+
+    /**
+     * The style-sheet cache.
+     */
+    protected final StyleSheetCache styleSheetCache;
+
+    /**
+     * The style declaration cache.
+     */
+    protected final StyleDeclarationCache styleDeclarationCache =
+        new StyleDeclarationCache();
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_SIZE} documents
+     * and style-sheets.
+     */
+    public ResourceCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Creates a cache holding up to <code>size</code> documents and
+     * as many style-sheets.
+     */
+    public ResourceCache(int size) {
+        this.size = Math.max(1, size);
+        styleSheetCache = new StyleSheetCache(this.size);
+    }
+
+    /**
+     * Returns the maximum number of documents kept in this cache.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the cache of external style-sheets.
+     */
+    public StyleSheetCache getStyleSheetCache() {
+        return styleSheetCache;
+    }
+
+    /**
+     * Returns the cache of the declarations of style attributes.
+     */
+    public StyleDeclarationCache getStyleDeclarationCache() {
+        return styleDeclarationCache;
+    }
+
+    /**
+     * Returns a private copy of the document loaded from
+     * <code>uri</code>, or null if it is not in the cache.
+     * @param uri The URI of the document, without fragment.
+     */
+    public Document getDocument(String uri) {
+        Document master;
+        synchronized (documents) {
+            master = (Document)documents.get(getKey(uri));
+        }
+        if (master == null)
+            return null;
+        return copyDocument(master);
+    }
+
+    /**
+     * Caches a copy of the document loaded from <code>uri</code>.
+     * Must be called before the document is handed to a bridge.
+     * @param uri The URI of the document, without fragment.
+     * @param doc The freshly parsed document.
+     */
+    public void putDocument(String uri, Document doc) {
+        Document master = copyDocument(doc);
+        synchronized (documents) {
+            documents.put(getKey(uri), master);
+        }
+    }
+
+    /**
+     * Removes all the documents, style-sheets and style declarations
+     * from this cache.
+     */
+    public void clear() {
+        synchronized (documents) {
+            documents.clear();
+        }
+        styleSheetCache.clear();
+        styleDeclarationCache.clear();
+    }
+
+    /**
+     * Returns the key of the document loaded from <code>uri</code>.
+     * Documents referenced through different relative paths share the
+     * same entry.
+     */
+    protected String getKey(String uri) {
+        try {
+            return new URI(uri).normalize().toString();
+        } catch (URISyntaxException e) {
+            return uri;
+        }
+    }
+
+    /**
+     * Returns a deep copy of the given document.
+     */
+    protected Document copyDocument(Document doc) {
+        Document ret;
+        synchronized (doc) {
+            ret = DOMUtilities.deepCloneDocument(doc, doc.getImplementation());
+        }
+        if (doc instanceof SVGOMDocument) {
+            SVGOMDocument svgDoc = (SVGOMDocument)doc;
+            ((SVGOMDocument)ret).setParsedURL(svgDoc.getParsedURL());
+        }
+        return ret;
+    }
+}
@@ -20,22 +20,34 @@ package org.apache.batik.bridge;
 
 import java.awt.Color;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.css.engine.CSSStylableElement;
+import org.apache.batik.css.engine.SVGCSSEngine;
+import org.apache.batik.css.engine.value.Value;
 import org.apache.batik.dom.util.XLinkSupport;
 import org.apache.batik.ext.awt.image.PadMode;
+import org.apache.batik.ext.awt.image.renderable.CachedFilterRable8Bit;
 import org.apache.batik.ext.awt.image.renderable.Filter;
 import org.apache.batik.ext.awt.image.renderable.FilterChainRable;
 import org.apache.batik.ext.awt.image.renderable.FilterChainRable8Bit;
+import org.apache.batik.ext.awt.image.renderable.FilterResultCache;
 import org.apache.batik.ext.awt.image.renderable.FloodRable8Bit;
 import org.apache.batik.ext.awt.image.renderable.PadRable8Bit;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.util.ParsedURL;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 /**
@@ -121,7 +133,157 @@ public class SVGFilterElementBridge extends AnimatableGenericSVGBridge
                                    filteredNode, ctx);
         }
         filterChain.setSource(in);
-        return filterChain;
+
+        FilterResultCache cache = ctx.getFilterResultCache();
+        if (cache == null || ctx.isDynamic() ||
+            usesBackgroundOrPaint(filterElement, ctx)) {
+            return filterChain;
+        }
+        String filterKey = getFilterKey(filterElement, ctx);
+        if (filterKey == null) {
+            return filterChain;
+        }
+        // The primitives only depend on the filter elements, the
+        // bounding box and the viewport of the filtered element, and
+        // on the source graphic.  The key holds no DOM node, so the
+        // cache may be shared by several documents.
+        Viewport vp = ctx.getViewport(filteredElement);
+        List key = Arrays.asList(new Object[] {
+            filterKey,
+            filterRegion,
+            filteredNode.getGeometryBounds(),
+            vp.getWidth(),
+            vp.getHeight()
+        });
+        return new CachedFilterRable8Bit
+            (filterChain, filteredNode.getGraphicsNodeRable(true),
+             key, cache);
+    }
+
+    /**
+     * The properties of the elements of a filter which are part of the
+     * key of its cached results.
+     */
+    protected static final int[] FILTER_KEY_PROPERTIES = {
+        SVGCSSEngine.COLOR_INTERPOLATION_FILTERS_INDEX,
+        SVGCSSEngine.FLOOD_COLOR_INDEX,
+        SVGCSSEngine.FLOOD_OPACITY_INDEX,
+        SVGCSSEngine.FONT_SIZE_INDEX,
+        SVGCSSEngine.LIGHTING_COLOR_INDEX
+    };
+
+    /**
+     * Returns a description of the specified filter element, and of the
+     * filter elements it references, which does not depend on their
+     * document: the names and attributes of the elements of their
+     * subtrees, with the computed values of the properties used by the
+     * primitives.  Returns null if a primitive uses content from outside
+     * these subtrees, as &lt;feImage&gt; does.
+     */
+    protected static String getFilterKey(Element filterElement,
+                                         BridgeContext ctx) {
+        StringBuffer sb = new StringBuffer();
+        Set visited = new HashSet();
+        while (filterElement != null && visited.add(filterElement)) {
+            if (!appendFilterKey(sb, filterElement)) {
+                return null;
+            }
+            String uri = XLinkSupport.getXLinkHref(filterElement);
+            if (uri.length() == 0) {
+                break;
+            }
+            filterElement = ctx.getReferencedElement(filterElement, uri);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the description of the specified subtree to a filter key.
+     * Returns false if it contains an &lt;feImage&gt;.
+     */
+    private static boolean appendFilterKey(StringBuffer sb, Element e) {
+        if (SVG_NAMESPACE_URI.equals(e.getNamespaceURI()) &&
+            SVG_FE_IMAGE_TAG.equals(e.getLocalName())) {
+            return false;
+        }
+        sb.append('<').append(e.getNamespaceURI())
+          .append(' ').append(e.getLocalName());
+
+        // The order of the attributes is not significant.
+        NamedNodeMap attrs = e.getAttributes();
+        List names = new ArrayList(attrs.getLength());
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr a = (Attr)attrs.item(i);
+            String v = a.getValue();
+            names.add(a.getNamespaceURI() + ' ' + a.getLocalName() + '=' +
+                      v.length() + ':' + v);
+        }
+        Collections.sort(names);
+        for (Object name : names) {
+            sb.append(' ').append(name);
+        }
+
+        if (e instanceof CSSStylableElement) {
+            for (int p : FILTER_KEY_PROPERTIES) {
+                Value v = CSSUtilities.getComputedStyle(e, p);
+                sb.append(';').append(v == null ? "" : v.getCssText());
+            }
+        }
+        sb.append('>');
+
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE &&
+                !appendFilterKey(sb, (Element)n)) {
+                return false;
+            }
+        }
+        sb.append("</>");
+        return true;
+    }
+
+    /**
+     * Tells whether a primitive of the specified filter element, or of
+     * the filter elements it references, uses the background or the
+     * paint of the filtered element as input.
+     */
+    protected static boolean usesBackgroundOrPaint(Element filterElement,
+                                                   BridgeContext ctx) {
+        Set visited = new HashSet();
+        while (filterElement != null && visited.add(filterElement)) {
+            if (usesBackgroundOrPaint(filterElement)) {
+                return true;
+            }
+            String uri = XLinkSupport.getXLinkHref(filterElement);
+            if (uri.length() == 0) {
+                break;
+            }
+            filterElement = ctx.getReferencedElement(filterElement, uri);
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether an 'in' or 'in2' attribute of the specified subtree
+     * names the background or the paint of the filtered element.
+     */
+    private static boolean usesBackgroundOrPaint(Element e) {
+        String[] attrs = { SVG_IN_ATTRIBUTE, SVG_IN2_ATTRIBUTE };
+        for (String attr : attrs) {
+            String s = e.getAttributeNS(null, attr).trim();
+            if (SVG_BACKGROUND_IMAGE_VALUE.equals(s) ||
+                SVG_BACKGROUND_ALPHA_VALUE.equals(s) ||
+                SVG_FILL_PAINT_VALUE.equals(s) ||
+                SVG_STROKE_PAINT_VALUE.equals(s)) {
+                return true;
+            }
+        }
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE &&
+                usesBackgroundOrPaint((Element)n)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
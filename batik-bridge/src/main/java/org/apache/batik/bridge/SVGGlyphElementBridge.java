@@ -30,9 +30,8 @@ import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.font.GVTFontFace;
 import org.apache.batik.gvt.font.Glyph;
 import org.apache.batik.gvt.text.TextPaintInfo;
-import org.apache.batik.parser.AWTPathProducer;
 import org.apache.batik.parser.ParseException;
-import org.apache.batik.parser.PathParser;
+import org.apache.batik.parser.StringPathParser;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
@@ -91,23 +90,16 @@ public class SVGGlyphElementBridge extends AbstractSVGBridge
         String d = glyphElement.getAttributeNS(null, SVG_D_ATTRIBUTE);
         Shape dShape = null;
         if (d.length() != 0) {
-            AWTPathProducer app = new AWTPathProducer();
-            // Glyph is supposed to use properties from text element.
-            app.setWindingRule(CSSUtilities.convertFillRule(textElement));
             try {
-                PathParser pathParser = new PathParser();
-                pathParser.setPathHandler(app);
-                pathParser.parse(d);
+                // Glyph is supposed to use properties from text element.
+                Shape shape = StringPathParser.createShape
+                    (d, CSSUtilities.convertFillRule(textElement));
+                // transform the shape into the correct coord system
+                dShape = scaleTransform.createTransformedShape(shape);
             } catch (ParseException pEx) {
                 throw new BridgeException(ctx, glyphElement,
                                           pEx, ERR_ATTRIBUTE_VALUE_MALFORMED,
                                           new Object [] {SVG_D_ATTRIBUTE});
-            } finally {
-                // transform the shape into the correct coord system
-                Shape shape = app.getShape();
-                Shape transformedShape
-                    = scaleTransform.createTransformedShape(shape);
-                dShape = transformedShape;
             }
         }
 
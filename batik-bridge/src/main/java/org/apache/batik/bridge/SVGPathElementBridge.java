@@ -32,6 +32,7 @@ import org.apache.batik.dom.svg.SVGPathContext;
 import org.apache.batik.ext.awt.geom.PathLength;
 import org.apache.batik.gvt.ShapeNode;
 import org.apache.batik.parser.AWTPathProducer;
+import org.apache.batik.parser.ParseCache;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.svg.SVGPathSegList;
@@ -82,10 +83,24 @@ public class SVGPathElementBridge extends SVGDecoratedShapeElementBridge
                               ShapeNode shapeNode) {
 
         SVGOMPathElement pe = (SVGOMPathElement) e;
+        SVGOMAnimatedPathData _d = pe.getAnimatedPathData();
+
+        // Look a static 'd' attribute up in the parse cache; malformed
+        // or animated values go through the path segment list so that
+        // errors are reported as before.
+        String s = _d.getStaticValueAsString();
+        if (s != null) {
+            Shape shape = ParseCache.getDefaultCache().getPath
+                (s, CSSUtilities.convertFillRule(e));
+            if (shape != null) {
+                shapeNode.setShape(shape);
+                return;
+            }
+        }
+
         AWTPathProducer app = new AWTPathProducer();
         try {
             // 'd' attribute - required
-            SVGOMAnimatedPathData _d = pe.getAnimatedPathData();
             _d.check();
             SVGPathSegList p = _d.getAnimatedPathSegList();
             app.setWindingRule(CSSUtilities.convertFillRule(e));
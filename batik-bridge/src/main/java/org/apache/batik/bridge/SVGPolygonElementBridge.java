@@ -28,6 +28,7 @@ import org.apache.batik.css.engine.SVGCSSEngine;
 import org.apache.batik.dom.svg.LiveAttributeException;
 import org.apache.batik.gvt.ShapeNode;
 import org.apache.batik.parser.AWTPolygonProducer;
+import org.apache.batik.parser.ParseCache;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.svg.SVGPoint;
@@ -80,6 +81,19 @@ public class SVGPolygonElementBridge extends SVGDecoratedShapeElementBridge {
         SVGOMPolygonElement pe = (SVGOMPolygonElement) e;
         try {
             SVGOMAnimatedPoints _points = pe.getSVGOMAnimatedPoints();
+
+            // Look static points up in the parse cache; malformed or
+            // animated values go through the point list.
+            String s = _points.getStaticValueAsString();
+            if (s != null) {
+                Shape shape = ParseCache.getDefaultCache().getPolygon
+                    (s, CSSUtilities.convertFillRule(e));
+                if (shape != null) {
+                    shapeNode.setShape(shape);
+                    return;
+                }
+            }
+
             _points.check();
             SVGPointList pl = _points.getAnimatedPoints();
             int size = pl.getNumberOfItems();
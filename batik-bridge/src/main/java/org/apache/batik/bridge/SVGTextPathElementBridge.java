@@ -24,9 +24,8 @@ import java.awt.geom.GeneralPath;
 
 import org.apache.batik.dom.util.XLinkSupport;
 import org.apache.batik.gvt.text.TextPath;
-import org.apache.batik.parser.AWTPathProducer;
 import org.apache.batik.parser.ParseException;
-import org.apache.batik.parser.PathParser;
+import org.apache.batik.parser.StringPathParser;
 import org.w3c.dom.Element;
 
 /**
@@ -82,18 +81,13 @@ public class SVGTextPathElementBridge extends AnimatableGenericSVGBridge
         String s = pathElement.getAttributeNS(null, SVG_D_ATTRIBUTE);
         Shape pathShape = null;
         if (s.length() != 0) {
-            AWTPathProducer app = new AWTPathProducer();
-            app.setWindingRule(CSSUtilities.convertFillRule(pathElement));
             try {
-                PathParser pathParser = new PathParser();
-                pathParser.setPathHandler(app);
-                pathParser.parse(s);
+                pathShape = StringPathParser.createShape
+                    (s, CSSUtilities.convertFillRule(pathElement));
             } catch (ParseException pEx ) {
                throw new BridgeException
                    (ctx, pathElement, pEx, ERR_ATTRIBUTE_VALUE_MALFORMED,
                     new Object[] {SVG_D_ATTRIBUTE});
-            } finally {
-                pathShape = app.getShape();
             }
         } else {
             throw new BridgeException(ctx, pathElement, ERR_ATTRIBUTE_MISSING,
@@ -33,6 +33,7 @@ import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.parser.AWTTransformProducer;
 import org.apache.batik.parser.ClockHandler;
 import org.apache.batik.parser.ClockParser;
+import org.apache.batik.parser.ParseCache;
 import org.apache.batik.parser.ParseException;
 import org.apache.batik.util.ParsedURL;
 import org.apache.batik.util.SVG12Constants;
@@ -1159,6 +1160,10 @@ public abstract class SVGUtilities implements SVGConstants, ErrorConstants {
                                                    String attr,
                                                    String transform,
                                                    BridgeContext ctx) {
+        AffineTransform at = ParseCache.getDefaultCache().getTransform(transform);
+        if (at != null) {
+            return at;
+        }
         try {
             return AWTTransformProducer.createAffineTransform(transform);
         } catch (ParseException pEx) {
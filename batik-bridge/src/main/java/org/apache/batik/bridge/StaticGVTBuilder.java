@@ -0,0 +1,322 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.engine.CSSStyleSheetNode;
+import org.apache.batik.css.engine.ImportRule;
+import org.apache.batik.css.engine.MediaRule;
+import org.apache.batik.css.engine.Rule;
+import org.apache.batik.css.engine.StyleDeclaration;
+import org.apache.batik.css.engine.StyleRule;
+import org.apache.batik.css.engine.StyleSheet;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A GVT builder for static documents which releases the DOM of the
+ * graphics elements once their graphics nodes are built, so that the
+ * DOM and the GVT tree of a large drawing do not have to be kept in
+ * memory together.
+ *
+ * <p>Once the graphics node of a shape, a 'g' or an 'a' element is
+ * built, the element is removed from the document, with its computed
+ * style, if nothing can need it anymore: its subtree only holds such
+ * elements and descriptive elements, and neither it, one of its
+ * descendants nor one of its ancestors is referenced by a fragment
+ * identifier ('#id') found in an attribute, in a style-sheet or given
+ * to {@link #addReferencedId}.  Elements built on behalf of other
+ * elements, such as the content of markers, patterns and 'use'
+ * elements, are never removed.  Nothing is removed when the document
+ * is dynamic or when a selector depends on the siblings of an
+ * element.</p>
+ *
+ * <p>The document is modified: this builder must only be given
+ * documents that are not used once built.</p>
+ *
+ * @version $Id$
+ */
+public class StaticGVTBuilder extends GVTBuilder {
+
+    /**
+     * The ids referenced from outside the document.
+     */
+    protected Set extraIds = new HashSet();
+
+    /**
+     * The referenced elements of the document being built.
+     */
+    protected Set referenced;
+
+    /**
+     * The referenced elements and their ancestors.
+     */
+    protected Set retained;
+
+    /**
+     * Whether the elements being built may be removed.
+     */
+    protected boolean pruning;
+
+    /**
+     * The number of elements removed by the last build.
+     */
+    protected int prunedCount;
+
+    /**
+     * Constructs a new builder.
+     */
+    public StaticGVTBuilder() { }
+
+    /**
+     * Keeps the element with the given id, for example when it is
+     * referenced by the fragment identifier of the document URI.
+     */
+    public void addReferencedId(String id) {
+        extraIds.add(id);
+    }
+
+    /**
+     * Returns the number of elements removed from the document by the
+     * last build.
+     */
+    public int getPrunedCount() {
+        return prunedCount;
+    }
+
+    /**
+     * Builds using the specified bridge context the specified SVG document.
+     */
+    public GraphicsNode build(BridgeContext ctx, Document document) {
+        prunedCount = 0;
+        pruning = !ctx.isDynamic();
+        try {
+            return super.build(ctx, document);
+        } finally {
+            pruning = false;
+            referenced = null;
+            retained = null;
+        }
+    }
+
+    /**
+     * Builds using the specified bridge context the specified Element.
+     * The elements built this way are never removed.
+     */
+    public GraphicsNode build(BridgeContext ctx, Element e) {
+        boolean b = pruning;
+        pruning = false;
+        try {
+            return super.build(ctx, e);
+        } finally {
+            pruning = b;
+        }
+    }
+
+    /**
+     * Builds a composite Element, removing the children that are no
+     * longer needed.
+     */
+    protected void buildComposite(BridgeContext ctx,
+                                  Element e,
+                                  CompositeGraphicsNode parentNode) {
+        if (!pruning) {
+            super.buildComposite(ctx, e, parentNode);
+            return;
+        }
+        if (referenced == null) {
+            findReferences(ctx, e.getOwnerDocument());
+            if (!pruning) {
+                super.buildComposite(ctx, e, parentNode);
+                return;
+            }
+        }
+        Node n = e.getFirstChild();
+        while (n != null) {
+            Node next = n.getNextSibling();
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                Element child = (Element)n;
+                buildGraphicsNode(ctx, child, parentNode);
+                if (isPrunable(ctx, child)) {
+                    e.removeChild(child);
+                    prunedCount++;
+                }
+            }
+            n = next;
+        }
+    }
+
+    /**
+     * Tells whether the given element, whose graphics node is built,
+     * can be removed from the document.
+     */
+    protected boolean isPrunable(BridgeContext ctx, Element e) {
+        if (retained.contains(e)) {
+            return false;
+        }
+        for (Node n = e; n != null; n = n.getParentNode()) {
+            if (referenced.contains(n)) {
+                return false;
+            }
+        }
+        return isPrunableSubtree(ctx, e);
+    }
+
+    /**
+     * Tells whether the given subtree only holds elements which are
+     * not used once built.
+     */
+    protected boolean isPrunableSubtree(BridgeContext ctx, Element e) {
+        if (SVG_NAMESPACE_URI.equals(e.getNamespaceURI())) {
+            String ln = e.getLocalName();
+            if (SVG_TITLE_TAG.equals(ln) ||
+                SVG_DESC_TAG.equals(ln) ||
+                SVG_METADATA_TAG.equals(ln)) {
+                // Descriptive elements, and whatever they contain.
+                return true;
+            }
+        }
+        Bridge b = ctx.getBridge(e);
+        if (!(b instanceof SVGShapeElementBridge) &&
+            (b == null ||
+             b.getClass() != SVGGElementBridge.class &&
+             b.getClass() != SVGAElementBridge.class)) {
+            return false;
+        }
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE &&
+                !isPrunableSubtree(ctx, (Element)n)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the elements referenced in the given document.  Disables
+     * the pruning if the selectors of the document depend on the
+     * siblings of the elements.
+     */
+    protected void findReferences(BridgeContext ctx, Document doc) {
+        referenced = new HashSet();
+        retained = new HashSet();
+        Element root = doc.getDocumentElement();
+        CSSEngine eng = ctx.getCSSEngineForElement(root);
+        if (eng != null && !eng.hasContextFreeSelectors()) {
+            pruning = false;
+            return;
+        }
+
+        Set ids = new HashSet(extraIds);
+        findReferencedIds(ids, root);
+        if (eng != null) {
+            List snodes = eng.getStyleSheetNodes();
+            for (Object snode : snodes) {
+                StyleSheet ss = ((CSSStyleSheetNode)snode).getCSSStyleSheet();
+                if (ss != null) {
+                    findReferencedIds(ids, ss);
+                }
+            }
+        }
+
+        for (Object id : ids) {
+            Element e = doc.getElementById((String)id);
+            if (e != null) {
+                referenced.add(e);
+                for (Node n = e; n != null; n = n.getParentNode()) {
+                    retained.add(n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the ids referenced by the attributes of the given subtree.
+     */
+    protected void findReferencedIds(Set ids, Element e) {
+        NamedNodeMap attrs = e.getAttributes();
+        int len = attrs.getLength();
+        for (int i = 0; i < len; i++) {
+            addFragmentIds(ids, ((Attr)attrs.item(i)).getValue());
+        }
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                findReferencedIds(ids, (Element)n);
+            }
+        }
+    }
+
+    /**
+     * Adds the ids referenced by the rules of the given style-sheet.
+     */
+    protected void findReferencedIds(Set ids, StyleSheet ss) {
+        int len = ss.getSize();
+        for (int i = 0; i < len; i++) {
+            Rule r = ss.getRule(i);
+            switch (r.getType()) {
+            case StyleRule.TYPE:
+                StyleDeclaration sd = ((StyleRule)r).getStyleDeclaration();
+                int slen = sd.size();
+                for (int j = 0; j < slen; j++) {
+                    addFragmentIds(ids, sd.getValue(j).getCssText());
+                }
+                break;
+
+            case MediaRule.TYPE:
+            case ImportRule.TYPE:
+                findReferencedIds(ids, (MediaRule)r);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds the names following a '#' in the given string.  Colors
+     * such as '#fff' are added too, which is harmless.
+     */
+    protected static void addFragmentIds(Set ids, String s) {
+        int i = s.indexOf('#');
+        while (i != -1) {
+            int start = ++i;
+            int len = s.length();
+            while (i < len) {
+                char c = s.charAt(i);
+                if (!Character.isLetterOrDigit(c) &&
+                    c != '-' && c != '_' && c != '.' && c != ':') {
+                    break;
+                }
+                i++;
+            }
+            if (i > start) {
+                ids.add(s.substring(start, i));
+            }
+            i = s.indexOf('#', i);
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.apache.batik.dom.svg.LiveAttributeException;
 import org.apache.batik.parser.AWTTransformProducer;
 import org.apache.batik.parser.FragmentIdentifierHandler;
 import org.apache.batik.parser.FragmentIdentifierParser;
+import org.apache.batik.parser.ParseCache;
 import org.apache.batik.parser.ParseException;
 import org.apache.batik.parser.PreserveAspectRatioParser;
 import org.apache.batik.dom.util.DOMUtilities;
@@ -353,8 +354,13 @@ public abstract class ViewBox implements SVGConstants, ErrorConstants {
         if (value.length() == 0) {
             return null;
         }
+        ParseCache cache = ParseCache.getDefaultCache();
+        float[] vb = cache.getViewBox(value);
+        if (vb != null) {
+            return vb;
+        }
         int i = 0;
-        float[] vb = new float[4];
+        vb = new float[4];
         StringTokenizer st = new StringTokenizer(value, " ,");
         try {
             while (i < 4 && st.hasMoreTokens()) {
@@ -381,6 +387,7 @@ public abstract class ViewBox implements SVGConstants, ErrorConstants {
         if (vb[2] == 0 || vb[3] == 0) {
             return null; // <!> FIXME : must disable !
         }
+        cache.putViewBox(value, vb);
         return vb;
     }
 
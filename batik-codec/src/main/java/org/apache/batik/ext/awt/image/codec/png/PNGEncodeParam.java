@@ -28,6 +28,7 @@ import java.awt.image.SampleModel;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.zip.Deflater;
 
 /**
  * An instance of <code>ImageEncodeParam</code> for encoding images in
@@ -587,6 +588,53 @@ public abstract class PNGEncodeParam implements ImageEncodeParam {
         return useInterlacing;
     }
 
+    private int compressionLevel = Deflater.BEST_COMPRESSION;
+
+    /**
+     * Sets the compression level of the image data, from 0 (no
+     * compression, fastest) to 9 (best compression, slowest).  At level
+     * 0 the rows are not filtered either.  The default is 9.
+     *
+     * @throws IllegalArgumentException if the level is out of range.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException();
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Returns the compression level of the image data.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    private int compressionThreads = 0;
+
+    /**
+     * Sets the number of threads used to filter and compress the image
+     * data.  When greater than zero, the rows are split into groups
+     * which are filtered and compressed independently and joined into
+     * a single zlib stream, so that encoding can use several
+     * processors and can overlap with the computation of the image.
+     * The output is then the same for any number of threads, but
+     * differs slightly from the output of the default mode, which
+     * compresses the data as a single stream on the calling thread.
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Returns the number of threads used to compress the image data,
+     * or zero if the data is compressed as a single stream.
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
     // bKGD chunk - delegate to subclasses
 
     // In JAI 1.0, 'backgroundSet' was private.  The JDK 1.2 compiler
@@ -1334,9 +1382,11 @@ public abstract class PNGEncodeParam implements ImageEncodeParam {
      *
      * <p> The default implementation of the method performs a trial
      * encoding with each of the filter types, and computes the sum of
-     * absolute values of the differences between the raw bytes of the
-     * current row and the predicted values.  The index of the filter
-     * producing the smallest result is returned.
+     * the absolute values of the filtered bytes, taken as signed
+     * values since small negative differences wrap around to large
+     * bytes.  The index of the filter producing the smallest result is
+     * returned.  This method may be called concurrently for different
+     * rows, with different scratch arrays.
      *
      * <p> As an example, to perform only 'sub' filtering, this method
      * could be implemented (non-optimally) as follows:
@@ -1389,22 +1439,22 @@ public abstract class PNGEncodeParam implements ImageEncodeParam {
             upleft = prevRow[i - bytesPerPixel] & 0xff;
 
             // no filter
-            badness[0] += curr;
+            badness[0] += abs((byte)curr);
 
             // sub filter
             diff = curr - left;
             scratchRows[1][i]  = (byte)diff;
-            badness    [1]    +=   (diff>0)?diff:-diff;
+            badness    [1]    +=   abs((byte)diff);
 
             // up filter
             diff = curr - up;
             scratchRows[2][i]  = (byte)diff;
-            badness    [2]    +=   (diff>=0)?diff:-diff;
+            badness    [2]    +=   abs((byte)diff);
 
             // average filter
             diff = curr - ((left+up)>>1);
             scratchRows[3][i]  = (byte)diff;
-            badness    [3]    +=   (diff>=0)?diff:-diff;
+            badness    [3]    +=   abs((byte)diff);
 
             // paeth filter
 
@@ -1482,7 +1532,7 @@ public abstract class PNGEncodeParam implements ImageEncodeParam {
               }
             }
             scratchRows[4][i]  = (byte)diff;
-            badness    [4]    +=   (diff>=0)?diff:-diff;
+            badness    [4]    +=   abs((byte)diff);
         }
         int filterType = 0;
         int minBadness = badness[0];
@@ -32,10 +32,13 @@ import java.io.DataOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
@@ -337,14 +340,61 @@ public class PNGImageEncoder extends ImageEncoderImpl {
         return (val > maxValue) ? maxValue : val;
     }
 
-    private void encodePass(OutputStream os, Raster ras,
+    /**
+     * The number of pixels fetched from the image at once.
+     */
+    private static final int STRIP_PIXELS = 1 << 18;
+
+    /**
+     * Returns the rows of the image from <code>row</code> to the end of
+     * a strip of about <code>STRIP_PIXELS</code> pixels, so that the
+     * whole image never has to be copied.  Strips end on a tile
+     * boundary so that each tile of a tiled image is only fetched once.
+     */
+    private Raster getStrip(int row) {
+        int minX = image.getMinX();
+        int w    = image.getWidth();
+        int maxY = image.getMinY() + image.getHeight();
+
+        int end = row + Math.max(1, STRIP_PIXELS/w);
+        int th  = image.getTileHeight();
+        if (th < image.getHeight()) {
+            int off = image.getTileGridYOffset();
+            end = off + ((end - off + th - 1)/th)*th;
+        }
+        if (end > maxY) {
+            end = maxY;
+        }
+
+        // 'BufferedImage.subImage' doesn't appear to set the Width
+        // and height properly of the Child Raster, so the Raster
+        // you get back from image.getData() may appear larger than
+        // it should.  This is solved by bounding the raster to the
+        // image's bounds...
+        Raster ras = image.getData(new Rectangle(minX, row, w, end - row));
+
+        if (skipAlpha) {
+            int numBands = ras.getNumBands() - 1;
+            int[] bandList = new int[numBands];
+            for (int i = 0; i < numBands; i++) {
+                bandList[i] = i;
+            }
+            ras = ras.createChild(ras.getMinX(), ras.getMinY(),
+                                  ras.getWidth(), ras.getHeight(),
+                                  ras.getMinX(), ras.getMinY(),
+                                  bandList);
+        }
+        return ras;
+    }
+
+    private void encodePass(OutputStream os,
                             int xOffset,     int yOffset,
                             int xSkip,       int ySkip)
         throws IOException {
-        int minX   = ras.getMinX();
-        int minY   = ras.getMinY();
-        int width  = ras.getWidth();
-        int height = ras.getHeight();
+        int minX   = image.getMinX();
+        int minY   = image.getMinY();
+        int width  = image.getWidth();
+        int height = image.getHeight();
 
         xOffset *= numBands;
         xSkip   *= numBands;
@@ -373,7 +423,20 @@ public class PNGImageEncoder extends ImageEncoderImpl {
 
         int maxValue = (1 << bitDepth) - 1;
 
+        // With several compression threads, the rows are filtered in
+        // groups on those threads.
+        ParallelDeflaterOutputStream pdos = null;
+        List group = null;
+        if (os instanceof ParallelDeflaterOutputStream) {
+            pdos = (ParallelDeflaterOutputStream)os;
+            group = new ArrayList();
+        }
+
+        Raster ras = null;
         for (int row = minY + yOffset; row < minY + height; row += ySkip) {
+            if (ras == null || row >= ras.getMinY() + ras.getHeight()) {
+                ras = getStrip(row);
+            }
             ras.getPixels(minX, row, width, 1, samples);
 
             if (compressGray) {
@@ -430,10 +493,21 @@ public class PNGImageEncoder extends ImageEncoderImpl {
                 break;
             }
 
+            if (pdos != null) {
+                group.add(currRow);
+                if (group.size()*(bytesPerRow + 1) >= GROUP_SIZE) {
+                    pdos.writeBlock(new RowGroup(prevRow, group,
+                                                 bytesPerRow));
+                    prevRow = currRow;
+                    group = new ArrayList();
+                }
+                currRow = new byte[bytesPerRow + bpp];
+                continue;
+            }
+
             // Perform filtering
-            int filterType = param.filterRow(currRow, prevRow,
-                                             filteredRows,
-                                             bytesPerRow, bpp);
+            int filterType = filterRow(currRow, prevRow,
+                                       filteredRows, bytesPerRow);
 
             os.write(filterType);
             os.write(filteredRows[filterType], bpp, bytesPerRow);
@@ -443,67 +517,118 @@ public class PNGImageEncoder extends ImageEncoderImpl {
             currRow = prevRow;
             prevRow = swap;
         }
+
+        if (pdos != null && !group.isEmpty()) {
+            pdos.writeBlock(new RowGroup(prevRow, group, bytesPerRow));
+        }
     }
 
-    private void writeIDAT() throws IOException {
-        IDATOutputStream ios = new IDATOutputStream(dataOutput, 8192);
-        DeflaterOutputStream dos =
-            new DeflaterOutputStream(ios, new Deflater(9));
+    /**
+     * The number of bytes of filtered data in a group of rows.
+     */
+    private static final int GROUP_SIZE =
+        ParallelDeflaterOutputStream.DEFAULT_BLOCK_SIZE;
 
-        // Future work - don't convert entire image to a Raster It
-        // might seem that you could just call image.getData() but
-        // 'BufferedImage.subImage' doesn't appear to set the Width
-        // and height properly of the Child Raster, so the Raster
-        // you get back here appears larger than it should.
-        // This solves that problem by bounding the raster to the
-        // image's bounds...
-        Raster ras = image.getData(new Rectangle(image.getMinX(),
-                                                 image.getMinY(),
-                                                 image.getWidth(),
-                                                 image.getHeight()));
-        // System.out.println("Image: [" +
-        //                    image.getMinY()  + ", " +
-        //                    image.getMinX()  + ", " +
-        //                    image.getWidth()  + ", " +
-        //                    image.getHeight() + "]");
-        // System.out.println("Ras: [" +
-        //                    ras.getMinX()  + ", " +
-        //                    ras.getMinY()  + ", " +
-        //                    ras.getWidth()  + ", " +
-        //                    ras.getHeight() + "]");
+    /**
+     * Filters a row with <code>PNGEncodeParam.filterRow</code>, unless
+     * the data is not compressed.
+     * @return The filter type, which is also the index of the filtered
+     *         row in <code>scratchRows</code>.
+     */
+    private int filterRow(byte[] currRow, byte[] prevRow,
+                          byte[][] scratchRows, int bytesPerRow) {
+        if (param.getCompressionLevel() == 0) {
+            System.arraycopy(currRow, bpp, scratchRows[0], bpp, bytesPerRow);
+            return PNGEncodeParam.PNG_FILTER_NONE;
+        }
+        return param.filterRow(currRow, prevRow, scratchRows,
+                               bytesPerRow, bpp);
+    }
 
-        if (skipAlpha) {
-            int numBands = ras.getNumBands() - 1;
-            int[] bandList = new int[numBands];
-            for (int i = 0; i < numBands; i++) {
-                bandList[i] = i;
+    /**
+     * Filters a group of rows on a compression thread, and returns the
+     * filtered data.
+     */
+    private class RowGroup implements Callable {
+
+        private byte[] prevRow;
+        private List rows;
+        private int bytesPerRow;
+
+        /**
+         * @param prevRow The row before the group, or a row of zeros.
+         * @param rows The rows of the group.
+         * @param bytesPerRow The number of bytes in a row.
+         */
+        RowGroup(byte[] prevRow, List rows, int bytesPerRow) {
+            this.prevRow = prevRow;
+            this.rows = rows;
+            this.bytesPerRow = bytesPerRow;
+        }
+
+        public Object call() {
+            byte[][] scratchRows = new byte[5][bytesPerRow + bpp];
+            byte[] data = new byte[rows.size()*(bytesPerRow + 1)];
+            byte[] prev = prevRow;
+            int off = 0;
+            for (Object row : rows) {
+                byte[] curr = (byte[])row;
+                int filterType = filterRow(curr, prev,
+                                           scratchRows, bytesPerRow);
+                data[off++] = (byte)filterType;
+                System.arraycopy(scratchRows[filterType], bpp,
+                                 data, off, bytesPerRow);
+                off += bytesPerRow;
+                prev = curr;
             }
-            ras = ras.createChild(0, 0,
-                                  ras.getWidth(), ras.getHeight(),
-                                  0, 0,
-                                  bandList);
+            return data;
         }
+    }
 
-        if (interlace) {
-            // Interlacing pass 1
-            encodePass(dos, ras, 0, 0, 8, 8);
-            // Interlacing pass 2
-            encodePass(dos, ras, 4, 0, 8, 8);
-            // Interlacing pass 3
-            encodePass(dos, ras, 0, 4, 4, 8);
-            // Interlacing pass 4
-            encodePass(dos, ras, 2, 0, 4, 4);
-            // Interlacing pass 5
-            encodePass(dos, ras, 0, 2, 2, 4);
-            // Interlacing pass 6
-            encodePass(dos, ras, 1, 0, 2, 2);
-            // Interlacing pass 7
-            encodePass(dos, ras, 0, 1, 1, 2);
+    private void writeIDAT() throws IOException {
+        IDATOutputStream ios = new IDATOutputStream(dataOutput, 8192);
+        ParallelDeflaterOutputStream pdos = null;
+        OutputStream dos;
+        if (param.getCompressionThreads() > 0) {
+            pdos = new ParallelDeflaterOutputStream
+                (ios, param.getCompressionLevel(),
+                 param.getCompressionThreads());
+            dos = pdos;
         } else {
-            encodePass(dos, ras, 0, 0, 1, 1);
+            dos = new DeflaterOutputStream
+                (ios, new Deflater(param.getCompressionLevel()));
         }
 
-        dos.finish();
+        try {
+            if (interlace) {
+                // Interlacing pass 1
+                encodePass(dos, 0, 0, 8, 8);
+                // Interlacing pass 2
+                encodePass(dos, 4, 0, 8, 8);
+                // Interlacing pass 3
+                encodePass(dos, 0, 4, 4, 8);
+                // Interlacing pass 4
+                encodePass(dos, 2, 0, 4, 4);
+                // Interlacing pass 5
+                encodePass(dos, 0, 2, 2, 4);
+                // Interlacing pass 6
+                encodePass(dos, 1, 0, 2, 2);
+                // Interlacing pass 7
+                encodePass(dos, 0, 1, 1, 2);
+            } else {
+                encodePass(dos, 0, 0, 1, 1);
+            }
+
+            if (pdos != null) {
+                pdos.finish();
+            } else {
+                ((DeflaterOutputStream)dos).finish();
+            }
+        } finally {
+            if (pdos != null) {
+                pdos.end();
+            }
+        }
         dos.close();
         ios.flush();
         ios.close();
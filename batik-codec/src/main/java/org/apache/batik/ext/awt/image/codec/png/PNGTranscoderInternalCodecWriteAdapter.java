@@ -19,6 +19,9 @@
 package org.apache.batik.ext.awt.image.codec.png;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -35,7 +38,7 @@ import org.apache.batik.transcoder.image.PNGTranscoder;
  * @version $Id$
  */
 public class PNGTranscoderInternalCodecWriteAdapter implements
-        PNGTranscoder.WriteAdapter {
+        PNGTranscoder.RenderedImageWriteAdapter {
 
     /**
      * @throws TranscoderException
@@ -55,6 +58,42 @@ public class PNGTranscoderInternalCodecWriteAdapter implements
                 img = IndexImage.getIndexedImage(img,1<<n);
         }
 
+        encode(transcoder, img, output);
+    }
+
+    /**
+     * Writes the specified image, strip by strip, unless it has to be
+     * converted to an indexed image first.
+     * @throws TranscoderException
+     * @see org.apache.batik.transcoder.image.PNGTranscoder.RenderedImageWriteAdapter#writeImage(
+     * org.apache.batik.transcoder.image.PNGTranscoder, java.awt.image.RenderedImage,
+     * org.apache.batik.transcoder.TranscoderOutput)
+     */
+    public void writeImage(PNGTranscoder transcoder, RenderedImage img,
+            TranscoderOutput output) throws TranscoderException {
+        TranscodingHints hints = transcoder.getTranscodingHints();
+
+        if (hints.containsKey(PNGTranscoder.KEY_INDEXED)) {
+            // The palette is computed from the whole image.
+            ColorModel cm = img.getColorModel();
+            WritableRaster wr = cm.createCompatibleWritableRaster
+                (img.getWidth(), img.getHeight());
+            img.copyData(wr.createWritableTranslatedChild(img.getMinX(),
+                                                          img.getMinY()));
+            writeImage(transcoder,
+                       new BufferedImage(cm, wr, cm.isAlphaPremultiplied(),
+                                         null),
+                       output);
+            return;
+        }
+
+        encode(transcoder, img, output);
+    }
+
+    private void encode(PNGTranscoder transcoder, RenderedImage img,
+            TranscoderOutput output) throws TranscoderException {
+        TranscodingHints hints = transcoder.getTranscodingHints();
+
         PNGEncodeParam params = PNGEncodeParam.getDefaultEncodeParam(img);
         if (params instanceof PNGEncodeParam.RGB) {
             ((PNGEncodeParam.RGB)params).setBackgroundRGB
@@ -78,6 +117,15 @@ public class PNGTranscoderInternalCodecWriteAdapter implements
         }
 
 
+        if (hints.containsKey(PNGTranscoder.KEY_COMPRESSION_LEVEL)) {
+            params.setCompressionLevel
+                ((Integer) hints.get(PNGTranscoder.KEY_COMPRESSION_LEVEL));
+        }
+        if (hints.containsKey(PNGTranscoder.KEY_COMPRESSION_THREADS)) {
+            params.setCompressionThreads
+                ((Integer) hints.get(PNGTranscoder.KEY_COMPRESSION_THREADS));
+        }
+
         float PixSzMM = transcoder.getUserAgent().getPixelUnitToMillimeter();
         // num Pixs in 1 Meter
         int numPix      = (int)((1000/PixSzMM)+0.5);
@@ -0,0 +1,335 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.codec.png;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * An output stream which writes the zlib compressed form of the data
+ * written to it, compressing blocks of the data on several threads.
+ *
+ * <p>The data is cut into blocks, either of a fixed size when it is
+ * written as bytes, or as given to {@link #writeBlock(Callable)}.  Each
+ * block is compressed on its own as raw deflate data, using the last
+ * 32K of the previous block as its dictionary, and ends on a byte
+ * boundary (a sync flush) except for the last one, which ends the
+ * deflate stream.  The compressed blocks are written in order after a
+ * zlib header and followed by the Adler-32 checksum of the whole data,
+ * which gives a single valid zlib stream.  The output only depends on
+ * the compression level and on the blocks, not on the number of
+ * threads nor on how the data is split into write calls.</p>
+ *
+ * <p>Compressed blocks are written as soon as they and the blocks
+ * before them are done, and at most two blocks per thread are pending,
+ * so the memory used does not grow with the size of the data.</p>
+ *
+ * @version $Id$
+ */
+public class ParallelDeflaterOutputStream extends FilterOutputStream {
+
+    /**
+     * The default size of a block of uncompressed data.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    /**
+     * The size of the deflate window, and so of the dictionaries.
+     */
+    protected static final int DICTIONARY_SIZE = 32 * 1024;
+
+    protected int level;
+    protected int blockSize;
+    protected int maxPending;
+
+    protected ExecutorService executor;
+
+    /**
+     * The blocks not written yet, in order.
+     */
+    protected LinkedList pending = new LinkedList();
+
+    protected byte[] block;
+    protected int count;
+
+    /**
+     * The data of the last block queued.
+     */
+    protected Future previous;
+
+    protected Adler32 adler = new Adler32();
+    protected boolean headerWritten;
+    protected boolean finished;
+
+    /**
+     * Creates a new stream using blocks of the default size.
+     * @param out The stream the compressed data is written to.
+     * @param level The compression level, from 0 to 9.
+     * @param threads The number of threads compressing the blocks.
+     */
+    public ParallelDeflaterOutputStream(OutputStream out,
+                                        int level, int threads) {
+        this(out, level, threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new stream.
+     * @param out The stream the compressed data is written to.
+     * @param level The compression level, from 0 to 9.
+     * @param threads The number of threads compressing the blocks.
+     * @param blockSize The size of the blocks of uncompressed data,
+     *        which must not be less than 32K.
+     */
+    public ParallelDeflaterOutputStream(OutputStream out, int level,
+                                        int threads, int blockSize) {
+        super(out);
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Bad level: " + level);
+        }
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Bad block size: " + blockSize);
+        }
+        this.level = level;
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        if (threads < 1) {
+            threads = 1;
+        }
+        this.maxPending = threads * 2;
+        this.executor = Executors.newFixedThreadPool(threads,
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "PNG deflater");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    }
+
+    public void write(int b) throws IOException {
+        block[count++] = (byte)b;
+        if (count == blockSize) {
+            submit(false);
+        }
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(blockSize - count, len);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Compresses the remaining data and writes the end of the zlib
+     * stream, without closing the underlying stream.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        try {
+            submit(true);
+            previous = null;
+            while (!pending.isEmpty()) {
+                writeBlock();
+            }
+            int a = (int)adler.getValue();
+            out.write(a >>> 24);
+            out.write((a >>> 16) & 0xff);
+            out.write((a >>> 8) & 0xff);
+            out.write(a & 0xff);
+        } finally {
+            finished = true;
+            end();
+        }
+    }
+
+    /**
+     * Stops the compression threads.  Called by {@link #finish}, and to
+     * be called instead of it when the data cannot be completed.
+     */
+    public void end() {
+        executor.shutdownNow();
+        pending.clear();
+        previous = null;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Queues a block whose data is computed on the compression threads,
+     * after the data written so far.  This lets the work producing the
+     * data, such as the filtering of image rows, run in parallel too.
+     * @param data The task computing the data of the block, which
+     *        returns a <code>byte[]</code> holding exactly that data.
+     */
+    public void writeBlock(Callable data) throws IOException {
+        if (count > 0) {
+            submit(false);
+        }
+        submit(executor.submit(data), false);
+    }
+
+    /**
+     * Queues the current block for compression.
+     * @param last Whether it is the last block of the stream.
+     */
+    protected void submit(boolean last) throws IOException {
+        final byte[] data = (count == block.length)
+            ? block : Arrays.copyOf(block, count);
+        submit(executor.submit(new Callable() {
+                public Object call() {
+                    return data;
+                }
+            }), last);
+        if (!last) {
+            block = new byte[blockSize];
+            count = 0;
+        }
+    }
+
+    /**
+     * Queues a block for compression.  The task compressing it waits
+     * for its data and for the data of the previous block, both of
+     * which were submitted before it, so they are already being
+     * computed by other threads.
+     * @param data The data of the block.
+     * @param last Whether it is the last block of the stream.
+     */
+    protected void submit(final Future data, final boolean last)
+        throws IOException {
+        if (!headerWritten) {
+            writeHeader();
+        }
+        while (pending.size() >= maxPending) {
+            writeBlock();
+        }
+        final Future dict = previous;
+        Future compressed = executor.submit(new Callable() {
+            public Object call() throws Exception {
+                return compress((byte[])data.get(),
+                                dict == null ? null : (byte[])dict.get(),
+                                last);
+            }
+        });
+        pending.add(new Future[] { data, compressed });
+        previous = data;
+    }
+
+    /**
+     * Waits for the oldest pending block and writes it.
+     */
+    protected void writeBlock() throws IOException {
+        Future[] f = (Future[])pending.removeFirst();
+        try {
+            ByteArrayOutputStream bos = (ByteArrayOutputStream)f[1].get();
+            adler.update((byte[])f[0].get());
+            bos.writeTo(out);
+        } catch (InterruptedException ie) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException ee) {
+            IOException ioe = new IOException("Compression failed");
+            ioe.initCause(ee.getCause());
+            throw ioe;
+        }
+    }
+
+    /**
+     * Compresses a block of data as raw deflate data.
+     * @param data The data of the block.
+     * @param dict The data of the previous block, or null.
+     * @param last Whether it is the last block of the stream.
+     */
+    protected ByteArrayOutputStream compress(byte[] data, byte[] dict,
+                                             boolean last) {
+        Deflater def = new Deflater(level, true);
+        ByteArrayOutputStream bos =
+            new ByteArrayOutputStream(data.length / 2 + 64);
+        byte[] buf = new byte[8192];
+        try {
+            if (dict != null && dict.length > 0) {
+                int len = Math.min(dict.length, DICTIONARY_SIZE);
+                def.setDictionary(dict, dict.length - len, len);
+            }
+            def.setInput(data);
+            if (last) {
+                def.finish();
+                while (!def.finished()) {
+                    int n = def.deflate(buf);
+                    bos.write(buf, 0, n);
+                }
+            } else {
+                int n;
+                do {
+                    n = def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    bos.write(buf, 0, n);
+                } while (n == buf.length);
+            }
+        } finally {
+            def.end();
+        }
+        return bos;
+    }
+
+    /**
+     * Writes the zlib header for the compression level.
+     */
+    protected void writeHeader() throws IOException {
+        int flevel;
+        if      (level < 2)  flevel = 0;
+        else if (level < 6)  flevel = 1;
+        else if (level == 6) flevel = 2;
+        else                 flevel = 3;
+        int header = (0x78 << 8) | (flevel << 6);
+        header += 31 - header % 31;
+        out.write(header >> 8);
+        out.write(header & 0xff);
+        headerWritten = true;
+    }
+}
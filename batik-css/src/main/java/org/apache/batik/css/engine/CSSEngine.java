@@ -27,6 +27,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.batik.constants.XMLConstants;
 import org.apache.batik.css.engine.sac.CSSConditionFactory;
 import org.apache.batik.css.engine.sac.CSSSelectorFactory;
 import org.apache.batik.css.engine.sac.ExtendedSelector;
@@ -40,10 +41,15 @@ import org.apache.batik.util.CSSConstants;
 import org.apache.batik.util.ParsedURL;
 
 import org.w3c.css.sac.CSSException;
+import org.w3c.css.sac.CombinatorCondition;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.ConditionalSelector;
+import org.w3c.css.sac.DescendantSelector;
 import org.w3c.css.sac.DocumentHandler;
 import org.w3c.css.sac.InputSource;
 import org.w3c.css.sac.LexicalUnit;
 import org.w3c.css.sac.SACMediaList;
+import org.w3c.css.sac.Selector;
 import org.w3c.css.sac.SelectorList;
 import org.w3c.dom.Attr;
 import org.w3c.dom.DOMException;
@@ -244,12 +250,6 @@ public abstract class CSSEngine {
      */
     protected String nonCSSPresentationalHintsNamespaceURI;
 
-    /**
-     * The style declaration document handler.
-     */
-    protected StyleDeclarationDocumentHandler styleDeclarationDocumentHandler =
-        new StyleDeclarationDocumentHandler();
-
     /**
      * The style declaration update handler.
      */
@@ -283,6 +283,17 @@ public abstract class CSSEngine {
      */
     protected String alternateStyleSheet;
 
+    /**
+     * The cache of external style-sheets, or null.
+     */
+    protected StyleSheetCache styleSheetCache;
+
+    /**
+     * The cache of the declarations parsed from style attributes, or null.
+     */
+    protected StyleDeclarationCache styleDeclarationCache =
+        new StyleDeclarationCache();
+
     /**
      * Listener for CSSNavigableDocument events.
      */
@@ -333,6 +344,29 @@ public abstract class CSSEngine {
      */
     protected Set selectorAttributes;
 
+    /**
+     * The number of previous siblings of an element whose style may be
+     * shared with it.
+     */
+    public static final int STYLE_SHARING_CANDIDATES = 8;
+
+    /**
+     * Whether elements may share their computed styles.
+     */
+    protected boolean styleSharing = true;
+
+    /**
+     * The attributes found in the selectors of all the style-sheets,
+     * or null if they have to be computed again.
+     */
+    protected Set styleSharingAttributes;
+
+    /**
+     * Whether the selectors of all the style-sheets allow elements to
+     * share their styles.
+     */
+    protected boolean styleSharingSafe;
+
     /**
      * Used to fire a change event for all the properties.
      */
@@ -540,6 +574,39 @@ public abstract class CSSEngine {
         return cssContext;
     }
 
+    /**
+     * Returns the cache used for external style-sheets, or null.
+     */
+    public StyleSheetCache getStyleSheetCache() {
+        return styleSheetCache;
+    }
+
+    /**
+     * Sets the cache used for external style-sheets.  A null value
+     * disables caching.
+     */
+    public void setStyleSheetCache(StyleSheetCache cache) {
+        styleSheetCache = cache;
+    }
+
+    /**
+     * Returns the cache used for the declarations parsed from style
+     * attributes, or null.
+     */
+    public StyleDeclarationCache getStyleDeclarationCache() {
+        return styleDeclarationCache;
+    }
+
+    /**
+     * Sets the cache used for the declarations parsed from style
+     * attributes.  By default each engine has its own cache; a cache
+     * may also be shared by several engines.  A null value disables
+     * caching.
+     */
+    public void setStyleDeclarationCache(StyleDeclarationCache cache) {
+        styleDeclarationCache = cache;
+    }
+
     /**
      * Returns the document associated with this engine.
      */
@@ -609,6 +676,7 @@ public abstract class CSSEngine {
      */
     public void setUserAgentStyleSheet(StyleSheet ss) {
         userAgentStyleSheet = ss;
+        styleSharingAttributes = null;
     }
 
     /**
@@ -616,6 +684,23 @@ public abstract class CSSEngine {
      */
     public void setUserStyleSheet(StyleSheet ss) {
         userStyleSheet = ss;
+        styleSharingAttributes = null;
+    }
+
+    /**
+     * Sets whether an element may use the computed style of one of
+     * its siblings when nothing that the cascade depends on differs
+     * between them.
+     */
+    public void setStyleSharing(boolean b) {
+        styleSharing = b;
+    }
+
+    /**
+     * Tells whether elements may share their computed styles.
+     */
+    public boolean isStyleSharing() {
+        return styleSharing;
     }
 
     /**
@@ -805,26 +890,7 @@ public abstract class CSSEngine {
                 String style = elt.getAttributeNS(styleNamespaceURI,
                                                   styleLocalName);
                 if (style.length() > 0) {
-                    try {
-                        parser.setSelectorFactory(CSSSelectorFactory.INSTANCE);
-                        parser.setConditionFactory(cssConditionFactory);
-                        styleDeclarationDocumentHandler.styleMap = result;
-                        parser.setDocumentHandler
-                            (styleDeclarationDocumentHandler);
-                        parser.parseStyleDeclaration(style);
-                        styleDeclarationDocumentHandler.styleMap = null;
-                    } catch (Exception e) {
-                        String m = e.getMessage();
-                        if (m == null) m = e.getClass().getName();
-                        String u = ((documentURI == null)?"<unknown>":
-                                    documentURI.toString());
-                        String s = Messages.formatMessage
-                            ("style.syntax.error.at",
-                             new Object[] { u, styleLocalName, style, m });
-                        DOMException de = new DOMException(DOMException.SYNTAX_ERR, s);
-                        if (userAgent == null) throw de;
-                        userAgent.displayError(de);
-                    }
+                    applyStyleAttribute(result, style);
                 }
             }
 
@@ -864,7 +930,12 @@ public abstract class CSSEngine {
                                   int propidx) {
         StyleMap sm = elt.getComputedStyleMap(pseudo);
         if (sm == null) {
-            sm = getCascadedStyleMap(elt, pseudo);
+            if (pseudo == null) {
+                sm = getSharedStyleMap(elt);
+            }
+            if (sm == null) {
+                sm = getCascadedStyleMap(elt, pseudo);
+            }
             elt.setComputedStyleMap(pseudo, sm);
         }
 
@@ -906,6 +977,255 @@ public abstract class CSSEngine {
         return result;
     }
 
+    /**
+     * Returns the computed style map of a previous sibling of the given
+     * element that can be used for the element itself, or null.  The
+     * style of a sibling can be shared when both elements have the same
+     * name, no inline or override style and the same values for the
+     * presentation attributes, the xml:* attributes and the attributes
+     * found in selectors.  No sharing is done when a selector depends
+     * on the position of the elements or on their dynamic state.
+     */
+    protected StyleMap getSharedStyleMap(CSSStylableElement elt) {
+        if (!styleSharing ||
+            cssContext.getCSSEngineForElement(elt) != this ||
+            hasOwnStyle(elt)) {
+            return null;
+        }
+        Set attrs = getStyleSharingAttributes();
+        if (!styleSharingSafe) {
+            return null;
+        }
+        int n = 0;
+        for (Node s = getCSSPreviousSibling(elt);
+             s != null && n < STYLE_SHARING_CANDIDATES;
+             s = getCSSPreviousSibling(s)) {
+            if (s.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            n++;
+            if (!(s instanceof CSSStylableElement)) {
+                continue;
+            }
+            CSSStylableElement se = (CSSStylableElement)s;
+            StyleMap sm = se.getComputedStyleMap(null);
+            if (sm == null || sm.hasFixedCascadedValues()) {
+                continue;
+            }
+            if (canShareStyle(elt, se, attrs)) {
+                sm.setShared(true);
+                return sm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether the given element has an inline or an override
+     * style.
+     */
+    protected boolean hasOwnStyle(CSSStylableElement elt) {
+        if (styleLocalName != null &&
+            elt.getAttributeNS(styleNamespaceURI,
+                               styleLocalName).length() > 0) {
+            return true;
+        }
+        StyleDeclarationProvider p =
+            elt.getOverrideStyleDeclarationProvider();
+        if (p != null) {
+            StyleDeclaration sd = p.getStyleDeclaration();
+            if (sd != null && sd.size() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether two siblings can share their computed style.
+     * @param attrs The attributes found in selectors.
+     */
+    protected boolean canShareStyle(CSSStylableElement e1,
+                                    CSSStylableElement e2,
+                                    Set attrs) {
+        String ns1 = e1.getNamespaceURI();
+        String ns2 = e2.getNamespaceURI();
+        if (!e1.getNodeName().equals(e2.getNodeName()) ||
+            (ns1 == null ? ns2 != null : !ns1.equals(ns2)) ||
+            hasOwnStyle(e2)) {
+            return false;
+        }
+        int count = 0;
+        NamedNodeMap nnm = e1.getAttributes();
+        int len = nnm.getLength();
+        for (int i = 0; i < len; i++) {
+            Attr a = (Attr)nnm.item(i);
+            if (isStyleSharingAttribute(a, attrs)) {
+                Attr b = (a.getNamespaceURI() == null)
+                    ? e2.getAttributeNode(a.getNodeName())
+                    : e2.getAttributeNodeNS(a.getNamespaceURI(),
+                                            a.getLocalName());
+                if (b == null || !a.getValue().equals(b.getValue())) {
+                    return false;
+                }
+                count++;
+            }
+        }
+        nnm = e2.getAttributes();
+        len = nnm.getLength();
+        for (int i = 0; i < len; i++) {
+            if (isStyleSharingAttribute((Attr)nnm.item(i), attrs)) {
+                count--;
+            }
+        }
+        return count == 0;
+    }
+
+    /**
+     * Tells whether the value of the given attribute has to be the same
+     * on two elements sharing their style.
+     */
+    protected boolean isStyleSharingAttribute(Attr a, Set attrs) {
+        String ns = a.getNamespaceURI();
+        String name = (ns == null) ? a.getNodeName() : a.getLocalName();
+        if (XMLConstants.XML_NAMESPACE_URI.equals(ns) ||
+            attrs.contains(name)) {
+            return true;
+        }
+        return nonCSSPresentationalHints != null &&
+            (ns == nonCSSPresentationalHintsNamespaceURI ||
+             ns != null && ns.equals(nonCSSPresentationalHintsNamespaceURI)) &&
+            nonCSSPresentationalHints.contains(name);
+    }
+
+    /**
+     * Tells whether, according to its selectors, the style of an
+     * element only depends on its name, its attributes and its
+     * ancestors, and not on its siblings or on its dynamic state.
+     */
+    public boolean hasContextFreeSelectors() {
+        getStyleSharingAttributes();
+        return styleSharingSafe;
+    }
+
+    /**
+     * Returns the attributes found in the selectors of all the
+     * style-sheets, whatever their media, and updates
+     * {@link #styleSharingSafe}.
+     */
+    protected Set getStyleSharingAttributes() {
+        List snodes = getStyleSheetNodes();
+        if (styleSharingAttributes == null) {
+            Set attrs = new HashSet();
+            boolean safe = true;
+            if (userAgentStyleSheet != null) {
+                safe &= findStyleSharingAttributes(attrs,
+                                                   userAgentStyleSheet);
+            }
+            if (userStyleSheet != null) {
+                safe &= findStyleSharingAttributes(attrs, userStyleSheet);
+            }
+            for (Object snode : snodes) {
+                StyleSheet ss = ((CSSStyleSheetNode)snode).getCSSStyleSheet();
+                if (ss != null) {
+                    safe &= findStyleSharingAttributes(attrs, ss);
+                }
+            }
+            styleSharingSafe = safe;
+            styleSharingAttributes = attrs;
+        }
+        return styleSharingAttributes;
+    }
+
+    /**
+     * Adds the attributes found in the selectors of the given
+     * style-sheet to the set.
+     * @return false if one of the selectors prevents style sharing.
+     */
+    protected boolean findStyleSharingAttributes(Set attrs, StyleSheet ss) {
+        boolean safe = true;
+        int len = ss.getSize();
+        for (int i = 0; i < len; i++) {
+            Rule r = ss.getRule(i);
+            switch (r.getType()) {
+            case StyleRule.TYPE:
+                SelectorList sl = ((StyleRule)r).getSelectorList();
+                int slen = sl.getLength();
+                for (int j = 0; j < slen; j++) {
+                    ExtendedSelector s = (ExtendedSelector)sl.item(j);
+                    s.fillAttributeSet(attrs);
+                    safe &= isStyleSharingSelector(s);
+                }
+                break;
+
+            case MediaRule.TYPE:
+            case ImportRule.TYPE:
+                safe &= findStyleSharingAttributes(attrs, (MediaRule)r);
+                break;
+            }
+        }
+        return safe;
+    }
+
+    /**
+     * Tells whether the given selector matches the same way two
+     * siblings that have the same name and attributes.
+     */
+    protected static boolean isStyleSharingSelector(Selector s) {
+        switch (s.getSelectorType()) {
+        case Selector.SAC_ANY_NODE_SELECTOR:
+        case Selector.SAC_ELEMENT_NODE_SELECTOR:
+        case Selector.SAC_PSEUDO_ELEMENT_SELECTOR:
+            return true;
+
+        case Selector.SAC_CONDITIONAL_SELECTOR:
+            ConditionalSelector cs = (ConditionalSelector)s;
+            return isStyleSharingSelector(cs.getSimpleSelector()) &&
+                   isStyleSharingCondition(cs.getCondition());
+
+        case Selector.SAC_DESCENDANT_SELECTOR:
+        case Selector.SAC_CHILD_SELECTOR:
+            // The siblings have the same ancestors.
+            DescendantSelector ds = (DescendantSelector)s;
+            return isStyleSharingSelector(ds.getSimpleSelector());
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether the given condition holds the same way for two
+     * siblings that have the same name and attributes.
+     */
+    protected static boolean isStyleSharingCondition(Condition c) {
+        switch (c.getConditionType()) {
+        case Condition.SAC_ID_CONDITION:
+        case Condition.SAC_CLASS_CONDITION:
+        case Condition.SAC_ATTRIBUTE_CONDITION:
+        case Condition.SAC_ONE_OF_ATTRIBUTE_CONDITION:
+        case Condition.SAC_BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+            return true;
+
+        case Condition.SAC_AND_CONDITION:
+            CombinatorCondition cc = (CombinatorCondition)c;
+            return isStyleSharingCondition(cc.getFirstCondition()) &&
+                   isStyleSharingCondition(cc.getSecondCondition());
+        }
+        return false;
+    }
+
+    /**
+     * Returns the computed style map of the given element, copied first
+     * if it is shared with other elements, so that it can be modified.
+     */
+    protected StyleMap getWritableStyleMap(CSSStylableElement elt,
+                                           StyleMap sm) {
+        if (sm.isShared()) {
+            sm = sm.copy();
+            elt.setComputedStyleMap(null, sm);
+        }
+        return sm;
+    }
+
     /**
      * Returns the document CSSStyleSheetNodes in a list. This list is
      * updated as the document is modified.
@@ -914,6 +1234,7 @@ public abstract class CSSEngine {
         if (styleSheetNodes == null) {
             styleSheetNodes = new ArrayList();
             selectorAttributes = new HashSet();
+            styleSharingAttributes = null;
             // Find all the style-sheets in the document.
             findStyleSheetNodes(document);
             int len = styleSheetNodes.size();
@@ -1061,6 +1382,58 @@ public abstract class CSSEngine {
         return vm.getDefaultValue();
     }
 
+    /**
+     * Applies the declaration of the style attribute of the current
+     * element to the given style map.  The declaration is looked up in
+     * the style declaration cache, if any, before being parsed.
+     * @param result The style map of the element.
+     * @param style The value of the style attribute.
+     */
+    protected void applyStyleAttribute(StyleMap result, String style) {
+        StyleDeclarationCache cache = styleDeclarationCache;
+        if (cache != null && !StyleDeclarationCache.isCacheable(style)) {
+            cache = null;
+        }
+        StyleDeclaration sd = null;
+        if (cache != null) {
+            sd = cache.getStyleDeclaration(getClass(), style);
+        }
+        if (sd == null) {
+            sd = new StyleDeclaration();
+            try {
+                styleDeclarationBuilder.styleDeclaration = sd;
+                parser.setSelectorFactory(CSSSelectorFactory.INSTANCE);
+                parser.setConditionFactory(cssConditionFactory);
+                parser.setDocumentHandler(styleDeclarationBuilder);
+                parser.parseStyleDeclaration(style);
+                if (cache != null) {
+                    cache.putStyleDeclaration(getClass(), style, sd);
+                }
+            } catch (Exception e) {
+                String m = e.getMessage();
+                if (m == null) m = e.getClass().getName();
+                String u = ((documentURI == null)?"<unknown>":
+                            documentURI.toString());
+                String s = Messages.formatMessage
+                    ("style.syntax.error.at",
+                     new Object[] { u, styleLocalName, style, m });
+                DOMException de = new DOMException(DOMException.SYNTAX_ERR, s);
+                if (userAgent == null) throw de;
+                userAgent.displayError(de);
+            } finally {
+                styleDeclarationBuilder.styleDeclaration = null;
+            }
+        }
+
+        // The properties parsed before an error still apply.
+        int len = sd.size();
+        for (int i = 0; i < len; i++) {
+            putAuthorProperty(result, sd.getIndex(i), sd.getValue(i),
+                              sd.getPriority(i),
+                              StyleMap.INLINE_AUTHOR_ORIGIN);
+        }
+    }
+
     /**
      * Parses and creates a style declaration.
      * @param value The style declaration text.
@@ -1164,7 +1537,30 @@ public abstract class CSSEngine {
         try {
             // Check that access to the uri is allowed
             cssContext.checkLoadExternalResource(uri, documentURI);
+            StyleSheetCache cache = styleSheetCache;
+            if (cache == null) {
+                parseStyleSheet(ss, new InputSource(uri.toString()), uri);
+                return;
+            }
+
+            Rule[] rules = cache.getRules(getClass(), uri.toString());
+            if (rules != null) {
+                // The imported sheets were loaded with the cached
+                // rules, so access to them still has to be checked.
+                checkImports(rules);
+                for (Rule rule : rules) {
+                    ss.append(rule);
+                }
+                return;
+            }
+
+            int start = ss.getSize();
             parseStyleSheet(ss, new InputSource(uri.toString()), uri);
+            rules = new Rule[ss.getSize() - start];
+            for (int i = 0; i < rules.length; i++) {
+                rules[i] = ss.getRule(start + i);
+            }
+            cache.putRules(getClass(), uri.toString(), rules);
         } catch (SecurityException e) {
             throw e;
         } catch (Exception e) {
@@ -1178,6 +1574,26 @@ public abstract class CSSEngine {
         }
     }
 
+    /**
+     * Checks that the style-sheets imported by the given rules may be
+     * loaded by the document of this engine.
+     */
+    protected void checkImports(Rule[] rules) {
+        for (Rule rule : rules) {
+            if (rule.getType() != ImportRule.TYPE) {
+                // @import rules must be the first rules.
+                break;
+            }
+            ImportRule ir = (ImportRule)rule;
+            cssContext.checkLoadExternalResource(ir.getURI(), documentURI);
+            Rule[] imported = new Rule[ir.getSize()];
+            for (int i = 0; i < imported.length; i++) {
+                imported[i] = ir.getRule(i);
+            }
+            checkImports(imported);
+        }
+    }
+
     /**
      * Parses and creates a new style-sheet.
      * @param rules The style-sheet rules to parse.
@@ -1299,25 +1715,23 @@ public abstract class CSSEngine {
 
     /**
      * Adds the rules matching the element/pseudo-element of given style
-     * sheet to the list.
+     * sheet to the list.  Only the selectors filed in the
+     * {@link RuleIndex} of the style sheet under the id, the classes
+     * or the name of the element, and the universal ones, are tested.
      */
     protected void addMatchingRules(List rules,
                                     StyleSheet ss,
                                     Element elt,
                                     String pseudo) {
-        int len = ss.getSize();
-        for (int i = 0; i < len; i++) {
-            Rule r = ss.getRule(i);
+        RuleIndex ri = ss.getRuleIndex();
+        int[] candidates = ri.getCandidates(elt);
+        for (int c : candidates) {
+            Rule r = ri.getRule(c);
             switch (r.getType()) {
             case StyleRule.TYPE:
-                StyleRule style = (StyleRule)r;
-                SelectorList sl = style.getSelectorList();
-                int slen = sl.getLength();
-                for (int j = 0; j < slen; j++) {
-                    ExtendedSelector s = (ExtendedSelector)sl.item(j);
-                    if (s.match(elt, pseudo)) {
-                        rules.add(style);
-                    }
+                ExtendedSelector s = ri.getSelector(c);
+                if (s.match(elt, pseudo)) {
+                    rules.add(r);
                 }
                 break;
 
@@ -1432,39 +1846,6 @@ public abstract class CSSEngine {
     return false;
     }
 
-    /**
-     * To parse a style declaration.
-     */
-    protected class StyleDeclarationDocumentHandler
-        extends DocumentAdapter
-        implements ShorthandManager.PropertyHandler {
-        public StyleMap styleMap;
-
-        /**
-         * <b>SAC</b>: Implements {@link
-         * DocumentHandler#property(String,LexicalUnit,boolean)}.
-         */
-        public void property(String name, LexicalUnit value, boolean important)
-            throws CSSException {
-            int i = getPropertyIndex(name);
-            if (i == -1) {
-                i = getShorthandIndex(name);
-                if (i == -1) {
-                    // Unknown property
-                    return;
-                }
-                shorthandManagers[i].setValues(CSSEngine.this,
-                                               this,
-                                               value,
-                                               important);
-            } else {
-                Value v = valueManagers[i].createValue(value, CSSEngine.this);
-                putAuthorProperty(styleMap, i, v, important,
-                                  StyleMap.INLINE_AUTHOR_ORIGIN);
-            }
-        }
-    }
-
     /**
      * To build a StyleDeclaration object.
      */
@@ -2077,6 +2458,7 @@ public abstract class CSSEngine {
                          (lh && style.isLineHeightRelative(i)) ||
                          (cl && style.isColorRelative(i))) {
                     updated[i] = true;
+                    style = getWritableStyleMap(elt, style);
                     clearComputedValue(style, i);
                     count++;
                 }
@@ -2315,6 +2697,7 @@ public abstract class CSSEngine {
                     || attrNS != null && attrNS.equals(styleNamespaceURI)) {
                 if (name.equals(styleLocalName)) {
                     // The style declaration attribute has been modified.
+                    style = getWritableStyleMap(elt, style);
                     inlineStyleAttributeUpdated
                         (elt, style, attrChange, prevValue, newValue);
                     return;
@@ -2328,6 +2711,7 @@ public abstract class CSSEngine {
                     if (nonCSSPresentationalHints.contains(name)) {
                         // The 'name' attribute which represents a non CSS
                         // presentational hint has been modified.
+                        style = getWritableStyleMap(elt, style);
                         nonCSSPresentationalHintUpdated
                             (elt, style, name, attrChange, newValue);
                         return;
@@ -0,0 +1,324 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.batik.css.engine.sac.CSSClassCondition;
+import org.apache.batik.css.engine.sac.CSSElementSelector;
+import org.apache.batik.css.engine.sac.CSSIdCondition;
+import org.apache.batik.css.engine.sac.ExtendedSelector;
+import org.w3c.css.sac.CombinatorCondition;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.ConditionalSelector;
+import org.w3c.css.sac.DescendantSelector;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.css.sac.SiblingSelector;
+import org.w3c.dom.Element;
+
+/**
+ * An index of the selectors of a style-sheet, used to find the rules
+ * that may match an element without testing every selector.
+ *
+ * <p>Each selector is filed under the rightmost simple selector it
+ * contains: its id if it has one, else one of its classes, else its
+ * element name.  The other selectors, and the nested media rules, are
+ * filed as universal.  The entries are numbered in style-sheet order
+ * so that the candidates for an element are returned in the order in
+ * which the rules would be found by walking the style-sheet.</p>
+ *
+ * <p>An index is never modified once built: the style-sheet drops it
+ * when a rule is added.</p>
+ *
+ * @version $Id$
+ */
+public class RuleIndex {
+
+    /**
+     * The rule of each entry: a StyleRule or a MediaRule.
+     */
+    protected final Rule[] rules;
+
+    /**
+     * The selector of each entry, or null for media rules.
+     */
+    protected final ExtendedSelector[] selectors;
+
+    /**
+     * The entries filed by id, class and element name.  The values are
+     * int arrays holding the number of entries followed by the entries.
+     */
+    protected final Map ids     = new HashMap();
+    protected final Map classes = new HashMap();
+    protected final Map names   = new HashMap();
+
+    /**
+     * The universal entries, in the same format.
+     */
+    protected final int[] universal;
+
+    /**
+     * Creates the index of the given style-sheet.
+     */
+    public RuleIndex(StyleSheet ss) {
+        int len = ss.getSize();
+        int count = 0;
+        for (int i = 0; i < len; i++) {
+            Rule r = ss.getRule(i);
+            switch (r.getType()) {
+            case StyleRule.TYPE:
+                count += ((StyleRule)r).getSelectorList().getLength();
+                break;
+            case MediaRule.TYPE:
+            case ImportRule.TYPE:
+                count++;
+                break;
+            }
+        }
+        rules = new Rule[count];
+        selectors = new ExtendedSelector[count];
+
+        int[] others = new int[8];
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            Rule r = ss.getRule(i);
+            switch (r.getType()) {
+            case StyleRule.TYPE:
+                SelectorList sl = ((StyleRule)r).getSelectorList();
+                int slen = sl.getLength();
+                for (int j = 0; j < slen; j++) {
+                    ExtendedSelector s = (ExtendedSelector)sl.item(j);
+                    rules[n] = r;
+                    selectors[n] = s;
+                    if (!fileSelector(s, n)) {
+                        others = add(others, n);
+                    }
+                    n++;
+                }
+                break;
+
+            case MediaRule.TYPE:
+            case ImportRule.TYPE:
+                rules[n] = r;
+                others = add(others, n);
+                n++;
+                break;
+            }
+        }
+        universal = others;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int getSize() {
+        return rules.length;
+    }
+
+    /**
+     * Returns the rule of the given entry.
+     */
+    public Rule getRule(int i) {
+        return rules[i];
+    }
+
+    /**
+     * Returns the selector of the given entry, or null if the entry
+     * is a media rule.
+     */
+    public ExtendedSelector getSelector(int i) {
+        return selectors[i];
+    }
+
+    /**
+     * Returns, in increasing order, the entries whose selector may
+     * match the given element.  The selectors still have to be tested.
+     */
+    public int[] getCandidates(Element elt) {
+        int[][] buckets = new int[3][];
+        int nb = 0;
+        int count = universal[0];
+
+        String name;
+        if (elt.getPrefix() == null) name = elt.getNodeName();
+        else                         name = elt.getLocalName();
+        int[] b = (int[])names.get(name);
+        if (b != null) {
+            buckets[nb++] = b;
+            count += b[0];
+        }
+
+        if (elt instanceof CSSStylableElement) {
+            CSSStylableElement se = (CSSStylableElement)elt;
+            if (!ids.isEmpty()) {
+                b = (int[])ids.get(se.getXMLId());
+                if (b != null) {
+                    buckets[nb++] = b;
+                    count += b[0];
+                }
+            }
+            if (!classes.isEmpty()) {
+                String cls = se.getCSSClass();
+                int clen = cls.length();
+                int start = -1;
+                for (int i = 0; i <= clen; i++) {
+                    if (i == clen || Character.isSpaceChar(cls.charAt(i))) {
+                        if (start != -1) {
+                            b = (int[])classes.get(cls.substring(start, i));
+                            if (b != null) {
+                                if (nb == buckets.length) {
+                                    int[][] t = new int[nb * 2][];
+                                    System.arraycopy(buckets, 0, t, 0, nb);
+                                    buckets = t;
+                                }
+                                buckets[nb++] = b;
+                                count += b[0];
+                            }
+                            start = -1;
+                        }
+                    } else if (start == -1) {
+                        start = i;
+                    }
+                }
+            }
+        }
+
+        int[] result = new int[count];
+        System.arraycopy(universal, 1, result, 0, universal[0]);
+        if (nb == 0) {
+            return result;
+        }
+        int pos = universal[0];
+        for (int i = 0; i < nb; i++) {
+            System.arraycopy(buckets[i], 1, result, pos, buckets[i][0]);
+            pos += buckets[i][0];
+        }
+        Arrays.sort(result);
+
+        // A class may be listed twice on the same element.
+        int len = 1;
+        for (int i = 1; i < count; i++) {
+            if (result[i] != result[len - 1]) {
+                result[len++] = result[i];
+            }
+        }
+        if (len < count) {
+            int[] t = new int[len];
+            System.arraycopy(result, 0, t, 0, len);
+            result = t;
+        }
+        return result;
+    }
+
+    /**
+     * Files the given entry under the id, class or element name of its
+     * rightmost simple selector.
+     * @return false if the selector must be filed as universal.
+     */
+    protected boolean fileSelector(Selector s, int entry) {
+        switch (s.getSelectorType()) {
+        case Selector.SAC_CONDITIONAL_SELECTOR:
+            ConditionalSelector cs = (ConditionalSelector)s;
+            Condition c = cs.getCondition();
+            String id = findCondition(c, true);
+            if (id != null) {
+                put(ids, id, entry);
+                return true;
+            }
+            String cls = findCondition(c, false);
+            if (cls != null) {
+                put(classes, cls, entry);
+                return true;
+            }
+            return fileSelector(cs.getSimpleSelector(), entry);
+
+        case Selector.SAC_DESCENDANT_SELECTOR:
+        case Selector.SAC_CHILD_SELECTOR:
+            return fileSelector(((DescendantSelector)s).getSimpleSelector(),
+                                entry);
+
+        case Selector.SAC_DIRECT_ADJACENT_SELECTOR:
+            return fileSelector(((SiblingSelector)s).getSiblingSelector(),
+                                entry);
+
+        case Selector.SAC_ELEMENT_NODE_SELECTOR:
+            if (s instanceof CSSElementSelector) {
+                String name = ((CSSElementSelector)s).getLocalName();
+                if (name != null) {
+                    put(names, name, entry);
+                    return true;
+                }
+            }
+            return false;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value of an id or class condition that must hold for
+     * the given condition to hold, or null if there is none.
+     * @param id Whether to look for an id or a class condition.
+     */
+    protected static String findCondition(Condition c, boolean id) {
+        if (id && c instanceof CSSIdCondition) {
+            return ((CSSIdCondition)c).getValue();
+        }
+        if (!id && c instanceof CSSClassCondition) {
+            return ((CSSClassCondition)c).getValue();
+        }
+        if (c.getConditionType() == Condition.SAC_AND_CONDITION) {
+            CombinatorCondition cc = (CombinatorCondition)c;
+            String v = findCondition(cc.getFirstCondition(), id);
+            if (v == null) {
+                v = findCondition(cc.getSecondCondition(), id);
+            }
+            return v;
+        }
+        return null;
+    }
+
+    /**
+     * Adds an entry to the bucket of the given key.
+     */
+    protected static void put(Map m, String key, int entry) {
+        int[] b = (int[])m.get(key);
+        if (b == null) {
+            b = new int[4];
+        }
+        m.put(key, add(b, entry));
+    }
+
+    /**
+     * Appends an entry to a bucket, growing it if needed.
+     */
+    protected static int[] add(int[] b, int entry) {
+        int n = b[0] + 1;
+        if (n == b.length) {
+            int[] t = new int[n * 2];
+            System.arraycopy(b, 0, t, 0, n);
+            b = t;
+        }
+        b[n] = entry;
+        b[0] = n;
+        return b;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the declarations parsed from 'style' attributes,
+ * keyed by the attribute value, which may be shared by several CSS
+ * engines, possibly running in different threads.  The cached
+ * declarations are never modified.  Like the {@link StyleSheetCache},
+ * the declarations are cached per engine class.
+ *
+ * <p>Relative URIs in a declaration are resolved against the base URI
+ * of the element, so declarations containing <code>url()</code>
+ * values are not cached; see {@link #isCacheable(String)}.</p>
+ *
+ * @version $Id$
+ */
+public class StyleDeclarationCache {
+
+    /**
+     * The default maximum number of declarations kept in a cache.
+     */
+    public static final int DEFAULT_SIZE = 1024;
+
+    /**
+     * The length of the longest attribute value kept in a cache.
+     */
+    public static final int MAX_LENGTH = 1024;
+
+    /**
+     * The maximum number of declarations kept.
+     */
+    protected final int size;
+
+    /**
+     * The cached declarations, in least recently used order.
+     */
+    protected final Map declarations = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > size;
+            }
+        };
+
+    protected int hitCount;
+    protected int missCount;
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_SIZE} declarations.
+     */
+    public StyleDeclarationCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Creates a cache holding up to <code>size</code> declarations.
+     */
+    public StyleDeclarationCache(int size) {
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * Returns the maximum number of declarations kept in this cache.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Tells whether the declaration parsed from the given 'style'
+     * attribute value may be cached.
+     */
+    public static boolean isCacheable(String style) {
+        if (style.length() > MAX_LENGTH || style.indexOf('\\') != -1) {
+            // An escaped function name could hide a url().
+            return false;
+        }
+        int i = style.indexOf('(');
+        while (i >= 3) {
+            if (style.regionMatches(true, i - 3, "url", 0, 3)) {
+                return false;
+            }
+            i = style.indexOf('(', i + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the declaration parsed from <code>style</code> by an
+     * engine of the given class, or null if it is not in the cache.
+     */
+    public synchronized StyleDeclaration getStyleDeclaration
+        (Class engineClass, String style) {
+        StyleDeclaration sd =
+            (StyleDeclaration)declarations.get(new Key(engineClass, style));
+        if (sd == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return sd;
+    }
+
+    /**
+     * Caches the declaration parsed from <code>style</code> by an
+     * engine of the given class.
+     */
+    public synchronized void putStyleDeclaration(Class engineClass,
+                                                 String style,
+                                                 StyleDeclaration sd) {
+        declarations.put(new Key(engineClass, style), sd);
+    }
+
+    /**
+     * Removes all the declarations from this cache.
+     */
+    public synchronized void clear() {
+        declarations.clear();
+    }
+
+    /**
+     * Returns the number of cached declarations.
+     */
+    public synchronized int size() {
+        return declarations.size();
+    }
+
+    /**
+     * Returns the number of lookups which found a declaration.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups which found no declaration.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the fraction of the lookups which found a declaration,
+     * or 0 if there were none.
+     */
+    public synchronized double getHitRate() {
+        int n = hitCount + missCount;
+        return (n == 0) ? 0 : (double)hitCount / n;
+    }
+
+    /**
+     * Sets the hit and miss counts back to zero.
+     */
+    public synchronized void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    /**
+     * The key of a cached declaration.
+     */
+    protected static class Key {
+        protected final Class  engineClass;
+        protected final String style;
+
+        public Key(Class engineClass, String style) {
+            this.engineClass = engineClass;
+            this.style       = style;
+        }
+
+        public int hashCode() {
+            return engineClass.hashCode() ^ style.hashCode();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key)o;
+            return (engineClass == k.engineClass) && style.equals(k.style);
+        }
+    }
+}
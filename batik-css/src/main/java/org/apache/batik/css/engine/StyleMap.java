@@ -72,6 +72,11 @@ public class StyleMap {
      */
     protected boolean fixedCascadedValues;
 
+    /**
+     * Whether this map is used by several elements.
+     */
+    protected boolean shared;
+
     /**
      * Creates a new StyleMap.
      */
@@ -94,6 +99,33 @@ public class StyleMap {
         fixedCascadedValues = b;
     }
 
+    /**
+     * Whether this map is used by several elements.  Such a map is
+     * only completed by {@link CSSEngine#getComputedStyle}; any other
+     * change must be made to a {@link #copy()} of the map.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Sets the shared property.
+     */
+    public void setShared(boolean b) {
+        shared = b;
+    }
+
+    /**
+     * Returns a copy of this map, which is not shared.
+     */
+    public StyleMap copy() {
+        StyleMap sm = new StyleMap(values.length);
+        System.arraycopy(values, 0, sm.values, 0, values.length);
+        System.arraycopy(masks, 0, sm.masks, 0, masks.length);
+        sm.fixedCascadedValues = fixedCascadedValues;
+        return sm;
+    }
+
     /**
      * Returns the value at the given index, null if unspecified.
      */
@@ -0,0 +1,123 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the rules of external style-sheets, which may be
+ * shared by several CSS engines, possibly running in different
+ * threads.  The rules are never modified once parsed, so engines
+ * append the cached rules to their own style-sheets instead of
+ * parsing the same URI again.  Since the values in the rules are
+ * built by the value managers of an engine, the rules are cached per
+ * engine class.
+ *
+ * @version $Id$
+ */
+public class StyleSheetCache {
+
+    /**
+     * The default maximum number of style-sheets kept in a cache.
+     */
+    public static final int DEFAULT_SIZE = 64;
+
+    /**
+     * The maximum number of style-sheets kept.
+     */
+    protected final int size;
+
+    /**
+     * The cached rules, in least recently used order.
+     */
+    protected final Map rules = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > size;
+            }
+        };
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_SIZE} style-sheets.
+     */
+    public StyleSheetCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Creates a cache holding up to <code>size</code> style-sheets.
+     */
+    public StyleSheetCache(int size) {
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * Returns the maximum number of style-sheets kept in this cache.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the rules parsed from <code>uri</code> by an engine of
+     * the given class, or null if they are not in the cache.
+     */
+    public synchronized Rule[] getRules(Class engineClass, String uri) {
+        return (Rule[])rules.get(new Key(engineClass, uri));
+    }
+
+    /**
+     * Caches the rules parsed from <code>uri</code> by an engine of
+     * the given class.
+     */
+    public synchronized void putRules(Class engineClass, String uri,
+                                      Rule[] r) {
+        rules.put(new Key(engineClass, uri), r);
+    }
+
+    /**
+     * Removes all the style-sheets from this cache.
+     */
+    public synchronized void clear() {
+        rules.clear();
+    }
+
+    /**
+     * The key of a cached style-sheet.
+     */
+    protected static class Key {
+        protected final Class  engineClass;
+        protected final String uri;
+
+        public Key(Class engineClass, String uri) {
+            this.engineClass = engineClass;
+            this.uri         = uri;
+        }
+
+        public int hashCode() {
+            return engineClass.hashCode() ^ uri.hashCode();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key)o;
+            return (engineClass == k.engineClass) && uri.equals(k.uri);
+        }
+    }
+}
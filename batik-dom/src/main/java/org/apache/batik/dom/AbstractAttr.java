@@ -23,6 +23,7 @@ import org.w3c.dom.Attr;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 import org.w3c.dom.TypeInfo;
 import org.w3c.dom.events.MutationEvent;
 
@@ -59,6 +60,14 @@ public abstract class AbstractAttr extends AbstractParentNode implements Attr {
      */
     protected TypeInfo typeInfo;
 
+    /**
+     * The value of this attribute, when it is not held by a text child.
+     * Values set while no mutation event can be observed, such as when
+     * a document is parsed, are kept this way, and the text child is
+     * only created when the children of the attribute are accessed.
+     */
+    protected String value;
+
     /**
      * Creates a new Attr object.
      */
@@ -111,6 +120,9 @@ public abstract class AbstractAttr extends AbstractParentNode implements Attr {
      * @return The content of the attribute.
      */
     public String getNodeValue() throws DOMException {
+        if (value != null) {
+            return value;
+        }
         Node first = getFirstChild();
         if (first == null) {
             return "";
@@ -139,6 +151,10 @@ public abstract class AbstractAttr extends AbstractParentNode implements Attr {
         }
 
         String s = getNodeValue();
+        boolean events = getCurrentDocument().getEventsEnabled();
+        if (!events) {
+            value = null;
+        }
 
         // Remove all the children
         Node n;
@@ -148,9 +164,15 @@ public abstract class AbstractAttr extends AbstractParentNode implements Attr {
 
         String val = (nodeValue == null) ? "" : nodeValue;
 
-        // Create and append a new child.
-        n = getOwnerDocument().createTextNode(val);
-        appendChild(n);
+        if (events) {
+            // Create and append a new child.
+            n = getOwnerDocument().createTextNode(val);
+            appendChild(n);
+        } else {
+            // Nothing can see the text child yet.
+            value = val;
+            setSpecified(true);
+        }
 
         if (ownerElement != null) {
             ownerElement.fireDOMAttrModifiedEvent(nodeName,
@@ -161,6 +183,100 @@ public abstract class AbstractAttr extends AbstractParentNode implements Attr {
         }
     }
 
+    /**
+     * Replaces the string value of this attribute, if any, by a text
+     * child.
+     */
+    protected void createValueChild() {
+        if (value != null) {
+            String v = value;
+            value = null;
+            if (childNodes == null) {
+                childNodes = new ChildNodes();
+            }
+            ExtendedNode n = (ExtendedNode)getOwnerDocument().createTextNode(v);
+            childNodes.append(n);
+            n.setParentNode(this);
+        }
+    }
+
+    /**
+     * <b>DOM</b>: Implements {@link org.w3c.dom.Node#getChildNodes()}.
+     */
+    public NodeList getChildNodes() {
+        createValueChild();
+        return super.getChildNodes();
+    }
+
+    /**
+     * <b>DOM</b>: Implements {@link org.w3c.dom.Node#getFirstChild()}.
+     */
+    public Node getFirstChild() {
+        createValueChild();
+        return super.getFirstChild();
+    }
+
+    /**
+     * <b>DOM</b>: Implements {@link org.w3c.dom.Node#getLastChild()}.
+     */
+    public Node getLastChild() {
+        createValueChild();
+        return super.getLastChild();
+    }
+
+    /**
+     * <b>DOM</b>: Implements {@link org.w3c.dom.Node#hasChildNodes()}.
+     */
+    public boolean hasChildNodes() {
+        return value != null || super.hasChildNodes();
+    }
+
+    /**
+     * <b>DOM</b>: Implements {@link
+     * org.w3c.dom.Node#insertBefore(Node, Node)}.
+     */
+    public Node insertBefore(Node newChild, Node refChild)
+        throws DOMException {
+        createValueChild();
+        return super.insertBefore(newChild, refChild);
+    }
+
+    /**
+     * <b>DOM</b>: Implements {@link
+     * org.w3c.dom.Node#replaceChild(Node, Node)}.
+     */
+    public Node replaceChild(Node newChild, Node oldChild)
+        throws DOMException {
+        createValueChild();
+        return super.replaceChild(newChild, oldChild);
+    }
+
+    /**
+     * <b>DOM</b>: Implements {@link org.w3c.dom.Node#removeChild(Node)}.
+     */
+    public Node removeChild(Node oldChild) throws DOMException {
+        createValueChild();
+        return super.removeChild(oldChild);
+    }
+
+    /**
+     * <b>DOM</b>: Implements {@link org.w3c.dom.Node#appendChild(Node)}.
+     */
+    public Node appendChild(Node newChild) throws DOMException {
+        createValueChild();
+        return super.appendChild(newChild);
+    }
+
+    /**
+     * <b>DOM</b>: Implements {@link org.w3c.dom.Node#getTextContent()}.
+     */
+    public String getTextContent() {
+        if (value != null) {
+            return value;
+        }
+        return super.getTextContent();
+    }
+
     /**
      * <b>DOM</b>: Implements {@link org.w3c.dom.Attr#getName()}.
      * @return {@link #getNodeName()}.
@@ -267,6 +383,11 @@ public abstract class AbstractAttr extends AbstractParentNode implements Attr {
      * Deeply exports this node to the given document.
      */
     protected Node deepExport(Node n, AbstractDocument d) {
+        if (value != null) {
+            export(n, d);
+            ((AbstractAttr)n).value = value;
+            return n;
+        }
         super.deepExport(n, d);
         AbstractAttr aa = (AbstractAttr)n;
         aa.nodeName     = nodeName;
@@ -293,6 +414,11 @@ public abstract class AbstractAttr extends AbstractParentNode implements Attr {
      * @param n a node of the type of this.
      */
     protected Node deepCopyInto(Node n) {
+        if (value != null) {
+            copyInto(n);
+            ((AbstractAttr)n).value = value;
+            return n;
+        }
         super.deepCopyInto(n);
         AbstractAttr aa = (AbstractAttr)n;
         aa.nodeName     = nodeName;
@@ -22,9 +22,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -160,6 +162,28 @@ public class SAXDocumentFactory
      */
     protected ErrorHandler errorHandler;
 
+    /**
+     * Whether the SAX parsers are pooled.
+     */
+    protected boolean parserPooling;
+
+    /**
+     * The maximum number of idle parsers kept in the pool for each
+     * parser class.
+     */
+    protected static final int MAX_POOLED_PARSERS = 16;
+
+    /**
+     * The idle parsers, as lists by parser class name, the empty
+     * string standing for the JAXP parser.  Guarded by itself.
+     */
+    protected static final Map parserPool = new HashMap();
+
+    /**
+     * The handler given to the pooled parsers.
+     */
+    protected static final DefaultHandler NULL_HANDLER = new DefaultHandler();
+
     protected interface PreInfo {
         Node createNode(Document doc);
     }
@@ -420,18 +444,7 @@ public class SAXDocumentFactory
     protected Document createDocument(InputSource is)
         throws IOException {
         try {
-            if (parserClassName != null) {
-                parser = XMLReaderFactory.createXMLReader(parserClassName);
-            } else {
-                SAXParser saxParser;
-                try {
-                    saxParser = saxFactory.newSAXParser();
-                } catch (ParserConfigurationException pce) {
-                    throw new IOException("Could not create SAXParser: "
-                            + pce.getMessage());
-                }
-                parser = saxParser.getXMLReader();
-            }
+            parser = getParser();
 
             parser.setContentHandler(this);
             parser.setDTDHandler(this);
@@ -451,6 +464,7 @@ public class SAXDocumentFactory
             parser.setProperty("http://xml.org/sax/properties/lexical-handler",
                                this);
             parser.parse(is);
+            releaseParser(parser);
         } catch (SAXException e) {
             Exception ex = e.getException();
             if (ex != null && ex instanceof InterruptedIOException) {
@@ -468,6 +482,92 @@ public class SAXDocumentFactory
         return ret;
     }
 
+    /**
+     * Returns a SAX parser for the next document: an idle parser from
+     * the pool if parser pooling is enabled and there is one, or a new
+     * parser.
+     */
+    protected XMLReader getParser() throws SAXException, IOException {
+        if (parserPooling) {
+            synchronized (parserPool) {
+                LinkedList l = (LinkedList)parserPool.get(getParserKey());
+                if (l != null && !l.isEmpty()) {
+                    return (XMLReader)l.removeLast();
+                }
+            }
+        }
+        if (parserClassName != null) {
+            return XMLReaderFactory.createXMLReader(parserClassName);
+        }
+        SAXParser saxParser;
+        try {
+            saxParser = saxFactory.newSAXParser();
+        } catch (ParserConfigurationException pce) {
+            throw new IOException("Could not create SAXParser: "
+                    + pce.getMessage());
+        }
+        return saxParser.getXMLReader();
+    }
+
+    /**
+     * Gives back to the pool a parser which has parsed a document
+     * without error, if parser pooling is enabled.  The handlers of the
+     * parser are reset first so that the pool does not keep this
+     * factory nor the document alive.
+     */
+    protected void releaseParser(XMLReader r) {
+        if (!parserPooling) {
+            return;
+        }
+        try {
+            r.setContentHandler(NULL_HANDLER);
+            r.setDTDHandler(NULL_HANDLER);
+            r.setEntityResolver(NULL_HANDLER);
+            r.setErrorHandler(NULL_HANDLER);
+            r.setProperty("http://xml.org/sax/properties/lexical-handler",
+                          null);
+        } catch (SAXException e) {
+            // The parser cannot be reset, it is not reused.
+            return;
+        }
+        String key = getParserKey();
+        synchronized (parserPool) {
+            LinkedList l = (LinkedList)parserPool.get(key);
+            if (l == null) {
+                l = new LinkedList();
+                parserPool.put(key, l);
+            }
+            if (l.size() < MAX_POOLED_PARSERS) {
+                l.add(r);
+            }
+        }
+    }
+
+    /**
+     * Returns the key of the parsers of this factory in the pool.
+     */
+    protected String getParserKey() {
+        return (parserClassName == null) ? "" : parserClassName;
+    }
+
+    /**
+     * Sets whether the SAX parsers are taken from and given back to a
+     * pool shared by all the factories, instead of being created for
+     * each document.  The pool is thread-safe, so a server parsing
+     * documents on several threads can use one factory per thread and
+     * still reuse the parsers, and their buffers, across documents.
+     */
+    public void setParserPooling(boolean b) {
+        parserPooling = b;
+    }
+
+    /**
+     * Returns whether the SAX parsers are pooled.
+     */
+    public boolean isParserPooling() {
+        return parserPooling;
+    }
+
     /**
      * Returns the document descriptor associated with the latest created
      * document.
@@ -543,7 +643,11 @@ public class SAXDocumentFactory
      * org.xml.sax.ContentHandler#startDocument()}.
      */
     public void startDocument() throws SAXException {
-        preInfo    = new LinkedList();
+        if (preInfo == null) {
+            preInfo = new LinkedList();
+        } else {
+            preInfo.clear();
+        }
         namespaces = new HashTableStack();
         namespaces.put("xml", XMLSupport.XML_NAMESPACE_URI);
         namespaces.put("xmlns", XMLSupport.XMLNS_NAMESPACE_URI);
@@ -646,7 +750,7 @@ public class SAXDocumentFactory
                 Node n = pi.createNode(document);
                 document.insertBefore(n, e);
             }
-            preInfo = null;
+            preInfo.clear();
         } else {
             e = document.createElementNS(nsURI, rawName);
             currentNode.appendChild(e);
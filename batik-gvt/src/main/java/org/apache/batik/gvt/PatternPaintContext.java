@@ -158,9 +158,28 @@ public class PatternPaintContext implements PaintContext {
         if ((raster == null)             ||
             (raster.getWidth() < width)  ||
             (raster.getHeight() < height)) {
-            raster = rasterCM.createCompatibleWritableRaster(width, height);
+            raster = createRaster(width, height);
         }
 
+        return fillRaster(raster, x, y, width, height);
+    }
+
+    /**
+     * Creates a working raster suitable for <code>fillRaster</code>.
+     */
+    WritableRaster createRaster(int width, int height) {
+        return rasterCM.createCompatibleWritableRaster(width, height);
+    }
+
+    /**
+     * Fills the upper left corner of the working raster
+     * <code>raster</code> with the pattern data for the given
+     * device area.  This lets contexts that share this context's
+     * tiles (see <code>PatternPaint</code>) use their own working
+     * raster, so they can be used from several threads at once.
+     */
+    Raster fillRaster(WritableRaster raster,
+                      int x, int y, int width, int height) {
         WritableRaster wr
             = raster.createWritableChild(0, 0, width, height, x, y, null);
 
@@ -34,13 +34,16 @@ import java.awt.image.WritableRaster;
 import java.awt.image.renderable.RenderContext;
 import java.lang.ref.SoftReference;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
 import org.apache.batik.ext.awt.geom.RectListManager;
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.PadMode;
 import org.apache.batik.ext.awt.image.renderable.Filter;
 import org.apache.batik.ext.awt.image.rendered.CachableRed;
 import org.apache.batik.ext.awt.image.rendered.PadRed;
+import org.apache.batik.ext.awt.image.rendered.ParallelTileCopy;
 import org.apache.batik.ext.awt.image.rendered.TileCacheRed;
 import org.apache.batik.ext.awt.image.rendered.TranslateRed;
 import org.apache.batik.gvt.GraphicsNode;
@@ -89,6 +92,12 @@ public class StaticRenderer implements ImageRenderer {
     protected RenderingHints renderingHints;
     protected AffineTransform usr2dev;
 
+    /**
+     * The pool computing tiles when the <code>KEY_TILE_PARALLELISM</code>
+     * hint is greater than one, created on the first such repaint.
+     */
+    protected ForkJoinPool tilePool;
+
     protected static RenderingHints defaultRenderingHints;
     static {
         defaultRenderingHints = new RenderingHints(null);
@@ -139,6 +148,13 @@ public class StaticRenderer implements ImageRenderer {
         renderingHints = null;
         lastCache = null;
         lastCR = null;
+
+        synchronized (this) {
+            if (tilePool != null) {
+                tilePool.shutdown();
+                tilePool = null;
+            }
+        }
     }
 
     /**
@@ -285,6 +301,23 @@ public class StaticRenderer implements ImageRenderer {
         return currentOffScreen;
     }
 
+    /**
+     * Returns the rendering of the tree in device space, as set by
+     * the transform, without drawing it into an offscreen buffer.
+     * Its tiles are only computed when they are requested, so that
+     * an image larger than the heap can be pulled from it piece by
+     * piece.  Returns null if there is nothing to render.
+     */
+    public CachableRed getRendering() {
+        if (rootGN == null)
+            return null;
+
+        if (rootFilter == null)
+            rootFilter = rootGN.getGraphicsNodeRable(true);
+
+        return renderGNR();
+    }
+
     /**
      * Sets up and clears the current offscreen buffer.
      *
@@ -390,7 +423,13 @@ public class StaticRenderer implements ImageRenderer {
 
         // Ensure only one thread works on baseRaster at a time...
         synchronized (syncRaster) {
-            cr.copyData(copyRaster);
+            int parallelism = getTileParallelism();
+            if (parallelism > 1) {
+                ParallelTileCopy.copyData(cr, copyRaster,
+                                          getTilePool(parallelism));
+            } else {
+                cr.copyData(copyRaster);
+            }
         }
 
         if (!HaltingThread.hasBeenHalted()) {
@@ -409,6 +448,35 @@ public class StaticRenderer implements ImageRenderer {
         }
     }
 
+    /**
+     * Returns the number of threads repaint may use to compute tiles,
+     * as given by the <code>KEY_TILE_PARALLELISM</code> rendering hint.
+     */
+    protected int getTileParallelism() {
+        Object o = renderingHints.get
+            (RenderingHintsKeyExt.KEY_TILE_PARALLELISM);
+        if (o == null) return 1;
+        return (Integer) o;
+    }
+
+    /**
+     * Returns the pool used to compute tiles with the given number of
+     * threads.  The pool is kept from one repaint to the next, and
+     * replaced only when the parallelism changes.  Its threads are not
+     * HaltingThreads; halting the repainting thread stops the tiles
+     * not yet started.
+     */
+    protected synchronized ForkJoinPool getTilePool(int parallelism) {
+        if ((tilePool != null) &&
+            (tilePool.getParallelism() != parallelism)) {
+            tilePool.shutdown();
+            tilePool = null;
+        }
+        if (tilePool == null)
+            tilePool = new ForkJoinPool(parallelism);
+        return tilePool;
+    }
+
     /**
      * Flush any cached image data.
      */
@@ -51,6 +51,9 @@ public class AWTPolygonProducer extends AWTPolylineProducer {
      * Implements {@link PointsHandler#endPoints()}.
      */
     public void endPoints() throws ParseException {
-        path.closePath();
+        if (!newPath) {
+            // An empty list of points gives an empty path.
+            path.closePath();
+        }
     }
 }
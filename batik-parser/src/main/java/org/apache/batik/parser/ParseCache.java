@@ -0,0 +1,329 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.parser;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.batik.ext.awt.geom.ExtendedGeneralPath;
+
+/**
+ * A bounded cache of parsed attribute values, keyed by the attribute
+ * string, which may be shared by several documents, possibly built in
+ * different threads.  Generated documents often repeat the same
+ * 'transform', 'd', 'points' or 'viewBox' value many times; with this
+ * cache each distinct value is only parsed once.
+ *
+ * <p>The cached values are never modified.  Since transforms and
+ * shapes are mutable, the methods of this class return copies of
+ * them, which are much cheaper to make than parsing the value again.
+ * Malformed values are remembered as such, and the methods return
+ * null for them so that the caller can report the error the usual
+ * way.  Values longer than {@link #MAX_LENGTH} characters are unlikely
+ * to be repeated and are parsed without being cached.</p>
+ *
+ * @version $Id$
+ */
+public class ParseCache {
+
+    /**
+     * The default maximum number of values kept in a cache.
+     */
+    public static final int DEFAULT_SIZE = 2048;
+
+    /**
+     * The length of the longest value kept in a cache.
+     */
+    public static final int MAX_LENGTH = 8192;
+
+    /**
+     * The kinds of values.
+     */
+    protected static final int TRANSFORM = 0;
+    protected static final int PATH      = 1;
+    protected static final int POLYLINE  = 2;
+    protected static final int POLYGON   = 3;
+    protected static final int VIEW_BOX  = 4;
+
+    /**
+     * The value cached for malformed attribute values.
+     */
+    protected static final Object MALFORMED = new Object();
+
+    static ParseCache theCache = new ParseCache();
+
+    /**
+     * Returns the cache shared by default by all the documents.
+     */
+    public static ParseCache getDefaultCache() { return theCache; }
+
+    /**
+     * The maximum number of values kept.
+     */
+    protected final int size;
+
+    /**
+     * The cached values, in least recently used order.
+     */
+    protected final Map values = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > size;
+            }
+        };
+
+    protected int hitCount;
+    protected int missCount;
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_SIZE} values.
+     */
+    public ParseCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Creates a cache holding up to <code>size</code> values.
+     */
+    public ParseCache(int size) {
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * Returns the maximum number of values kept in this cache.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the transform described by the given 'transform'
+     * attribute value, or null if the value is malformed.
+     */
+    public AffineTransform getTransform(String s) {
+        Key k = new Key(TRANSFORM, 0, s);
+        Object v = get(k);
+        if (v == null) {
+            try {
+                v = AWTTransformProducer.createAffineTransform(s);
+            } catch (ParseException e) {
+                v = MALFORMED;
+            }
+            put(k, v);
+        }
+        if (v == MALFORMED) {
+            return null;
+        }
+        return new AffineTransform((AffineTransform)v);
+    }
+
+    /**
+     * Returns the shape described by the given path data, or null if
+     * the path data is malformed.
+     * @param s The value of a 'd' attribute.
+     * @param wr The winding rule of the shape.
+     */
+    public Shape getPath(String s, int wr) {
+        Key k = new Key(PATH, wr, s);
+        Object v = get(k);
+        if (v == null) {
+            StringPathParser p = new StringPathParser();
+            p.setWindingRule(wr);
+            v = p.parse(s);
+            if (v == null) {
+                v = MALFORMED;
+            }
+            put(k, v);
+        }
+        if (v == MALFORMED) {
+            return null;
+        }
+        return (Shape)((ExtendedGeneralPath)v).clone();
+    }
+
+    /**
+     * Returns the polyline joining the given points, or null if the
+     * points are malformed.  An empty list of points gives an empty
+     * path.
+     * @param s The value of a 'points' attribute.
+     * @param wr The winding rule of the shape.
+     */
+    public Shape getPolyline(String s, int wr) {
+        return getPoints(POLYLINE, s, wr);
+    }
+
+    /**
+     * Returns the polygon joining the given points, or null if the
+     * points are malformed.  An empty list of points gives an empty
+     * path.
+     * @param s The value of a 'points' attribute.
+     * @param wr The winding rule of the shape.
+     */
+    public Shape getPolygon(String s, int wr) {
+        return getPoints(POLYGON, s, wr);
+    }
+
+    /**
+     * Returns the polyline or the polygon joining the given points.
+     */
+    protected Shape getPoints(int kind, String s, int wr) {
+        Key k = new Key(kind, wr, s);
+        Object v = get(k);
+        if (v == null) {
+            PointsParser p = new PointsParser();
+            AWTPolylineProducer ph = (kind == POLYGON)
+                ? new AWTPolygonProducer()
+                : new AWTPolylineProducer();
+            ph.setWindingRule(wr);
+            p.setPointsHandler(ph);
+            try {
+                p.parse(s);
+                v = ph.getShape();
+            } catch (ParseException e) {
+                v = MALFORMED;
+            }
+            put(k, v);
+        }
+        if (v == MALFORMED) {
+            return null;
+        }
+        return (Shape)((GeneralPath)v).clone();
+    }
+
+    /**
+     * Returns a copy of the values cached for the given 'viewBox'
+     * attribute value, or null if there are none.  The syntax of the
+     * 'viewBox' attribute is checked by the callers, which put the
+     * values they have parsed with {@link #putViewBox(String,float[])}.
+     */
+    public float[] getViewBox(String s) {
+        float[] vb = (float[])get(new Key(VIEW_BOX, 0, s));
+        return (vb == null) ? null : (float[])vb.clone();
+    }
+
+    /**
+     * Caches the values parsed from the given 'viewBox' attribute value.
+     */
+    public void putViewBox(String s, float[] vb) {
+        put(new Key(VIEW_BOX, 0, s), vb.clone());
+    }
+
+    /**
+     * Returns the value with the given key, or null.
+     */
+    protected Object get(Key k) {
+        if (k.value.length() > MAX_LENGTH) {
+            return null;
+        }
+        synchronized (this) {
+            Object v = values.get(k);
+            if (v == null) {
+                missCount++;
+            } else {
+                hitCount++;
+            }
+            return v;
+        }
+    }
+
+    /**
+     * Caches the value with the given key.
+     */
+    protected void put(Key k, Object v) {
+        if (k.value.length() > MAX_LENGTH) {
+            return;
+        }
+        synchronized (this) {
+            values.put(k, v);
+        }
+    }
+
+    /**
+     * Removes all the values from this cache.
+     */
+    public synchronized void clear() {
+        values.clear();
+    }
+
+    /**
+     * Returns the number of cached values.
+     */
+    public synchronized int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the number of lookups which found a value.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups which found no value.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the fraction of the lookups which found a value, or 0
+     * if there were none.
+     */
+    public synchronized double getHitRate() {
+        int n = hitCount + missCount;
+        return (n == 0) ? 0 : (double)hitCount / n;
+    }
+
+    /**
+     * Sets the hit and miss counts back to zero.
+     */
+    public synchronized void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    /**
+     * The key of a cached value.
+     */
+    protected static class Key {
+        protected final int    kind;
+        protected final int    windingRule;
+        protected final String value;
+
+        public Key(int kind, int windingRule, String value) {
+            this.kind        = kind;
+            this.windingRule = windingRule;
+            this.value       = value;
+        }
+
+        public int hashCode() {
+            return value.hashCode() * 31 + kind * 2 + windingRule;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key)o;
+            return kind == k.kind && windingRule == k.windingRule
+                && value.equals(k.value);
+        }
+    }
+}
@@ -0,0 +1,748 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.parser;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+
+import org.apache.batik.ext.awt.geom.ExtendedGeneralPath;
+import org.apache.batik.ext.awt.geom.ExtendedPathIterator;
+
+/**
+ * This class parses the value of a path's 'd' attribute held in a
+ * character array or a string directly into an {@link
+ * ExtendedGeneralPath}.
+ *
+ * <p>It accepts exactly the path data accepted by {@link PathParser}
+ * and builds the same shape, coordinate for coordinate, as {@link
+ * AWTPathProducer}: numbers are reduced to a mantissa and an exponent
+ * the way {@link NumberParser} does it and then given to {@link
+ * NumberParser#buildFloat(int,int)}.  The characters are read from the
+ * array with an index instead of through a {@link
+ * org.apache.batik.util.io.NormalizingReader}, and the segments go
+ * into arrays instead of through a {@link PathHandler}, and are then
+ * appended to the path in one call.</p>
+ *
+ * <p>This parser does not report errors.  When the data is malformed
+ * {@link #parse(String)} returns null, and the caller can parse the
+ * data again with a {@link PathParser} to get the error.</p>
+ *
+ * @version $Id$
+ */
+public class StringPathParser {
+
+    /**
+     * The characters being parsed.
+     */
+    protected char[] buffer;
+
+    /**
+     * The index of the next character to read.
+     */
+    protected int position;
+
+    /**
+     * The index after the last character to read.
+     */
+    protected int end;
+
+    /**
+     * The current character, or -1 at the end of the data.
+     */
+    protected int current;
+
+    /**
+     * Whether the data was found to be malformed.
+     */
+    protected boolean malformed;
+
+    /**
+     * The types of the segments parsed so far.
+     */
+    protected int[] segmentTypes = new int[16];
+
+    /**
+     * The number of segments parsed so far.
+     */
+    protected int numSegments;
+
+    /**
+     * The values of the segments parsed so far, laid out as by an
+     * {@link ExtendedPathIterator}.
+     */
+    protected float[] segmentValues = new float[64];
+
+    /**
+     * The number of values in segmentValues.
+     */
+    protected int numValues;
+
+    /**
+     * Whether a moveto segment was parsed.
+     */
+    protected boolean started;
+
+    /**
+     * The x coordinate of the start of the current sub-path.
+     */
+    protected float startX;
+
+    /**
+     * The y coordinate of the start of the current sub-path.
+     */
+    protected float startY;
+
+    /**
+     * The current x position.
+     */
+    protected float currentX;
+
+    /**
+     * The current y position.
+     */
+    protected float currentY;
+
+    /**
+     * The reference x point for smooth curves.
+     */
+    protected float xCenter;
+
+    /**
+     * The reference y point for smooth curves.
+     */
+    protected float yCenter;
+
+    /**
+     * The winding rule to use to construct the path.
+     */
+    protected int windingRule;
+
+    /**
+     * The arguments of the segment being parsed.
+     */
+    protected float[] args = new float[6];
+
+    /**
+     * The large arc flag of the arc being parsed.
+     */
+    protected boolean largeArcFlag;
+
+    /**
+     * The sweep flag of the arc being parsed.
+     */
+    protected boolean sweepFlag;
+
+    /**
+     * Parses the given path data and returns the corresponding shape.
+     * The data is parsed with this class and, if it is malformed, again
+     * with a {@link PathParser} so that the error is reported as usual.
+     * @param s The path data.
+     * @param wr The winding rule to use for creating the path.
+     */
+    public static Shape createShape(String s, int wr) throws ParseException {
+        StringPathParser spp = new StringPathParser();
+        spp.setWindingRule(wr);
+        ExtendedGeneralPath p = spp.parse(s);
+        if (p != null) {
+            return p;
+        }
+        PathParser pp = new PathParser();
+        AWTPathProducer ph = new AWTPathProducer();
+        ph.setWindingRule(wr);
+        pp.setPathHandler(ph);
+        pp.parse(s);
+        return ph.getShape();
+    }
+
+    /**
+     * Sets the winding rule used to construct the path.
+     */
+    public void setWindingRule(int i) {
+        windingRule = i;
+    }
+
+    /**
+     * Returns the current winding rule.
+     */
+    public int getWindingRule() {
+        return windingRule;
+    }
+
+    /**
+     * Parses the given path data.
+     * @return the path, or null if the data is malformed.
+     */
+    public ExtendedGeneralPath parse(String s) {
+        return parse(s.toCharArray(), 0, s.length());
+    }
+
+    /**
+     * Parses the path data held in the given range of a character array.
+     * @param buf The characters to parse.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return the path, or null if the data is malformed.
+     */
+    public ExtendedGeneralPath parse(char[] buf, int off, int len) {
+        buffer = buf;
+        position = off;
+        end = off + len;
+        malformed = false;
+        numSegments = 0;
+        numValues = 0;
+        started = false;
+        currentX = 0;
+        currentY = 0;
+        xCenter = 0;
+        yCenter = 0;
+        try {
+            doParse();
+        } finally {
+            buffer = null;
+        }
+        if (malformed) {
+            return null;
+        }
+        ExtendedGeneralPath p =
+            new ExtendedGeneralPath(windingRule, numSegments + 1);
+        p.append(segmentTypes, numSegments, segmentValues);
+        return p;
+    }
+
+    /**
+     * Reads the next character.
+     */
+    private int read() {
+        return (position < end) ? buffer[position++] : -1;
+    }
+
+    /**
+     * Records that the data is malformed and skips to its end, so that
+     * every loop of the parser terminates.
+     */
+    protected void reportError() {
+        malformed = true;
+        position = end;
+        current = -1;
+    }
+
+    /**
+     * Parses the whole path data.
+     */
+    protected void doParse() {
+        current = read();
+        loop: for (;;) {
+            switch (current) {
+            case 0xD:
+            case 0xA:
+            case 0x20:
+            case 0x9:
+                current = read();
+                break;
+            case 'z':
+            case 'Z':
+                current = read();
+                closePath();
+                break;
+            case 'm':
+            case 'M':
+                parseMoveto(current);
+                break;
+            case 'l': case 'L':
+            case 'h': case 'H':
+            case 'v': case 'V':
+            case 'c': case 'C':
+            case 'q': case 'Q':
+            case 's': case 'S':
+            case 't': case 'T':
+            case 'a': case 'A':
+                int cmd = current;
+                current = read();
+                skipSpaces();
+                parseSegments(cmd, true);
+                break;
+            case -1:
+                break loop;
+            default:
+                reportError();
+            }
+        }
+    }
+
+    /**
+     * Parses a 'm' or 'M' command, including the implicit lineto
+     * segments that may follow the first coordinate pair.
+     */
+    protected void parseMoveto(int cmd) {
+        current = read();
+        skipSpaces();
+
+        float x = parseFloat();
+        skipCommaSpaces();
+        float y = parseFloat();
+        if (malformed) {
+            return;
+        }
+        if (cmd == 'm') {
+            moveTo(xCenter = currentX += x, yCenter = currentY += y);
+        } else {
+            moveTo(xCenter = currentX = x, yCenter = currentY = y);
+        }
+
+        boolean expectNumber = skipCommaSpaces2();
+        parseSegments((cmd == 'm') ? 'l' : 'L', expectNumber);
+    }
+
+    /**
+     * Parses the argument groups of a command other than moveto and
+     * closepath, and records the corresponding segments.
+     */
+    protected void parseSegments(int cmd, boolean expectNumber) {
+        for (;;) {
+            switch (current) {
+            default:
+                if (expectNumber) reportError();
+                return;
+            case '+': case '-': case '.':
+            case '0': case '1': case '2': case '3': case '4':
+            case '5': case '6': case '7': case '8': case '9':
+                break;
+            }
+
+            switch (cmd) {
+            case 'l': case 'L':
+            case 't': case 'T':
+                parseArguments(2);
+                break;
+            case 'h': case 'H':
+            case 'v': case 'V':
+                parseArguments(1);
+                break;
+            case 'q': case 'Q':
+            case 's': case 'S':
+                parseArguments(4);
+                break;
+            case 'c': case 'C':
+                parseArguments(6);
+                break;
+            default: // 'a' or 'A'
+                parseArcArguments();
+            }
+            if (malformed) {
+                return;
+            }
+            appendSegment(cmd);
+            expectNumber = skipCommaSpaces2();
+        }
+    }
+
+    /**
+     * Parses the given number of comma or space separated numbers.
+     */
+    protected void parseArguments(int n) {
+        float[] a = args;
+        a[0] = parseFloat();
+        for (int i = 1; i < n; i++) {
+            skipCommaSpaces();
+            a[i] = parseFloat();
+        }
+    }
+
+    /**
+     * Parses the arguments of an arc.
+     */
+    protected void parseArcArguments() {
+        parseArguments(3);
+        skipCommaSpaces();
+
+        switch (current) {
+        default:  reportError(); return;
+        case '0': largeArcFlag = false; break;
+        case '1': largeArcFlag = true;  break;
+        }
+
+        current = read();
+        skipCommaSpaces();
+
+        switch (current) {
+        default:  reportError(); return;
+        case '0': sweepFlag = false; break;
+        case '1': sweepFlag = true;  break;
+        }
+
+        current = read();
+        skipCommaSpaces();
+
+        float[] a = args;
+        a[3] = parseFloat();
+        skipCommaSpaces();
+        a[4] = parseFloat();
+    }
+
+    /**
+     * Computes the segment of the given command from the parsed
+     * arguments, exactly as {@link AWTPathProducer} does.
+     */
+    protected void appendSegment(int cmd) {
+        float[] a = args;
+        switch (cmd) {
+        case 'l':
+            lineTo(xCenter = currentX += a[0], yCenter = currentY += a[1]);
+            break;
+        case 'L':
+            lineTo(xCenter = currentX = a[0], yCenter = currentY = a[1]);
+            break;
+        case 'h':
+            lineTo(xCenter = currentX += a[0], yCenter = currentY);
+            break;
+        case 'H':
+            lineTo(xCenter = currentX = a[0], yCenter = currentY);
+            break;
+        case 'v':
+            lineTo(xCenter = currentX, yCenter = currentY += a[0]);
+            break;
+        case 'V':
+            lineTo(xCenter = currentX, yCenter = currentY = a[0]);
+            break;
+        case 'c':
+            curveTo(currentX + a[0], currentY + a[1],
+                    xCenter = currentX + a[2], yCenter = currentY + a[3],
+                    currentX += a[4], currentY += a[5]);
+            break;
+        case 'C':
+            curveTo(a[0], a[1], xCenter = a[2], yCenter = a[3],
+                    currentX = a[4], currentY = a[5]);
+            break;
+        case 'q':
+            quadTo(xCenter = currentX + a[0], yCenter = currentY + a[1],
+                   currentX += a[2], currentY += a[3]);
+            break;
+        case 'Q':
+            quadTo(xCenter = a[0], yCenter = a[1],
+                   currentX = a[2], currentY = a[3]);
+            break;
+        case 's':
+            curveTo(currentX * 2 - xCenter,
+                    currentY * 2 - yCenter,
+                    xCenter = currentX + a[0],
+                    yCenter = currentY + a[1],
+                    currentX += a[2],
+                    currentY += a[3]);
+            break;
+        case 'S':
+            curveTo(currentX * 2 - xCenter,
+                    currentY * 2 - yCenter,
+                    xCenter = a[0],
+                    yCenter = a[1],
+                    currentX = a[2],
+                    currentY = a[3]);
+            break;
+        case 't':
+            quadTo(xCenter = currentX * 2 - xCenter,
+                   yCenter = currentY * 2 - yCenter,
+                   currentX += a[0],
+                   currentY += a[1]);
+            break;
+        case 'T':
+            quadTo(xCenter = currentX * 2 - xCenter,
+                   yCenter = currentY * 2 - yCenter,
+                   currentX = a[0],
+                   currentY = a[1]);
+            break;
+        case 'a':
+            arcTo(a[0], a[1], a[2],
+                  xCenter = currentX += a[3], yCenter = currentY += a[4]);
+            break;
+        default: // 'A'
+            arcTo(a[0], a[1], a[2],
+                  xCenter = currentX = a[3], yCenter = currentY = a[4]);
+        }
+    }
+
+    /**
+     * Makes room for one more segment with the given number of values.
+     */
+    protected void makeRoom(int n) {
+        if (numSegments == segmentTypes.length) {
+            int[] t = new int[numSegments * 2];
+            System.arraycopy(segmentTypes, 0, t, 0, numSegments);
+            segmentTypes = t;
+        }
+        if (numValues + n > segmentValues.length) {
+            float[] v = new float[segmentValues.length * 2 + n];
+            System.arraycopy(segmentValues, 0, v, 0, numValues);
+            segmentValues = v;
+        }
+    }
+
+    /**
+     * Records a moveto segment.
+     */
+    protected void moveTo(float x, float y) {
+        makeRoom(2);
+        segmentTypes[numSegments++] = PathIterator.SEG_MOVETO;
+        float[] v = segmentValues;
+        v[numValues++] = startX = x;
+        v[numValues++] = startY = y;
+        started = true;
+    }
+
+    /**
+     * Records a lineto segment.
+     */
+    protected void lineTo(float x, float y) {
+        makeRoom(2);
+        segmentTypes[numSegments++] = PathIterator.SEG_LINETO;
+        float[] v = segmentValues;
+        v[numValues++] = x;
+        v[numValues++] = y;
+    }
+
+    /**
+     * Records a quadto segment.
+     */
+    protected void quadTo(float x1, float y1, float x, float y) {
+        makeRoom(4);
+        segmentTypes[numSegments++] = PathIterator.SEG_QUADTO;
+        float[] v = segmentValues;
+        v[numValues++] = x1;
+        v[numValues++] = y1;
+        v[numValues++] = x;
+        v[numValues++] = y;
+    }
+
+    /**
+     * Records a cubicto segment.
+     */
+    protected void curveTo(float x1, float y1, float x2, float y2,
+                           float x, float y) {
+        makeRoom(6);
+        segmentTypes[numSegments++] = PathIterator.SEG_CUBICTO;
+        float[] v = segmentValues;
+        v[numValues++] = x1;
+        v[numValues++] = y1;
+        v[numValues++] = x2;
+        v[numValues++] = y2;
+        v[numValues++] = x;
+        v[numValues++] = y;
+    }
+
+    /**
+     * Records an arcto segment with the flags last parsed.
+     */
+    protected void arcTo(float rx, float ry, float angle, float x, float y) {
+        makeRoom(7);
+        segmentTypes[numSegments++] = ExtendedPathIterator.SEG_ARCTO;
+        float[] v = segmentValues;
+        v[numValues++] = rx;
+        v[numValues++] = ry;
+        v[numValues++] = angle;
+        v[numValues++] = largeArcFlag ? 1 : 0;
+        v[numValues++] = sweepFlag ? 1 : 0;
+        v[numValues++] = x;
+        v[numValues++] = y;
+    }
+
+    /**
+     * Records a closepath segment.  The current point goes back to the
+     * start of the sub-path, which is where {@link ExtendedGeneralPath}
+     * puts it.
+     */
+    protected void closePath() {
+        if (!started) {
+            // AWTPathProducer fails on this; let PathParser deal with it.
+            reportError();
+            return;
+        }
+        makeRoom(0);
+        segmentTypes[numSegments++] = PathIterator.SEG_CLOSE;
+        currentX = startX;
+        currentY = startY;
+    }
+
+    /**
+     * Parses a number and converts it to a float.  The result is the
+     * one of {@link NumberParser#parseFloat()}: the same digits are
+     * kept in the mantissa and the same exponent is computed, but the
+     * characters are read from local variables.
+     */
+    protected float parseFloat() {
+        char[] buf = buffer;
+        int pos = position;
+        int len = end;
+        int c = current;
+
+        int     mant     = 0;
+        int     mantDig  = 0;
+        boolean mantPos  = true;
+        boolean mantRead = false;
+        int     expAdj   = 0;
+
+        if (c == '-') {
+            mantPos = false;
+            c = (pos < len) ? buf[pos++] : -1;
+        } else if (c == '+') {
+            c = (pos < len) ? buf[pos++] : -1;
+        }
+
+        if (c == '0') {
+            mantRead = true;
+            do {
+                c = (pos < len) ? buf[pos++] : -1;
+            } while (c == '0');
+            if ((c < '1' || c > '9') && c != '.' && c != 'e' && c != 'E') {
+                position = pos;
+                current = c;
+                return 0.0f;
+            }
+        }
+        if (c >= '1' && c <= '9') {
+            mantRead = true;
+            do {
+                if (mantDig < 9) {
+                    mantDig++;
+                    mant = mant * 10 + (c - '0');
+                } else {
+                    expAdj++;
+                }
+                c = (pos < len) ? buf[pos++] : -1;
+            } while (c >= '0' && c <= '9');
+        } else if (c != '.' && !mantRead) {
+            reportError();
+            return 0.0f;
+        }
+
+        if (c == '.') {
+            c = (pos < len) ? buf[pos++] : -1;
+            boolean digits = c >= '0' && c <= '9';
+            if (c == '0' && mantDig == 0) {
+                do {
+                    c = (pos < len) ? buf[pos++] : -1;
+                    expAdj--;
+                } while (c == '0');
+                digits = c >= '1' && c <= '9';
+                if (!digits && !mantRead) {
+                    position = pos;
+                    current = c;
+                    return 0.0f;
+                }
+                mantRead = true;
+            }
+            if (digits) {
+                do {
+                    if (mantDig < 9) {
+                        mantDig++;
+                        mant = mant * 10 + (c - '0');
+                        expAdj--;
+                    }
+                    c = (pos < len) ? buf[pos++] : -1;
+                } while (c >= '0' && c <= '9');
+            } else if (!mantRead) {
+                reportError();
+                return 0.0f;
+            }
+        }
+
+        int exp = 0;
+        if (c == 'e' || c == 'E') {
+            c = (pos < len) ? buf[pos++] : -1;
+            boolean expPos = true;
+            if (c == '-' || c == '+') {
+                expPos = c == '+';
+                c = (pos < len) ? buf[pos++] : -1;
+            }
+            if (c < '0' || c > '9') {
+                reportError();
+                return 0.0f;
+            }
+            while (c == '0') {
+                c = (pos < len) ? buf[pos++] : -1;
+            }
+            int expDig = 0;
+            while (c >= '0' && c <= '9') {
+                if (expDig < 3) {
+                    expDig++;
+                    exp = exp * 10 + (c - '0');
+                }
+                c = (pos < len) ? buf[pos++] : -1;
+            }
+            if (!expPos) {
+                exp = -exp;
+            }
+        }
+
+        position = pos;
+        current = c;
+
+        exp += expAdj;
+        if (!mantPos) {
+            mant = -mant;
+        }
+        return NumberParser.buildFloat(mant, exp);
+    }
+
+    /**
+     * Skips the whitespaces.
+     */
+    protected void skipSpaces() {
+        for (;;) {
+            switch (current) {
+            default:
+                return;
+            case 0x20:
+            case 0x09:
+            case 0x0D:
+            case 0x0A:
+            }
+            current = read();
+        }
+    }
+
+    /**
+     * Skips the whitespaces and an optional comma.
+     */
+    protected void skipCommaSpaces() {
+        skipCommaSpaces2();
+    }
+
+    /**
+     * Skips the whitespaces and an optional comma.
+     * @return true if comma was skipped.
+     */
+    protected boolean skipCommaSpaces2() {
+        wsp1: for (;;) {
+            switch (current) {
+            default: break wsp1;
+            case 0x20: case 0x9: case 0xD: case 0xA: break;
+            }
+            current = read();
+        }
+
+        if (current != ',')
+            return false; // no comma.
+
+        wsp2: for (;;) {
+            switch (current = read()) {
+            default: break wsp2;
+            case 0x20: case 0x9: case 0xD: case 0xA: break;
+            }
+        }
+        return true;  // had comma
+    }
+}
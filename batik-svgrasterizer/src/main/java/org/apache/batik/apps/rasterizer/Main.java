@@ -516,6 +516,15 @@ public class Main implements SVGConverterController {
     public static String CL_OPTION_SECURITY_OFF_DESCRIPTION
         = Messages.get("Main.cl.option.security.off.description", "No description");
 
+    /**
+     * Option to specify the number of files converted at the same time
+     */
+    public static String CL_OPTION_THREADS
+        = Messages.get("Main.cl.option.threads", "-threads");
+
+    public static String CL_OPTION_THREADS_DESCRIPTION
+        = Messages.get("Main.cl.option.threads.description", "No description");
+
     /**
      * Static map containing all the option handlers able to analyze the
      * various options.
@@ -768,6 +777,22 @@ public class Main implements SVGConverterController {
                                   return CL_OPTION_INDEXED_DESCRIPTION;
                               }
                           });
+        optionMap.put(CL_OPTION_THREADS,
+                      new FloatOptionHandler(){
+                              public void handleOption(float optionValue,
+                                                       SVGConverter c){
+                                  if ((optionValue < 1) ||
+                                      (optionValue != (int)optionValue))
+                                      throw new IllegalArgumentException();
+
+                                  c.setThreadCount((int)optionValue);
+                              }
+
+                              public String getOptionDescription(){
+                                  return CL_OPTION_THREADS_DESCRIPTION;
+                              }
+                          });
+
         optionMap.put(CL_OPTION_VALIDATE,
                       new NoValueOptionHandler(){
                               public void handleOption(SVGConverter c){
@@ -952,8 +977,10 @@ public class Main implements SVGConverterController {
             return;
         }
 
+        threaded = c.getThreadCount() > 1;
         try {
             c.execute();
+            printSummary(c.getStatistics());
         } catch(SVGConverterException e){
             error(ERROR_WHILE_CONVERTING_FILES,
                   new Object[] { e.getMessage() });
@@ -963,6 +990,22 @@ public class Main implements SVGConverterController {
         }
     }
 
+    /**
+     * Prints the throughput, per-file latency and failures of a run.
+     */
+    protected void printSummary(SVGConverterStatistics stats){
+        System.out.println(Messages.formatMessage
+                           (MESSAGE_SUMMARY,
+                            new Object[]{"" + stats.getSuccessCount(),
+                                         "" + stats.getFailureCount(),
+                                         "" + stats.getElapsedTime(),
+                                         String.format("%.1f", stats.getThroughput()),
+                                         "" + stats.getLatencyPercentile(50),
+                                         "" + stats.getLatencyPercentile(90),
+                                         "" + stats.getLatencyPercentile(99),
+                                         "" + stats.getLatencyPercentile(100)}));
+    }
+
     protected String toString( String[] v){
         StringBuffer sb = new StringBuffer();
         int n = v != null ? v.length:0;
@@ -1025,6 +1068,22 @@ public class Main implements SVGConverterController {
     public static final String MESSAGE_CONVERSION_SUCCESS
         = "Main.message.conversion.success";
 
+    public static final String MESSAGE_SUMMARY
+        = "Main.message.summary";
+
+    /**
+     * Whether files are converted on several threads.  The controller
+     * is then told the outcome of a file after it was told about the
+     * next ones, so the source is printed along with the outcome.
+     */
+    protected boolean threaded;
+
+    /**
+     * The message printed when about to transcode each source, kept
+     * until the outcome is known when threaded.
+     */
+    protected Map pendingMessages = new HashMap();
+
     public boolean proceedWithComputedTask(Transcoder transcoder,
                                            Map hints,
                                            List sources,
@@ -1036,15 +1095,21 @@ public class Main implements SVGConverterController {
 
     public boolean proceedWithSourceTranscoding(SVGConverterSource source,
                                                 File dest){
-        System.out.print(Messages.formatMessage(MESSAGE_ABOUT_TO_TRANSCODE_SOURCE,
-                                                new Object[]{source.toString(),
-                                                             dest.toString()}));
+        String msg = Messages.formatMessage(MESSAGE_ABOUT_TO_TRANSCODE_SOURCE,
+                                            new Object[]{source.toString(),
+                                                         dest.toString()});
+        if (threaded) {
+            pendingMessages.put(source, msg);
+        } else {
+            System.out.print(msg);
+        }
         return true;
     }
 
     public boolean proceedOnSourceTranscodingFailure(SVGConverterSource source,
                                                      File dest,
                                                      String errorCode){
+        printPendingMessage(source);
         System.out.println(Messages.formatMessage(MESSAGE_CONVERSION_FAILED,
                                                   new Object[]{errorCode}));
 
@@ -1053,8 +1118,16 @@ public class Main implements SVGConverterController {
 
     public void onSourceTranscodingSuccess(SVGConverterSource source,
                                            File dest){
+        printPendingMessage(source);
         System.out.println(Messages.formatMessage(MESSAGE_CONVERSION_SUCCESS,
                                                   null));
     }
+
+    protected void printPendingMessage(SVGConverterSource source){
+        String msg = (String)pendingMessages.remove(source);
+        if (msg != null) {
+            System.out.print(msg);
+        }
+    }
 }
 
@@ -29,13 +29,20 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.batik.transcoder.Transcoder;
+import org.apache.batik.transcoder.TranscoderEngine;
 import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.TranscodingHints;
 import org.apache.batik.transcoder.image.ImageTranscoder;
 import org.apache.batik.transcoder.image.JPEGTranscoder;
 import org.apache.batik.transcoder.image.PNGTranscoder;
@@ -289,6 +296,12 @@ public class SVGConverter {
      */
     protected SVGConverterController controller;
 
+    /** Number of sources converted at the same time */
+    protected int threadCount = 1;
+
+    /** Statistics of the current or last run */
+    protected SVGConverterStatistics statistics = new SVGConverterStatistics();
+
     //
     // Default constructor
     //
@@ -651,6 +664,31 @@ public class SVGConverter {
         return securityOff;
     }
 
+    /**
+     * Sets the number of sources converted at the same time.  With
+     * more than one thread, each thread uses its own transcoder and
+     * they share the parsed external resources.  The controller is
+     * still called from the thread running <code>execute</code>, in
+     * the order of the sources.
+     */
+    public void setThreadCount(int threadCount){
+        if (threadCount < 1){
+            throw new IllegalArgumentException();
+        }
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount(){
+        return threadCount;
+    }
+
+    /**
+     * Returns the statistics of the current or last run.
+     */
+    public SVGConverterStatistics getStatistics(){
+        return statistics;
+    }
+
     /**
      * Returns true if f is a File. <code>f</code> is found to be a file if
      * it exists and is a file. If it does not exist, it is declared
@@ -708,15 +746,92 @@ public class SVGConverter {
             return;
         }
 
-        // Convert files one by one
-        for(int i = 0 ; i < sources.size() ; i++) {
-            // Get the file from the vector.
-            SVGConverterSource currentFile
-                = (SVGConverterSource)sources.get(i);
-            File outputFile  = (File)dstFiles.get(i);
+        statistics = new SVGConverterStatistics();
+        try {
+            if (threadCount > 1) {
+                execute(sources, dstFiles, hints);
+                return;
+            }
+
+            // Convert files one by one
+            for(int i = 0 ; i < sources.size() ; i++) {
+                // Get the file from the vector.
+                SVGConverterSource currentFile
+                    = (SVGConverterSource)sources.get(i);
+                File outputFile  = (File)dstFiles.get(i);
+
+                createOutputDir(outputFile);
+                transcode(currentFile, outputFile, transcoder);
+            }
+        } finally {
+            statistics.stop();
+        }
+    }
+
+    /**
+     * Converts the sources on <code>threadCount</code> threads.  At
+     * most twice as many conversions are pending at any time, and
+     * their outcome is reported to the controller in the order of the
+     * sources, from the calling thread.
+     */
+    protected void execute(List sources, List dstFiles, Map hints)
+        throws SVGConverterException {
+        final TranscoderEngine engine = new TranscoderEngine
+            (new TranscoderEngine.TranscoderFactory() {
+                    public Transcoder createTranscoder() {
+                        return destinationType.getTranscoder();
+                    }
+                });
+        for (Object o : hints.entrySet()) {
+            Map.Entry e = (Map.Entry)o;
+            engine.addTranscodingHint((TranscodingHints.Key)e.getKey(),
+                                      e.getValue());
+        }
+
+        // Transcoders are reused from one source to the next, but
+        // never shared between threads.
+        final ThreadLocal transcoders = new ThreadLocal() {
+                protected Object initialValue() {
+                    return engine.createTranscoder();
+                }
+            };
 
-            createOutputDir(outputFile);
-            transcode(currentFile, outputFile, transcoder);
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        LinkedList pending = new LinkedList();
+        try {
+            for (int i = 0 ; i < sources.size() ; i++) {
+                SVGConverterSource currentFile
+                    = (SVGConverterSource)sources.get(i);
+                File outputFile = (File)dstFiles.get(i);
+
+                createOutputDir(outputFile);
+                final Conversion c = prepareConversion(currentFile, outputFile);
+                if (c == null) {
+                    continue;
+                }
+                c.future = pool.submit(new Runnable() {
+                        public void run() {
+                            c.run((Transcoder)transcoders.get());
+                        }
+                    });
+                pending.add(c);
+
+                while (pending.size() >= 2 * threadCount) {
+                    completeConversion((Conversion)pending.removeFirst());
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                completeConversion((Conversion)pending.removeFirst());
+            }
+        } finally {
+            pool.shutdownNow();
+            // Only left when the controller stopped the run.
+            for (Object o : pending) {
+                Conversion c = (Conversion)o;
+                c.future.cancel(true);
+                c.close();
+            }
         }
     }
 
@@ -946,13 +1061,29 @@ public class SVGConverter {
                              File outputFile,
                              Transcoder transcoder)
         throws SVGConverterException {
+        Conversion c = prepareConversion(inputFile, outputFile);
+        if (c == null) {
+            return;
+        }
+        c.run(transcoder);
+        completeConversion(c);
+    }
+
+    /**
+     * Checks that <code>inputFile</code> can be converted to
+     * <code>outputFile</code> and opens the output.  Returns null if
+     * the controller skips the source, or if it fails and the
+     * controller decides to proceed with the other sources.
+     */
+    protected Conversion prepareConversion(SVGConverterSource inputFile,
+                                           File outputFile)
+        throws SVGConverterException {
         TranscoderInput input = null;
-        TranscoderOutput output = null;
         OutputStream outputStream = null;
 
         if (!controller.proceedWithSourceTranscoding(inputFile,
                                                      outputFile)){
-            return;
+            return null;
         }
 
         try {
@@ -989,53 +1120,121 @@ public class SVGConverter {
                 throw new SVGConverterException(ERROR_CANNOT_OPEN_OUTPUT_FILE,
                                                  new Object[] {outputFile.getName()});
             }
-
-            output = new TranscoderOutput(outputStream);
         } catch(SVGConverterException e){
+            statistics.addFailure(-1);
             boolean proceed = controller.proceedOnSourceTranscodingFailure
                 (inputFile, outputFile, e.getErrorCode());
             if (proceed){
                 e.printStackTrace();
-                return;
+                return null;
             } else {
                 throw e;
             }
         }
 
-        // Transcode now
-        boolean success = false;
-        try {
-            transcoder.transcode(input, output);
-            success = true;
-        } catch(Exception te) {
-            te.printStackTrace();
+        return new Conversion(inputFile, outputFile, input, outputStream);
+    }
+
+    /**
+     * Closes the output of a conversion and reports its outcome to
+     * the controller, waiting for it to end if it runs in another
+     * thread.
+     */
+    protected void completeConversion(Conversion c)
+        throws SVGConverterException {
+        if (c.future != null) {
             try {
-                outputStream.flush();
-                outputStream.close();
-            } catch(IOException ioe) {}
+                c.future.get();
+            } catch (InterruptedException ie) {
+                c.future.cancel(true);
+                c.error = ie;
+            } catch (ExecutionException ee) {
+                Throwable t = ee.getCause();
+                c.error = (t instanceof Exception) ? (Exception)t
+                    : new Exception(t);
+            }
+        }
+
+        if (c.error != null) {
+            statistics.addFailure(c.latency);
+            c.error.printStackTrace();
+            c.close();
 
             // Report error to the controller. If controller decides
             // to stop, throw an exception
             boolean proceed = controller.proceedOnSourceTranscodingFailure
-                (inputFile, outputFile, ERROR_WHILE_RASTERIZING_FILE);
+                (c.source, c.dest, ERROR_WHILE_RASTERIZING_FILE);
 
             if (!proceed){
                 throw new SVGConverterException(ERROR_WHILE_RASTERIZING_FILE,
-                                                 new Object[] {outputFile.getName(),
-                                                               te.getMessage()});
+                                                 new Object[] {c.dest.getName(),
+                                                               c.error.getMessage()});
             }
+            return;
         }
 
         // Close streams and clean up.
-        try {
-            outputStream.flush();
-            outputStream.close();
-        } catch(IOException ioe) {
+        if (!c.close()) {
             return;
         }
 
-        if (success){
-            controller.onSourceTranscodingSuccess(inputFile, outputFile);
+        statistics.addSuccess(c.latency);
+        controller.onSourceTranscodingSuccess(c.source, c.dest);
+    }
+
+    /**
+     * The conversion of one source.
+     */
+    protected static class Conversion {
+        protected final SVGConverterSource source;
+        protected final File dest;
+        protected final TranscoderInput input;
+        protected final OutputStream outputStream;
+
+        /** The task converting the source, if run in another thread */
+        protected Future future;
+
+        /** The exception that made the conversion fail, if any */
+        protected Exception error;
+
+        /** The time spent transcoding, in milliseconds */
+        protected long latency = -1;
+
+        public Conversion(SVGConverterSource source, File dest,
+                          TranscoderInput input, OutputStream outputStream) {
+            this.source = source;
+            this.dest = dest;
+            this.input = input;
+            this.outputStream = outputStream;
+        }
+
+        /**
+         * Transcodes the source with the given transcoder.
+         */
+        public void run(Transcoder transcoder) {
+            long start = System.currentTimeMillis();
+            try {
+                transcoder.transcode(input,
+                                     new TranscoderOutput(outputStream));
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                latency = System.currentTimeMillis() - start;
+            }
+        }
+
+        /**
+         * Flushes and closes the output stream.  Returns false if that
+         * failed.
+         */
+        public boolean close() {
+            try {
+                outputStream.flush();
+                outputStream.close();
+            } catch(IOException ioe) {
+                return false;
+            }
+            return true;
         }
     }
 
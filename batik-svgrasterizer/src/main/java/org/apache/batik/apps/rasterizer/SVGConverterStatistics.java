@@ -0,0 +1,124 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.apps.rasterizer;
+
+import java.util.Arrays;
+
+/**
+ * Summary of an <code>SVGConverter</code> run: how many sources were
+ * converted or failed, how long the run took and how long each
+ * conversion took.
+ *
+ * @version $Id$
+ */
+public class SVGConverterStatistics {
+
+    private long startTime = System.currentTimeMillis();
+    private long endTime   = -1;
+    private int  successCount;
+    private int  failureCount;
+
+    /**
+     * The time spent transcoding each source, in milliseconds.
+     */
+    private long[] latencies = new long[16];
+    private int    latencyCount;
+
+    /**
+     * Records a successful conversion.
+     * @param latency The time spent transcoding, in milliseconds.
+     */
+    public synchronized void addSuccess(long latency) {
+        successCount++;
+        addLatency(latency);
+    }
+
+    /**
+     * Records a failed conversion.
+     * @param latency The time spent transcoding, in milliseconds, or
+     *        a negative value if the source was not transcoded at all.
+     */
+    public synchronized void addFailure(long latency) {
+        failureCount++;
+        if (latency >= 0)
+            addLatency(latency);
+    }
+
+    private void addLatency(long latency) {
+        if (latencyCount == latencies.length) {
+            long[] t = new long[latencyCount * 2];
+            System.arraycopy(latencies, 0, t, 0, latencyCount);
+            latencies = t;
+        }
+        latencies[latencyCount++] = latency;
+    }
+
+    /**
+     * Marks the end of the run.
+     */
+    public synchronized void stop() {
+        if (endTime < 0)
+            endTime = System.currentTimeMillis();
+    }
+
+    public synchronized int getSuccessCount() {
+        return successCount;
+    }
+
+    public synchronized int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Returns the duration of the run so far, in milliseconds.
+     */
+    public synchronized long getElapsedTime() {
+        long end = (endTime < 0) ? System.currentTimeMillis() : endTime;
+        return end - startTime;
+    }
+
+    /**
+     * Returns the number of sources processed, converted or not, per
+     * second.
+     */
+    public synchronized double getThroughput() {
+        long elapsed = getElapsedTime();
+        if (elapsed <= 0)
+            elapsed = 1;
+        return (successCount + failureCount) * 1000.0 / elapsed;
+    }
+
+    /**
+     * Returns the given percentile of the per-source transcoding
+     * time, in milliseconds, or -1 if no source was transcoded.
+     * @param p The percentile, between 0 and 100.
+     */
+    public synchronized long getLatencyPercentile(double p) {
+        if (latencyCount == 0)
+            return -1;
+        long[] sorted = new long[latencyCount];
+        System.arraycopy(latencies, 0, sorted, 0, latencyCount);
+        Arrays.sort(sorted);
+        // Nearest-rank method.
+        int rank = (int)Math.ceil(p / 100 * latencyCount);
+        if (rank < 1) rank = 1;
+        if (rank > latencyCount) rank = latencyCount;
+        return sorted[rank - 1];
+    }
+}
@@ -449,10 +449,27 @@ public class MainTest extends DefaultTestSuite {
         addTest(t);
         t.setId("MainConfigTest.indexed");
 
+        t = new MainConfigTest("-threads 4"){
+                public TestReport validate(SVGConverter c){
+                    if(c.getThreadCount() == 4){
+                        return reportSuccess();
+                    } else {
+                        return reportError("-threads", "4",
+                                           "" + c.getThreadCount());
+                    }
+                }
+            };
+        addTest(t);
+        t.setId("MainConfigTest.threads");
+
         t = new MainConfigErrorTest("-d", "hello.svg -d");
         addTest(t);
         t.setId("MainConfigErrorTest.output");
 
+        t = new MainConfigErrorTest("-threads", "hello.svg -threads");
+        addTest(t);
+        t.setId("MainConfigErrorTest.threads");
+
         t = new MainConfigErrorTest("-m", "hello.svg -m");
         addTest(t);
         t.setId("MainConfigErrorTest.mimeType");
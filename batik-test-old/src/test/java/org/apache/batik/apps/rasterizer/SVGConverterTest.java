@@ -415,6 +415,11 @@ public class SVGConverterTest extends DefaultTestSuite {
         addTest(t);
         t.setId("OutputTest.reference");
 
+        // Several threads
+        t = new ConcurrentConversionTest();
+        addTest(t);
+        t.setId("ConcurrentConversionTest");
+
     }
 }
 
@@ -1089,3 +1094,115 @@ class ConverterOutputTest extends AbstractTest {
         return r;
     }
 }
+
+/**
+ * Converts several files on several threads and checks that the
+ * controller is called from the calling thread, in the order of the
+ * sources, and that the output matches the sequential one.
+ */
+class ConcurrentConversionTest extends AbstractTest
+    implements SVGConverterController {
+    static final String[] SOURCES = {
+        "samples/anne.svg",
+        "samples/batikLogo.svg",
+        "test-resources/org/apache/batik/apps/rasterizer/invalidSVG.svg",
+        "samples/gradients.svg",
+        "samples/asf-logo.svg"
+    };
+
+    List events = new ArrayList();
+    Thread caller;
+    boolean wrongThread;
+
+    public TestReport runImpl() throws Exception {
+        File dst = new File("test-reports/concurrent");
+        SVGConverter c = new SVGConverter(this);
+        c.setDestinationType(DestinationType.PNG);
+        c.setSources(SOURCES);
+        c.setDst(dst);
+        c.setThreadCount(3);
+
+        caller = Thread.currentThread();
+        c.execute();
+
+        List expected = new ArrayList();
+        for (int i = 0; i < SOURCES.length; i++) {
+            String name = new File(SOURCES[i]).getName();
+            expected.add("start " + name);
+        }
+        for (int i = 0; i < SOURCES.length; i++) {
+            String name = new File(SOURCES[i]).getName();
+            expected.add((i == 2 ? "failure " : "success ") + name);
+        }
+
+        // Starts may run ahead of the outcomes, but each kind of
+        // event must come in the order of the sources.
+        List starts = new ArrayList();
+        List outcomes = new ArrayList();
+        for (Object event : events) {
+            if (((String)event).startsWith("start ")) {
+                starts.add(event);
+            } else {
+                outcomes.add(event);
+            }
+        }
+        List got = new ArrayList(starts);
+        got.addAll(outcomes);
+
+        TestReport r;
+        if (wrongThread) {
+            r = reportError("controller called from another thread");
+        } else if (!expected.equals(got)) {
+            r = reportError("unexpected events");
+            r.addDescriptionEntry("expected", expected.toString());
+            r.addDescriptionEntry("got", events.toString());
+        } else if (c.getStatistics().getSuccessCount() != 4
+                   || c.getStatistics().getFailureCount() != 1) {
+            r = reportError("unexpected statistics");
+        } else {
+            r = new ImageCompareTest("test-reports/concurrent/anne.png",
+                                     "test-references/samples/anne.png").run();
+        }
+
+        File[] files = dst.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dst.delete();
+        return r;
+    }
+
+    void record(String kind, SVGConverterSource source) {
+        if (Thread.currentThread() != caller) {
+            wrongThread = true;
+        }
+        events.add(kind + " " + source.getName());
+    }
+
+    public boolean proceedWithComputedTask(Transcoder transcoder,
+                                           Map hints,
+                                           List sources,
+                                           List dest){
+        return true;
+    }
+
+    public boolean proceedWithSourceTranscoding(SVGConverterSource source,
+                                                File dest) {
+        record("start", source);
+        return true;
+    }
+
+    public boolean proceedOnSourceTranscodingFailure(SVGConverterSource source,
+                                                     File dest,
+                                                     String errorCode){
+        record("failure", source);
+        return true;
+    }
+
+    public void onSourceTranscodingSuccess(SVGConverterSource source,
+                                           File dest){
+        record("success", source);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.transcoder.SVGAbstractTranscoder;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class StaticGVTBuilderTestCase {
+
+    private static final String[] FILES = {
+        "samples/anne.svg",
+        "samples/mapSpain.svg",
+        "samples/batikFX.svg",
+        "samples/gradients.svg",
+        "samples/chessFont.svg",
+        "samples/sydney.svg",
+        "samples/tests/spec/structure/useStyling.svg",
+        "samples/tests/spec/structure/useTargets.svg",
+        "samples/tests/spec/structure/switch.svg",
+        "samples/tests/spec/structure/xmlBaseStyling.svg",
+        "samples/tests/spec/painting/markersShapes.svg",
+        "samples/tests/spec/painting/markersMisc.svg"
+    };
+
+    /**
+     * Exposes the builder used by the transcoder.
+     */
+    private static class Transcoder extends PNGTranscoder {
+        int pruned = -1;
+
+        protected void transcode(Document document,
+                                 String uri,
+                                 TranscoderOutput output)
+                throws TranscoderException {
+            super.transcode(document, uri, output);
+            if (builder instanceof StaticGVTBuilder) {
+                pruned = ((StaticGVTBuilder)builder).getPrunedCount();
+            }
+        }
+    }
+
+    private static byte[] transcode(Transcoder t, String file)
+        throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.transcode(new TranscoderInput(new File(file).toURI().toString()),
+                    new TranscoderOutput(out));
+        return out.toByteArray();
+    }
+
+    /**
+     * Releasing the document must not change the rendering.
+     */
+    @Test
+    public void testSameRendering() throws Exception {
+        for (String file : FILES) {
+            byte[] expected = transcode(new Transcoder(), file);
+            Transcoder t = new Transcoder();
+            t.addTranscodingHint(SVGAbstractTranscoder.KEY_RELEASE_DOCUMENT,
+                                 Boolean.TRUE);
+            byte[] actual = transcode(t, file);
+            Assert.assertArrayEquals(file, expected, actual);
+            Assert.assertTrue(file, t.pruned >= 0);
+        }
+    }
+
+    @Test
+    public void testMapIsReleased() throws Exception {
+        Transcoder t = new Transcoder();
+        t.addTranscodingHint(SVGAbstractTranscoder.KEY_RELEASE_DOCUMENT,
+                             Boolean.TRUE);
+        transcode(t, "samples/mapSpain.svg");
+        Assert.assertTrue(String.valueOf(t.pruned), t.pruned > 100);
+    }
+
+    @Test
+    public void testReferencedElementsAreKept() throws Exception {
+        String svg =
+            "<svg xmlns='http://www.w3.org/2000/svg'" +
+            " xmlns:xlink='http://www.w3.org/1999/xlink'" +
+            " width='10' height='10'>" +
+            "<g id='g1'><rect id='r1' width='1' height='1'/></g>" +
+            "<g id='g2'><rect width='1' height='1'/>" +
+            "<circle r='1'><title>t</title></circle></g>" +
+            "<g id='g3'><rect id='r3' width='1' height='1'/></g>" +
+            "<g id='g4'><text>x</text></g>" +
+            "<use xlink:href='#g1'/>" +
+            "<rect width='1' height='1' style='fill: #123456'/>" +
+            "</svg>";
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        SVGOMDocument doc = (SVGOMDocument)f.createDocument
+            ("http://example.org/test.svg", new StringReader(svg));
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        StaticGVTBuilder builder = new StaticGVTBuilder();
+        builder.addReferencedId("r3");
+        builder.build(ctx, doc);
+
+        // g1 is used and r3 is referenced from outside.
+        Element g1 = doc.getElementById("g1");
+        Assert.assertNotNull(g1);
+        Assert.assertNotNull(doc.getElementById("r1"));
+        Assert.assertNotNull(doc.getElementById("r3"));
+        // The content of g2 and g2 itself are released.
+        Assert.assertNull(doc.getElementById("g2"));
+        // Text may need its ancestors after the build.
+        Assert.assertNotNull(doc.getElementById("g4"));
+        // rect and circle of g2, g2, the last rect.
+        Assert.assertEquals(4, builder.getPrunedCount());
+    }
+
+    @Test
+    public void testDynamicDocumentIsKept() throws Exception {
+        String svg =
+            "<svg xmlns='http://www.w3.org/2000/svg' width='10' height='10'>" +
+            "<g id='g'><rect width='1' height='1'/></g>" +
+            "</svg>";
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        SVGOMDocument doc = (SVGOMDocument)f.createDocument
+            ("http://example.org/test.svg", new StringReader(svg));
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setDynamicState(BridgeContext.DYNAMIC);
+        StaticGVTBuilder builder = new StaticGVTBuilder();
+        builder.build(ctx, doc);
+        Assert.assertEquals(0, builder.getPrunedCount());
+        Assert.assertNotNull(doc.getElementById("g"));
+    }
+}
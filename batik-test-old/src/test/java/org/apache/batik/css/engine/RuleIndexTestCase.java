@@ -0,0 +1,146 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.css.engine.sac.ExtendedSelector;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+public class RuleIndexTestCase {
+
+    private static final String SVG =
+        "<svg xmlns='http://www.w3.org/2000/svg' width='10' height='10'>" +
+        "<style type='text/css'><![CDATA[" +
+        "* { opacity: 1 }" +
+        "rect { fill: red }" +
+        "#r1 { fill: blue }" +
+        ".a { stroke: green }" +
+        ".a.b { stroke-width: 2 }" +
+        "rect.b#r2 { stroke: black }" +
+        "g rect { opacity: 0.5 }" +
+        "g > .c, circle { fill: yellow }" +
+        "rect + circle { stroke: red }" +
+        "[x] { fill-opacity: 0.5 }" +
+        ":first-child { stroke-opacity: 0.5 }" +
+        "g#g1 .a { stroke: blue }" +
+        "@media screen { .b { fill: pink } circle { fill: gray } }" +
+        "@media print { .b { fill: black } }" +
+        "]]></style>" +
+        "<g id='g1'>" +
+        "<rect id='r1' class='a' width='1' height='1'/>" +
+        "<rect id='r2' class='b  a b' x='1' width='1' height='1'/>" +
+        "<circle class='c' r='1'/>" +
+        "</g>" +
+        "<rect class='c' width='1' height='1'/>" +
+        "<ellipse id='b' class='unknown' rx='1' ry='1'/>" +
+        "</svg>";
+
+    private CSSEngine engine;
+
+    private StyleSheet sheet;
+
+    @Before
+    public void setUp() throws Exception {
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        SVGOMDocument doc = (SVGOMDocument)f.createDocument
+            ("http://example.org/test.svg", new StringReader(SVG));
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        new GVTBuilder().build(ctx, doc);
+        engine = doc.getCSSEngine();
+        List nodes = engine.getStyleSheetNodes();
+        Assert.assertEquals(1, nodes.size());
+        sheet = ((CSSStyleSheetNode)nodes.get(0)).getCSSStyleSheet();
+    }
+
+    /**
+     * The rules found through the index must be the ones found by
+     * testing every selector, in the same order.
+     */
+    @Test
+    public void testSameAsLinearScan() {
+        checkSubtree(engine.getDocument().getDocumentElement());
+
+        // Only '*', '[x]', ':first-child' and the media rules are
+        // candidates for an element no other selector names.
+        Element ellipse = (Element)engine.getDocument()
+            .getElementsByTagNameNS("*", "ellipse").item(0);
+        Assert.assertEquals(5, sheet.getRuleIndex()
+                            .getCandidates(ellipse).length);
+    }
+
+    /**
+     * The index must be rebuilt when a rule is added.
+     */
+    @Test
+    public void testInvalidatedOnAppend() {
+        RuleIndex ri = sheet.getRuleIndex();
+        Assert.assertSame(ri, sheet.getRuleIndex());
+        engine.parseStyleSheet(sheet, "ellipse { fill: blue }", null);
+        Assert.assertNotSame(ri, sheet.getRuleIndex());
+        checkSubtree(engine.getDocument().getDocumentElement());
+    }
+
+    private void checkSubtree(Element e) {
+        List expected = new ArrayList();
+        linearScan(expected, sheet, e);
+        List actual = new ArrayList();
+        engine.addMatchingRules(actual, sheet, e, null);
+        Assert.assertEquals(e.getAttribute("id") + e.getAttribute("class"),
+                            expected, actual);
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element) {
+                checkSubtree((Element)n);
+            }
+        }
+    }
+
+    private void linearScan(List rules, StyleSheet ss, Element e) {
+        for (int i = 0; i < ss.getSize(); i++) {
+            Rule r = ss.getRule(i);
+            if (r.getType() == StyleRule.TYPE) {
+                SelectorList sl = ((StyleRule)r).getSelectorList();
+                for (int j = 0; j < sl.getLength(); j++) {
+                    if (((ExtendedSelector)sl.item(j)).match(e, null)) {
+                        rules.add(r);
+                    }
+                }
+            } else {
+                MediaRule mr = (MediaRule)r;
+                if (engine.mediaMatch(mr.getMediaList())) {
+                    linearScan(rules, mr, e);
+                }
+            }
+        }
+    }
+}
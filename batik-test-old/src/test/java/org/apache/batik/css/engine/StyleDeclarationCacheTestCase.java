@@ -0,0 +1,80 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StyleDeclarationCacheTestCase {
+
+    private static final String SVG =
+        "<svg xmlns='http://www.w3.org/2000/svg' width='10' height='10'>" +
+        "<rect id='r1' style='fill: blue; stroke: red' width='1' height='1'/>" +
+        "<rect id='r2' style='fill: blue; stroke: red' width='1' height='1'/>" +
+        "<rect id='r3' style='fill: url(#p) blue' width='1' height='1'/>" +
+        "<rect id='r4' style='fill: url(#p) blue' width='1' height='1'/>" +
+        "</svg>";
+
+    private String computed(SVGOMDocument doc, String id, String property) {
+        CSSEngine engine = doc.getCSSEngine();
+        return engine.getComputedStyle
+            ((CSSStylableElement)doc.getElementById(id), null,
+             engine.getPropertyIndex(property)).getCssText();
+    }
+
+    @Test
+    public void testIsCacheable() {
+        Assert.assertTrue(StyleDeclarationCache.isCacheable
+                          ("fill: rgb(1, 2, 3); stroke: none"));
+        Assert.assertFalse(StyleDeclarationCache.isCacheable
+                           ("fill: url(#a) red"));
+        Assert.assertFalse(StyleDeclarationCache.isCacheable
+                           ("filter:URL(f.svg#b)"));
+        Assert.assertFalse(StyleDeclarationCache.isCacheable
+                           ("fill: \\75 rl(#a)"));
+    }
+
+    @Test
+    public void testSharedDeclarations() throws Exception {
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        SVGOMDocument doc = (SVGOMDocument)f.createDocument
+            ("http://example.org/test.svg", new StringReader(SVG));
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        new GVTBuilder().build(ctx, doc);
+
+        StyleDeclarationCache cache = doc.getCSSEngine()
+            .getStyleDeclarationCache();
+        Assert.assertNotNull(cache);
+        // The style of r2 was found; the url() values are not cached.
+        Assert.assertTrue(cache.getHitCount() > 0);
+        Assert.assertEquals(1, cache.size());
+
+        Assert.assertEquals("rgb(0, 0, 255)", computed(doc, "r2", "fill"));
+        Assert.assertEquals("rgb(255, 0, 0)", computed(doc, "r2", "stroke"));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StyleSharingTestCase {
+
+    private static final String SVG_START =
+        "<svg xmlns='http://www.w3.org/2000/svg' width='10' height='10'>" +
+        "<style type='text/css'><![CDATA[";
+
+    private static final String SVG_END =
+        "]]></style>" +
+        "<g fill='green'>" +
+        "<rect id='r1' class='a' width='1' height='1'/>" +
+        "<rect id='r2' class='a' width='1' height='1'/>" +
+        "<rect id='r3' class='b' width='1' height='1'/>" +
+        "<rect id='r4' class='a' stroke='red' width='1' height='1'/>" +
+        "<rect id='r5' class='a' style='opacity: 0.5' width='1' height='1'/>" +
+        "</g>" +
+        "</svg>";
+
+    private static final String BLUE = "rgb(0, 0, 255)";
+
+    private static final String GREEN = "rgb(0, 128, 0)";
+
+    private SVGOMDocument doc;
+
+    private CSSEngine engine;
+
+    private void load(String css) throws Exception {
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        doc = (SVGOMDocument)f.createDocument
+            ("http://example.org/test.svg",
+             new StringReader(SVG_START + css + SVG_END));
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setDynamicState(BridgeContext.DYNAMIC);
+        new GVTBuilder().build(ctx, doc);
+        engine = doc.getCSSEngine();
+    }
+
+    private CSSStylableElement element(String id) {
+        return (CSSStylableElement)doc.getElementById(id);
+    }
+
+    private StyleMap styleMap(String id) {
+        return element(id).getComputedStyleMap(null);
+    }
+
+    private String computed(String id, String property) {
+        return engine.getComputedStyle(element(id), null,
+                                       engine.getPropertyIndex(property))
+            .getCssText();
+    }
+
+    @Test
+    public void testSiblingsShareStyle() throws Exception {
+        load(".a { stroke: blue } .b { stroke: black }");
+        Assert.assertSame(styleMap("r1"), styleMap("r2"));
+        Assert.assertTrue(styleMap("r1").isShared());
+        // Different class, presentation attribute or inline style.
+        Assert.assertNotSame(styleMap("r1"), styleMap("r3"));
+        Assert.assertNotSame(styleMap("r1"), styleMap("r4"));
+        Assert.assertNotSame(styleMap("r1"), styleMap("r5"));
+        Assert.assertEquals(BLUE, computed("r2", "stroke"));
+        Assert.assertEquals("rgb(0, 0, 0)", computed("r3", "stroke"));
+        // The style-sheet wins over the presentation attribute.
+        Assert.assertEquals(BLUE, computed("r4", "stroke"));
+    }
+
+    @Test
+    public void testCopyOnWrite() throws Exception {
+        load(".a { stroke: blue }");
+        Assert.assertSame(styleMap("r1"), styleMap("r2"));
+        Assert.assertEquals(GREEN, computed("r2", "fill"));
+
+        element("r2").setAttributeNS(null, "fill", "yellow");
+        Assert.assertNotSame(styleMap("r1"), styleMap("r2"));
+        Assert.assertEquals("rgb(255, 255, 0)", computed("r2", "fill"));
+        Assert.assertEquals(GREEN, computed("r1", "fill"));
+
+        element("r1").setAttributeNS(null, "class", "b");
+        Assert.assertEquals("none", computed("r1", "stroke"));
+        Assert.assertEquals(BLUE, computed("r2", "stroke"));
+    }
+
+    @Test
+    public void testIdSelectorPreventsSharing() throws Exception {
+        load("#r2 { stroke: blue }");
+        Assert.assertNotSame(styleMap("r1"), styleMap("r2"));
+        Assert.assertEquals(BLUE, computed("r2", "stroke"));
+    }
+
+    @Test
+    public void testPositionalSelectorPreventsSharing() throws Exception {
+        load("rect:first-child { stroke: blue }");
+        Assert.assertNotSame(styleMap("r1"), styleMap("r2"));
+        Assert.assertEquals(BLUE, computed("r1", "stroke"));
+        Assert.assertEquals("none", computed("r2", "stroke"));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.dom;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+import org.w3c.dom.events.MutationEvent;
+
+public class AbstractAttrTestCase {
+
+    private static Document parse() throws Exception {
+        String svg =
+            "<svg xmlns='http://www.w3.org/2000/svg' width='10' height='10'>" +
+            "<rect id='r' width='1' height='2' fill='red'/>" +
+            "</svg>";
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        return f.createDocument("http://example.org/test.svg",
+                                new StringReader(svg));
+    }
+
+    @Test
+    public void testTextChild() throws Exception {
+        Element r = parse().getElementById("r");
+        Attr a = r.getAttributeNode("fill");
+        Assert.assertEquals("red", a.getValue());
+        Assert.assertTrue(a.hasChildNodes());
+        Assert.assertEquals("red", a.getTextContent());
+
+        Node t = a.getFirstChild();
+        Assert.assertEquals(Node.TEXT_NODE, t.getNodeType());
+        Assert.assertEquals("red", t.getNodeValue());
+        Assert.assertSame(a, t.getParentNode());
+        Assert.assertSame(t, a.getLastChild());
+        Assert.assertEquals(1, a.getChildNodes().getLength());
+        Assert.assertEquals("red", a.getValue());
+
+        a.appendChild(r.getOwnerDocument().createTextNode("dish"));
+        Assert.assertEquals("reddish", r.getAttribute("fill"));
+
+        r.setAttribute("fill", "blue");
+        Assert.assertEquals("blue", a.getValue());
+        Assert.assertEquals("blue", a.getFirstChild().getNodeValue());
+    }
+
+    @Test
+    public void testCopies() throws Exception {
+        Document doc = parse();
+        Element r = doc.getElementById("r");
+        Element c = (Element)r.cloneNode(true);
+        Assert.assertEquals("2", c.getAttribute("height"));
+        Assert.assertEquals("2", c.getAttributeNode("height")
+                            .getFirstChild().getNodeValue());
+
+        Document other = parse();
+        Element i = (Element)other.importNode(r, true);
+        Assert.assertEquals("red", i.getAttribute("fill"));
+        Assert.assertSame(other, i.getAttributeNode("fill")
+                          .getFirstChild().getOwnerDocument());
+    }
+
+    @Test
+    public void testMutationEvents() throws Exception {
+        Document doc = parse();
+        Element r = doc.getElementById("r");
+        final List events = new ArrayList();
+        EventListener l = new EventListener() {
+            public void handleEvent(Event evt) {
+                MutationEvent me = (MutationEvent)evt;
+                events.add(me.getType() + " " + me.getPrevValue() +
+                           " " + me.getNewValue());
+            }
+        };
+        ((EventTarget)r).addEventListener("DOMAttrModified", l, false);
+        ((EventTarget)r).addEventListener("DOMNodeRemoved", l, false);
+        ((EventTarget)r).addEventListener("DOMNodeInserted", l, false);
+
+        r.setAttribute("width", "3");
+        Assert.assertEquals("3", r.getAttribute("width"));
+        // The text children of attributes are not in the tree of the
+        // element, so only the attribute modification reaches it.
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals("DOMAttrModified 1 3", events.get(0));
+        Assert.assertEquals("3", r.getAttributeNode("width")
+                            .getFirstChild().getNodeValue());
+    }
+}
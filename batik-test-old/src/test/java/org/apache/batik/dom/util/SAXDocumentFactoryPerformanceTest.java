@@ -0,0 +1,75 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.dom.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.test.PerformanceTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+/**
+ * Checks that there is no performance degradation in the parsing of
+ * many small SVG documents with parser pooling.  The reference
+ * operation parses the documents with a new SAX parser for each of
+ * them, the tested operation with parsers taken from the pool.  The
+ * documents are built with the generic DOM implementation, so that the
+ * score mostly reflects the cost of the SAX parsers.
+ *
+ * @version $Id$
+ */
+public class SAXDocumentFactoryPerformanceTest extends PerformanceTest {
+
+    static final String SVG =
+        "<svg xmlns='http://www.w3.org/2000/svg'" +
+        " xmlns:xlink='http://www.w3.org/1999/xlink'" +
+        " width='24' height='24' viewBox='0 0 24 24'>" +
+        "<g fill='none' stroke='#333' stroke-width='2'>" +
+        "<path d='M3 12h18M12 3v18'/><circle cx='12' cy='12' r='9'/>" +
+        "</g></svg>";
+
+    /**
+     * The number of documents parsed by each operation.
+     */
+    static final int COUNT = 1000;
+
+    protected void runRef() {
+        parse(false);
+    }
+
+    protected void runOp() throws Exception {
+        parse(true);
+    }
+
+    protected void parse(boolean pooling) {
+        SAXDocumentFactory f = new SAXDocumentFactory
+            (GenericDOMImplementation.getDOMImplementation(),
+             XMLResourceDescriptor.getXMLParserClassName());
+        f.setParserPooling(pooling);
+        try {
+            for (int i = 0; i < COUNT; i++) {
+                f.createDocument("http://example.org/icon.svg",
+                                 new StringReader(SVG));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.dom.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+public class SAXDocumentFactoryTestCase {
+
+    private static final String SVG =
+        "<?xml version='1.0'?>" +
+        "<!-- before --><?pi data?>" +
+        "<svg xmlns='http://www.w3.org/2000/svg' width='10' height='10'>" +
+        "<rect width='1' height='1'/><text>a &amp; b</text></svg>";
+
+    /**
+     * Exposes the parsers used.
+     */
+    private static class Factory extends SAXSVGDocumentFactory {
+        XMLReader last;
+        Factory() {
+            super(XMLResourceDescriptor.getXMLParserClassName());
+        }
+        protected XMLReader getParser() throws SAXException, IOException {
+            last = super.getParser();
+            return last;
+        }
+    }
+
+    private static String parse(SAXSVGDocumentFactory f, String svg)
+        throws Exception {
+        Document doc = f.createDocument("http://example.org/test.svg",
+                                        new StringReader(svg));
+        StringWriter w = new StringWriter();
+        DOMUtilities.writeDocument(doc, w);
+        return w.toString();
+    }
+
+    @Test
+    public void testSameDocuments() throws Exception {
+        String expected = parse(new Factory(), SVG);
+        Factory f = new Factory();
+        f.setParserPooling(true);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(expected, parse(f, SVG));
+        }
+    }
+
+    @Test
+    public void testParserIsReused() throws Exception {
+        Factory f = new Factory();
+        f.setParserPooling(true);
+        parse(f, SVG);
+        XMLReader r = f.last;
+        parse(new Factory(), SVG);
+        Factory g = new Factory();
+        g.setParserPooling(true);
+        parse(g, SVG);
+        Assert.assertSame(r, g.last);
+    }
+
+    @Test
+    public void testFailedParserIsNotReused() throws Exception {
+        Factory f = new Factory();
+        f.setParserPooling(true);
+        try {
+            parse(f, "<svg xmlns='http://www.w3.org/2000/svg'>");
+            Assert.fail();
+        } catch (IOException e) {
+        }
+        XMLReader r = f.last;
+        parse(f, SVG);
+        Assert.assertNotSame(r, f.last);
+        Assert.assertEquals(parse(new Factory(), SVG), parse(f, SVG));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultipleGradientPaintContextTestCase {
+
+    private static final float[] FRACTIONS = { 0, .2f, .7f, 1 };
+
+    private static MultipleGradientPaintContext context
+        (MultipleGradientPaint p) {
+        Rectangle r = new Rectangle(0, 0, 50, 20);
+        return (MultipleGradientPaintContext)p.createContext
+            (ColorModel.getRGBdefault(), r, r, new AffineTransform(),
+             new RenderingHints(null));
+    }
+
+    private static LinearGradientPaint linear(Color last, float x2) {
+        Color[] colors = { Color.red, Color.green,
+                           new Color(0x800000ff, true), last };
+        return new LinearGradientPaint
+            (new Point2D.Float(0, 0), new Point2D.Float(x2, 5),
+             FRACTIONS, colors, MultipleGradientPaint.REFLECT,
+             MultipleGradientPaint.LINEAR_RGB);
+    }
+
+    private static int[] pixels(MultipleGradientPaintContext ctx) {
+        Raster r = ctx.getRaster(0, 0, 50, 20);
+        int[] px = r.getPixels(0, 0, 50, 20, (int[])null);
+        ctx.dispose();
+        return px;
+    }
+
+    @Test
+    public void testSameStopsShareTables() {
+        MultipleGradientPaintContext a = context(linear(Color.black, 30));
+        MultipleGradientPaintContext b = context(linear(Color.black, 45));
+        Assert.assertSame(a.gradient, b.gradient);
+        Assert.assertEquals(a.getColorModel(), b.getColorModel());
+
+        Point2D center = new Point2D.Float(20, 10);
+        RadialGradientPaint radial = new RadialGradientPaint
+            (center, 15, center,
+             FRACTIONS, linear(Color.black, 30).getColors(),
+             MultipleGradientPaint.REFLECT,
+             MultipleGradientPaint.LINEAR_RGB);
+        Assert.assertSame(a.gradient, context(radial).gradient);
+
+        MultipleGradientPaintContext c = context(linear(Color.white, 30));
+        Assert.assertNotSame(a.gradient, c.gradient);
+    }
+
+    @Test
+    public void testSharedTablesGiveSameRendering() {
+        int[] expected = pixels(context(linear(Color.yellow, 20)));
+        for (int i = 0; i < 3; i++) {
+            Assert.assertArrayEquals
+                (expected, pixels(context(linear(Color.yellow, 20))));
+        }
+        Assert.assertFalse(Arrays.equals
+            (expected, pixels(context(linear(Color.cyan, 20)))));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt;
+
+import java.awt.Color;
+import java.awt.PaintContext;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RadialGradientPaintContextTestCase {
+
+    private static final float CX = 100, CY = 80, R = 60;
+
+    private static int[] fill(float fx, float fy,
+                              MultipleGradientPaint.CycleMethodEnum cycle) {
+        RadialGradientPaint p = new RadialGradientPaint
+            (new Point2D.Float(CX, CY), R, new Point2D.Float(fx, fy),
+             new float[] { 0, 1 }, new Color[] { Color.black, Color.white },
+             cycle, MultipleGradientPaint.SRGB, new AffineTransform());
+        Rectangle r = new Rectangle(0, 0, 300, 200);
+        PaintContext ctx = p.createContext
+            (ColorModel.getRGBdefault(), r, r, new AffineTransform(),
+             new RenderingHints(null));
+        Raster ras = ctx.getRaster(0, 0, r.width, r.height);
+        int[] px = ras.getSamples(0, 0, r.width, r.height, 0, (int[])null);
+        ctx.dispose();
+        return px;
+    }
+
+    /**
+     * The position along the line from the focus to the circle, computed
+     * directly.
+     */
+    private static double position(double x, double y, double fx, double fy) {
+        double ex = fx - CX, ey = fy - CY;
+        double dx = x - fx, dy = y - fy;
+        double ed = ex * dx + ey * dy;
+        double k = R * R - (ex * ex + ey * ey);
+        return (ed + Math.sqrt(ed * ed + k * (dx * dx + dy * dy))) / k;
+    }
+
+    @Test
+    public void testOffCenterFocus() {
+        float[][] foci = { { 130, 60 }, { 60, 110 }, { 100, 30 } };
+        for (float[] f : foci) {
+            int[] red = fill(f[0], f[1], MultipleGradientPaint.NO_CYCLE);
+            for (int y = 0; y < 200; y += 3) {
+                for (int x = 0; x < 300; x += 3) {
+                    double g = position(x, y, f[0], f[1]);
+                    int expected = (int)Math.round(Math.min(g, 1) * 255);
+                    int actual = red[y * 300 + x];
+                    Assert.assertTrue(x + "," + y + ": " + actual + " for " +
+                                      expected,
+                                      Math.abs(actual - expected) <= 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * The result must not depend on how the rows are split.
+     */
+    @Test
+    public void testSameResultOnAnyPool() throws Exception {
+        Callable task = new Callable() {
+            public Object call() {
+                return fill(120, 90, MultipleGradientPaint.REFLECT);
+            }
+        };
+        int[] expected = (int[])task.call();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assert.assertArrayEquals(expected,
+                                     (int[])pool.submit(task).get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
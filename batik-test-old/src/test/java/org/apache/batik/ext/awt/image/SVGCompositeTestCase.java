@@ -0,0 +1,150 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image;
+
+import java.awt.CompositeContext;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SVGCompositeTestCase {
+
+    private static final int W = 300;
+    private static final int H = 200;
+
+    /**
+     * Returns premultiplied pixels with clear and opaque areas.
+     */
+    private static WritableRaster raster(long seed, boolean clearEnds) {
+        WritableRaster wr =
+            GraphicsUtil.sRGB_Pre.createCompatibleWritableRaster(W, H);
+        int[] px = ((DataBufferInt)wr.getDataBuffer()).getData();
+        Random r = new Random(seed);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                int a;
+                if (clearEnds && (x < y/2 || x >= W-y)) {
+                    a = 0;
+                } else if ((x/20) % 3 == 0) {
+                    a = 255;
+                } else if ((x/20) % 3 == 1) {
+                    a = 0;
+                } else {
+                    a = r.nextInt(256);
+                }
+                px[y*W+x] = (a << 24) |
+                    (r.nextInt(a + 1) << 16) |
+                    (r.nextInt(a + 1) << 8) |
+                    r.nextInt(a + 1);
+            }
+        }
+        return wr;
+    }
+
+    private static int[] pixels(Raster r) {
+        return (int[])r.getDataElements(0, 0, W, H, null);
+    }
+
+    private static int mul(int c, int a) {
+        return (c*a*((1 << 24)/255) + (1 << 23)) >>> 24;
+    }
+
+    private static int[] compose(CompositeRule rule, boolean inPlace) {
+        CompositeContext ctx = new SVGComposite(rule).createContext
+            (GraphicsUtil.sRGB_Pre, GraphicsUtil.sRGB_Pre, null);
+        WritableRaster dst = raster(2, false);
+        WritableRaster out = inPlace
+            ? dst
+            : GraphicsUtil.sRGB_Pre.createCompatibleWritableRaster(W, H);
+        ctx.compose(raster(1, true), dst, out);
+        return pixels(out);
+    }
+
+    @Test
+    public void testOver() {
+        int[] src = pixels(raster(1, true));
+        int[] dst = pixels(raster(2, false));
+        int[] expected = new int[src.length];
+        for (int i = 0; i < src.length; i++) {
+            int s = src[i];
+            int d = dst[i];
+            int m = 255 - (s >>> 24);
+            int p = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                p |= (((s >>> shift) & 0xFF) +
+                      mul((d >>> shift) & 0xFF, m)) << shift;
+            }
+            expected[i] = p;
+        }
+        Assert.assertArrayEquals(expected, compose(CompositeRule.OVER, false));
+        Assert.assertArrayEquals(expected, compose(CompositeRule.OVER, true));
+    }
+
+    /**
+     * The rules left unchanged by clear source pixels must keep the
+     * destination where the source is clear.
+     */
+    @Test
+    public void testClearSource() {
+        CompositeRule[] rules = {
+            CompositeRule.OVER, CompositeRule.ATOP, CompositeRule.XOR,
+            CompositeRule.MULTIPLY, CompositeRule.SCREEN,
+            CompositeRule.DARKEN, CompositeRule.LIGHTEN
+        };
+        int[] src = pixels(raster(1, true));
+        int[] dst = pixels(raster(2, false));
+        for (CompositeRule rule : rules) {
+            int[] out = compose(rule, false);
+            for (int i = 0; i < src.length; i++) {
+                if (src[i] == 0) {
+                    Assert.assertEquals(rule.toString(), dst[i], out[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSameResultOnAnyPool() throws Exception {
+        CompositeRule[] rules = {
+            CompositeRule.OVER, CompositeRule.IN, CompositeRule.MULTIPLY,
+            CompositeRule.ARITHMETIC(0.5f, 0.25f, 0.25f, 0)
+        };
+        for (final CompositeRule rule : rules) {
+            Callable task = new Callable() {
+                public Object call() {
+                    return compose(rule, true);
+                }
+            };
+            int[] expected = (int[])task.call();
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                Assert.assertArrayEquals(rule.toString(), expected,
+                                         (int[])pool.submit(task).get());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.codec.png;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PNGImageEncoderTestCase {
+
+    private static BufferedImage image(int type) {
+        BufferedImage img = new BufferedImage(700, 500, type);
+        Graphics2D g = img.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.red,
+                                     700, 500, new Color(0, 0, 255, 100)));
+        g.fillRect(0, 0, 700, 500);
+        Random r = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            g.setColor(new Color(r.nextInt(), true));
+            g.fillOval(r.nextInt(700), r.nextInt(500), 40, 30);
+        }
+        g.dispose();
+        return img;
+    }
+
+    private static byte[] encode(BufferedImage img, int level, int threads,
+                                 boolean interlace) throws Exception {
+        PNGEncodeParam param = PNGEncodeParam.getDefaultEncodeParam(img);
+        param.setCompressionLevel(level);
+        param.setCompressionThreads(threads);
+        param.setInterlacing(interlace);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PNGImageEncoder(out, param).encode(img);
+        return out.toByteArray();
+    }
+
+    private static void assertSamePixels(BufferedImage img, byte[] png)
+        throws Exception {
+        BufferedImage dec = ImageIO.read(new ByteArrayInputStream(png));
+        int w = img.getWidth();
+        int h = img.getHeight();
+        Assert.assertEquals(w, dec.getWidth());
+        Assert.assertEquals(h, dec.getHeight());
+        Assert.assertArrayEquals(img.getRGB(0, 0, w, h, null, 0, w),
+                                 dec.getRGB(0, 0, w, h, null, 0, w));
+    }
+
+    @Test
+    public void testSameOutputForAnyThreads() throws Exception {
+        int[] types = { BufferedImage.TYPE_INT_ARGB,
+                        BufferedImage.TYPE_INT_RGB,
+                        BufferedImage.TYPE_BYTE_GRAY };
+        for (int type : types) {
+            BufferedImage img = image(type);
+            for (int i = 0; i < 2; i++) {
+                boolean interlace = i == 1;
+                byte[] expected = encode(img, 9, 1, interlace);
+                Assert.assertArrayEquals(expected,
+                                         encode(img, 9, 2, interlace));
+                Assert.assertArrayEquals(expected,
+                                         encode(img, 9, 5, interlace));
+                assertSamePixels(img, expected);
+                assertSamePixels(img, encode(img, 9, 0, interlace));
+            }
+        }
+    }
+
+    @Test
+    public void testCompressionLevel() throws Exception {
+        BufferedImage img = image(BufferedImage.TYPE_INT_ARGB);
+        byte[] stored = encode(img, 0, 0, false);
+        byte[] fast = encode(img, 1, 3, false);
+        byte[] best = encode(img, 9, 3, false);
+        assertSamePixels(img, stored);
+        assertSamePixels(img, fast);
+        assertSamePixels(img, best);
+        Assert.assertTrue(stored.length > img.getWidth()*img.getHeight()*4);
+        Assert.assertTrue(fast.length < stored.length);
+        Assert.assertTrue(best.length <= fast.length);
+        Assert.assertArrayEquals(stored, encode(img, 0, 0, false));
+        Assert.assertArrayEquals(encode(img, 0, 1, false),
+                                 encode(img, 0, 4, false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCompressionLevel() {
+        PNGEncodeParam.getDefaultEncodeParam
+            (image(BufferedImage.TYPE_INT_RGB)).setCompressionLevel(10);
+    }
+}
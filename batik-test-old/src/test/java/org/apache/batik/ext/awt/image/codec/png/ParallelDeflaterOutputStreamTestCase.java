@@ -0,0 +1,123 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.codec.png;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelDeflaterOutputStreamTestCase {
+
+    private static byte[] data(int len) {
+        // Compressible, with matches across block boundaries.
+        Random r = new Random(42);
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte)(i % 1000 < 500 ? r.nextInt(4) : (i / 7));
+        }
+        return b;
+    }
+
+    private static byte[] deflate(byte[] data, int level, int threads,
+                                  int chunk) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ParallelDeflaterOutputStream out = new ParallelDeflaterOutputStream
+            (bos, level, threads, 32 * 1024);
+        for (int i = 0; i < data.length; i += chunk) {
+            out.write(data, i, Math.min(chunk, data.length - i));
+        }
+        out.close();
+        return bos.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] data) throws Exception {
+        InflaterInputStream in =
+            new InflaterInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            bos.write(buf, 0, n);
+        }
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        int[] lengths = { 0, 1, 32 * 1024, 32 * 1024 + 1, 300000 };
+        int[] levels = { 0, 1, 6, 9 };
+        for (int len : lengths) {
+            byte[] data = data(len);
+            for (int level : levels) {
+                Assert.assertArrayEquals(len + "/" + level, data,
+                                         inflate(deflate(data, level, 3,
+                                                         7777)));
+            }
+        }
+    }
+
+    @Test
+    public void testSameOutputForAnyThreads() throws Exception {
+        byte[] data = data(500000);
+        byte[] expected = deflate(data, 9, 1, data.length);
+        Assert.assertArrayEquals(expected, deflate(data, 9, 4, 1000));
+        Assert.assertArrayEquals(expected, deflate(data, 9, 8, 65536));
+        Assert.assertTrue(expected.length < data.length / 2);
+    }
+
+    @Test
+    public void testBlocks() throws Exception {
+        final byte[] data = data(400000);
+        int[] sizes = { 1000, 50000, 7, 200000, 100000 };
+        byte[][] expected = new byte[2][];
+        for (int t = 0; t < 2; t++) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ParallelDeflaterOutputStream out =
+                new ParallelDeflaterOutputStream(bos, 6, t == 0 ? 1 : 4);
+            int off = 0;
+            for (int i = 0; i < sizes.length; i++) {
+                final int start = off;
+                final int len = sizes[i];
+                if (i == 2) {
+                    // Bytes and blocks may be mixed.
+                    out.write(data, start, len);
+                    off += len;
+                    continue;
+                }
+                out.writeBlock(new Callable() {
+                    public Object call() {
+                        return Arrays.copyOfRange(data, start, start + len);
+                    }
+                });
+                off += len;
+            }
+            out.write(data, off, data.length - off);
+            out.close();
+            expected[t] = bos.toByteArray();
+            Assert.assertArrayEquals(data, inflate(expected[t]));
+        }
+        Assert.assertArrayEquals(expected[0], expected[1]);
+    }
+}
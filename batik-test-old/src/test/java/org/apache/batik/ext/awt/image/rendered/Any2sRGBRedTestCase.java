@@ -0,0 +1,87 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Any2sRGBRedTestCase {
+
+    private static WritableRaster premultiplied() {
+        ColorModel cm = GraphicsUtil.sRGB_Pre;
+        WritableRaster wr = cm.createCompatibleWritableRaster(100, 60);
+        int[] px = ((DataBufferInt)wr.getDataBuffer()).getData();
+        Random r = new Random(5);
+        for (int i = 0; i < px.length; i++) {
+            int a = (i & 7) == 0 ? 255 : (i & 7) == 1 ? 0 : r.nextInt(256);
+            px[i] = (a << 24) |
+                (r.nextInt(a + 1) << 16) |
+                (r.nextInt(a + 1) << 8) |
+                r.nextInt(a + 1);
+        }
+        return wr;
+    }
+
+    private static int[] convert(boolean toLinear, ColorModel cm,
+                                 WritableRaster data) {
+        CachableRed src = GraphicsUtil.wrap
+            (new BufferedImage(cm, data, cm.isAlphaPremultiplied(), null));
+        CachableRed red = toLinear
+            ? (CachableRed)new Any2LsRGBRed(src)
+            : (CachableRed)new Any2sRGBRed(src);
+        WritableRaster wr = red.getColorModel()
+            .createCompatibleWritableRaster(100, 60);
+        red.copyData(wr);
+        return (int[])wr.getDataElements(0, 0, 100, 60, null);
+    }
+
+    /**
+     * Converting premultiplied data in one pass must give the result of
+     * converting the unpremultiplied data.
+     */
+    private static void checkPremultiplied(boolean toLinear,
+                                           ColorModel pre,
+                                           ColorModel unpre) {
+        WritableRaster data = premultiplied();
+        WritableRaster divided = data.createCompatibleWritableRaster();
+        divided.setRect(data);
+        GraphicsUtil.coerceData(divided, pre, false);
+        Assert.assertArrayEquals(convert(toLinear, unpre, divided),
+                                 convert(toLinear, pre, data));
+    }
+
+    @Test
+    public void testLinearToSRGB() {
+        checkPremultiplied(false, GraphicsUtil.Linear_sRGB_Pre,
+                           GraphicsUtil.Linear_sRGB_Unpre);
+    }
+
+    @Test
+    public void testSRGBToLinear() {
+        checkPremultiplied(true, GraphicsUtil.sRGB_Pre,
+                           GraphicsUtil.sRGB_Unpre);
+    }
+}
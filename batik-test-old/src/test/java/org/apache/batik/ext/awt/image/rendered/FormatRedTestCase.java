@@ -0,0 +1,106 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FormatRedTestCase {
+
+    private static BufferedImage image(int type) {
+        BufferedImage bi = new BufferedImage(120, 80, type);
+        int[] px = ((DataBufferInt)bi.getRaster().getDataBuffer()).getData();
+        Random r = new Random(11);
+        boolean pre = bi.isAlphaPremultiplied();
+        for (int i = 0; i < px.length; i++) {
+            int a = r.nextInt(4) == 0 ? 255 : r.nextInt(256);
+            int max = pre ? a : 255;
+            px[i] = (a << 24) |
+                (r.nextInt(max + 1) << 16) |
+                (r.nextInt(max + 1) << 8) |
+                r.nextInt(max + 1);
+        }
+        return bi;
+    }
+
+    /**
+     * Converting in place must give the result of the copy through
+     * BufferedImages, and copy the data only once.
+     */
+    private static void checkConversion(int srcType, ColorModel cm) {
+        BufferedImage src = image(srcType);
+        WritableRaster expected = cm.createCompatibleWritableRaster(120, 80);
+        GraphicsUtil.copyData
+            (src, new BufferedImage(cm, expected,
+                                    cm.isAlphaPremultiplied(), null));
+
+        FormatRed red = new FormatRed(GraphicsUtil.wrap(src), cm);
+        WritableRaster wr = cm.createCompatibleWritableRaster(120, 80);
+        GraphicsUtil.setCountCopies(true);
+        long copied;
+        try {
+            copied = GraphicsUtil.getCopiedBytes();
+            red.copyData(wr);
+            copied = GraphicsUtil.getCopiedBytes() - copied;
+        } finally {
+            GraphicsUtil.setCountCopies(false);
+        }
+        Assert.assertEquals(120 * 80 * 4, copied);
+        Assert.assertArrayEquals
+            ((int[])expected.getDataElements(0, 0, 120, 80, null),
+             (int[])wr.getDataElements(0, 0, 120, 80, null));
+    }
+
+    @Test
+    public void testMultiply() {
+        checkConversion(BufferedImage.TYPE_INT_ARGB, GraphicsUtil.sRGB_Pre);
+    }
+
+    @Test
+    public void testDivide() {
+        checkConversion(BufferedImage.TYPE_INT_ARGB_PRE,
+                        GraphicsUtil.sRGB_Unpre);
+    }
+
+    @Test
+    public void testTranslatedDestination() {
+        BufferedImage src = image(BufferedImage.TYPE_INT_ARGB_PRE);
+        ColorModel cm = GraphicsUtil.sRGB_Unpre;
+        FormatRed red = new FormatRed(GraphicsUtil.wrap(src), cm);
+        WritableRaster all = red.copyData
+            (cm.createCompatibleWritableRaster(120, 80));
+        // A view of the middle of a larger raster.
+        WritableRaster wr = cm.createCompatibleWritableRaster(200, 200)
+            .createWritableChild(30, 40, 50, 30, 20, 10, null);
+        red.copyData(wr);
+        Assert.assertEquals(new Point(20, 10),
+                            new Point(wr.getMinX(), wr.getMinY()));
+        Assert.assertArrayEquals
+            ((int[])all.getDataElements(20, 10, 50, 30, null),
+             (int[])wr.getDataElements(20, 10, 50, 30, null));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GaussianBlurRed8BitTestCase {
+
+    private static int[] blur(BufferedImage bi, double stdDevX,
+                              double stdDevY) {
+        Raster r = new GaussianBlurRed8Bit
+            (new BufferedImageCachableRed(bi), stdDevX, stdDevY, null)
+            .getData();
+        return r.getPixels(r.getMinX(), r.getMinY(),
+                           r.getWidth(), r.getHeight(), (int[])null);
+    }
+
+    @Test
+    public void testUniform() {
+        BufferedImage bi =
+            new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB_PRE);
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 300; x++) {
+                bi.setRGB(x, y, 0xff336699);
+            }
+        }
+        Raster r = new GaussianBlurRed8Bit
+            (new BufferedImageCachableRed(bi), 5, 8, null).getData();
+        int[] src = { 0x33, 0x66, 0x99, 0xff };
+        int[] px = null;
+        for (int y = r.getMinY(); y < r.getMinY() + r.getHeight(); y++) {
+            for (int x = r.getMinX(); x < r.getMinX() + r.getWidth(); x++) {
+                px = r.getPixel(x, y, px);
+                for (int b = 0; b < 4; b++) {
+                    // Each box filter pass rounds down.
+                    Assert.assertTrue(px[b] <= src[b] && px[b] >= src[b] - 6);
+                }
+            }
+        }
+    }
+
+    /**
+     * The result must not depend on how the passes are split.
+     */
+    @Test
+    public void testSameResultOnAnyPool() throws Exception {
+        final BufferedImage bi =
+            TestImages.randomPremultiplied(700, 500, new Random(7));
+        Callable blur = new Callable() {
+            public Object call() {
+                return blur(bi, 12, 4);
+            }
+        };
+        int[] expected = (int[])blur.call();
+        for (int threads = 1; threads <= 4; threads += 3) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                Assert.assertArrayEquals(String.valueOf(threads), expected,
+                                         (int[])pool.submit(blur).get());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.File;
+
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappedTileStoreTestCase {
+
+    private static class CountingGenerator implements TileGenerator {
+        TileGenerator source;
+        int generated;
+        CountingGenerator(TileGenerator source) {
+            this.source = source;
+        }
+        public Raster genTile(int x, int y) {
+            generated++;
+            return source.genTile(x, y);
+        }
+    }
+
+    private static BufferedImage makeImage(int type) {
+        BufferedImage bi = new BufferedImage(50, 40, type);
+        for (int y = 0; y < 40; y++) {
+            for (int x = 0; x < 50; x++) {
+                bi.setRGB(x, y, 0x80000000 | (x * 5 << 16) | (y * 6 << 8) | x);
+            }
+        }
+        return bi;
+    }
+
+    private void checkRoundTrip(int type) throws Exception {
+        BufferedImage bi = makeImage(type);
+        TileCacheRed img = new TileCacheRed(GraphicsUtil.wrap(bi), 16, 16);
+        CountingGenerator gen = new CountingGenerator(img);
+        File dir = new File(System.getProperty("java.io.tmpdir"));
+        MappedTileStore store = new MappedTileStore(img, gen, dir);
+        try {
+            Assert.assertNull(store.getTileNoCompute(0, 0));
+            for (int pass = 0; pass < 2; pass++) {
+                for (int y = 0; y < img.getNumYTiles(); y++) {
+                    for (int x = 0; x < img.getNumXTiles(); x++) {
+                        Raster r = store.getTile(x, y);
+                        Assert.assertEquals(x * 16, r.getMinX());
+                        Assert.assertEquals(y * 16, r.getMinY());
+                        int w = Math.min(16, 50 - r.getMinX());
+                        int h = Math.min(16, 40 - r.getMinY());
+                        Assert.assertArrayEquals
+                            (bi.getRaster().getPixels(r.getMinX(), r.getMinY(),
+                                                      w, h, (int[])null),
+                             r.getPixels(r.getMinX(), r.getMinY(),
+                                         w, h, (int[])null));
+                    }
+                }
+            }
+            // Every tile is computed once and then read back.
+            Assert.assertEquals(4 * 3, gen.generated);
+            Assert.assertTrue(store.getScratchSize() > 0);
+
+            store.setTile(1, 1, null);
+            Assert.assertNull(store.getTileNoCompute(1, 1));
+            Assert.assertNotNull(store.getTileNoCompute(0, 1));
+            Assert.assertNull(store.getTile(4, 0));
+        } finally {
+            store.dispose();
+        }
+        Assert.assertEquals(0, store.getScratchSize());
+    }
+
+    @Test
+    public void testIntTiles() throws Exception {
+        checkRoundTrip(BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Test
+    public void testByteTiles() throws Exception {
+        checkRoundTrip(BufferedImage.TYPE_4BYTE_ABGR);
+    }
+
+    @Test
+    public void testShortTiles() throws Exception {
+        checkRoundTrip(BufferedImage.TYPE_USHORT_565_RGB);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MorphologyOpTestCase {
+
+    private static int[] getPixels(BufferedImage bi) {
+        return ((DataBufferInt)bi.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Computes the max/min of every channel over the part of the
+     * window which is inside the image, row by row then column by
+     * column.
+     */
+    private static int[] reference(int[] px, int w, int h,
+                                   int rx, int ry, boolean dilate) {
+        int[] tmp = new int[w * h];
+        int[] out = new int[w * h];
+        for (int pass = 0; pass < 2; pass++) {
+            int[] in = (pass == 0) ? px : tmp;
+            int[] res = (pass == 0) ? tmp : out;
+            int r = (pass == 0) ? rx : ry;
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    int v = 0;
+                    for (int s = 0; s < 32; s += 8) {
+                        int best = dilate ? 0 : 255;
+                        for (int d = -r; d <= r; d++) {
+                            int xx = (pass == 0) ? x + d : x;
+                            int yy = (pass == 0) ? y : y + d;
+                            if (xx < 0 || yy < 0 || xx >= w || yy >= h) {
+                                continue;
+                            }
+                            int c = (in[yy * w + xx] >>> s) & 0xff;
+                            best = dilate ? Math.max(best, c)
+                                          : Math.min(best, c);
+                        }
+                        v |= best << s;
+                    }
+                    res[y * w + x] = v;
+                }
+            }
+        }
+        return out;
+    }
+
+    private static void check(int w, int h, int rx, int ry,
+                              boolean dilate, Random rnd) {
+        BufferedImage bi = TestImages.randomPremultiplied(w, h, rnd);
+        BufferedImage res = new MorphologyOp(rx, ry, dilate).filter(bi, null);
+        Assert.assertArrayEquals(w + "x" + h + " " + rx + "," + ry,
+                                 reference(getPixels(bi), w, h, rx, ry,
+                                           dilate),
+                                 getPixels(res));
+    }
+
+    @Test
+    public void testSmallRadius() {
+        Random rnd = new Random(1);
+        check(120, 80, 1, 1, true, rnd);
+        check(120, 80, 3, 2, false, rnd);
+        check(97, 61, 5, 9, true, rnd);
+        check(97, 61, 9, 5, false, rnd);
+    }
+
+    /**
+     * Windows larger than the image cover every pixel of a line.
+     */
+    @Test
+    public void testLargeRadius() {
+        Random rnd = new Random(2);
+        check(40, 30, 25, 3, true, rnd);
+        check(40, 30, 3, 20, false, rnd);
+        check(40, 30, 100, 100, true, rnd);
+        check(1, 50, 7, 7, false, rnd);
+    }
+}
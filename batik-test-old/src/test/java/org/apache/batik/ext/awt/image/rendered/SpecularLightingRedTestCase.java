@@ -0,0 +1,123 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.batik.ext.awt.image.DistantLight;
+import org.apache.batik.ext.awt.image.Light;
+import org.apache.batik.ext.awt.image.PointLight;
+import org.apache.batik.ext.awt.image.SpotLight;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpecularLightingRedTestCase {
+
+    private static final Rectangle REGION = new Rectangle(0, 0, 200, 150);
+
+    private static BufferedImage texture() {
+        BufferedImage bi = new BufferedImage
+            (REGION.width, REGION.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = bi.createGraphics();
+        Random r = new Random(7);
+        for (int i = 0; i < 30; i++) {
+            g.setColor(new Color(0, 0, 0, r.nextInt(256)));
+            g.fillOval(r.nextInt(REGION.width) - 40,
+                       r.nextInt(REGION.height) - 40,
+                       r.nextInt(120), r.nextInt(120));
+        }
+        g.dispose();
+        return bi;
+    }
+
+    private static int[] pixels(CachableRed red) {
+        Raster r = red.getData();
+        return (int[])r.getDataElements(r.getMinX(), r.getMinY(),
+                                        r.getWidth(), r.getHeight(), null);
+    }
+
+    /**
+     * Integer exponents, computed by repeated squaring rather than with
+     * Math.pow, must give the same alpha within one unit once rounded
+     * to eight bits.
+     */
+    @Test
+    public void testIntegerExponent() {
+        BufferedImage flat = new BufferedImage
+            (10, 10, BufferedImage.TYPE_INT_ARGB_PRE);
+        Rectangle region = new Rectangle(0, 0, 10, 10);
+        for (int elevation = 5; elevation < 90; elevation += 7) {
+            DistantLight light = new DistantLight(30, elevation, Color.white);
+            double lz = Math.sin(Math.toRadians(elevation));
+            double hz = (lz + 1) / Math.sqrt(2 + 2 * lz);
+            for (int e = 1; e <= 40; e++) {
+                BumpMap bm = new BumpMap(flat, 2, 1, 1);
+                Raster r = new SpecularLightingRed
+                    (1, e, light, bm, region, 1, 1, false).getData();
+                int expected = (int)(255 * Math.pow(hz, e) + 0.5);
+                int a = r.getSample(5, 5, 3);
+                Assert.assertTrue(elevation + "/" + e + ": " + a,
+                                  Math.abs(a - expected) <= 1);
+            }
+        }
+    }
+
+    /**
+     * The result must not depend on how the rows are split.
+     */
+    @Test
+    public void testSameResultOnAnyPool() throws Exception {
+        final BufferedImage texture = texture();
+        Light[] lights = {
+            new DistantLight(45, 30, Color.white),
+            new PointLight(80, 60, 50, new Color(255, 200, 100)),
+            new SpotLight(150, 20, 90, 100, 120, 0, 5, 40, Color.cyan)
+        };
+        for (final Light light : lights) {
+            Callable task = new Callable() {
+                public Object call() {
+                    BumpMap bm = new BumpMap(texture, 3, 1, 1);
+                    int[] s = pixels(new SpecularLightingRed
+                        (1.5, 12, light, bm, REGION, 1, 1, false));
+                    int[] d = pixels(new DiffuseLightingRed
+                        (1.5, light, bm, REGION, 1, 1, false));
+                    int[] r = new int[s.length + d.length];
+                    System.arraycopy(s, 0, r, 0, s.length);
+                    System.arraycopy(d, 0, r, s.length, d.length);
+                    return r;
+                }
+            };
+            int[] expected = (int[])task.call();
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                Assert.assertArrayEquals(expected,
+                                         (int[])pool.submit(task).get());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
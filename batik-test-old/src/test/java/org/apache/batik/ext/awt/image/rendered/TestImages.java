@@ -0,0 +1,46 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Images used by the tests of the filters.
+ */
+class TestImages {
+
+    /**
+     * Returns a premultiplied image of random pixels.
+     */
+    static BufferedImage randomPremultiplied(int w, int h, Random rnd) {
+        BufferedImage bi =
+            new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int a = rnd.nextInt(256);
+                bi.setRGB(x, y, (a << 24) |
+                          (rnd.nextInt(a + 1) << 16) |
+                          (rnd.nextInt(a + 1) << 8) |
+                          rnd.nextInt(a + 1));
+            }
+        }
+        return bi;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TileCacheTestCase {
+
+    private static Raster makeTile() {
+        // 16x16 pixels, one int bank: 1024 bytes.
+        return Raster.createPackedRaster(DataBuffer.TYPE_INT, 16, 16, 4, 8,
+                                         new Point(0, 0));
+    }
+
+    private static class CountingGenerator implements TileGenerator {
+        int generated;
+        public Raster genTile(int x, int y) {
+            generated++;
+            return makeTile();
+        }
+    }
+
+    @Test
+    public void testByteBudget() {
+        LRUCache cache = new LRUCache(100, 4096);
+        CountingGenerator gen = new CountingGenerator();
+        TileStore store = new TileGrid(0, 0, 8, 1, gen, cache);
+        for (int x = 0; x < 8; x++) {
+            store.getTile(x, 0);
+        }
+        Assert.assertEquals(4, cache.getUsed());
+        Assert.assertEquals(4096, cache.getUsedBytes());
+        Assert.assertEquals(4, cache.getEvictionCount());
+        Assert.assertEquals(8, cache.getMissCount());
+
+        store.getTile(7, 0);
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(8, gen.generated);
+    }
+
+    @Test
+    public void testPartitionsAreIndependent() {
+        LRUCache a = TileCache.createPartition(100, 2048);
+        LRUCache b = TileCache.createPartition(100, 2048);
+        try {
+            TileCache.setPartition(a);
+            TileStore sa = TileCache.getTileMap(new CountingGenerator());
+            TileCache.setPartition(b);
+            TileStore sb = TileCache.getTileMap(new CountingGenerator());
+
+            sb.getTile(0, 0);
+            for (int x = 0; x < 16; x++) {
+                sa.getTile(x, 0);
+            }
+            Assert.assertEquals(0, b.getEvictionCount());
+            Assert.assertNotNull(sb.getTileNoCompute(0, 0));
+            Assert.assertTrue(a.getUsedBytes() <= 2048 + 1024 *
+                              ((StripedLRUCache)a).getStripeCount());
+        } finally {
+            TileCache.setPartition(null);
+        }
+        Assert.assertSame(TileCache.getSharedCache(), TileCache.getCache());
+    }
+
+    @Test
+    public void testStripedSize() {
+        StripedLRUCache cache = new StripedLRUCache(64, 0, 4);
+        TileStore store = new TileGrid(0, 0, 128, 1,
+                                       new CountingGenerator(), cache);
+        for (int x = 0; x < 128; x++) {
+            store.getTile(x, 0);
+        }
+        Assert.assertTrue(cache.getUsed() <= 64);
+        Assert.assertEquals(128, cache.getMissCount());
+        Assert.assertEquals(128 - cache.getUsed(), cache.getEvictionCount());
+    }
+}
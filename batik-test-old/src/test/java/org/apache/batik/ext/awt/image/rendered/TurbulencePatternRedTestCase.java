@@ -0,0 +1,95 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TurbulencePatternRedTestCase {
+
+    private static int[] generate(int seed, boolean fractal,
+                                  Rectangle2D tile) {
+        Rectangle dev = new Rectangle(-20, 10, 400, 300);
+        AffineTransform txf = AffineTransform.getRotateInstance(0.3);
+        txf.scale(0.8, 1.2);
+        TurbulencePatternRed red = new TurbulencePatternRed
+            (0.05, 0.03, 4, seed, fractal, tile, txf, dev,
+             ColorSpace.getInstance(ColorSpace.CS_sRGB), true);
+        WritableRaster wr = red.getColorModel()
+            .createCompatibleWritableRaster(dev.width, dev.height)
+            .createWritableTranslatedChild(dev.x, dev.y);
+        red.copyData(wr);
+        return ((DataBufferInt)wr.getDataBuffer()).getData();
+    }
+
+    /**
+     * The result must not depend on how the rows are split.
+     */
+    @Test
+    public void testSameResultOnAnyPool() throws Exception {
+        final Rectangle2D tile = new Rectangle2D.Double(0, 0, 100, 80);
+        Callable[] tasks = {
+            new Callable() {
+                public Object call() {
+                    return generate(3, false, null);
+                }
+            },
+            new Callable() {
+                public Object call() {
+                    return generate(3, true, tile);
+                }
+            }
+        };
+        for (Callable task : tasks) {
+            int[] expected = (int[])task.call();
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                Assert.assertArrayEquals(expected,
+                                         (int[])pool.submit(task).get());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Patterns with the same seed share their lattice.
+     */
+    @Test
+    public void testSharedLattice() {
+        int[] a = generate(42, false, null);
+        Assert.assertArrayEquals(a, generate(42, false, null));
+        Assert.assertFalse(Arrays.equals(a, generate(43, false, null)));
+        // Many other seeds evict the lattice, which is then rebuilt.
+        for (int seed = 100; seed < 120; seed++) {
+            generate(seed, true, null);
+        }
+        Assert.assertArrayEquals(a, generate(42, false, null));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.parser;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParseCacheTestCase {
+
+    private static void assertSameShape(Shape expected, Shape actual) {
+        PathIterator e = expected.getPathIterator(null);
+        PathIterator a = actual.getPathIterator(null);
+        Assert.assertEquals(e.getWindingRule(), a.getWindingRule());
+        float[] ec = new float[6];
+        float[] ac = new float[6];
+        while (!e.isDone()) {
+            Assert.assertFalse(a.isDone());
+            Assert.assertEquals(e.currentSegment(ec), a.currentSegment(ac));
+            Assert.assertTrue(Arrays.equals(ec, ac));
+            e.next();
+            a.next();
+        }
+        Assert.assertTrue(a.isDone());
+    }
+
+    @Test
+    public void testTransform() throws Exception {
+        ParseCache cache = new ParseCache();
+        String s = "translate(10 20) rotate(30, 5, 5) scale(2) skewX(10)";
+        AffineTransform expected = AWTTransformProducer.createAffineTransform(s);
+
+        AffineTransform at1 = cache.getTransform(s);
+        Assert.assertEquals(expected, at1);
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        // Callers get their own copy.
+        at1.translate(1, 1);
+        AffineTransform at2 = cache.getTransform(s);
+        Assert.assertEquals(expected, at2);
+        Assert.assertNotSame(at1, at2);
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(0.5, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void testShapes() throws Exception {
+        ParseCache cache = new ParseCache();
+        String d = "M10 20 L30 40 c1 2 3 4 5 6 a5 5 0 1 0 10 10 z";
+        Shape expected = AWTPathProducer.createShape
+            (new StringReader(d), GeneralPath.WIND_EVEN_ODD);
+        assertSameShape(expected, cache.getPath(d, GeneralPath.WIND_EVEN_ODD));
+        assertSameShape(expected, cache.getPath(d, GeneralPath.WIND_EVEN_ODD));
+        Assert.assertNotSame(cache.getPath(d, GeneralPath.WIND_EVEN_ODD),
+                             cache.getPath(d, GeneralPath.WIND_EVEN_ODD));
+
+        // The winding rule is part of the key.
+        Assert.assertEquals(GeneralPath.WIND_NON_ZERO,
+                            cache.getPath(d, GeneralPath.WIND_NON_ZERO)
+                            .getPathIterator(null).getWindingRule());
+
+        String pts = "0,0 10,0 10 10 0 10";
+        assertSameShape(AWTPolylineProducer.createShape
+                        (new StringReader(pts), GeneralPath.WIND_NON_ZERO),
+                        cache.getPolyline(pts, GeneralPath.WIND_NON_ZERO));
+        assertSameShape(AWTPolygonProducer.createShape
+                        (new StringReader(pts), GeneralPath.WIND_NON_ZERO),
+                        cache.getPolygon(pts, GeneralPath.WIND_NON_ZERO));
+        Assert.assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testMalformed() {
+        ParseCache cache = new ParseCache();
+        Assert.assertNull(cache.getTransform("translate(10"));
+        Assert.assertNull(cache.getTransform("translate(10"));
+        Assert.assertNull(cache.getPath("M 10 20 L", 0));
+        Assert.assertNull(cache.getPolygon("0,0 10", 0));
+        // Malformed values are remembered too.
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testNoPoints() {
+        ParseCache cache = new ParseCache();
+        String[] values = { "", "  ", " \n\t" };
+        for (int i = 0; i < values.length; i++) {
+            Shape s = cache.getPolygon(values[i], GeneralPath.WIND_NON_ZERO);
+            Assert.assertNotNull(s);
+            Assert.assertTrue(s.getPathIterator(null).isDone());
+            s = cache.getPolyline(values[i], GeneralPath.WIND_NON_ZERO);
+            Assert.assertNotNull(s);
+            Assert.assertTrue(s.getPathIterator(null).isDone());
+        }
+    }
+
+    @Test
+    public void testViewBox() {
+        ParseCache cache = new ParseCache();
+        Assert.assertNull(cache.getViewBox("0 0 10 20"));
+        float[] vb = { 0, 0, 10, 20 };
+        cache.putViewBox("0 0 10 20", vb);
+        vb[0] = 5;
+        float[] cached = cache.getViewBox("0 0 10 20");
+        Assert.assertTrue(Arrays.equals(new float[] { 0, 0, 10, 20 }, cached));
+        cached[1] = 5;
+        Assert.assertEquals(0, cache.getViewBox("0 0 10 20")[1], 0);
+    }
+
+    @Test
+    public void testBounds() {
+        ParseCache cache = new ParseCache(2);
+        cache.getTransform("scale(1)");
+        cache.getTransform("scale(2)");
+        cache.getTransform("scale(1)");
+        cache.getTransform("scale(3)");
+        Assert.assertEquals(2, cache.size());
+        // scale(2) was the least recently used.
+        cache.resetStatistics();
+        cache.getTransform("scale(1)");
+        cache.getTransform("scale(2)");
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        // Long values are not cached.
+        StringBuffer sb = new StringBuffer();
+        while (sb.length() <= ParseCache.MAX_LENGTH) {
+            sb.append("translate(1) ");
+        }
+        cache.clear();
+        cache.resetStatistics();
+        Assert.assertNotNull(cache.getTransform(sb.toString()));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getMissCount());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.parser;
+
+import java.util.Random;
+
+import org.apache.batik.dom.svg.AbstractSVGPathSegList;
+import org.apache.batik.dom.svg.ListBuilder;
+import org.apache.batik.dom.svg.SVGAnimatedPathDataSupport;
+import org.apache.batik.test.PerformanceTest;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.svg.SVGException;
+
+/**
+ * Checks that there is no performance degradation in the way the path
+ * element bridge turns static path data into shapes.  The reference
+ * operation builds a path segment list and replays it, as the bridge
+ * did before {@link StringPathParser}; the tested operation uses a
+ * {@link StringPathParser}.  The path data is a few hundred paths in
+ * the style of exported drawings: absolute and relative curves and
+ * lines with three decimals.
+ *
+ * @version $Id$
+ */
+public class StringPathParserPerformanceTest extends PerformanceTest {
+
+    static final String[] PATHS = createPaths(2000);
+
+    /**
+     * A path segment list that is not attached to a document.
+     */
+    static class SegList extends AbstractSVGPathSegList {
+        String value;
+        SegList(String value) {
+            this.value = value;
+            ListBuilder builder = new ListBuilder(this);
+            doParse(value, builder);
+            itemList = builder.getList();
+            valid = true;
+        }
+        protected String getValueAsString() {
+            return value;
+        }
+        protected void setAttributeValue(String value) {
+        }
+        protected DOMException createDOMException(short type, String key,
+                                                  Object[] args) {
+            return new DOMException(type, key);
+        }
+        protected SVGException createSVGException(short type, String key,
+                                                  Object[] args) {
+            return null;
+        }
+    }
+
+    protected void runRef() {
+        for (String path : PATHS) {
+            SVGAnimatedPathDataSupport.handlePathSegList
+                (new SegList(path), new AWTPathProducer());
+        }
+    }
+
+    protected void runOp() {
+        for (String path : PATHS) {
+            new StringPathParser().parse(path);
+        }
+    }
+
+    static String[] createPaths(int count) {
+        Random r = new Random(0);
+        String[] paths = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuffer sb = new StringBuffer();
+            sb.append("M").append(coord(r)).append(',').append(coord(r));
+            int segs = 5 + r.nextInt(40);
+            for (int j = 0; j < segs; j++) {
+                switch (r.nextInt(4)) {
+                case 0:
+                    sb.append("c").append(coord(r)).append(',')
+                        .append(coord(r)).append(' ').append(coord(r))
+                        .append(',').append(coord(r)).append(' ')
+                        .append(coord(r)).append(',').append(coord(r));
+                    break;
+                case 1:
+                    sb.append("C").append(coord(r)).append(',')
+                        .append(coord(r)).append(' ').append(coord(r))
+                        .append(',').append(coord(r)).append(' ')
+                        .append(coord(r)).append(',').append(coord(r));
+                    break;
+                case 2:
+                    sb.append("l").append(coord(r)).append(',')
+                        .append(coord(r));
+                    break;
+                default:
+                    sb.append("h").append(coord(r));
+                }
+            }
+            sb.append('z');
+            paths[i] = sb.toString();
+        }
+        return paths;
+    }
+
+    static String coord(Random r) {
+        int v = r.nextInt(2000000) - 1000000;
+        StringBuffer sb = new StringBuffer();
+        if (v < 0) {
+            sb.append('-');
+            v = -v;
+        }
+        sb.append(v / 1000).append('.');
+        int f = v % 1000;
+        if (f < 100) sb.append('0');
+        if (f < 10) sb.append('0');
+        return sb.append(f).toString();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.parser;
+
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.batik.ext.awt.geom.ExtendedGeneralPath;
+import org.apache.batik.ext.awt.geom.ExtendedPathIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StringPathParserTestCase {
+
+    private static final String[] PATHS = {
+        "",
+        "M10,20 L30,40",
+        "m 10 20 30 40 -5-5 .5.5",
+        "M1e2 1E-2 l+1.5e+1,-0.25e-1 z m 3 4 z",
+        "M0 0 H 10 V 10 h -5 v -5 Z",
+        "M 100 200 C 100 100 250 100 250 200 S 400 300 400 200",
+        "M0,0c1,2,3,4,5,6s7,8,9,10",
+        "M 200 300 Q 400 50 600 300 T 1000 300 t 10 10 q 1 2 3 4",
+        "M600,350 l 50,-25 a25,25 -30 0,1 50,-25 l 50,-25"
+            + " a25,50 -30 0,1 50,-25 A 25 75 -30 1 0 800 100",
+        "M0 0a10 10 0 1110 10",
+        "M 123456789012.5 0.000000001234 L -0 -0.0 00.5 007",
+        "M 3.4028235e38 1e-50 L 1.00000001 0.99999999",
+        "M10 10\n\tL 20 20\r\n L30 30,40 40 Z",
+    };
+
+    private static final String[] MALFORMED = {
+        "M",
+        "M 10",
+        "M 10 20 L",
+        "M 10 20 L 30",
+        "M 10 20 L 30 40,",
+        "M 10 20 X 30 40",
+        "M 10 20 L 1e",
+        "M 10 20 L 1e+",
+        "M 10 20 L . 5",
+        "M .0e5 1",
+        "M 0 0 A 10 10 0 2 0 5 5",
+        "M 0 0 A 10 10 0 0 x 5 5",
+    };
+
+    /**
+     * Returns the segments of the given path, with the exact float bits
+     * of their coordinates.
+     */
+    private static String segments(ExtendedGeneralPath p) {
+        StringBuffer sb = new StringBuffer();
+        ExtendedPathIterator epi = p.getExtendedPathIterator();
+        float[] c = new float[7];
+        while (!epi.isDone()) {
+            Arrays.fill(c, 0);
+            sb.append(epi.currentSegment(c));
+            for (int i = 0; i < c.length; i++) {
+                sb.append(',').append(Float.floatToIntBits(c[i]));
+            }
+            sb.append(';');
+            epi.next();
+        }
+        PathIterator pi = p.getPathIterator(null);
+        double[] d = new double[6];
+        while (!pi.isDone()) {
+            Arrays.fill(d, 0);
+            sb.append(pi.currentSegment(d)).append(Arrays.toString(d));
+            pi.next();
+        }
+        return sb.toString();
+    }
+
+    private static String expected(String s) {
+        PathParser pp = new PathParser();
+        AWTPathProducer ph = new AWTPathProducer();
+        pp.setPathHandler(ph);
+        pp.parse(s);
+        return segments((ExtendedGeneralPath) ph.getShape());
+    }
+
+    private static String actual(String s) {
+        ExtendedGeneralPath p = new StringPathParser().parse(s);
+        Assert.assertNotNull(s, p);
+        return segments(p);
+    }
+
+    @Test
+    public void testSamePaths() {
+        for (int i = 0; i < PATHS.length; i++) {
+            Assert.assertEquals(PATHS[i], expected(PATHS[i]),
+                                actual(PATHS[i]));
+        }
+    }
+
+    @Test
+    public void testRandomPaths() {
+        String cmds = "LlHhVvCcSsQqTtAaZzMm";
+        int[] args = { 2, 2, 1, 1, 1, 1, 6, 6, 4, 4,
+                       4, 4, 2, 2, 7, 7, 0, 0, 2, 2 };
+        Random r = new Random(1);
+        for (int n = 0; n < 1000; n++) {
+            StringBuffer sb = new StringBuffer("M");
+            sb.append(number(r)).append(',').append(number(r));
+            for (int i = 0; i < 20; i++) {
+                int c = r.nextInt(cmds.length());
+                sb.append(cmds.charAt(c));
+                for (int j = 0; j < args[c]; j++) {
+                    if (j > 0) {
+                        sb.append(r.nextBoolean() ? " " : ", ");
+                    }
+                    if (args[c] == 7 && (j == 3 || j == 4)) {
+                        sb.append(r.nextInt(2));
+                    } else {
+                        sb.append(number(r));
+                    }
+                }
+            }
+            String s = sb.toString();
+            Assert.assertEquals(s, expected(s), actual(s));
+        }
+    }
+
+    private static String number(Random r) {
+        switch (r.nextInt(5)) {
+        case 0:  return Integer.toString(r.nextInt(1000));
+        case 1:  return Float.toString(r.nextFloat() * 2000 - 1000);
+        case 2:  return (r.nextInt(2000) - 1000) + "." + r.nextInt(1000);
+        case 3:  return r.nextInt(100) + "e" + (r.nextInt(60) - 30);
+        default: return "-." + r.nextInt(100000);
+        }
+    }
+
+    @Test
+    public void testMalformedPaths() {
+        for (int i = 0; i < MALFORMED.length; i++) {
+            Assert.assertNull(MALFORMED[i],
+                              new StringPathParser().parse(MALFORMED[i]));
+            try {
+                StringPathParser.createShape(MALFORMED[i], 0);
+                Assert.fail(MALFORMED[i]);
+            } catch (ParseException e) {
+            }
+        }
+    }
+
+    @Test
+    public void testArrayRange() {
+        String s = "xxM 1 2 L 3 4yy";
+        StringPathParser p = new StringPathParser();
+        Assert.assertEquals(expected("M 1 2 L 3 4"),
+                            segments(p.parse(s.toCharArray(), 2, 11)));
+    }
+}
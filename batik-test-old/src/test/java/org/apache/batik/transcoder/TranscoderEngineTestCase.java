@@ -0,0 +1,154 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.batik.bridge.ResourceCache;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TranscoderEngineTestCase {
+
+    private static final String[] FILES = {
+        "samples/tests/spec/filters/feColorMatrix.svg",
+        "samples/tests/spec/filters/feComposite.svg",
+        "samples/tests/spec/filters/feMerge.svg",
+        "samples/tests/spec/coordinates/em.svg"
+    };
+
+    private static final TranscoderEngine.TranscoderFactory PNG =
+        new TranscoderEngine.TranscoderFactory() {
+            public Transcoder createTranscoder() {
+                return new PNGTranscoder();
+            }
+        };
+
+    private static String uri(String file) {
+        return new File(file).toURI().toString();
+    }
+
+    private static byte[] transcode(Transcoder t, String uri)
+        throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.transcode(new TranscoderInput(uri), new TranscoderOutput(out));
+        return out.toByteArray();
+    }
+
+    /**
+     * Documents transcoded concurrently with shared resources must
+     * come out as when transcoded alone.
+     */
+    @Test
+    public void testSameAsStandalone() throws Exception {
+        Map<String, byte[]> expected = new HashMap<String, byte[]>();
+        for (String file : FILES) {
+            expected.put(uri(file), transcode(new PNGTranscoder(), uri(file)));
+        }
+
+        List<TranscoderInput> inputs = new ArrayList<TranscoderInput>();
+        for (int i = 0; i < 3; i++) {
+            for (String file : FILES) {
+                inputs.add(new TranscoderInput(uri(file)));
+            }
+        }
+
+        final Map<TranscoderInput, ByteArrayOutputStream> outputs =
+            new HashMap<TranscoderInput, ByteArrayOutputStream>();
+        TranscoderEngine engine =
+            new TranscoderEngine(PNG, 4, new ResourceCache());
+        Map<TranscoderInput, TranscoderException> failures =
+            engine.transcodeAll(inputs, new TranscoderEngine.OutputFactory() {
+                    public TranscoderOutput createOutput(TranscoderInput in) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        synchronized (outputs) {
+                            outputs.put(in, out);
+                        }
+                        return new TranscoderOutput(out);
+                    }
+                });
+
+        Assert.assertTrue(failures.toString(), failures.isEmpty());
+        for (TranscoderInput in : inputs) {
+            Assert.assertArrayEquals(in.getURI(),
+                                     expected.get(in.getURI()),
+                                     outputs.get(in).toByteArray());
+        }
+
+        // The logo every sample refers to was loaded from the cache.
+        Assert.assertNotNull(engine.getResourceCache().getDocument
+                             (uri("samples/batikLogo.svg")));
+    }
+
+    @Test
+    public void testFailuresAreReported() throws Exception {
+        TranscoderEngine engine = new TranscoderEngine(PNG);
+        List<TranscoderInput> inputs = new ArrayList<TranscoderInput>();
+        inputs.add(new TranscoderInput(uri(FILES[0])));
+        inputs.add(new TranscoderInput(uri("samples/doesNotExist.svg")));
+        Map<TranscoderInput, TranscoderException> failures =
+            engine.transcodeAll(inputs, new TranscoderEngine.OutputFactory() {
+                    public TranscoderOutput createOutput(TranscoderInput in) {
+                        return new TranscoderOutput(new ByteArrayOutputStream());
+                    }
+                });
+        Assert.assertEquals(1, failures.size());
+        Assert.assertSame(inputs.get(1), failures.keySet().iterator().next());
+    }
+
+    /**
+     * An error must stop the batch and reach the caller, instead of
+     * being reported as the failure of one input.
+     */
+    @Test
+    public void testErrorsPropagate() throws Exception {
+        final Error error = new OutOfMemoryError();
+        TranscoderEngine engine = new TranscoderEngine
+            (new TranscoderEngine.TranscoderFactory() {
+                    public Transcoder createTranscoder() {
+                        return new AbstractTranscoder() {
+                                public void transcode(TranscoderInput in,
+                                                      TranscoderOutput out) {
+                                    throw error;
+                                }
+                            };
+                    }
+                }, 2, null);
+        List<TranscoderInput> inputs = new ArrayList<TranscoderInput>();
+        for (int i = 0; i < 100; i++) {
+            inputs.add(new TranscoderInput(uri(FILES[0])));
+        }
+        try {
+            engine.transcodeAll(inputs, new TranscoderEngine.OutputFactory() {
+                    public TranscoderOutput createOutput(TranscoderInput in) {
+                        return new TranscoderOutput(new ByteArrayOutputStream());
+                    }
+                });
+            Assert.fail("error not thrown");
+        } catch (OutOfMemoryError e) {
+            Assert.assertSame(error, e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BandRenderingTestCase {
+
+    private static final String[] FILES = {
+        "samples/anne.svg",
+        "samples/batikFX.svg",
+        "samples/tests/spec/filters/feComposite.svg"
+    };
+
+    private static byte[] transcode(ImageTranscoder t, String file)
+        throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.transcode(new TranscoderInput(new File(file).toURI().toString()),
+                    new TranscoderOutput(out));
+        return out.toByteArray();
+    }
+
+    private static PNGTranscoder banded(int band, int threads) {
+        PNGTranscoder t = new PNGTranscoder();
+        t.addTranscodingHint(ImageTranscoder.KEY_BAND_HEIGHT, band);
+        if (threads > 0) {
+            t.addTranscodingHint(PNGTranscoder.KEY_COMPRESSION_THREADS,
+                                 threads);
+        }
+        return t;
+    }
+
+    private static void assertSamePixels(String msg, byte[] a, byte[] b)
+        throws Exception {
+        BufferedImage ia = ImageIO.read(new ByteArrayInputStream(a));
+        BufferedImage ib = ImageIO.read(new ByteArrayInputStream(b));
+        int w = ia.getWidth();
+        int h = ia.getHeight();
+        Assert.assertEquals(msg, w, ib.getWidth());
+        Assert.assertEquals(msg, h, ib.getHeight());
+        Assert.assertArrayEquals(msg,
+                                 ia.getRGB(0, 0, w, h, null, 0, w),
+                                 ib.getRGB(0, 0, w, h, null, 0, w));
+    }
+
+    /**
+     * Bands are made of whole tiles of the rendering, so the image is
+     * the same as when it is rendered tile by tile.
+     */
+    @Test
+    public void testSamePNG() throws Exception {
+        for (String file : FILES) {
+            PNGTranscoder t = new PNGTranscoder();
+            t.addTranscodingHint(ImageTranscoder.KEY_TILE_PARALLELISM, 2);
+            byte[] expected = transcode(t, file);
+            Assert.assertArrayEquals(file, expected,
+                                     transcode(banded(1, 0), file));
+            Assert.assertArrayEquals(file, expected,
+                                     transcode(banded(100, 0), file));
+
+            t = banded(100, 0);
+            t.addTranscodingHint(ImageTranscoder.KEY_OFF_HEAP_RASTER,
+                                 Boolean.TRUE);
+            Assert.assertArrayEquals(file, expected, transcode(t, file));
+        }
+    }
+
+    @Test
+    public void testCompressionThreads() throws Exception {
+        for (String file : FILES) {
+            byte[] expected = transcode(banded(64, 1), file);
+            Assert.assertArrayEquals(file, expected,
+                                     transcode(banded(64, 4), file));
+            Assert.assertArrayEquals(file, expected,
+                                     transcode(banded(300, 3), file));
+            assertSamePixels(file, transcode(banded(64, 0), file),
+                             expected);
+        }
+    }
+}
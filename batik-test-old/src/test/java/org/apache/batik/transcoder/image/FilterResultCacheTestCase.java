@@ -0,0 +1,183 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+
+import javax.imageio.ImageIO;
+
+import org.apache.batik.ext.awt.image.renderable.FilterResultCache;
+import org.apache.batik.transcoder.SVGAbstractTranscoder;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class FilterResultCacheTestCase {
+
+    private static final String[] FILES = {
+        "samples/tests/spec/filters/feColorMatrix.svg",
+        "samples/tests/spec/filters/feComponentTransfer.svg",
+        "samples/tests/spec/filters/feComposite.svg",
+        "samples/tests/spec/filters/feDisplacementMap.svg",
+        "samples/tests/spec/filters/feGaussianDefault.svg",
+        "samples/tests/spec/filters/feMerge.svg",
+        "samples/tests/spec/filters/feTurbulence.svg",
+        "samples/tests/spec/filters/filterRegions.svg",
+        "samples/tests/spec/filters/enableBackground.svg"
+    };
+
+    /**
+     * Exposes the filter cache used by the transcoder.
+     */
+    private static class Transcoder extends PNGTranscoder {
+        FilterResultCache cache;
+
+        Transcoder(boolean cached) {
+            if (cached) {
+                addTranscodingHint
+                    (SVGAbstractTranscoder.KEY_FILTER_CACHE_SIZE, 1 << 22);
+            }
+        }
+
+        Transcoder(FilterResultCache shared) {
+            addTranscodingHint(SVGAbstractTranscoder.KEY_FILTER_CACHE,
+                               shared);
+        }
+
+        protected void transcode(Document document,
+                                 String uri,
+                                 TranscoderOutput output)
+                throws TranscoderException {
+            super.transcode(document, uri, output);
+            cache = ctx.getFilterResultCache();
+        }
+    }
+
+    private static BufferedImage transcode(Transcoder t, TranscoderInput in)
+        throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.transcode(in, new TranscoderOutput(out));
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertSamePixels(String msg, BufferedImage a,
+                                         BufferedImage b) {
+        int w = a.getWidth();
+        int h = a.getHeight();
+        Assert.assertEquals(msg, w, b.getWidth());
+        Assert.assertEquals(msg, h, b.getHeight());
+        Assert.assertArrayEquals(msg,
+                                 a.getRGB(0, 0, w, h, null, 0, w),
+                                 b.getRGB(0, 0, w, h, null, 0, w));
+    }
+
+    @Test
+    public void testRepeatedIcons() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg'" +
+                  " xmlns:xlink='http://www.w3.org/1999/xlink'" +
+                  " width='400' height='400'>" +
+                  "<defs><filter id='shadow'>" +
+                  "<feGaussianBlur in='SourceAlpha' stdDeviation='2'/>" +
+                  "<feOffset dx='2' dy='2' result='b'/>" +
+                  "<feMerge><feMergeNode in='b'/>" +
+                  "<feMergeNode in='SourceGraphic'/></feMerge>" +
+                  "</filter>" +
+                  "<g id='icon'><circle cx='10' cy='10' r='8' fill='red'/>" +
+                  "<rect x='6' y='6' width='8' height='8' fill='blue'/>" +
+                  "</g></defs>");
+        for (int i = 0; i < 100; i++) {
+            sb.append("<use xlink:href='#icon' filter='url(#shadow)' x='")
+              .append((i % 10) * 40).append("' y='")
+              .append((i / 10) * 40).append("'/>");
+        }
+        // A different content, and a position which is not an integer
+        // number of pixels.
+        sb.append("<g filter='url(#shadow)' transform='translate(5 5)'>" +
+                  "<rect width='20' height='10' fill='green'/></g>");
+        sb.append("<use xlink:href='#icon' filter='url(#shadow)'" +
+                  " x='200.5' y='0'/>");
+        sb.append("</svg>");
+        String svg = sb.toString();
+
+        BufferedImage expected = transcode
+            (new Transcoder(false),
+             new TranscoderInput(new StringReader(svg)));
+        Transcoder t = new Transcoder(true);
+        BufferedImage actual =
+            transcode(t, new TranscoderInput(new StringReader(svg)));
+        assertSamePixels("icons", expected, actual);
+        Assert.assertEquals(3, t.cache.size());
+        Assert.assertEquals(99, t.cache.getHitCount());
+    }
+
+    /**
+     * A cache shared by several transcoders must find the results of
+     * identical filters of other documents, but not those of filters
+     * which only differ by their style.
+     */
+    @Test
+    public void testSharedAcrossDocuments() throws Exception {
+        String svg =
+            "<svg xmlns='http://www.w3.org/2000/svg'" +
+            " width='100' height='100'>" +
+            "<style type='text/css'>feFlood { flood-color: %s }</style>" +
+            "<defs><filter id='f'>" +
+            "<feFlood flood-opacity='0.5' result='c'/>" +
+            "<feComposite in='c' in2='SourceAlpha' operator='in'/>" +
+            "</filter></defs>" +
+            "<circle cx='50' cy='50' r='40' filter='url(#f)'/></svg>";
+        FilterResultCache shared = new FilterResultCache(1 << 22);
+        String[] colors = { "red", "red", "blue" };
+        for (String color : colors) {
+            String doc = String.format(svg, color);
+            BufferedImage expected = transcode
+                (new Transcoder(false),
+                 new TranscoderInput(new StringReader(doc)));
+            BufferedImage actual = transcode
+                (new Transcoder(shared),
+                 new TranscoderInput(new StringReader(doc)));
+            assertSamePixels(color, expected, actual);
+        }
+        Assert.assertEquals(2, shared.size());
+        Assert.assertEquals(1, shared.getHitCount());
+    }
+
+    /**
+     * The cache must not change the rendering.
+     */
+    @Test
+    public void testSameRendering() throws Exception {
+        for (String file : FILES) {
+            String uri = new File(file).toURI().toString();
+            BufferedImage expected =
+                transcode(new Transcoder(false), new TranscoderInput(uri));
+            BufferedImage actual =
+                transcode(new Transcoder(true), new TranscoderInput(uri));
+            assertSamePixels(file, expected, actual);
+        }
+    }
+}
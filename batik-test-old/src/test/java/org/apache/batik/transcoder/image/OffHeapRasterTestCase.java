@@ -0,0 +1,126 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapRasterTestCase {
+
+    private static final String[] FILES = {
+        "samples/anne.svg",
+        "samples/batikFX.svg",
+        "samples/gradients.svg",
+        "samples/tests/spec/filters/feComposite.svg"
+    };
+
+    private static byte[] transcode(ImageTranscoder t, String file,
+                                    boolean offHeap) throws Exception {
+        if (offHeap) {
+            t.addTranscodingHint(ImageTranscoder.KEY_OFF_HEAP_RASTER,
+                                 Boolean.TRUE);
+        } else {
+            // The off-heap image is rendered tile by tile, which may
+            // differ slightly from rendering large blocks at once.
+            t.addTranscodingHint(ImageTranscoder.KEY_TILE_PARALLELISM, 2);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.transcode(new TranscoderInput(new File(file).toURI().toString()),
+                    new TranscoderOutput(out));
+        return out.toByteArray();
+    }
+
+    /**
+     * Rendering off the heap must not change the PNG file produced
+     * from the same tiles.
+     */
+    @Test
+    public void testSamePNG() throws Exception {
+        for (String file : FILES) {
+            Assert.assertArrayEquals
+                (file,
+                 transcode(new PNGTranscoder(), file, false),
+                 transcode(new PNGTranscoder(), file, true));
+        }
+    }
+
+    @Test
+    public void testSamePNGWithBackground() throws Exception {
+        String file = "samples/batikFX.svg";
+        PNGTranscoder[] t = new PNGTranscoder[4];
+        for (int i = 0; i < t.length; i++) {
+            t[i] = new PNGTranscoder();
+            t[i].addTranscodingHint(ImageTranscoder.KEY_WIDTH, 700f);
+        }
+        for (int i = 0; i < 2; i++) {
+            t[i].addTranscodingHint(ImageTranscoder.KEY_BACKGROUND_COLOR,
+                                    new Color(0, 0, 255, 64));
+            t[i].addTranscodingHint
+                (ImageTranscoder.KEY_FORCE_TRANSPARENT_WHITE, Boolean.TRUE);
+        }
+        for (int i = 2; i < 4; i++) {
+            t[i].addTranscodingHint(PNGTranscoder.KEY_INDEXED, 8);
+        }
+        Assert.assertArrayEquals(transcode(t[0], file, false),
+                                 transcode(t[1], file, true));
+        Assert.assertArrayEquals(transcode(t[2], file, false),
+                                 transcode(t[3], file, true));
+    }
+
+    /**
+     * The TIFF file is tiled like the off-heap image, so only the
+     * pixels are compared.
+     */
+    @Test
+    public void testSameTIFF() throws Exception {
+        for (String file : FILES) {
+            BufferedImage a = ImageIO.read(new ByteArrayInputStream
+                (transcode(new TIFFTranscoder(), file, false)));
+            BufferedImage b = ImageIO.read(new ByteArrayInputStream
+                (transcode(new TIFFTranscoder(), file, true)));
+            int w = a.getWidth();
+            int h = a.getHeight();
+            Assert.assertEquals(file, w, b.getWidth());
+            Assert.assertEquals(file, h, b.getHeight());
+            Assert.assertArrayEquals(file,
+                                     a.getRGB(0, 0, w, h, null, 0, w),
+                                     b.getRGB(0, 0, w, h, null, 0, w));
+        }
+    }
+
+    /**
+     * Transcoders which do not stream are given a copy of the image.
+     */
+    @Test
+    public void testSameJPEG() throws Exception {
+        String file = "samples/anne.svg";
+        Assert.assertArrayEquals(transcode(new JPEGTranscoder(), file, false),
+                                 transcode(new JPEGTranscoder(), file, true));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.batik.gvt.renderer.ImageRenderer;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TileParallelismTestCase {
+
+    private static class CapturingTranscoder extends ImageTranscoder {
+        BufferedImage image;
+
+        public BufferedImage createImage(int w, int h) {
+            return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        public void writeImage(BufferedImage img, TranscoderOutput output) {
+            image = img;
+        }
+    }
+
+    /**
+     * A transcoder whose renderer remembers the tile pool it used.
+     */
+    private static class PoolTranscoder extends CapturingTranscoder {
+        ForkJoinPool pool;
+
+        protected ImageRenderer createRenderer() {
+            return new StaticRenderer() {
+                protected synchronized ForkJoinPool getTilePool(int n) {
+                    pool = super.getTilePool(n);
+                    return pool;
+                }
+            };
+        }
+    }
+
+    private static BufferedImage render(String file, Integer parallelism)
+        throws Exception {
+        CapturingTranscoder t = new CapturingTranscoder();
+        t.addTranscodingHint(ImageTranscoder.KEY_WIDTH, 1000f);
+        if (parallelism != null) {
+            t.addTranscodingHint(ImageTranscoder.KEY_TILE_PARALLELISM,
+                                 parallelism);
+        }
+        String uri = new File(file).toURI().toString();
+        t.transcode(new TranscoderInput(uri), null);
+        return t.image;
+    }
+
+    private static void assertSameImage(BufferedImage a, BufferedImage b) {
+        Assert.assertEquals(a.getWidth(), b.getWidth());
+        Assert.assertEquals(a.getHeight(), b.getHeight());
+        int w = a.getWidth();
+        int h = a.getHeight();
+        Assert.assertArrayEquals(a.getRGB(0, 0, w, h, null, 0, w),
+                                 b.getRGB(0, 0, w, h, null, 0, w));
+    }
+
+    /**
+     * The result of a parallel rendering must not depend on the
+     * number of threads used.
+     */
+    @Test
+    public void testIndependentOfThreadCount() throws Exception {
+        String[] files = {
+            "samples/batikFX.svg",
+            "samples/tests/spec/filters/feComposite.svg"
+        };
+        for (String file : files) {
+            assertSameImage(render(file, 2), render(file, 8));
+        }
+    }
+
+    @Test
+    public void testSingleThreadIsSequential() throws Exception {
+        String file = "samples/batikFX.svg";
+        assertSameImage(render(file, null), render(file, 1));
+    }
+
+    /**
+     * The tile pool of the renderer must not outlive the transcoding.
+     */
+    @Test
+    public void testTilePoolIsShutDown() throws Exception {
+        PoolTranscoder t = new PoolTranscoder();
+        t.addTranscodingHint(ImageTranscoder.KEY_WIDTH, 200f);
+        t.addTranscodingHint(ImageTranscoder.KEY_TILE_PARALLELISM, 2);
+        String uri = new File("samples/batikFX.svg").toURI().toString();
+        t.transcode(new TranscoderInput(uri), null);
+        Assert.assertNotNull(t.image);
+        Assert.assertNotNull(t.pool);
+        Assert.assertTrue(t.pool.isShutdown());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.util.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * Checks that there is no performance degradation in the decoding of
+ * a large, path-heavy SVG document encoded in UTF-8.  The reference
+ * operation reads it from a {@link StreamNormalizingReader} one
+ * character at a time, as the XML scanner used to; the tested
+ * operation reads it a buffer at a time.
+ *
+ * @version $Id$
+ */
+public class NormalizingReaderPerformanceTest extends PerformanceTest {
+
+    static final byte[] DOCUMENT;
+    static {
+        try {
+            DOCUMENT = createDocument(20000).getBytes("UTF-8");
+        } catch (IOException e) {
+            throw new Error(e.getMessage());
+        }
+    }
+
+    protected void runRef() {
+        try {
+            NormalizingReader r = new StreamNormalizingReader
+                (new ByteArrayInputStream(DOCUMENT), "UTF-8");
+            while (r.read() != -1) {
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected void runOp() throws Exception {
+        NormalizingReader r = new StreamNormalizingReader
+            (new ByteArrayInputStream(DOCUMENT), "UTF-8");
+        char[] buf = new char[8192];
+        while (r.read(buf, 0, buf.length) != -1) {
+        }
+    }
+
+    static String createDocument(int count) {
+        Random r = new Random(0);
+        StringBuffer sb = new StringBuffer();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
+        sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\">\r\n");
+        sb.append("<title>Pl\u00e4ne \u2013 \u00e9tage 1</title>\r\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("  <path fill=\"none\" stroke=\"#000\" d=\"M");
+            sb.append(coord(r)).append(',').append(coord(r));
+            int segs = 5 + r.nextInt(20);
+            for (int j = 0; j < segs; j++) {
+                if (r.nextBoolean()) {
+                    sb.append(" c").append(coord(r)).append(',')
+                        .append(coord(r)).append(' ').append(coord(r))
+                        .append(',').append(coord(r)).append(' ')
+                        .append(coord(r)).append(',').append(coord(r));
+                } else {
+                    sb.append(" l").append(coord(r)).append(',')
+                        .append(coord(r));
+                }
+            }
+            sb.append("z\"/>\r\n");
+        }
+        sb.append("</svg>\r\n");
+        return sb.toString();
+    }
+
+    static String coord(Random r) {
+        int v = r.nextInt(2000000) - 1000000;
+        StringBuffer sb = new StringBuffer();
+        if (v < 0) {
+            sb.append('-');
+            v = -v;
+        }
+        sb.append(v / 1000).append('.');
+        int f = v % 1000;
+        if (f < 100) sb.append('0');
+        if (f < 10) sb.append('0');
+        return sb.append(f).toString();
+    }
+}
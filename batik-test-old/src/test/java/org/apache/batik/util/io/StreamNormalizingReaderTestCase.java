@@ -0,0 +1,179 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.util.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.apache.batik.xml.LexicalUnits;
+import org.apache.batik.xml.XMLScanner;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreamNormalizingReaderTestCase {
+
+    private static final String[] ENCODINGS = {
+        "UTF-8", "ISO-8859-1", "US-ASCII", "UTF-16"
+    };
+
+    private static final String CHARS =
+        "M 10,20 L<a b='c'>\r\n\r\r\n\n\t"
+        + "\u00e9\u00ff\u20ac\u0800\uffee\ud83d\ude00";
+
+    /**
+     * An input stream which returns at most a few bytes per read.
+     */
+    private static class TrickleInputStream extends ByteArrayInputStream {
+        private final Random random;
+        TrickleInputStream(byte[] b, Random random) {
+            super(b);
+            this.random = random;
+        }
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1 + random.nextInt(5)));
+        }
+    }
+
+    private static String randomText(Random random, String enc, int len) {
+        int n = enc.equals("US-ASCII") ? 25 : enc.equals("ISO-8859-1") ? 27
+            : CHARS.length() - 1;
+        StringBuffer sb = new StringBuffer();
+        while (sb.length() < len) {
+            char c = CHARS.charAt(random.nextInt(n));
+            sb.append(c);
+            if (Character.isHighSurrogate(c)) {
+                sb.append(CHARS.charAt(n));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String normalize(String s) {
+        return s.replace("\r\n", "\n").replace('\r', '\n');
+    }
+
+    private static InputStream stream(String s, String enc, Random random)
+        throws IOException {
+        byte[] b = s.getBytes(enc);
+        if (enc.equals("UTF-16")) {
+            // Big-endian with a byte-order mark.
+            return new TrickleInputStream(b, random);
+        }
+        return random.nextBoolean()
+            ? new TrickleInputStream(b, random)
+            : new ByteArrayInputStream(b);
+    }
+
+    private static String readChars(NormalizingReader r) throws IOException {
+        StringBuffer sb = new StringBuffer();
+        int c;
+        while ((c = r.read()) != -1) {
+            sb.append((char)c);
+        }
+        return sb.toString();
+    }
+
+    private static String readBulk(NormalizingReader r, Random random)
+        throws IOException {
+        StringBuffer sb = new StringBuffer();
+        char[] buf = new char[64];
+        for (;;) {
+            if (random.nextInt(4) == 0) {
+                int c = r.read();
+                if (c == -1) break;
+                sb.append((char)c);
+            } else {
+                int n = r.read(buf, 3, 1 + random.nextInt(60));
+                if (n == -1) break;
+                Assert.assertTrue(n > 0);
+                sb.append(buf, 3, n);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testBulkReads() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < 400; i++) {
+            String enc = ENCODINGS[i % ENCODINGS.length];
+            String s = randomText(random, enc, random.nextInt(300));
+            String expected = normalize(s);
+            NormalizingReader r = new StreamNormalizingReader
+                (stream(s, enc, random), enc);
+            Assert.assertEquals(enc, expected, readChars(r));
+            r = new StreamNormalizingReader(stream(s, enc, random), enc);
+            Assert.assertEquals(enc, expected, readBulk(r, random));
+            int lines = expected.length()
+                - expected.replace("\n", "").length() + 1;
+            Assert.assertEquals(lines, r.getLine());
+            Assert.assertEquals(expected.length()
+                                - expected.lastIndexOf('\n') - 1,
+                                r.getColumn());
+            r = new StringNormalizingReader(s);
+            Assert.assertEquals(expected, readBulk(r, random));
+            Assert.assertEquals(lines, r.getLine());
+        }
+    }
+
+    @Test
+    public void testInvalidUTF8() throws IOException {
+        byte[] b = { 'a', 'b', (byte)0xff, 'c' };
+        NormalizingReader r = new StreamNormalizingReader
+            (new ByteArrayInputStream(b), "UTF-8");
+        char[] buf = new char[10];
+        // The valid characters come first, then the error.
+        Assert.assertEquals(2, r.read(buf, 0, 10));
+        try {
+            r.read(buf, 0, 10);
+            Assert.fail();
+        } catch (IOException e) {
+        }
+    }
+
+    @Test
+    public void testScannerPosition() throws Exception {
+        StringBuffer sb = new StringBuffer("<svg>\r\n");
+        for (int i = 0; i < 2000; i++) {
+            sb.append("<path d='M0 0 L10 10'/>\r\n");
+        }
+        sb.append("<oops");
+        XMLScanner s = new XMLScanner
+            (new ByteArrayInputStream(sb.toString().getBytes("UTF-8")),
+             "UTF-8");
+        int paths = 0;
+        try {
+            int t;
+            while ((t = s.next()) != LexicalUnits.EOF) {
+                if (t == LexicalUnits.START_TAG
+                    && new String(s.getBuffer(), s.getStart(),
+                                  s.getEnd() - s.getStart()).equals("<path")) {
+                    paths++;
+                }
+                s.clearBuffer();
+            }
+            Assert.fail();
+        } catch (Exception e) {
+        }
+        Assert.assertEquals(2000, paths);
+        Assert.assertEquals(2002, s.getLine());
+    }
+}
@@ -38,21 +38,27 @@ import org.apache.batik.bridge.GVTBuilder;
 import org.apache.batik.bridge.NoLoadScriptSecurity;
 import org.apache.batik.bridge.RelaxedExternalResourceSecurity;
 import org.apache.batik.bridge.RelaxedScriptSecurity;
+import org.apache.batik.bridge.ResourceCache;
 import org.apache.batik.bridge.SVGUtilities;
 import org.apache.batik.bridge.ScriptSecurity;
+import org.apache.batik.bridge.StaticGVTBuilder;
 import org.apache.batik.bridge.UserAgent;
 import org.apache.batik.bridge.UserAgentAdapter;
 import org.apache.batik.bridge.ViewBox;
 import org.apache.batik.bridge.svg12.SVG12BridgeContext;
 import org.apache.batik.dom.util.DOMUtilities;
 import org.apache.batik.dom.util.DocumentFactory;
+import org.apache.batik.ext.awt.image.renderable.FilterResultCache;
 import org.apache.batik.gvt.CanvasGraphicsNode;
 import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.transcoder.keys.BooleanKey;
 import org.apache.batik.transcoder.keys.FloatKey;
+import org.apache.batik.transcoder.keys.IntegerKey;
 import org.apache.batik.transcoder.keys.LengthKey;
 import org.apache.batik.transcoder.keys.Rectangle2DKey;
+import org.apache.batik.transcoder.keys.FilterResultCacheKey;
+import org.apache.batik.transcoder.keys.ResourceCacheKey;
 import org.apache.batik.transcoder.keys.StringKey;
 import org.apache.batik.util.ParsedURL;
 import org.apache.batik.util.SVGConstants;
@@ -107,6 +113,12 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
      */
     protected GVTBuilder builder;
 
+    /**
+     * Whether the document being transcoded was created by this
+     * transcoder, and may therefore be modified.
+     */
+    protected boolean ownDocument;
+
     /**
      * Image's width and height (init to 400x400).
      */
@@ -155,6 +167,7 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
     public void transcode(TranscoderInput input, TranscoderOutput output)
             throws TranscoderException {
 
+        ownDocument = input.getDocument() == null;
         super.transcode(input, output);
 
         if (ctx != null)
@@ -183,6 +196,7 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
                 ParsedURL url = new ParsedURL(uri);
                 ((SVGOMDocument)document).setParsedURL(url);
             }
+            ownDocument = true;
         }
 
         if (hints.containsKey(KEY_WIDTH))
@@ -194,14 +208,40 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
         SVGOMDocument svgDoc = (SVGOMDocument)document;
         SVGSVGElement root = svgDoc.getRootElement();
         ctx = createBridgeContext(svgDoc);
+        if (hints.containsKey(KEY_RESOURCE_CACHE)) {
+            ResourceCache rc = (ResourceCache)hints.get(KEY_RESOURCE_CACHE);
+            ctx.getDocumentLoader().setResourceCache(rc);
+        }
+        if (hints.containsKey(KEY_FILTER_CACHE)) {
+            ctx.setFilterResultCache
+                ((FilterResultCache)hints.get(KEY_FILTER_CACHE));
+        } else if (hints.containsKey(KEY_FILTER_CACHE_SIZE)) {
+            int size = (Integer) hints.get(KEY_FILTER_CACHE_SIZE);
+            if (size > 0) {
+                ctx.setFilterResultCache(new FilterResultCache(size));
+            }
+        }
 
-        // build the GVT tree
-        builder = new GVTBuilder();
         // flag that indicates if the document is dynamic
         boolean isDynamic =
             hints.containsKey(KEY_EXECUTE_ONLOAD) &&
                     (Boolean) hints.get(KEY_EXECUTE_ONLOAD);
 
+        // build the GVT tree
+        if (ownDocument && !isDynamic &&
+            Boolean.TRUE.equals(hints.get(KEY_RELEASE_DOCUMENT))) {
+            StaticGVTBuilder sb = new StaticGVTBuilder();
+            if (uri != null) {
+                String ref = new ParsedURL(uri).getRef();
+                if (ref != null) {
+                    sb.addReferencedId(ref);
+                }
+            }
+            builder = sb;
+        } else {
+            builder = new GVTBuilder();
+        }
+
         GraphicsNode gvtRoot;
         try {
             if (isDynamic)
@@ -882,6 +922,140 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
     public static final TranscodingHints.Key KEY_ALLOW_EXTERNAL_RESOURCES
             = new BooleanKey();
 
+    /**
+     * The shared resource cache key.
+     *
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_RESOURCE_CACHE</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">ResourceCache</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">null</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">A cache of parsed external documents and
+     *       style-sheets shared with other transcoders, possibly
+     *       running in other threads.  When not set, every document
+     *       loads its external resources again.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_RESOURCE_CACHE
+        = new ResourceCacheKey();
+
+    /**
+     * The release document key.
+     *
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_RELEASE_DOCUMENT</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Boolean</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">false</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">When true, the elements of a static document
+     *       are removed from it as soon as their graphics nodes are
+     *       built, unless they are referenced, so that large drawings
+     *       can be transcoded with less memory.  Only applies to
+     *       documents parsed or copied by the transcoder, and not when
+     *       {@link #KEY_EXECUTE_ONLOAD} is true.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_RELEASE_DOCUMENT
+        = new BooleanKey();
+
+    /**
+     * The filter cache size key.
+     *
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_FILTER_CACHE_SIZE</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Integer</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">0</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">The maximum number of pixels of the filter
+     *       results kept while rendering a static document.  When
+     *       greater than zero, a filter applied to identical content
+     *       several times, for example the same drop shadow on many
+     *       copies of an icon, is only computed once.  Not used when
+     *       {@link #KEY_EXECUTE_ONLOAD} is true.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_FILTER_CACHE_SIZE
+        = new IntegerKey();
+
+    /**
+     * The shared filter cache key.
+     *
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_FILTER_CACHE</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">FilterResultCache</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">null</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">A cache of filter results shared with other
+     *       transcoders, possibly running in other threads, so that a
+     *       filter applied to identical content in several static
+     *       documents is only computed once.  Takes precedence over
+     *       {@link #KEY_FILTER_CACHE_SIZE}.  Not used when
+     *       {@link #KEY_EXECUTE_ONLOAD} is true.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_FILTER_CACHE
+        = new FilterResultCacheKey();
+
     /**
      * A user agent implementation for <code>PrintTranscoder</code>.
      */
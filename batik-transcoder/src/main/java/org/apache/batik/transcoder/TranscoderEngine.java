@@ -0,0 +1,290 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.batik.bridge.ResourceCache;
+
+/**
+ * Transcodes many documents with the same settings, sharing the parsed
+ * external resources between them.
+ *
+ * <p>Transcoders keep the state of the document they work on, so the
+ * engine creates a new transcoder, and with it a new bridge context,
+ * for every document.  All of them are given the engine's hints and
+ * its {@link ResourceCache}, so stylesheets and documents referenced
+ * by many inputs (sprite sheets, fonts, shared CSS) are only parsed
+ * once.  An engine may be used from several threads at once.</p>
+ *
+ * @version $Id$
+ */
+public class TranscoderEngine {
+
+    /**
+     * Creates the transcoders used by an engine.
+     */
+    public interface TranscoderFactory {
+        /**
+         * Returns a new transcoder.
+         */
+        Transcoder createTranscoder();
+    }
+
+    /**
+     * Creates the output of each input given to
+     * {@link TranscoderEngine#transcodeAll}.
+     */
+    public interface OutputFactory {
+        /**
+         * Returns the output where to transcode <code>input</code>.
+         * The engine closes its stream or writer, if any, once done.
+         */
+        TranscoderOutput createOutput(TranscoderInput input)
+            throws IOException;
+    }
+
+    /**
+     * The factory of transcoders.
+     */
+    protected final TranscoderFactory transcoderFactory;
+
+    /**
+     * The number of documents transcoded at once by transcodeAll.
+     */
+    protected final int threadCount;
+
+    /**
+     * The cache shared by all the transcoders.
+     */
+    protected final ResourceCache resourceCache;
+
+    /**
+     * The hints given to every transcoder.
+     */
+    protected final TranscodingHints hints = new TranscodingHints();
+
+    /**
+     * Creates an engine using one thread per available processor and
+     * a cache of default size.
+     */
+    public TranscoderEngine(TranscoderFactory transcoderFactory) {
+        this(transcoderFactory,
+             Runtime.getRuntime().availableProcessors(),
+             new ResourceCache());
+    }
+
+    /**
+     * Creates an engine.
+     * @param transcoderFactory The factory of transcoders.
+     * @param threadCount The number of documents transcoded at once by
+     *        {@link #transcodeAll}.
+     * @param resourceCache The cache shared by all the transcoders.
+     */
+    public TranscoderEngine(TranscoderFactory transcoderFactory,
+                            int threadCount,
+                            ResourceCache resourceCache) {
+        this.transcoderFactory = transcoderFactory;
+        this.threadCount = Math.max(1, threadCount);
+        this.resourceCache = resourceCache;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public ResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    /**
+     * Sets the value of a hint given to every transcoder.
+     */
+    public void addTranscodingHint(TranscodingHints.Key key, Object value) {
+        synchronized (hints) {
+            hints.put(key, value);
+        }
+    }
+
+    /**
+     * Removes a hint given to every transcoder.
+     */
+    public void removeTranscodingHint(TranscodingHints.Key key) {
+        synchronized (hints) {
+            hints.remove(key);
+        }
+    }
+
+    /**
+     * Returns a new transcoder set up with the hints and the cache of
+     * this engine.
+     */
+    public Transcoder createTranscoder() {
+        Transcoder t = transcoderFactory.createTranscoder();
+        synchronized (hints) {
+            for (Object o : hints.entrySet()) {
+                Map.Entry e = (Map.Entry)o;
+                t.addTranscodingHint((TranscodingHints.Key)e.getKey(),
+                                     e.getValue());
+            }
+        }
+        if (resourceCache != null) {
+            t.addTranscodingHint(SVGAbstractTranscoder.KEY_RESOURCE_CACHE,
+                                 resourceCache);
+        }
+        return t;
+    }
+
+    /**
+     * Transcodes <code>input</code> into <code>output</code> in the
+     * calling thread.
+     */
+    public void transcode(TranscoderInput input, TranscoderOutput output)
+            throws TranscoderException {
+        createTranscoder().transcode(input, output);
+    }
+
+    /**
+     * Transcodes all the inputs, {@link #getThreadCount()} documents at
+     * a time, so that one document is parsed while others are built
+     * or rasterized.  The inputs are pulled from <code>inputs</code>
+     * as workers become free.  An error, such as an OutOfMemoryError,
+     * is not a failure of one input: no more inputs are started, and
+     * the first error is thrown once the running ones are done.
+     * @param inputs The documents to transcode.
+     * @param outputs Creates the output of each input.
+     * @return The failed inputs, in iteration order, mapped to the
+     *         reason of their failure.
+     */
+    public Map<TranscoderInput, TranscoderException>
+        transcodeAll(Iterable<TranscoderInput> inputs,
+                     final OutputFactory outputs)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        // Bounds the number of documents waiting for a worker.
+        final Semaphore slots = new Semaphore(2 * threadCount);
+        // Only the failed inputs are kept, keyed by their position in
+        // the iteration, so that a long batch does not hold on to every
+        // input it has been given.
+        final SortedMap<Integer, Failure> failures =
+            Collections.synchronizedSortedMap(new TreeMap<Integer, Failure>());
+        final AtomicReference<Error> error = new AtomicReference<Error>();
+        try {
+            Iterator<TranscoderInput> it = inputs.iterator();
+            int index = 0;
+            while (it.hasNext() && error.get() == null) {
+                final TranscoderInput input = it.next();
+                final Integer key = index++;
+                slots.acquire();
+                Runnable task = new Runnable() {
+                        public void run() {
+                            try {
+                                transcode(input, outputs);
+                            } catch (Exception e) {
+                                failures.put(key, new Failure(input, e));
+                            } catch (Error e) {
+                                error.compareAndSet(null, e);
+                            } finally {
+                                slots.release();
+                            }
+                        }
+                    };
+                try {
+                    pool.execute(task);
+                } catch (RuntimeException e) {
+                    slots.release();
+                    throw e;
+                }
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            if (error.get() != null) {
+                throw error.get();
+            }
+
+            Map<TranscoderInput, TranscoderException> result =
+                new LinkedHashMap<TranscoderInput, TranscoderException>();
+            synchronized (failures) {
+                for (Failure f : failures.values()) {
+                    result.put(f.input, f.exception);
+                }
+            }
+            return result;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * An input of {@link #transcodeAll} which failed.
+     */
+    protected static class Failure {
+        public final TranscoderInput input;
+        public final TranscoderException exception;
+
+        public Failure(TranscoderInput input, Exception e) {
+            this.input = input;
+            if (e instanceof TranscoderException) {
+                exception = (TranscoderException)e;
+            } else {
+                exception = new TranscoderException(e);
+            }
+        }
+    }
+
+    /**
+     * Transcodes one input of {@link #transcodeAll}.
+     */
+    protected void transcode(TranscoderInput input, OutputFactory outputs)
+            throws TranscoderException {
+        TranscoderOutput output;
+        try {
+            output = outputs.createOutput(input);
+        } catch (IOException e) {
+            throw new TranscoderException(e);
+        }
+        try {
+            transcode(input, output);
+        } finally {
+            try {
+                OutputStream os = output.getOutputStream();
+                if (os != null)
+                    os.close();
+                Writer w = output.getWriter();
+                if (w != null)
+                    w.close();
+            } catch (IOException e) {
+                // Nothing to do.
+            }
+        }
+    }
+}
@@ -21,22 +21,36 @@ package org.apache.batik.transcoder.image;
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.Paint;
+import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
 import java.awt.image.DataBufferInt;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
 import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
 
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
 import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.ext.awt.image.rendered.AbstractRed;
+import org.apache.batik.ext.awt.image.rendered.AbstractTiledRed;
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.ext.awt.image.rendered.MappedTileStore;
 import org.apache.batik.gvt.renderer.ConcreteImageRendererFactory;
 import org.apache.batik.gvt.renderer.ImageRenderer;
 import org.apache.batik.gvt.renderer.ImageRendererFactory;
+import org.apache.batik.gvt.renderer.StaticRenderer;
 import org.apache.batik.transcoder.SVGAbstractTranscoder;
 import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderOutput;
 import org.apache.batik.transcoder.TranscodingHints;
 import org.apache.batik.transcoder.keys.BooleanKey;
+import org.apache.batik.transcoder.keys.IntegerKey;
 import org.apache.batik.transcoder.keys.PaintKey;
 import org.w3c.dom.Document;
 
@@ -104,14 +118,34 @@ public abstract class ImageTranscoder extends SVGAbstractTranscoder {
         renderer.setTree(this.root);
         this.root = null; // We're done with it...
 
+        if (hints.containsKey(KEY_TILE_PARALLELISM)) {
+            RenderingHints rh = renderer.getRenderingHints();
+            rh.put(RenderingHintsKeyExt.KEY_TILE_PARALLELISM,
+                   hints.get(KEY_TILE_PARALLELISM));
+            renderer.setRenderingHints(rh);
+        }
+
+        if (renderer instanceof StaticRenderer &&
+            (Boolean.TRUE.equals(hints.get(KEY_OFF_HEAP_RASTER)) ||
+             hints.containsKey(KEY_BAND_HEIGHT))) {
+            transcodeTiled((StaticRenderer)renderer, w, h, output);
+            return;
+        }
+
         try {
             // now we are sure that the aoi is the image size
             Shape raoi = new Rectangle2D.Float(0, 0, width, height);
             // Warning: the renderer's AOI must be in user space
-            renderer.repaint(curTxf.createInverse().
-                             createTransformedShape(raoi));
-            BufferedImage rend = renderer.getOffScreen();
-            renderer = null; // We're done with it...
+            BufferedImage rend;
+            try {
+                renderer.repaint(curTxf.createInverse().
+                                 createTransformedShape(raoi));
+                rend = renderer.getOffScreen();
+            } finally {
+                // We're done with it; this also stops its tile pool.
+                renderer.dispose();
+                renderer = null;
+            }
 
             BufferedImage dest = createImage(w, h);
 
@@ -133,6 +167,44 @@ public abstract class ImageTranscoder extends SVGAbstractTranscoder {
         }
     }
 
+    /**
+     * Renders the document tile by tile, or band by band, as the
+     * output asks for it and writes the result with
+     * {@link #writeImage(RenderedImage,TranscoderOutput)}, so that
+     * neither the rendering nor the output image has to fit on the
+     * heap.  The tiles are kept in a scratch file when
+     * <code>KEY_OFF_HEAP_RASTER</code> is set, otherwise each band is
+     * dropped once written.
+     */
+    protected void transcodeTiled(StaticRenderer renderer, int w, int h,
+                                  TranscoderOutput output)
+            throws TranscoderException {
+        OffHeapImage offHeap = null;
+        try {
+            CachableRed rend = renderer.getRendering();
+            renderer.dispose(); // We're done with it...
+
+            int band = 0;
+            if (hints.containsKey(KEY_BAND_HEIGHT)) {
+                band = Math.max(1, (Integer) hints.get(KEY_BAND_HEIGHT));
+            }
+            CachableRed img = new OutputImage
+                (rend, w, h, createImage(1, 1).getColorModel(), band);
+            if (Boolean.TRUE.equals(hints.get(KEY_OFF_HEAP_RASTER))) {
+                img = offHeap = new OffHeapImage(img);
+            }
+            writeImage(img, output);
+        } catch (TranscoderException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new TranscoderException(ex);
+        } finally {
+            if (offHeap != null) {
+                offHeap.dispose();
+            }
+        }
+    }
+
     /**
      * Method so subclasses can modify the Renderer used to render document.
      */
@@ -200,6 +272,154 @@ public abstract class ImageTranscoder extends SVGAbstractTranscoder {
     public abstract void writeImage(BufferedImage img, TranscoderOutput output)
         throws TranscoderException;
 
+    /**
+     * Writes the specified image, whose tiles are only computed when
+     * requested, to the specified output.  This is used when
+     * <code>KEY_OFF_HEAP_RASTER</code> or <code>KEY_BAND_HEIGHT</code>
+     * is set; the image is already
+     * drawn over the background color and, if requested, its
+     * transparent pixels are already forced to white.  This
+     * implementation copies the image into a <code>BufferedImage</code>
+     * and writes it with {@link #writeImage(BufferedImage,TranscoderOutput)};
+     * subclasses should override it to stream the image to their
+     * encoder.
+     * @param img the image to write
+     * @param output the output where to store the image
+     * @throws TranscoderException if an error occured while storing the image
+     */
+    public void writeImage(RenderedImage img, TranscoderOutput output)
+        throws TranscoderException {
+        writeImage(toBufferedImage(img), output);
+    }
+
+    /**
+     * Copies the specified image into a new <code>BufferedImage</code>.
+     */
+    protected static BufferedImage toBufferedImage(RenderedImage img) {
+        ColorModel cm = img.getColorModel();
+        WritableRaster wr = cm.createCompatibleWritableRaster
+            (img.getWidth(), img.getHeight());
+        img.copyData(wr.createWritableTranslatedChild(img.getMinX(),
+                                                      img.getMinY()));
+        return new BufferedImage(cm, wr, cm.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * The output image when <code>KEY_OFF_HEAP_RASTER</code> or
+     * <code>KEY_BAND_HEIGHT</code> is set: the rendering drawn over the
+     * background color in the color model of the output.  Nothing is
+     * kept, each area is drawn when it is asked for.  Its tiles are
+     * either those of the rendering, or bands as wide as the image.
+     */
+    protected class OutputImage extends AbstractRed {
+
+        /**
+         * The largest tile of the rendering whose tile grid is reused.
+         */
+        protected static final int MAX_TILE_SIZE = 512;
+
+        protected Paint background;
+        protected boolean forceTransparentWhite;
+
+        /**
+         * Creates a new output image.
+         * @param src the rendering, or null if the document is empty
+         * @param width the image width in pixels
+         * @param height the image height in pixels
+         * @param cm the color model of the output
+         * @param bandHeight the minimum height of the bands, or zero to
+         *        use tiles no larger than <code>MAX_TILE_SIZE</code>
+         */
+        public OutputImage(CachableRed src, int width, int height,
+                           ColorModel cm, int bandHeight) {
+            int tw = AbstractTiledRed.getDefaultTileSize();
+            int th = tw;
+            int tgx = 0;
+            int tgy = 0;
+            if (src != null &&
+                src.getTileWidth()  <= MAX_TILE_SIZE &&
+                src.getTileHeight() <= MAX_TILE_SIZE) {
+                // Use the tiles of the rendering so each one is only
+                // computed once.
+                tw  = src.getTileWidth();
+                th  = src.getTileHeight();
+                tgx = src.getTileGridXOffset();
+                tgy = src.getTileGridYOffset();
+            }
+            if (bandHeight > 0) {
+                // Bands made of whole rows of tiles of the rendering.
+                th  = ((bandHeight + th - 1) / th) * th;
+                tw  = width;
+                tgx = 0;
+            }
+            SampleModel sm = cm.createCompatibleSampleModel(tw, th);
+            init(src, new Rectangle(0, 0, width, height), cm, sm,
+                 tgx, tgy, null);
+
+            background = (Paint)hints.get(KEY_BACKGROUND_COLOR);
+            forceTransparentWhite = cm.hasAlpha() &&
+                sm instanceof SinglePixelPackedSampleModel &&
+                Boolean.TRUE.equals(hints.get(KEY_FORCE_TRANSPARENT_WHITE));
+        }
+
+        public WritableRaster copyData(WritableRaster wr) {
+            Rectangle r = wr.getBounds().intersection(bounds);
+            if (r.isEmpty()) {
+                return wr;
+            }
+
+            BufferedImage bi = new BufferedImage
+                (cm, cm.createCompatibleWritableRaster(r.width, r.height),
+                 cm.isAlphaPremultiplied(), null);
+            Graphics2D g2d = GraphicsUtil.createGraphics(bi);
+            g2d.translate(-r.x, -r.y);
+            if (background != null) {
+                g2d.setComposite(AlphaComposite.SrcOver);
+                g2d.setPaint(background);
+                g2d.fillRect(r.x, r.y, r.width, r.height);
+            }
+            if (!srcs.isEmpty()) {
+                g2d.drawRenderedImage((RenderedImage)srcs.get(0),
+                                      new AffineTransform());
+            }
+            g2d.dispose();
+
+            if (forceTransparentWhite) {
+                ImageTranscoder.this.forceTransparentWhite
+                    (bi, (SinglePixelPackedSampleModel)bi.getSampleModel());
+            }
+            GraphicsUtil.copyData
+                (bi.getRaster().createTranslatedChild(r.x, r.y), wr);
+            return wr;
+        }
+    }
+
+    /**
+     * The output image when <code>KEY_OFF_HEAP_RASTER</code> is set: an
+     * {@link OutputImage} computed tile by tile and kept in a memory
+     * mapped scratch file.
+     */
+    protected class OffHeapImage extends AbstractTiledRed {
+
+        public OffHeapImage(CachableRed src) throws IOException {
+            init(src, src.getBounds(), src.getColorModel(),
+                 src.getSampleModel(), src.getTileGridXOffset(),
+                 src.getTileGridYOffset(), null);
+            setTileStore(new MappedTileStore(this, this, null));
+        }
+
+        public void genRect(WritableRaster wr) {
+            ((CachableRed)getSources().get(0)).copyData(wr);
+        }
+
+        /**
+         * Deletes the scratch file.
+         */
+        public void dispose() {
+            ((MappedTileStore)getTileStore()).dispose();
+        }
+    }
+
     // --------------------------------------------------------------------
     // Keys definition
     // --------------------------------------------------------------------
@@ -275,4 +495,108 @@ public abstract class ImageTranscoder extends SVGAbstractTranscoder {
      */
     public static final TranscodingHints.Key KEY_FORCE_TRANSPARENT_WHITE
         = new BooleanKey();
+
+    /**
+     * The tile parallelism key.
+     *
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_TILE_PARALLELISM</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Integer</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">1</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">The number of threads used to compute the
+     *       tiles of the image.  Independent tiles are rendered in
+     *       parallel on a fork/join pool of this size, which lets a
+     *       single large image with heavy filters use several cores.
+     *       Values less than two render every tile on the calling
+     *       thread.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_TILE_PARALLELISM
+        = new IntegerKey();
+
+    /**
+     * The off-heap raster key.
+     *
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_OFF_HEAP_RASTER</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Boolean</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">false</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">Whether the image is rendered tile by tile
+     *       into a memory mapped file in the temporary directory
+     *       instead of into an image on the heap.  The PNG and TIFF
+     *       transcoders then encode it strip by strip, so the size of
+     *       the output is limited by the disk space rather than by the
+     *       maximum heap size.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_OFF_HEAP_RASTER
+        = new BooleanKey();
+
+    /**
+     * The band height key.
+     *
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_BAND_HEIGHT</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Integer</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">none</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">The minimum height in pixels of the
+     *       horizontal bands the image is rendered in.  When set, each
+     *       band is only rendered when the encoder asks for it, and
+     *       the PNG and TIFF transcoders encode it before the next
+     *       one is rendered, so the memory used is about that of one
+     *       band instead of that of the whole image.  Combined with
+     *       <code>KEY_OFF_HEAP_RASTER</code>, the bands are kept in the
+     *       scratch file.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_BAND_HEIGHT
+        = new IntegerKey();
 }
@@ -20,6 +20,7 @@
 package org.apache.batik.transcoder.image;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.lang.reflect.InvocationTargetException;
 
@@ -105,6 +106,31 @@ public class TIFFTranscoder extends ImageTranscoder {
             forceTransparentWhite(img, sppsm);
         }
 
+        getWriteAdapter().writeImage(this, img, output);
+    }
+    
+    /**
+     * Writes the specified image to the specified output, strip by
+     * strip if the write adapter supports it.
+     * @param img the image to write
+     * @param output the output where to store the image
+     * @throws TranscoderException if an error occured while storing the image
+     */
+    public void writeImage(RenderedImage img, TranscoderOutput output)
+            throws TranscoderException {
+
+        WriteAdapter adapter = getWriteAdapter();
+        if (adapter instanceof RenderedImageWriteAdapter) {
+            ((RenderedImageWriteAdapter)adapter).writeImage(this, img, output);
+        } else {
+            adapter.writeImage(this, toBufferedImage(img), output);
+        }
+    }
+
+    /**
+     * Returns the write adapter used to encode the images.
+     */
+    private WriteAdapter getWriteAdapter() throws TranscoderException {
         WriteAdapter adapter = getWriteAdapter(
                 "org.apache.batik.ext.awt.image.codec.tiff.TIFFTranscoderInternalCodecWriteAdapter");
         if (adapter == null) {
@@ -115,7 +141,7 @@ public class TIFFTranscoder extends ImageTranscoder {
             throw new TranscoderException(
                     "Could not write TIFF file because no WriteAdapter is availble");
         }
-        adapter.writeImage(this, img, output);
+        return adapter;
     }
     
     // --------------------------------------------------------------------
@@ -141,6 +167,25 @@ public class TIFFTranscoder extends ImageTranscoder {
                 TranscoderOutput output) throws TranscoderException;
 
     }
+
+    /**
+     * A write adapter which can encode an image whose tiles are only
+     * computed when requested, without copying it to a
+     * <code>BufferedImage</code>.
+     */
+    public interface RenderedImageWriteAdapter extends WriteAdapter {
+
+        /**
+         * Writes the specified image to the specified output.
+         * @param transcoder the calling TIFFTranscoder
+         * @param img the image to write
+         * @param output the output where to store the image
+         * @throws TranscoderException if an error occured while storing the image
+         */
+        void writeImage(TIFFTranscoder transcoder, RenderedImage img,
+                TranscoderOutput output) throws TranscoderException;
+
+    }
     
 
     // --------------------------------------------------------------------
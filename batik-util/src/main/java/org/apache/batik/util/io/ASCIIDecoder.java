@@ -54,4 +54,39 @@ public class ASCIIDecoder extends AbstractCharDecoder {
         }
         return result;
     }
+
+    /**
+     * Reads characters into a portion of an array.
+     * @return the number of characters read, or END_OF_STREAM.
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == count) {
+            fillBuffer();
+        }
+        if (count == -1) {
+            return END_OF_STREAM;
+        }
+        int n = Math.min(len, count - position);
+        byte[] b = buffer;
+        int p = position;
+        for (int i = off, end = off + n; i < end; i++) {
+            byte c = b[p];
+            if (c < 0) {
+                if (i > off) {
+                    // Report the error on the next call.
+                    n = i - off;
+                    break;
+                }
+                position = p + 1;
+                charError("ASCII");
+            }
+            cbuf[i] = (char)c;
+            p++;
+        }
+        position = p;
+        return n;
+    }
 }
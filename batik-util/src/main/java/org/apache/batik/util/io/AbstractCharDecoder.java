@@ -62,6 +62,36 @@ public abstract class AbstractCharDecoder implements CharDecoder {
         inputStream = is;
     }
 
+    /**
+     * Reads characters into a portion of an array, one call to {@link
+     * #readChar()} at a time.  Subclasses override this method to
+     * decode the buffered bytes in one loop.
+     * @param cbuf The destination buffer.
+     * @param off The offset at which to start writing characters.
+     * @param len The maximum number of characters to read.
+     * @return the number of characters read, or END_OF_STREAM.
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int c = readChar();
+        if (c == END_OF_STREAM) {
+            return END_OF_STREAM;
+        }
+        cbuf[off] = (char)c;
+        int n = 1;
+        // Stop once the buffered bytes are used up, so as not to block.
+        while (n < len && position < count) {
+            c = readChar();
+            if (c == END_OF_STREAM) {
+                break;
+            }
+            cbuf[off + n++] = (char)c;
+        }
+        return n;
+    }
+
     /**
      * Disposes the associated resources.
      */
@@ -40,6 +40,16 @@ public interface CharDecoder {
      */
     int readChar() throws IOException;
 
+    /**
+     * Reads characters into a portion of an array.  At least one
+     * character is read, unless the end of the stream is reached.
+     * @param cbuf The destination buffer.
+     * @param off The offset at which to start writing characters.
+     * @param len The maximum number of characters to read.
+     * @return the number of characters read, or END_OF_STREAM.
+     */
+    int read(char[] cbuf, int off, int len) throws IOException;
+
     /**
      * Disposes the associated resources.
      */
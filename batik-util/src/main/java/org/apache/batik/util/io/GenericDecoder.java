@@ -66,6 +66,17 @@ public class GenericDecoder implements CharDecoder {
         return reader.read();
     }
 
+    /**
+     * Reads characters into a portion of an array.
+     * @return the number of characters read, or END_OF_STREAM.
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        return reader.read(cbuf, off, len);
+    }
+
     /**
      * Disposes the associated resources.
      */
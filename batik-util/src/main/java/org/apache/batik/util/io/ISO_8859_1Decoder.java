@@ -50,4 +50,28 @@ public class ISO_8859_1Decoder extends AbstractCharDecoder {
         }
         return buffer[position++] & 0xff;
     }
+
+    /**
+     * Reads characters into a portion of an array.
+     * @return the number of characters read, or END_OF_STREAM.
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == count) {
+            fillBuffer();
+        }
+        if (count == -1) {
+            return END_OF_STREAM;
+        }
+        int n = Math.min(len, count - position);
+        byte[] b = buffer;
+        int p = position;
+        for (int i = off, end = off + n; i < end; i++) {
+            cbuf[i] = (char)(b[p++] & 0xff);
+        }
+        position = p;
+        return n;
+    }
 }
@@ -101,33 +101,99 @@ public class StreamNormalizingReader extends NormalizingReader {
         int result = nextChar;
         if (result != -1) {
             nextChar = -1;
-            if (result == 13) {
-                column = 0;
-                line++;
-            } else {
-                column++;
-            }
-            return result;
+        } else {
+            result = charDecoder.readChar();
         }
-        result = charDecoder.readChar();
         switch (result) {
         case 13:
             column = 0;
             line++;
             int c = charDecoder.readChar();
-            if (c == 10) {
-                return 10;
+            if (c != 10) {
+                nextChar = c;
             }
-            nextChar = c;
             return 10;
 
         case 10:
             column = 0;
             line++;
+            break;
+
+        case -1:
+            break;
+
+        default:
+            column++;
         }
         return result;
     }
 
+    /**
+     * Read characters into a portion of an array.  The characters are
+     * decoded in one call to the char decoder, and the line breaks are
+     * then normalized in place.
+     * @param cbuf  Destination buffer
+     * @param off   Offset at which to start writing characters
+     * @param len   Maximum number of characters to read
+     * @return The number of characters read, or -1 if the end of the
+     * stream has been reached
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int i = off;
+        int end = off + len;
+        while (nextChar != -1 && i < end) {
+            cbuf[i++] = (char)read();
+        }
+        if (i == end) {
+            return len;
+        }
+        int n = charDecoder.read(cbuf, i, end - i);
+        if (n == -1) {
+            return (i == off) ? -1 : i - off;
+        }
+
+        int r = i;
+        int w = i;
+        int stop = i + n;
+        int ln = line;
+        int col = column;
+        while (r < stop) {
+            char c = cbuf[r++];
+            if (c > 13) {
+                cbuf[w++] = c;
+                col++;
+            } else if (c == 13) {
+                cbuf[w++] = 10;
+                ln++;
+                col = 0;
+                if (r < stop) {
+                    if (cbuf[r] == 10) {
+                        r++;
+                    }
+                } else {
+                    int d = charDecoder.readChar();
+                    if (d != 10) {
+                        nextChar = d;
+                    }
+                }
+            } else {
+                cbuf[w++] = c;
+                if (c == 10) {
+                    ln++;
+                    col = 0;
+                } else {
+                    col++;
+                }
+            }
+        }
+        line = ln;
+        column = col;
+        return w - off;
+    }
+
     /**
      * Returns the current line in the stream.
      */
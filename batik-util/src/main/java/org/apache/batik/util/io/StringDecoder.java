@@ -62,6 +62,23 @@ public class StringDecoder implements CharDecoder {
         return string.charAt(next++);
     }
 
+    /**
+     * Reads characters into a portion of an array.
+     * @return the number of characters read, or END_OF_STREAM.
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (next == length) {
+            return END_OF_STREAM;
+        }
+        int n = Math.min(len, length - next);
+        string.getChars(next, next + n, cbuf, off);
+        next += n;
+        return n;
+    }
+
     /**
      * Disposes the associated resources.
      */
@@ -83,11 +83,71 @@ public class StringNormalizingReader extends NormalizingReader {
             case 10:
                 column = 0;
                 line++;
+                return 10;
+
+            case -1:
+                return -1;
             }
         }
+        column++;
         return result;
     }
 
+    /**
+     * Read characters into a portion of an array.
+     * @param cbuf  Destination buffer
+     * @param off   Offset at which to start writing characters
+     * @param len   Maximum number of characters to read
+     * @return The number of characters read, or -1 if the end of the
+     * stream has been reached
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (next == length) {
+            return -1;
+        }
+        int n = Math.min(len, length - next);
+        string.getChars(next, next + n, cbuf, off);
+        next += n;
+
+        int r = off;
+        int w = off;
+        int stop = off + n;
+        int ln = line;
+        int col = column;
+        while (r < stop) {
+            char c = cbuf[r++];
+            if (c > 13) {
+                cbuf[w++] = c;
+                col++;
+            } else if (c == 13) {
+                cbuf[w++] = 10;
+                ln++;
+                col = 0;
+                if (r < stop) {
+                    if (cbuf[r] == 10) {
+                        r++;
+                    }
+                } else if (next < length && string.charAt(next) == 10) {
+                    next++;
+                }
+            } else {
+                cbuf[w++] = c;
+                if (c == 10) {
+                    ln++;
+                    col = 0;
+                } else {
+                    col++;
+                }
+            }
+        }
+        line = ln;
+        column = col;
+        return w - off;
+    }
+
     /**
      * Returns the current line in the stream.
      */
@@ -109,7 +109,7 @@ public class UTF8Decoder extends AbstractCharDecoder {
             if ((b2 & 0xc0) != 0x80 || (b3 & 0xc0) != 0x80) {
                 charError("UTF-8");
             }
-            return ((b1 & 0x1f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x1f);
+            return ((b1 & 0x0f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x3f);
 
         case 4:
             if (position == count) {
@@ -138,12 +138,80 @@ public class UTF8Decoder extends AbstractCharDecoder {
                 (b4 & 0xc0) != 0x80) {
                 charError("UTF-8");
             }
-            int c = ((b1 & 0x1f) << 18)
+            int c = ((b1 & 0x07) << 18)
                 | ((b2 & 0x3f) << 12)
-                | ((b3 & 0x1f) << 6)
-                | (b4 & 0x1f);
+                | ((b3 & 0x3f) << 6)
+                | (b4 & 0x3f);
             nextChar = (c - 0x10000) % 0x400 + 0xdc00;
             return (c - 0x10000) / 0x400 + 0xd800;
         }
     }
+
+    /**
+     * Reads characters into a portion of an array.  Runs of ASCII
+     * bytes are copied in one loop; the other sequences are decoded by
+     * {@link #readChar()}.
+     * @return the number of characters read, or END_OF_STREAM.
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int i = off;
+        int end = off + len;
+        if (nextChar != -1) {
+            cbuf[i++] = (char)nextChar;
+            nextChar = -1;
+        }
+        if (position == count) {
+            if (i > off) {
+                return i - off;
+            }
+            fillBuffer();
+        }
+        if (count == -1) {
+            return (i > off) ? i - off : END_OF_STREAM;
+        }
+        byte[] b = buffer;
+        int p = position;
+        int n = count;
+        while (i < end && p < n) {
+            int b1 = b[p];
+            if (b1 >= 0) {
+                cbuf[i++] = (char)b1;
+                p++;
+                continue;
+            }
+            if (p + UTF8_BYTES[b1 & 0xff] > n) {
+                // The sequence goes on in the next buffer.
+                if (i > off) {
+                    break;
+                }
+                position = p;
+                cbuf[i++] = (char)readChar();
+                b = buffer;
+                p = position;
+                n = count;
+            } else {
+                position = p;
+                try {
+                    cbuf[i++] = (char)readChar();
+                } catch (IOException e) {
+                    if (i - 1 > off) {
+                        // Report the error on the next call.
+                        position = p;
+                        return i - 1 - off;
+                    }
+                    throw e;
+                }
+                p = position;
+            }
+            if (nextChar != -1 && i < end) {
+                cbuf[i++] = (char)nextChar;
+                nextChar = -1;
+            }
+        }
+        position = p;
+        return i - off;
+    }
 }
@@ -146,6 +146,31 @@ public class XMLScanner implements Localizable {
      */
     protected NormalizingReader reader;
 
+    /**
+     * The characters read from the reader and not yet scanned.
+     */
+    protected char[] readBuffer = new char[8192];
+
+    /**
+     * The position of the next character in the read buffer.
+     */
+    protected int readPosition;
+
+    /**
+     * The number of characters in the read buffer.
+     */
+    protected int readCount;
+
+    /**
+     * The current line.
+     */
+    protected int line = 1;
+
+    /**
+     * The current column.
+     */
+    protected int column;
+
     /**
      * The current char.
      */
@@ -311,14 +336,14 @@ public class XMLScanner implements Localizable {
      * Returns the current line.
      */
     public int getLine() {
-        return reader.getLine();
+        return line;
     }
 
     /**
      * Returns the current column.
      */
     public int getColumn() {
-        return reader.getColumn();
+        return column;
     }
 
     /**
@@ -2047,13 +2072,24 @@ public class XMLScanner implements Localizable {
 
     /**
      * Sets the value of the current char to the next character or -1 if the
-     * end of stream has been reached.
+     * end of stream has been reached.  The characters are read from the
+     * reader a buffer at a time.
      */
     protected int nextChar() throws IOException {
-        current = reader.read();
-
-        if (current == -1) {
-            return current;
+        if (readPosition == readCount) {
+            readCount = reader.read(readBuffer, 0, readBuffer.length);
+            readPosition = 0;
+            if (readCount == -1) {
+                readCount = 0;
+                return current = -1;
+            }
+        }
+        current = readBuffer[readPosition++];
+        if (current == 10) {
+            line++;
+            column = 0;
+        } else {
+            column++;
         }
 
         if (position == buffer.length) {
@@ -2073,8 +2109,8 @@ public class XMLScanner implements Localizable {
         try {
             m = formatMessage(message,
                               new Object[] {
-                                      reader.getLine(),
-                                      reader.getColumn()
+                                      getLine(),
+                                      getColumn()
                               });
         } catch (MissingResourceException e) {
             m = message;